@@ -2,7 +2,11 @@ package com.NetProtector.Controllers;
 
 import com.NetProtector.Models.Alert;
 import com.NetProtector.Models.DetectionModel;
+import com.NetProtector.Models.Pipeline.OverloadPolicy;
+import com.NetProtector.Models.Pipeline.PacketRing;
+import com.NetProtector.Models.Pipeline.InterfaceMerge;
 import com.NetProtector.Models.Rules.*;
+import com.NetProtector.Models.Tracking.HeavyHitterTracker.HeavyHitter;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
@@ -13,12 +17,16 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import org.pcap4j.packet.Packet;
 
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
 import java.util.ResourceBundle;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
 
 /**
  * Controller for the Detection system in NetProtector.
@@ -28,6 +36,9 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class DetectionController implements Initializable {
 
+    /** Threat-intel feed directory, relative to the working directory like the alert database. */
+    public static final String DEFAULT_THREAT_INTEL_DIR = "threat_intel";
+
     // FXML Controls
     @FXML private Button startDetectionBtn;
     @FXML private Button stopDetectionBtn;
@@ -68,7 +79,11 @@ public class DetectionController implements Initializable {
     // Detection components
     private DetectionModel detectionModel;
     private Thread detectionThread;
-    private BlockingQueue<Packet> packetQueue;
+    private PacketRing injectionRing;
+    private List<PacketRing> packetSources;
+    private InterfaceMerge packetQueue;
+    private int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private volatile Path threatIntelDirectory = Path.of(DEFAULT_THREAT_INTEL_DIR);
     
     // Observable lists for UI
     private final ObservableList<Rule> rulesData = FXCollections.observableArrayList();
@@ -100,7 +115,9 @@ public class DetectionController implements Initializable {
      */
     private void initializeDetectionModel() {
         detectionModel = new DetectionModel();
-        packetQueue = new LinkedBlockingQueue<>();
+        // Own ring for injected packets until attached to the capture rings
+        injectionRing = new PacketRing("injected", PacketRing.DEFAULT_CAPACITY, OverloadPolicy.BLOCK);
+        packetSources = List.of(injectionRing);
         
         // Add alert handler to update UI when new alerts are generated
         detectionModel.addAlertHandler(alert -> {
@@ -231,7 +248,8 @@ public class DetectionController implements Initializable {
      */
     private void loadDefaultRules() {
         // Add the rules we created earlier
-        detectionModel.addRule(new DdosDetectionRule());
+        detectionModel.addRule(new DdosDetectionRule(DdosDetectionRule.Direction.SOURCE));
+        detectionModel.addRule(new DdosDetectionRule(DdosDetectionRule.Direction.DESTINATION));
         detectionModel.addRule(new SqlInjectionRule());
         detectionModel.addRule(new BruteForceDetectionRule());
         detectionModel.addRule(new DnsTunnelingRule());
@@ -249,6 +267,63 @@ public class DetectionController implements Initializable {
         
         // Update UI
         refreshRulesTable();
+        loadThreatIntelInBackground();
+    }
+
+    /**
+     * Loads the threat-intel feeds on a background thread, so large feeds do not
+     * hold up startup; the malicious-IP rule uses its built-in entries until then
+     */
+    private void loadThreatIntelInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                reloadThreatIntel();
+            } catch (IOException e) {
+                System.err.println("DetectionController: Failed to load threat intel feeds: " + e.getMessage());
+            }
+        }, "ThreatIntelLoader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Reloads every feed file in the threat-intel directory into the malicious-IP
+     * rules. Each rule keeps matching against its current data until the new
+     * snapshot is swapped in. A missing directory leaves only the built-in entries.
+     * @return Number of feed files loaded
+     * @throws IOException if the directory or a feed cannot be read; the current data is kept
+     */
+    public int reloadThreatIntel() throws IOException {
+        Path directory = threatIntelDirectory;
+        List<Path> feeds = List.of();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                feeds = files.filter(Files::isRegularFile)
+                             .filter(file -> !file.getFileName().toString().startsWith("."))
+                             .sorted()
+                             .toList();
+            }
+        }
+        for (Rule rule : detectionModel.getRules()) {
+            if (rule instanceof MaliciousIpRule intelRule) {
+                intelRule.loadFeeds(feeds);
+            }
+        }
+        System.out.println("DetectionController: Loaded " + feeds.size() + " threat intel feed(s) from " +
+                           directory.toAbsolutePath());
+        return feeds.size();
+    }
+
+    /**
+     * Sets the directory feeds are read from by the next {@link #reloadThreatIntel()}
+     * @param directory Directory of feed files, one IP or CIDR per line
+     */
+    public void setThreatIntelDirectory(Path directory) {
+        this.threatIntelDirectory = directory;
+    }
+
+    public Path getThreatIntelDirectory() {
+        return threatIntelDirectory;
     }
 
     /**
@@ -272,11 +347,14 @@ public class DetectionController implements Initializable {
      */
     public void startDetection() {
         if (!detectionModel.isRunning()) {
-            detectionThread = detectionModel.startDetection(packetQueue);
+            // Gating, so the detection engine sees every packet that enters a ring
+            packetQueue = InterfaceMerge.subscribe(packetSources, "Detection", true);
+            detectionThread = detectionModel.startDetection(packetQueue, workerCount);
             detectionRunning.set(true);
             currentStatus.set("Running");
             
-            System.out.println("Detection started with " + detectionModel.getRuleCount() + " rules");
+            System.out.println("Detection started with " + detectionModel.getRuleCount() + " rules and " +
+                               workerCount + " worker(s)");
             
             // Only start simulation if in JavaFX context
             if (isJavaFXContext()) {
@@ -302,6 +380,9 @@ public class DetectionController implements Initializable {
             if (detectionThread != null) {
                 detectionThread.interrupt();
             }
+            if (packetQueue != null) {
+                packetQueue.close();
+            }
             detectionRunning.set(false);
             currentStatus.set("Stopped");
             
@@ -406,7 +487,7 @@ public class DetectionController implements Initializable {
                 
                 // In production, you would integrate with PacketCaptureController:
                 // PacketCaptureController packetController = new PacketCaptureController();
-                // packetController.setPacketQueue(this.packetQueue);
+                // detectionController.setPacketSources(packetController.getPacketRings());
                 
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -415,13 +496,67 @@ public class DetectionController implements Initializable {
         simulationThread.setDaemon(true);
         simulationThread.start();
     }    /**
-     * Gets the packet queue for integration with packet capture
-     * @return The packet queue
+     * Attaches detection to packet rings, typically one capture ring per interface.
+     * Takes effect the next time detection is started.
+     * @param packetSources The rings to subscribe to
+     */
+    public void setPacketSources(List<PacketRing> packetSources) {
+        this.packetSources = packetSources.isEmpty() ? List.of(injectionRing) : List.copyOf(packetSources);
+    }
+
+    /**
+     * Gets the rings detection subscribes to
+     * @return The packet rings
+     */
+    public List<PacketRing> getPacketSources() {
+        return packetSources;
+    }
+
+    /**
+     * Gets the detection engine's merged subscription to the packet rings
+     * @return The subscription, or null if detection never started
      */
-    public BlockingQueue<Packet> getPacketQueue() {
+    public InterfaceMerge getPacketSubscription() {
         return packetQueue;
     }
 
+    /**
+     * Gets the number of packets detection was overtaken on
+     * @return Packets skipped by the detection subscription
+     */
+    public long getSkippedPacketCount() {
+        return packetQueue != null ? packetQueue.getSkippedCount() : 0;
+    }
+
+    /**
+     * Sets the number of parallel detection workers used by the next start
+     * @param workerCount Number of workers; 1 runs all rules on the detection thread
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Gets the top talkers from the DDoS rule's heavy-hitter sketches, so views
+     * do not need to count per-address traffic themselves
+     * @param n Maximum number of entries
+     * @param byBytes true to rank by bytes, false by packets
+     * @return Top sources, empty unless the source DDoS rule runs in sketch mode
+     */
+    public List<HeavyHitter> getTopTalkers(int n, boolean byBytes) {
+        for (Rule rule : detectionModel.getRules()) {
+            if (rule instanceof DdosDetectionRule ddos && ddos.getMode() == DdosDetectionRule.Mode.SKETCH
+                    && ddos.getDirection() == DdosDetectionRule.Direction.SOURCE) {
+                return ddos.getTopAddresses(n, byBytes);
+            }
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Gets the detection model
      * @return The detection model
@@ -437,7 +572,7 @@ public class DetectionController implements Initializable {
     void injectPacket(Packet packet) {
         if (packet != null) {
             try {
-                packetQueue.put(packet);
+                injectionRing.put(packet);
             } catch (InterruptedException e) {
                 System.err.println("Failed to inject packet: " + e.getMessage());
                 Thread.currentThread().interrupt();
@@ -485,6 +620,12 @@ public class DetectionController implements Initializable {
         if (detectionThread != null) {
             detectionThread.interrupt();
         }
+        if (packetQueue != null) {
+            packetQueue.close();
+        }
+        if (detectionModel != null) {
+            detectionModel.shutdown();
+        }
         System.out.println("Detection Controller cleaned up");
     }
 }
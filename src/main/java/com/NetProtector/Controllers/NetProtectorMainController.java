@@ -1,7 +1,9 @@
 package com.NetProtector.Controllers;
 
 import com.NetProtector.Models.Alert;
+import com.NetProtector.Models.CaptureHealth;
 import com.NetProtector.Models.DetectionModel;
+import com.NetProtector.Models.PacketCaptureModel;
 import com.NetProtector.Services.ReportService;
 import com.NetProtector.db.DatabaseManager;
 import javafx.animation.FadeTransition;
@@ -19,7 +21,6 @@ import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import org.pcap4j.packet.Packet;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -27,12 +28,12 @@ import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +63,8 @@ public class NetProtectorMainController implements Initializable {
     @FXML
     private Button stopDetectionButton;
     @FXML
+    private Button reloadThreatIntelButton;
+    @FXML
     private Button clearAlertsButton;
     @FXML
     private Button exportAlertsButton;
@@ -156,7 +159,6 @@ public class NetProtectorMainController implements Initializable {
     // Data
     private ObservableList<Alert> alertData;
     private ScheduledExecutorService statusUpdateService;
-    private Thread packetBridgeThread;
     private volatile boolean running = true;
 
     @FXML
@@ -465,6 +467,17 @@ public class NetProtectorMainController implements Initializable {
         try {
             packetController = new PacketCaptureController();
             detectionController = new DetectionController();
+            // Keep the kernel prefilter and snap length in step with the rules while detection runs
+            detectionController.getDetectionModel().addRuleSetListener(() -> {
+                if (detectionController.getDetectionModel().isRunning()) {
+                    applyCaptureRequirements();
+                }
+            });
+            // Capture losses count towards detection overload, not only queue depth
+            detectionController.getDetectionModel().setExternalLoad(() -> {
+                CaptureHealth health = packetController.getCaptureHealth();
+                return health != null ? health.getLoad() : 0.0;
+            });
             dbManager = new DatabaseManager();
             reportService = new ReportService(dbManager);
             System.out.println("NetProtectorMainController: Core controllers initialized successfully.");
@@ -642,7 +655,8 @@ public class NetProtectorMainController implements Initializable {
                 }
 
                 if (captureStatusLabel != null) {
-                    String captureStatus = packetController.isCapturing() ? "🟢 Capturing" : "🔴 Stopped";
+                    String captureStatus = (packetController.isCapturing() ? "🟢 Capturing" : "🔴 Stopped")
+                            + formatDrops(packetController.getDroppedPacketCount());
                     captureStatusLabel.setText(captureStatus);
                     captureStatusLabel
                             .setStyle(packetController.isCapturing() ? "-fx-text-fill: #28a745; -fx-font-weight: bold;"
@@ -666,7 +680,9 @@ public class NetProtectorMainController implements Initializable {
                     }
 
                     if (detectionStatusLabel != null) {
-                        String detectionStatus = model.isRunning() ? "🟢 Detecting" : "🔴 Stopped";
+                        String detectionStatus = (model.isRunning() ? "🟢 Detecting" : "🔴 Stopped")
+                                + formatDrops(detectionController.getSkippedPacketCount())
+                                + formatUnsavedAlerts(dbManager != null ? dbManager.getBatchWriter().getDroppedCount() : 0);
                         detectionStatusLabel.setText(detectionStatus);
                         detectionStatusLabel
                                 .setStyle(model.isRunning() ? "-fx-text-fill: #28a745; -fx-font-weight: bold;"
@@ -677,14 +693,20 @@ public class NetProtectorMainController implements Initializable {
                 }
             }
 
-            double systemPerformance = calculateSystemPerformance();
-            String performanceText = getPerformanceText(systemPerformance);
-            updatePerformanceBar(systemPerformance, performanceText);
+            updatePerformanceIndicator();
 
             updateSidebarStatus();
         });
     }
 
+    private static String formatDrops(long dropped) {
+        return dropped > 0 ? String.format(" (%,d dropped)", dropped) : "";
+    }
+
+    private static String formatUnsavedAlerts(long dropped) {
+        return dropped > 0 ? String.format(" (%,d alerts not saved)", dropped) : "";
+    }
+
     private void updateCharts() {
         // Only update charts if packet capture is running
         if (packetController == null || !packetController.isCapturing()) {
@@ -819,34 +841,17 @@ public class NetProtectorMainController implements Initializable {
         if (performanceBar == null || performanceLabel == null)
             return;
 
-        int currentPacketCount = (packetController != null) ? packetController.getPacketCount() : 0;
-        double load = Math.min(1.0, (double) currentPacketCount / 10000.0);
-
-        Platform.runLater(() -> {
-            performanceBar.setProgress(load);
-
-            String performanceText;
-
-            // Clear existing performance style classes
-            performanceBar.getStyleClass().removeAll(
-                    "performance-bar-excellent",
-                    "performance-bar-good",
-                    "performance-bar-average",
-                    "performance-bar-poor");
-
-            if (load < 0.3) {
-                performanceText = "📊 Performance: Optimal";
-                performanceBar.getStyleClass().add("performance-bar-excellent");
-            } else if (load < 0.7) {
-                performanceText = "📊 Performance: Moderate";
-                performanceBar.getStyleClass().add("performance-bar-average");
-            } else {
-                performanceText = "📊 Performance: High Load";
-                performanceBar.getStyleClass().add("performance-bar-poor");
-            }
+        // Measured capture health rather than a guess from the packet count
+        CaptureHealth health = (packetController != null && packetController.isCapturing())
+                ? packetController.getCaptureHealth() : null;
+        double performance = calculateSystemPerformance(health);
+        String performanceText = health != null ? getCaptureHealthText(health) : getPerformanceText(performance);
+        updatePerformanceBar(performance, performanceText);
+    }
 
-            performanceLabel.setText(performanceText);
-        });
+    private static String getCaptureHealthText(CaptureHealth health) {
+        return String.format("📊 %,.0f pkt/s in, %,.0f decoded, queue %.0f%%, %,.0f dropped/s",
+                health.getEnqueueRate(), health.getDecodeRate(), health.getQueueFill() * 100, health.getDropRate());
     }
 
     /**
@@ -883,14 +888,12 @@ public class NetProtectorMainController implements Initializable {
     /**
      * Calculate system performance based on multiple factors
      */
-    private double calculateSystemPerformance() {
+    private double calculateSystemPerformance(CaptureHealth health) {
         double performance = 1.0; // Start with optimal
 
-        // Factor in packet processing rate
-        if (packetController != null) {
-            int packetCount = packetController.getPacketCount();
-            double packetLoad = Math.min(1.0, (double) packetCount / 10000.0);
-            performance -= (packetLoad * 0.3); // Reduce performance by up to 30% based on packet load
+        // Factor in capture pressure: ring backlog and packets lost since the last sample
+        if (health != null) {
+            performance -= (health.getLoad() * 0.5); // Reduce performance by up to 50% based on capture load
         }
 
         // Factor in alert generation rate
@@ -974,6 +977,8 @@ public class NetProtectorMainController implements Initializable {
 
             if (interfaceListView != null) {
                 interfaceListView.setItems(packetController.getInterfaceNames());
+                // Several span ports can be captured at once
+                interfaceListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
                 if (!interfaceListView.getItems().isEmpty()) {
                     interfaceListView.getSelectionModel().selectFirst();
                 }
@@ -996,14 +1001,14 @@ public class NetProtectorMainController implements Initializable {
             return;
         }
 
-        int selectedIndex = interfaceListView.getSelectionModel().getSelectedIndex();
-        if (selectedIndex == -1) {
+        List<Integer> selectedIndexes = new ArrayList<>(interfaceListView.getSelectionModel().getSelectedIndices());
+        if (selectedIndexes.isEmpty()) {
             showError("No Interface Selected", "Please select a network interface to start capturing.");
             return;
         }
 
         String filter = (filterTextField != null) ? filterTextField.getText().trim() : "";
-        System.out.println("NetProtectorMainController: Starting capture on interface index " + selectedIndex
+        System.out.println("NetProtectorMainController: Starting capture on interface indexes " + selectedIndexes
                 + " with filter: '" + filter + "'");
 
         // Enhanced button states with animations
@@ -1014,7 +1019,7 @@ public class NetProtectorMainController implements Initializable {
 
         new Thread(() -> {
             try {
-                packetController.startCapture(selectedIndex, filter);
+                packetController.startCapture(selectedIndexes, List.of(filter));
                 Platform.runLater(() -> {
                     if (startCaptureButton != null)
                         startCaptureButton.setText("▶ Start Capture");
@@ -1082,8 +1087,10 @@ public class NetProtectorMainController implements Initializable {
                 startDetectionButton.setDisable(true);
             }
 
-            startPacketBridge(packetController.getPacketQueue(), detectionController.getPacketQueue());
+            // Detection reads the capture rings through its own subscriptions
+            detectionController.setPacketSources(packetController.getPacketRings());
             detectionController.startDetection();
+            applyCaptureRequirements();
 
             if (startDetectionButton != null)
                 startDetectionButton.setText("🔍 Start Detection");
@@ -1102,15 +1109,24 @@ public class NetProtectorMainController implements Initializable {
         }
     }
 
+    /**
+     * Narrows the capture to what the installed rules need: a kernel prefilter
+     * and, for header-only rule sets, a short snap length
+     */
+    private void applyCaptureRequirements() {
+        DetectionModel model = detectionController.getDetectionModel();
+        packetController.setRuleFilter(model.getCaptureFilter());
+        packetController.setSnapLength(model.getRequiredSnapLength());
+    }
+
     @FXML
     private void stopDetection() {
         System.out.println("NetProtectorMainController: Stop Detection button clicked.");
         try {
             detectionController.stopDetection();
-            if (packetBridgeThread != null && packetBridgeThread.isAlive()) {
-                packetBridgeThread.interrupt();
-                System.out.println("NetProtectorMainController: Packet bridge thread interrupted.");
-            }
+            // The packet monitor alone wants whole, unfiltered frames
+            packetController.setRuleFilter(null);
+            packetController.setSnapLength(PacketCaptureModel.DEFAULT_SNAPLEN);
 
             if (startDetectionButton != null) {
                 startDetectionButton
@@ -1127,28 +1143,6 @@ public class NetProtectorMainController implements Initializable {
         }
     }
 
-    private void startPacketBridge(BlockingQueue<Packet> sourceQueue, BlockingQueue<Packet> targetQueue) {
-        packetBridgeThread = new Thread(() -> {
-            System.out.println("NetProtectorMainController: Packet bridge thread started.");
-            while (!Thread.currentThread().isInterrupted() &&
-                    packetController != null && packetController.isCapturing()) {
-                try {
-                    Packet packet = sourceQueue.take();
-                    targetQueue.put(packet);
-                } catch (InterruptedException e) {
-                    System.out.println("NetProtectorMainController: Packet bridge thread interrupted.");
-                    Thread.currentThread().interrupt();
-                } catch (Exception e) {
-                    System.err.println("NetProtectorMainController: Error in packet bridge - " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
-            System.out.println("NetProtectorMainController: Packet bridge thread stopped.");
-        }, "PacketBridge-Thread");
-        packetBridgeThread.setDaemon(true);
-        packetBridgeThread.start();
-    }
-
     @FXML
     private void clearSearch() {
         System.out.println("NetProtectorMainController: Clear Search button clicked.");
@@ -1160,6 +1154,34 @@ public class NetProtectorMainController implements Initializable {
         System.out.println("NetProtectorMainController: Search cleared from UI and model.");
     }
 
+    @FXML
+    private void reloadThreatIntel() {
+        System.out.println("NetProtectorMainController: Reload Threat Intel button clicked.");
+        if (detectionController == null) {
+            showError("Detection Error", "Detection controller not initialized.");
+            return;
+        }
+        if (reloadThreatIntelButton != null)
+            reloadThreatIntelButton.setDisable(true);
+
+        // Feeds can hold millions of entries; parse them off the UI thread
+        new Thread(() -> {
+            try {
+                int feeds = detectionController.reloadThreatIntel();
+                Platform.runLater(() -> updateStatusWithAnimation("🛡️ Threat intel reloaded from " + feeds
+                        + " feed(s) in " + detectionController.getThreatIntelDirectory().toAbsolutePath()));
+            } catch (IOException e) {
+                Platform.runLater(() -> showError("Threat Intel Error",
+                        "Failed to reload threat intel feeds: " + e.getMessage()));
+            } finally {
+                Platform.runLater(() -> {
+                    if (reloadThreatIntelButton != null)
+                        reloadThreatIntelButton.setDisable(false);
+                });
+            }
+        }, "ThreatIntelReloadThread").start();
+    }
+
     @FXML
     private void clearAlerts() {
         System.out.println("NetProtectorMainController: Clear Alerts button clicked.");
@@ -1208,14 +1230,7 @@ public class NetProtectorMainController implements Initializable {
         File file = fileChooser.showSaveDialog((alertTableView != null) ? alertTableView.getScene().getWindow() : null);
 
         if (file != null) {
-            try {
-                reportService.exportToPDF(file.getAbsolutePath());
-                showInfo("Report Generated", "PDF report has been generated and emailed (if configured).\nSaved to: "
-                        + file.getAbsolutePath());
-            } catch (Exception e) {
-                showError("PDF Report Error", "Failed to generate PDF report: " + e.getMessage());
-                e.printStackTrace();
-            }
+            generateReport(file, "PDF", generatePdfReportButton, reportService::exportToPDF);
         } else {
             updateStatusWithAnimation("📄 PDF report generation cancelled.");
         }
@@ -1233,22 +1248,49 @@ public class NetProtectorMainController implements Initializable {
         File file = fileChooser.showSaveDialog((alertTableView != null) ? alertTableView.getScene().getWindow() : null);
 
         if (file != null) {
+            generateReport(file, "CSV", generateCsvReportButton, reportService::exportToCSV);
+        } else {
+            updateStatusWithAnimation("📊 CSV report generation cancelled.");
+        }
+    }
+
+    /** Writes a report to a file. */
+    @FunctionalInterface
+    private interface ReportExport {
+        void export(String filePath) throws Exception;
+    }
+
+    /**
+     * Generates a report on a background thread: it waits for queued alerts to be
+     * written, reads the whole alert table and may send mail, none of which may
+     * block the UI thread
+     */
+    private void generateReport(File file, String kind, Button button, ReportExport export) {
+        if (button != null)
+            button.setDisable(true);
+        updateStatusWithAnimation("⏳ Generating " + kind + " report...");
+
+        new Thread(() -> {
             try {
-                reportService.exportToCSV(file.getAbsolutePath());
-                showInfo("Report Generated", "CSV report has been generated and emailed (if configured).\nSaved to: "
-                        + file.getAbsolutePath());
+                export.export(file.getAbsolutePath());
+                Platform.runLater(() -> showInfo("Report Generated", kind
+                        + " report has been generated and emailed (if configured).\nSaved to: " + file.getAbsolutePath()));
             } catch (Exception e) {
-                showError("CSV Report Error", "Failed to generate CSV report: " + e.getMessage());
+                Platform.runLater(() -> showError(kind + " Report Error",
+                        "Failed to generate " + kind + " report: " + e.getMessage()));
                 e.printStackTrace();
+            } finally {
+                Platform.runLater(() -> {
+                    if (button != null)
+                        button.setDisable(false);
+                });
             }
-        } else {
-            updateStatusWithAnimation("📊 CSV report generation cancelled.");
-        }
+        }, kind + "ReportThread").start();
     }
 
     private void exportAlertsToCSV(File file, ObservableList<Alert> alertsToExport) {
         try (FileWriter writer = new FileWriter(file)) {
-            writer.append("ID,Timestamp,Title,Severity,Source IP,Destination IP,Protocol,Port,Description\n");
+            writer.append("ID,Timestamp,Title,Severity,Source IP,Destination IP,Protocol,Port,Interface,Description\n");
 
             for (Alert alert : alertsToExport) {
                 writer.append(String.valueOf(alert.getId())).append(',');
@@ -1259,6 +1301,7 @@ public class NetProtectorMainController implements Initializable {
                 writer.append("\"").append(escapeCsv(alert.getDestinationIp())).append("\",");
                 writer.append("\"").append(escapeCsv(alert.getProtocol())).append("\",");
                 writer.append(String.valueOf(alert.getPort())).append(',');
+                writer.append("\"").append(escapeCsv(alert.getInterfaceName())).append("\",");
                 writer.append("\"").append(escapeCsv(alert.getDescription())).append("\"\n");
             }
             writer.flush();
@@ -1302,16 +1345,6 @@ public class NetProtectorMainController implements Initializable {
         System.out.println("NetProtectorMainController: Shutdown sequence initiated...");
         this.running = false;
 
-        if (packetBridgeThread != null && packetBridgeThread.isAlive()) {
-            packetBridgeThread.interrupt();
-            try {
-                packetBridgeThread.join(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            System.out.println("NetProtectorMainController: Packet bridge thread stopped.");
-        }
-
         if (packetController != null) {
             System.out.println("NetProtectorMainController: Stopping packet capture...");
             packetController.stopCapture();
@@ -1320,6 +1353,13 @@ public class NetProtectorMainController implements Initializable {
         if (detectionController != null) {
             System.out.println("NetProtectorMainController: Stopping detection engine...");
             detectionController.stopDetection();
+            detectionController.cleanup();
+        }
+
+        // Alerts handed over by the detection engine are committed before exit
+        if (dbManager != null) {
+            System.out.println("NetProtectorMainController: Flushing alert database...");
+            dbManager.close();
         }
 
         // Shutdown notification controller if available
@@ -1,7 +1,15 @@
 package com.NetProtector.Controllers;
 
+import com.NetProtector.Models.CaptureFilters;
+import com.NetProtector.Models.CaptureHealth;
+import com.NetProtector.Models.CaptureHealthSampler;
+import com.NetProtector.Models.CaptureStatistics;
 import com.NetProtector.Models.NetworkInterfaceModel;
 import com.NetProtector.Models.PacketCaptureModel;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Pipeline.InterfaceMerge;
+import com.NetProtector.Models.Pipeline.OverloadPolicy;
+import com.NetProtector.Models.Pipeline.PacketRing;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
@@ -12,12 +20,15 @@ import org.pcap4j.packet.IpV4Packet;
 import org.pcap4j.packet.TcpPacket;
 import org.pcap4j.packet.UdpPacket;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import java.time.Instant;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -27,10 +38,22 @@ public class PacketCaptureController {
 
     
     private NetworkInterfaceModel nifmodel;
-    private PacketCaptureModel capturemodel;
+    // One capture model and ring per interface
+    private final List<PacketCaptureModel> captureModels = new CopyOnWriteArrayList<>();
+    private volatile List<PacketRing> packetRings = Collections.emptyList();
+    private final CaptureHealthSampler healthSampler = new CaptureHealthSampler(captureModels);
       // Packet capture components
     private Thread captureThread;
-    private final BlockingQueue<Packet> packetQueue = new LinkedBlockingQueue<>();
+    // Rings are bounded so a flood costs dropped packets rather than heap. Detection subscribes as a
+    // gating consumer, so whatever enters a ring is evaluated; the overflow is dropped up front.
+    private volatile OverloadPolicy overloadPolicy = OverloadPolicy.DROP_NEWEST;
+    private int ringCapacity = PacketRing.DEFAULT_CAPACITY;
+    private volatile PacketCaptureModel.CaptureMode captureMode = PacketCaptureModel.CaptureMode.BATCH;
+    // The kernel filter is the user's filter narrowed by what the detection rules need
+    private volatile List<String> manualFilters = Collections.emptyList();
+    private volatile String ruleFilter;
+    private volatile boolean keepManualFilter;
+    private volatile int snapLength = PacketCaptureModel.DEFAULT_SNAPLEN;
     private final AtomicBoolean isCapturing = new AtomicBoolean(false);
     
     // JavaFX Properties for UI binding
@@ -45,6 +68,11 @@ public class PacketCaptureController {
     private final ObservableList<String> capturedPackets = FXCollections.observableArrayList();
     private final ObservableList<String> interfaceNames = FXCollections.observableArrayList();
     
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    // The monitoring list cannot show more than this many packets per refresh anyway
+    private static final int DISPLAY_MAX_LAG = 1024;
+    private static final int DISPLAY_BATCH = 256;
+    
     public PacketCaptureController() {
         this.nifmodel = new NetworkInterfaceModel();
         loadAvailableInterfaces();
@@ -83,17 +111,48 @@ public class PacketCaptureController {
      * Start packet capture on selected interface
      */
     public void startCapture(int interfaceIndex, String filter) {
+        startCapture(List.of(interfaceIndex), Collections.singletonList(filter));
+    }
+    
+    /**
+     * Start packet capture on several interfaces at once. Each interface gets its own
+     * capture thread, BPF filter and ring; detection merges the rings fairly.
+     * @param interfaceIndexes Indexes of the interfaces to capture on
+     * @param filters One BPF filter per interface, or a single filter for all of them
+     */
+    public void startCapture(List<Integer> interfaceIndexes, List<String> filters) {
         if (isCapturing.get()) {
             System.out.println("Capture already in progress");
             return;
         }
+        if (interfaceIndexes.isEmpty()) {
+            setStatus("No interface selected");
+            return;
+        }
         
         try {
-            // Get the selected interface
-            PcapNetworkInterface selectedNif = NetworkInterfaceModel.getInterfaceByIndex(interfaceIndex);
+            // Get the selected interfaces
+            List<PcapNetworkInterface> selectedNifs = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (int index : interfaceIndexes) {
+                PcapNetworkInterface nif = NetworkInterfaceModel.getInterfaceByIndex(index);
+                selectedNifs.add(nif);
+                names.add(nif.getName());
+            }
             
-            // Initialize capture model
-            this.capturemodel = new PacketCaptureModel(packetQueue);
+            // Initialize one capture model and ring per interface
+            List<PacketRing> rings = new ArrayList<>();
+            captureModels.clear();
+            for (PcapNetworkInterface nif : selectedNifs) {
+                PacketRing ring = new PacketRing(nif.getName(), ringCapacity, overloadPolicy);
+                rings.add(ring);
+                PacketCaptureModel model = new PacketCaptureModel(ring);
+                model.setCaptureMode(captureMode);
+                model.setSnapLength(snapLength);
+                captureModels.add(model);
+            }
+            packetRings = Collections.unmodifiableList(rings);
+            manualFilters = filters != null ? new ArrayList<>(filters) : Collections.emptyList();
             
             // Clear previous packets
             capturedPackets.clear();
@@ -102,15 +161,20 @@ public class PacketCaptureController {
             // Set properties
             isCapturing.set(true);
             setCapturing(true);
-            setSelectedInterface(selectedNif.getName());
-            setBpfFilter(filter != null ? filter : "");
+            setSelectedInterface(String.join(", ", names));
+            setBpfFilter(effectiveFilter(0));
             setStatus("Starting capture...");
             
-            // Start capture in background thread
+            // Open the handles in the background; each model then loops on its own thread
             captureThread = new Thread(() -> {
                 try {
-                    capturemodel.startCapture(selectedNif, filter != null ? filter : "");
-                    startPacketProcessing();                } catch (Exception e) {
+                    for (int i = 0; i < selectedNifs.size(); i++) {
+                        captureModels.get(i).startCapture(selectedNifs.get(i), filterFor(filters, i));
+                    }
+                    applyFilters();
+                    startPacketProcessing();
+                    healthSampler.start();
+                } catch (Exception e) {
                     System.out.println("Failed to start packet capture: " + e.getMessage());
                     Platform.runLater(() -> {
                         setStatus("Error starting capture: " + e.getMessage());
@@ -121,8 +185,8 @@ public class PacketCaptureController {
             
             captureThread.setDaemon(true);
             captureThread.start();
-              Platform.runLater(() -> setStatus("Capturing packets on " + selectedNif.getName()));
-            System.out.println("Packet capture started on interface: " + selectedNif.getName());
+              Platform.runLater(() -> setStatus("Capturing packets on " + String.join(", ", names)));
+            System.out.println("Packet capture started on interface(s): " + String.join(", ", names));
             
         } catch (Exception e) {
             System.out.println("Failed to start packet capture: " + e.getMessage());
@@ -132,33 +196,165 @@ public class PacketCaptureController {
     }
     
     /**
-     * Start processing packets from the queue
+     * Set the kernel prefilter required by the detection rules; it is combined
+     * with the user's filter unless the manual filter is kept
+     * @param ruleFilter Union of the rule filters, or null if detection needs all traffic
+     */
+    public void setRuleFilter(String ruleFilter) {
+        this.ruleFilter = ruleFilter;
+        applyFilters();
+    }
+    
+    public String getRuleFilter() {
+        return ruleFilter;
+    }
+    
+    /**
+     * Keep only the user's filter on the capture, ignoring the rule filter
+     */
+    public void setKeepManualFilter(boolean keepManualFilter) {
+        this.keepManualFilter = keepManualFilter;
+        applyFilters();
+    }
+    
+    public boolean isKeepManualFilter() {
+        return keepManualFilter;
+    }
+    
+    /**
+     * Set how many bytes of each frame are captured; running captures reopen
+     * their handles with the new length
+     * @param snapLength Snap length in bytes, e.g. what the detection rules require
+     */
+    public void setSnapLength(int snapLength) {
+        this.snapLength = snapLength;
+        for (PacketCaptureModel model : captureModels) {
+            model.setSnapLength(snapLength);
+        }
+    }
+    
+    public int getSnapLength() {
+        return snapLength;
+    }
+    
+    private String effectiveFilter(int index) {
+        return CaptureFilters.combine(filterFor(manualFilters, index), ruleFilter, keepManualFilter);
+    }
+    
+    /**
+     * Install the effective filter on every running capture. If the combined
+     * filter does not compile the user's filter is kept.
+     */
+    private void applyFilters() {
+        for (int i = 0; i < captureModels.size(); i++) {
+            PacketCaptureModel model = captureModels.get(i);
+            if (model.isRunning()) {
+                model.setFilter(effectiveFilter(i), filterFor(manualFilters, i));
+            }
+        }
+        setBpfFilter(effectiveFilter(0));
+    }
+    
+    private static String filterFor(List<String> filters, int index) {
+        if (filters == null || filters.isEmpty()) {
+            return "";
+        }
+        String filter = filters.get(filters.size() == 1 ? 0 : index);
+        return filter != null ? filter : "";
+    }
+    
+    /**
+     * Replay a pcap file into the packet queue instead of capturing live. Nothing is
+     * replayed until detection subscribes to the ring from {@link #getPacketRings()}.
+     * @param file Path of the capture file
+     * @param filter Optional BPF filter
+     * @param mode How packets are paced
+     * @param speed Speed multiplier for SCALED mode
+     */
+    public void startReplay(String file, String filter, PacketCaptureModel.ReplayMode mode, double speed) {
+        if (isCapturing.get()) {
+            System.out.println("Capture already in progress");
+            return;
+        }
+        
+        try {
+            // A file can always wait for detection, so every packet is evaluated and
+            // packet-time windows see the same traffic at any replay speed
+            PacketRing ring = new PacketRing(file, ringCapacity, OverloadPolicy.BLOCK);
+            PacketCaptureModel capturemodel = new PacketCaptureModel(ring);
+            captureModels.clear();
+            captureModels.add(capturemodel);
+            packetRings = List.of(ring);
+            manualFilters = Collections.singletonList(filter);
+            
+            capturedPackets.clear();
+            setPacketCount(0);
+            
+            isCapturing.set(true);
+            setCapturing(true);
+            setSelectedInterface(file);
+            setBpfFilter(filter != null ? filter : "");
+            
+            // The monitor subscribes first; the replay thread then waits for detection to attach
+            // through getPacketRings() before it publishes anything
+            startPacketProcessing();
+            captureThread = capturemodel.startReplay(file, filter, mode, speed);
+            applyFilters();
+            healthSampler.start();
+            
+            Platform.runLater(() -> setStatus("Replaying " + file + " (" + mode + ")"));
+            System.out.println("Packet replay started from file: " + file);
+            
+        } catch (Exception e) {
+            System.out.println("Failed to start packet replay: " + e.getMessage());
+            setStatus("Error starting replay: " + e.getMessage());
+            stopCapture();
+        }
+    }
+    
+    /**
+     * Start feeding the monitoring list from its own subscriptions to the capture rings.
+     * The subscriptions do not hold capture back; when the UI falls behind it skips
+     * to the newest packets.
      */
     private void startPacketProcessing() {
+        List<PacketRing> rings = packetRings;
+        InterfaceMerge merge = InterfaceMerge.subscribe(rings, "Monitor", false);
+        merge.setMaxLag(DISPLAY_MAX_LAG);
+        boolean showInterface = rings.size() > 1;
         Thread processingThread = new Thread(() -> {
-            while (isCapturing.get() && !Thread.currentThread().isInterrupted()) {
-                try {
-                    Packet packet = packetQueue.take();
-                    
-                    // Process packet on JavaFX thread
-                    Platform.runLater(() -> {
-                        String packetInfo = formatPacketInfo(packet);
-                        capturedPackets.add(packetInfo);
-                        setPacketCount(getPacketCount() + 1);
+            try {
+                while (isCapturing.get() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        PacketContext ctx = merge.take();
+                        List<String> lines = new ArrayList<>(DISPLAY_BATCH);
+                        do {
+                            lines.add(formatPacketInfo(ctx, showInterface ? ctx.getInterfaceName() : null));
+                        } while (lines.size() < DISPLAY_BATCH && (ctx = merge.poll()) != null);
+                        int count = (int) getEnqueuedPacketCount();
                         
-                        // Limit displayed packets to prevent memory issues
-                        if (capturedPackets.size() > 1000) {
-                            capturedPackets.remove(0);
-                        }
-                    });
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;                } catch (Exception e) {
-                    System.out.println("Error processing packet: " + e.getMessage());
+                        // One UI update per batch instead of one per packet
+                        Platform.runLater(() -> {
+                            capturedPackets.addAll(lines);
+                            setPacketCount(count);
+                            
+                            // Limit displayed packets to prevent memory issues
+                            if (capturedPackets.size() > 1000) {
+                                capturedPackets.remove(0, capturedPackets.size() - 1000);
+                            }
+                        });
+                        
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (Exception e) {
+                        System.out.println("Error processing packet: " + e.getMessage());
+                    }
                 }
+            } finally {
+                merge.close();
             }
-        });
+        }, "PacketMonitor-Thread");
         
         processingThread.setDaemon(true);
         processingThread.start();
@@ -175,6 +371,10 @@ public class PacketCaptureController {
         isCapturing.set(false);
         
         try {
+            for (PacketCaptureModel capturemodel : captureModels) {
+                capturemodel.stopCapture();
+            }
+            healthSampler.stop();
             if (captureThread != null) {
                 captureThread.interrupt();
                 captureThread = null;
@@ -194,12 +394,18 @@ public class PacketCaptureController {
     /**
      * Format packet information for display
      */
-    private String formatPacketInfo(Packet packet) {
+    private String formatPacketInfo(PacketContext ctx, String interfaceName) {
         StringBuilder sb = new StringBuilder();
+        Packet packet = ctx.getPacket();
         
-        // Add timestamp
-        LocalTime now = LocalTime.now();
-        sb.append("[").append(now.format(DateTimeFormatter.ofPattern("HH:mm:ss.SSS"))).append("] ");
+        // Add capture timestamp
+        LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(ctx.getTimestampMillis()), ZoneId.systemDefault());
+        sb.append("[").append(time.format(TIME_FORMAT)).append("] ");
+        
+        // Add the capture interface when several are active
+        if (interfaceName != null) {
+            sb.append(interfaceName).append(" | ");
+        }
         
         // Add packet length
         sb.append("Length: ").append(packet.length()).append(" bytes");
@@ -240,10 +446,75 @@ public class PacketCaptureController {
         setPacketCount(0);
         setStatus("Packets cleared");
     }    /**
-     * Get packet queue for external processing
+     * Get the capture rings of the current capture, one per interface; consumers subscribe to them
      */
-    public BlockingQueue<Packet> getPacketQueue() {
-        return packetQueue;
+    public List<PacketRing> getPacketRings() {
+        return packetRings;
+    }
+    
+    /**
+     * Set what the capture rings do when their consumers fall behind
+     */
+    public void setOverloadPolicy(OverloadPolicy policy) {
+        overloadPolicy = policy;
+        for (PacketRing ring : packetRings) {
+            ring.setPolicy(policy);
+        }
+    }
+    
+    /**
+     * Set how the next capture hands packets to its rings; BATCH leaves decoding to the consumers
+     */
+    public void setCaptureMode(PacketCaptureModel.CaptureMode captureMode) {
+        this.captureMode = captureMode;
+    }
+    
+    /**
+     * Set the ring size used by the next capture
+     */
+    public void setRingCapacity(int ringCapacity) {
+        this.ringCapacity = ringCapacity;
+    }
+    
+    /**
+     * Get the number of packets written into the capture rings
+     */
+    public long getEnqueuedPacketCount() {
+        long enqueued = 0;
+        for (PacketRing ring : packetRings) {
+            enqueued += ring.getPublishedCount();
+        }
+        return enqueued;
+    }
+    
+    /**
+     * Get the number of packets the overload policy kept out of the capture rings
+     */
+    public long getDroppedPacketCount() {
+        long dropped = 0;
+        for (PacketRing ring : packetRings) {
+            dropped += ring.getDroppedCount();
+        }
+        return dropped;
+    }
+    
+    /**
+     * Get the latest capture health sample
+     * @return The sample, or null before capture started
+     */
+    public CaptureHealth getCaptureHealth() {
+        return healthSampler.getLatest();
+    }
+    
+    /**
+     * Get kernel and ring counters for each capturing interface
+     */
+    public List<CaptureStatistics> getInterfaceStatistics() {
+        List<CaptureStatistics> statistics = new ArrayList<>();
+        for (PacketCaptureModel capturemodel : captureModels) {
+            statistics.add(capturemodel.getStatistics());
+        }
+        return statistics;
     }
     
     /**
@@ -282,5 +553,5 @@ public class PacketCaptureController {
     
     // Getters for models
     NetworkInterfaceModel getNifmodel() { return nifmodel; }
-    PacketCaptureModel getCapturemodel() { return capturemodel; }
+    List<PacketCaptureModel> getCaptureModels() { return captureModels; }
 }
@@ -4,12 +4,10 @@ import com.NetProtector.Controllers.DetectionController;
 import com.NetProtector.Controllers.PacketCaptureController;
 import com.NetProtector.Models.Alert;
 import com.NetProtector.Models.DetectionModel;
-import org.pcap4j.packet.Packet;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Scanner;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * Manual test class for testing PacketCaptureController and DetectionController integration.
@@ -166,47 +164,19 @@ public class ManualTest {
     }
     
     /**
-     * Initialize detection controller with packet queue from capture controller
+     * Attach the detection controller to the capture ring
      */
     private static void initializeDetection() {
-        System.out.println("Step 5: Initializing detection with packet queue...");
+        System.out.println("Step 5: Attaching detection to the capture ring...");
         
-        // Get the packet queue from capture controller
-        BlockingQueue<Packet> packetQueue = packetController.getPacketQueue();
-          // Get the detection model and set its packet queue
-        // The detection controller already has its own packet queue, 
-        // but we need to bridge the packets from capture to detection
-        startPacketBridge(packetQueue, detectionController.getPacketQueue());
+        // Detection subscribes to the capture ring directly and sees every packet
+        // that enters it, alongside the capture controller's own monitoring feed
+        detectionController.setPacketSources(packetController.getPacketRings());
         
-        System.out.println("✓ Detection initialized with packet queue");
-        System.out.println("✓ Packet bridge started");
+        System.out.println("✓ Detection attached to capture ring");
         System.out.println();
     }
     
-    /**
-     * Bridge packets from capture queue to detection queue
-     */
-    private static void startPacketBridge(BlockingQueue<Packet> sourceQueue, 
-                                         BlockingQueue<Packet> targetQueue) {
-        Thread bridgeThread = new Thread(() -> {
-            System.out.println("Packet bridge thread started");
-            while (running && !Thread.currentThread().isInterrupted()) {
-                try {
-                    Packet packet = sourceQueue.take();
-                    targetQueue.offer(packet);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    System.err.println("Error in packet bridge: " + e.getMessage());
-                }
-            }
-            System.out.println("Packet bridge thread stopped");
-        });
-        
-        bridgeThread.setDaemon(true);
-        bridgeThread.start();
-    }
       /**
      * Start the detection engine
      */
@@ -362,6 +332,11 @@ public class ManualTest {
             
             // Display final statistics
             displayFinalStatistics();
+
+            // Drain pending alert sinks
+            if (detectionController != null) {
+                detectionController.cleanup();
+            }
             
         } catch (Exception e) {
             System.err.println("Error during cleanup: " + e.getMessage());
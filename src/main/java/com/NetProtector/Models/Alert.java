@@ -12,6 +12,7 @@ public class Alert {
     private final StringProperty sourceIp = new SimpleStringProperty();
     private final StringProperty destinationIp = new SimpleStringProperty();
     private final IntegerProperty port = new SimpleIntegerProperty();
+    private final StringProperty interfaceName = new SimpleStringProperty("");
     
     public Alert(int id, String title, String description, String severity, String protocol, 
                  LocalDateTime timestamp, String sourceIp, String destinationIp, int port) {
@@ -26,6 +27,12 @@ public class Alert {
         this.port.set(port);
     }
     
+    public Alert(int id, String title, String description, String severity, String protocol, 
+                 LocalDateTime timestamp, String sourceIp, String destinationIp, int port, String interfaceName) {
+        this(id, title, description, severity, protocol, timestamp, sourceIp, destinationIp, port);
+        this.interfaceName.set(interfaceName != null ? interfaceName : "");
+    }
+    
     // Property getters
     public IntegerProperty idProperty() { return id; }
     public StringProperty titleProperty() { return title; }
@@ -36,6 +43,7 @@ public class Alert {
     public StringProperty sourceIpProperty() { return sourceIp; }
     public StringProperty destinationIpProperty() { return destinationIp; }
     public IntegerProperty portProperty() { return port; }
+    public StringProperty interfaceNameProperty() { return interfaceName; }
     
     // Regular getters
     public int getId() { return id.get(); }
@@ -47,4 +55,5 @@ public class Alert {
     public String getSourceIp() { return sourceIp.get(); }
     public String getDestinationIp() { return destinationIp.get(); }
     public int getPort() { return port.get(); }
+    public String getInterfaceName() { return interfaceName.get(); }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.NetProtector.Models;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.NetProtector.Models.Rules.Rule;
+
+/**
+ * Builds the kernel BPF prefilter of a capture from the filters the installed
+ * rules declare, so traffic no rule can match is dropped before it is copied
+ * to user space.
+ */
+public final class CaptureFilters {
+
+    /** IPv4 fragments past offset 0; FragmentReassembler only reassembles IPv4. */
+    private static final String FRAGMENT_FILTER = "(ip[6:2] & 0x1fff != 0)";
+
+    private CaptureFilters() {
+    }
+
+    /**
+     * Joins the filters of a rule set
+     * @param rules The installed rules
+     * @return A filter matching what any of the rules needs, or null if some rule
+     *         needs all traffic or there are no rules
+     */
+    public static String union(Collection<? extends Rule> rules) {
+        Set<String> filters = new LinkedHashSet<>();
+        for (Rule rule : rules) {
+            String filter = rule.getBpfFilter();
+            if (filter == null || filter.isBlank()) {
+                return null;
+            }
+            filters.add(filter.trim());
+        }
+        if (filters.isEmpty()) {
+            return null;
+        }
+        String union = filters.size() == 1 ? filters.iterator().next() : "(" + String.join(") or (", filters) + ")";
+        // Port and flag tests only see the first fragment of a datagram; let the rest through for reassembly
+        union = "(" + union + ") or " + FRAGMENT_FILTER;
+        // PacketContext looks through 802.1Q tags, so tagged frames must pass as well
+        return "(" + union + ") or (vlan and (" + union + "))";
+    }
+
+    /**
+     * Combines a user-supplied filter with the rule filter
+     * @param manualFilter Filter typed by the user, may be null or empty
+     * @param ruleFilter Union of the rule filters, may be null
+     * @param keepManualFilter true to ignore the rule filter
+     * @return The filter to install; empty to capture everything
+     */
+    public static String combine(String manualFilter, String ruleFilter, boolean keepManualFilter) {
+        boolean hasManual = manualFilter != null && !manualFilter.isBlank();
+        if (keepManualFilter || ruleFilter == null) {
+            return hasManual ? manualFilter.trim() : "";
+        }
+        return hasManual ? "(" + manualFilter.trim() + ") and (" + ruleFilter + ")" : ruleFilter;
+    }
+}
@@ -0,0 +1,105 @@
+package com.NetProtector.Models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One sample of capture health across all capturing interfaces: libpcap
+ * counters, ring backlog, and the rates packets were enqueued, decoded by
+ * detection and dropped since the previous sample.
+ */
+public class CaptureHealth {
+
+    private final long sampledAtMillis;
+    private final List<CaptureStatistics> interfaces;
+    private final long received;
+    private final long dropped;
+    private final long droppedByInterface;
+    private final long droppedByRing;
+    private final long enqueued;
+    private final long decoded;
+    private final long queueDepth;
+    private final double queueFill;
+    private final double enqueueRate;
+    private final double decodeRate;
+    private final double dropRate;
+    private final double dropRatio;
+
+    CaptureHealth(long sampledAtMillis, List<CaptureStatistics> interfaces, long received, long dropped,
+                  long droppedByInterface, long droppedByRing, long enqueued, long decoded, long queueDepth,
+                  double queueFill, double enqueueRate, double decodeRate, double dropRate, double dropRatio) {
+        this.sampledAtMillis = sampledAtMillis;
+        this.interfaces = Collections.unmodifiableList(interfaces);
+        this.received = received;
+        this.dropped = dropped;
+        this.droppedByInterface = droppedByInterface;
+        this.droppedByRing = droppedByRing;
+        this.enqueued = enqueued;
+        this.decoded = decoded;
+        this.queueDepth = queueDepth;
+        this.queueFill = queueFill;
+        this.enqueueRate = enqueueRate;
+        this.decodeRate = decodeRate;
+        this.dropRate = dropRate;
+        this.dropRatio = dropRatio;
+    }
+
+    public long getSampledAtMillis() { return sampledAtMillis; }
+    public List<CaptureStatistics> getInterfaces() { return interfaces; }
+
+    /** Packets received by libpcap on all interfaces, -1 if no interface reports it. */
+    public long getReceived() { return received; }
+
+    /** Packets dropped in the kernel buffer, -1 if no interface reports it. */
+    public long getDropped() { return dropped; }
+
+    /** Packets dropped by the interfaces or drivers, -1 if no interface reports it. */
+    public long getDroppedByInterface() { return droppedByInterface; }
+
+    /** Packets refused by the ring overload policies. */
+    public long getDroppedByRing() { return droppedByRing; }
+
+    /** Packets written into the rings. */
+    public long getEnqueued() { return enqueued; }
+
+    /** Packets read and decoded by the detection subscription. */
+    public long getDecoded() { return decoded; }
+
+    /** Packets waiting for detection, summed over all rings. */
+    public long getQueueDepth() { return queueDepth; }
+
+    /** Backlog of the fullest ring as a fraction of its capacity. */
+    public double getQueueFill() { return queueFill; }
+
+    /** Packets enqueued per second since the previous sample. */
+    public double getEnqueueRate() { return enqueueRate; }
+
+    /** Packets decoded per second since the previous sample. */
+    public double getDecodeRate() { return decodeRate; }
+
+    /** Packets lost per second, anywhere along the path, since the previous sample. */
+    public double getDropRate() { return dropRate; }
+
+    /** Fraction of packets lost since the previous sample. */
+    public double getDropRatio() { return dropRatio; }
+
+    public long getTotalDropped() {
+        return Math.max(0, dropped) + Math.max(0, droppedByInterface) + droppedByRing;
+    }
+
+    /**
+     * Gets the capture load: the worse of the ring backlog and the recent loss ratio
+     * @return 0 when idle, 1 when a ring is full or everything is being dropped
+     */
+    public double getLoad() {
+        return Math.min(1.0, Math.max(queueFill, dropRatio));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.0f pkts/s enqueued, %.0f pkts/s decoded, %.0f pkts/s dropped (%.1f%%), "
+                        + "queue %d (%.0f%% full), %d received, %d dropped, %d dropped by interface, %d dropped by ring",
+                enqueueRate, decodeRate, dropRate, dropRatio * 100, queueDepth, queueFill * 100,
+                received, dropped, droppedByInterface, droppedByRing);
+    }
+}
@@ -0,0 +1,157 @@
+package com.NetProtector.Models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.NetProtector.Models.Pipeline.PacketRing;
+import com.NetProtector.Models.Pipeline.RingSubscriber;
+
+/**
+ * Periodically samples the health of the running captures: kernel counters
+ * from {@code pcap_stats}, ring backlog, and enqueue, decode and drop rates.
+ * Reading the counters is cheap and happens on the sampler's own thread, so
+ * the capture and detection threads are not touched.
+ */
+public class CaptureHealthSampler {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private final List<PacketCaptureModel> captures;
+    private final long intervalMillis;
+    private ScheduledExecutorService executor;
+    private volatile CaptureHealth latest;
+
+    // Totals from the previous sample, only touched under the sampler's lock
+    private long lastSampleNanos;
+    private long lastEnqueued;
+    private long lastDecoded;
+    private long lastOffered;
+    private long lastDropped;
+
+    /**
+     * @param captures Live view of the capture models to sample
+     * @param intervalMillis Sampling interval
+     */
+    public CaptureHealthSampler(List<PacketCaptureModel> captures, long intervalMillis) {
+        this.captures = captures;
+        this.intervalMillis = Math.max(100, intervalMillis);
+    }
+
+    public CaptureHealthSampler(List<PacketCaptureModel> captures) {
+        this(captures, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts sampling; the previous rates are discarded
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        lastSampleNanos = 0;
+        latest = null;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CaptureHealthSampler");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling; the last sample stays available
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Takes a sample now
+     * @return The new sample
+     */
+    public synchronized CaptureHealth sample() {
+        long now = System.nanoTime();
+        List<CaptureStatistics> interfaces = new ArrayList<>();
+        long received = -1;
+        long dropped = -1;
+        long droppedByInterface = -1;
+        long droppedByRing = 0;
+        long enqueued = 0;
+        long decoded = 0;
+        long queueDepth = 0;
+        double queueFill = 0;
+
+        for (PacketCaptureModel capture : captures) {
+            CaptureStatistics stats = capture.getStatistics();
+            interfaces.add(stats);
+            if (stats.hasKernelStatistics()) {
+                received = Math.max(0, received) + stats.getReceived();
+                dropped = Math.max(0, dropped) + stats.getDropped();
+                droppedByInterface = Math.max(0, droppedByInterface) + stats.getDroppedByInterface();
+            }
+            droppedByRing += stats.getDroppedByRing();
+            enqueued += stats.getEnqueued();
+
+            PacketRing ring = capture.getPacketRing();
+            int depth = ring.size();
+            queueDepth += depth;
+            queueFill = Math.max(queueFill, (double) depth / ring.getCapacity());
+            // Detection is the gating subscriber; everything it reads it decodes
+            for (RingSubscriber subscriber : ring.getSubscribers()) {
+                if (subscriber.isGating()) {
+                    decoded += subscriber.getConsumedCount();
+                }
+            }
+        }
+
+        long totalDropped = Math.max(0, dropped) + Math.max(0, droppedByInterface) + droppedByRing;
+        long offered = Math.max(received, enqueued + droppedByRing) + Math.max(0, droppedByInterface);
+        double enqueueRate = 0;
+        double decodeRate = 0;
+        double dropRate = 0;
+        double dropRatio = 0;
+        // Counters restart with every capture; only compute rates across a continuous run
+        if (lastSampleNanos != 0 && enqueued >= lastEnqueued && totalDropped >= lastDropped) {
+            double seconds = (now - lastSampleNanos) / 1e9;
+            long newDrops = totalDropped - lastDropped;
+            long newOffered = offered - lastOffered;
+            if (seconds > 0) {
+                enqueueRate = (enqueued - lastEnqueued) / seconds;
+                decodeRate = Math.max(0, decoded - lastDecoded) / seconds;
+                dropRate = newDrops / seconds;
+            }
+            if (newOffered > 0) {
+                dropRatio = Math.min(1.0, (double) newDrops / newOffered);
+            }
+        }
+        lastSampleNanos = now;
+        lastEnqueued = enqueued;
+        lastDecoded = decoded;
+        lastOffered = offered;
+        lastDropped = totalDropped;
+
+        CaptureHealth health = new CaptureHealth(System.currentTimeMillis(), interfaces, received, dropped,
+                droppedByInterface, droppedByRing, enqueued, decoded, queueDepth, queueFill,
+                enqueueRate, decodeRate, dropRate, dropRatio);
+        latest = health;
+        return health;
+    }
+
+    /**
+     * Gets the most recent sample
+     * @return The sample, or null before the first one
+     */
+    public CaptureHealth getLatest() {
+        return latest;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+}
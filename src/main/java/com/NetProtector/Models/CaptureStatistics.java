@@ -0,0 +1,65 @@
+package com.NetProtector.Models;
+
+/**
+ * Counters for one capture interface. Received and dropped counts come from
+ * libpcap ({@code pcap_stats}); the enqueue counts come from the interface's
+ * packet ring. libpcap counters are -1 when the handle cannot report them,
+ * e.g. for offline files.
+ */
+public class CaptureStatistics {
+
+    private final String interfaceName;
+    private final long received;
+    private final long dropped;
+    private final long droppedByInterface;
+    private final long enqueued;
+    private final long droppedByRing;
+
+    public CaptureStatistics(String interfaceName, long received, long dropped, long droppedByInterface,
+                             long enqueued, long droppedByRing) {
+        this.interfaceName = interfaceName;
+        this.received = received;
+        this.dropped = dropped;
+        this.droppedByInterface = droppedByInterface;
+        this.enqueued = enqueued;
+        this.droppedByRing = droppedByRing;
+    }
+
+    public String getInterfaceName() { return interfaceName; }
+
+    /** Packets seen by the kernel filter. */
+    public long getReceived() { return received; }
+
+    /** Packets dropped because the kernel buffer was full. */
+    public long getDropped() { return dropped; }
+
+    /** Packets dropped by the network interface or its driver. */
+    public long getDroppedByInterface() { return droppedByInterface; }
+
+    /** Packets written into the interface's ring. */
+    public long getEnqueued() { return enqueued; }
+
+    /** Packets the ring's overload policy refused. */
+    public long getDroppedByRing() { return droppedByRing; }
+
+    /**
+     * Gets every drop along the path
+     * @return Kernel, interface and ring drops, ignoring unavailable counters
+     */
+    public long getTotalDropped() {
+        return Math.max(0, dropped) + Math.max(0, droppedByInterface) + droppedByRing;
+    }
+
+    public boolean hasKernelStatistics() {
+        return received >= 0;
+    }
+
+    @Override
+    public String toString() {
+        if (!hasKernelStatistics()) {
+            return String.format("%s: %d enqueued, %d dropped by ring", interfaceName, enqueued, droppedByRing);
+        }
+        return String.format("%s: %d received, %d dropped, %d dropped by interface, %d enqueued, %d dropped by ring",
+                interfaceName, received, dropped, droppedByInterface, enqueued, droppedByRing);
+    }
+}
@@ -0,0 +1,42 @@
+package com.NetProtector.Models;
+
+/**
+ * Source of the current time for windowed rules and alert timestamps.
+ * With {@link PacketTimeClock} time follows the capture timestamps carried by
+ * the packets, so windows do not drift when the queue backs up and a replayed
+ * capture produces the same detections at any speed. {@link #WALL} reads the
+ * system clock when the packet is processed.
+ */
+public interface DetectionClock {
+
+    /** System time at processing. */
+    DetectionClock WALL = new DetectionClock() {
+        @Override
+        public long currentTimeMillis(PacketContext ctx) {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "wall time";
+        }
+    };
+
+    /**
+     * Gets the time at which a packet is considered to happen
+     * @param ctx The packet being evaluated
+     * @return Time in milliseconds since the epoch
+     */
+    long currentTimeMillis(PacketContext ctx);
+
+    /**
+     * Gets the current time outside packet evaluation, e.g. for statistics queries
+     * @return Time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+}
@@ -1,20 +1,30 @@
 package com.NetProtector.Models;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
 
-import org.pcap4j.packet.IpPacket;
 import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.UdpPacket;
 
+import com.NetProtector.Models.Flows.FlowTable;
+import com.NetProtector.Models.Pipeline.PacketSource;
+import com.NetProtector.Models.Reassembly.ReassemblyStage;
+import com.NetProtector.Models.Rules.FlowAffinity;
 import com.NetProtector.Models.Rules.Rule;
 import com.NetProtector.Models.Rules.Severity;
+import com.NetProtector.Services.AlertDispatcher;
 import com.NetProtector.Services.NotificationManager;
 import com.NetProtector.Services.NotificationServiceFactory;
 import com.NetProtector.config.NotificationConfig;
@@ -28,23 +38,53 @@ import com.NetProtector.db.DatabaseManager;
  */
 public class DetectionModel {
 
+    /** Candidate counts at or above the last bucket are counted in it. */
+    private static final int CANDIDATE_HISTOGRAM_SIZE = 17;
+    /** Alerts kept in memory for the UI; older ones are only in the database. */
+    public static final int DEFAULT_ALERT_HISTORY = 10_000;
+
     private final List<Rule> rules;
-    private final List<Alert> alerts;
+    // Recent alerts and per-severity totals, guarded by alerts; filled by the history sink
+    private final ArrayDeque<Alert> alerts = new ArrayDeque<>();
+    private final long[] severityCounts = new long[Severity.values().length];
+    private long alertCount;
     private final List<Consumer<Alert>> alertHandlers;
-    private boolean isRunning;
-    private int nextAlertId;
+    private final List<Runnable> ruleSetListeners;
+    private volatile boolean isRunning;
+    private final AtomicInteger nextAlertId = new AtomicInteger(1);
+    // Source and destination affinities of the installed rules, as a DetectionWorkerPool mask
+    private volatile int addressAffinities;
+    private volatile DetectionWorkerPool workerPool;
+    private volatile RuleDispatchTable dispatchTable;
+    private volatile DetectionClock clock = new PacketTimeClock();
+    private final LongAdder dispatchedPackets = new LongAdder();
+    private final LongAdder candidateRules = new LongAdder();
+    private final AtomicLongArray candidateHistogram = new AtomicLongArray(CANDIDATE_HISTOGRAM_SIZE);
+    private final OverloadController overload;
+    private final FlowTable flowTable = new FlowTable();
+    private final ReassemblyStage reassembly = new ReassemblyStage();
+    /** Scratch list for fragments released by reassembly; only used by the detection thread. */
+    private final List<PacketContext> releasedFragments = new ArrayList<>();
+    private volatile boolean hasStreamRules;
+    private final LongAdder shedEvaluations = new LongAdder();
+    /** Backlog of the queue or merged rings the detection thread reads. */
+    private volatile DoubleSupplier inputLoad = () -> 0.0;
+    /** Load reported from outside the engine, e.g. capture drop ratio. */
+    private volatile DoubleSupplier externalLoad = () -> 0.0;
+    private Thread detectionThread;
     private NotificationManager notificationManager; // Added NotificationManager
     private final DatabaseManager dbManager;
+    private final AlertDispatcher alertDispatcher;
 
     /**
      * Creates a new DetectionModel instance
      */
     public DetectionModel() {
         this.rules = new CopyOnWriteArrayList<>();
-        this.alerts = new CopyOnWriteArrayList<>();
         this.alertHandlers = new CopyOnWriteArrayList<>();
+        this.ruleSetListeners = new CopyOnWriteArrayList<>();
         this.isRunning = false;
-        this.nextAlertId = 1;
+        this.dispatchTable = RuleDispatchTable.build(rules);
         this.dbManager = new DatabaseManager();
 
         // Initialize NotificationManager
@@ -59,6 +99,16 @@ public class DetectionModel {
             // Optionally, create a dummy NotificationManager or handle this case appropriately
             // For now, it might be null if initialization fails.
         }
+
+        // History, persistence, notifications and UI handlers run off the detection thread
+        this.alertDispatcher = new AlertDispatcher();
+        alertDispatcher.addSink("history", 1, AlertDispatcher.DEFAULT_QUEUE_CAPACITY, this::recordAlert);
+        alertDispatcher.addSink("persistence", 1, AlertDispatcher.DEFAULT_QUEUE_CAPACITY, dbManager::insertAlert);
+        alertDispatcher.addSink("notification", 1, AlertDispatcher.DEFAULT_QUEUE_CAPACITY, this::sendNotification);
+        alertDispatcher.addSink("handlers", 1, AlertDispatcher.DEFAULT_QUEUE_CAPACITY, this::notifyAlertHandlers);
+
+        this.overload = new OverloadController(this::getDetectionLoad);
+        overload.addStageListener(this::reportCoverageChange);
     }
 
     /**
@@ -67,11 +117,29 @@ public class DetectionModel {
      */
     public synchronized void addRule(Rule rule) {
         if (rule != null && !rules.contains(rule)) {
+            rule.setClock(clock);
             rules.add(rule);
+            updateAffinities();
             System.out.println("Detection Model: Added rule - " + rule.getName());
         }
     }
 
+    /**
+     * Selects the time source for windowed rules and alert timestamps
+     * @param clock A {@link PacketTimeClock} to follow capture timestamps, or {@link DetectionClock#WALL}
+     */
+    public synchronized void setClock(DetectionClock clock) {
+        this.clock = Objects.requireNonNull(clock);
+        for (Rule rule : rules) {
+            rule.setClock(clock);
+        }
+        System.out.println("Detection Model: Using " + clock);
+    }
+
+    public DetectionClock getClock() {
+        return clock;
+    }
+
     /**
      * Removes a detection rule from the model
      * @param rule The rule to remove
@@ -79,10 +147,32 @@ public class DetectionModel {
     public synchronized void removeRule(Rule rule) {
         if (rule != null) {
             rules.remove(rule);
+            updateAffinities();
             System.out.println("Detection Model: Removed rule - " + rule.getName());
         }
     }
 
+    /**
+     * Rebuilds the dispatch index and recomputes which address affinities the
+     * installed rules need and whether any needs stream matching. Called whenever the rule set changes.
+     */
+    private void updateAffinities() {
+        dispatchTable = RuleDispatchTable.build(rules);
+        int affinities = 0;
+        boolean stream = false;
+        for (Rule rule : rules) {
+            if (rule.getFlowAffinity() != FlowAffinity.FLOW) {
+                affinities |= DetectionWorkerPool.affinityMask(rule.getFlowAffinity());
+            }
+            stream |= rule.isStreamAware();
+        }
+        addressAffinities = affinities;
+        hasStreamRules = stream;
+        for (Runnable listener : ruleSetListeners) {
+            listener.run();
+        }
+    }
+
     /**
      * Gets an immutable list of all rules
      * @return List of rules
@@ -91,6 +181,44 @@ public class DetectionModel {
         return Collections.unmodifiableList(new ArrayList<>(rules));
     }
 
+    /**
+     * Gets the kernel prefilter needed by the installed rules
+     * @return BPF expression covering every rule, or null if the rules need all traffic
+     */
+    public String getCaptureFilter() {
+        return CaptureFilters.union(rules);
+    }
+
+    /**
+     * Gets the snap length needed by the installed rules
+     * @return Largest snap length any rule requires; full frames if there are no rules
+     */
+    public int getRequiredSnapLength() {
+        if (rules.isEmpty()) {
+            return Rule.FULL_SNAPLEN;
+        }
+        int snapLength = 0;
+        for (Rule rule : rules) {
+            snapLength = Math.max(snapLength, rule.getRequiredSnapLength());
+        }
+        return snapLength;
+    }
+
+    /**
+     * Adds a listener called whenever a rule is added or removed, e.g. to
+     * recompile the capture filter or change the snap length
+     * @param listener The listener
+     */
+    public void addRuleSetListener(Runnable listener) {
+        if (listener != null) {
+            ruleSetListeners.add(listener);
+        }
+    }
+
+    public void removeRuleSetListener(Runnable listener) {
+        ruleSetListeners.remove(listener);
+    }
+
     /**
      * Adds an alert handler that will be called when new alerts are generated
      * @param handler The alert handler function
@@ -119,88 +247,320 @@ public class DetectionModel {
             System.out.println("Detection Model: Received null packet for processing.");
             return Collections.emptyList();
         }
+        return processPacket(PacketContext.from(packet));
+    }
 
+    /**
+     * Processes a decoded packet against all registered rules. The packet is
+     * decoded once and the same context is shared by every rule.
+     * @param ctx The decoded packet to analyze
+     * @return List of alerts generated for this packet
+     */
+    public List<Alert> processPacket(PacketContext ctx) {
+        List<PacketContext> released = new ArrayList<>(0);
+        PacketContext ready = prepare(ctx, released);
         List<Alert> generatedAlerts = new ArrayList<>();
+        for (PacketContext fragment : released) {
+            generatedAlerts.addAll(processPacket(fragment, DetectionWorkerPool.ALL_AFFINITIES));
+        }
+        if (ready != null) {
+            generatedAlerts.addAll(processPacket(ready, DetectionWorkerPool.ALL_AFFINITIES));
+        }
+        return generatedAlerts;
+    }
 
-        for (Rule rule : rules) {
-            try {
-                if (rule.verify(packet)) {
-                    Alert alert = createAlertFromRule(rule, packet);
-                    generatedAlerts.add(alert);
-                    alerts.add(alert);
-                    dbManager.insertAlert(alert);
-
-                    System.out.println("Detection Model: Alert generated - " + alert.getTitle() +
-                                     " [Severity: " + alert.getSeverity() + "]");
-
-                    // Send notification if NotificationManager is available
-                    if (notificationManager != null) {
-                        try {
-                            notificationManager.processAlert(alert);
-                            System.out.println("Detection Model: Alert sent to NotificationManager - " + alert.getTitle());
-                        } catch (Exception e) {
-                            System.err.println("Detection Model: Error sending alert to NotificationManager - " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    } else {
-                        System.out.println("Detection Model: NotificationManager not available. Alert not sent for: " + alert.getTitle());
-                    }
-
-                    // Notify local alert handlers
-                    for (Consumer<Alert> handler : alertHandlers) {
-                        try {
-                            handler.accept(alert);
-                        } catch (Exception e) {
-                            System.err.println("Error in alert handler: " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
+    /**
+     * Runs the packet through reassembly and attaches the flow state and stream chunk
+     * for the rules. Runs once per packet on the thread reading packets, before it is
+     * handed to workers. IPv4 fragments are held back until their datagram is complete,
+     * so only the datagram reaches the rules; fragments of datagrams that time out or
+     * are dropped are released and evaluated once on their own, without flow tracking.
+     * @param releasedFragments Receives released fragments, to be evaluated before the returned packet
+     * @return The packet to evaluate: {@code ctx}, the datagram it completed, or null if it is held
+     */
+    private PacketContext prepare(PacketContext ctx, List<PacketContext> releasedFragments) {
+        long now = clock.currentTimeMillis(ctx);
+        PacketContext ready = reassembly.defragment(ctx, now, releasedFragments);
+        if (ready != null && !ready.isFragment()) {
+            ready.setFlow(flowTable.track(ready, now));
+            if (hasStreamRules) {
+                ready.setStreamChunk(reassembly.reassemble(ready, now));
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Gets the connection-tracking table fed by the detection engine
+     * @return The flow table
+     */
+    public FlowTable getFlowTable() {
+        return flowTable;
+    }
+
+    /**
+     * Gets the fragment and stream reassembly stage fed by the detection engine
+     * @return The reassembly stage
+     */
+    public ReassemblyStage getReassemblyStage() {
+        return reassembly;
+    }
+
+    /**
+     * Processes a decoded packet against the rules whose flow affinity is in the mask.
+     * Used by detection workers, which each see only their share of the rules for a packet.
+     * @param ctx The decoded packet to analyze
+     * @param affinityMask Bit mask of {@link DetectionWorkerPool#affinityMask(FlowAffinity)} values
+     * @return List of alerts generated for this packet
+     */
+    public List<Alert> processPacket(PacketContext ctx, int affinityMask) {
+        List<Alert> generatedAlerts = new ArrayList<>();
+
+        // Only rules whose declared interest covers this packet are evaluated
+        RuleDispatchTable table = dispatchTable;
+        long[] candidates = new long[table.getWordCount()];
+        int candidateCount = table.select(ctx, candidates);
+        if ((affinityMask & DetectionWorkerPool.affinityMask(FlowAffinity.FLOW)) != 0) {
+            // Every packet has exactly one evaluation that includes flow rules
+            recordCandidates(candidateCount);
+        }
+        table.retainAffinities(candidates, affinityMask);
+        SheddingStage stage = overload.stageFor(ctx, (affinityMask & DetectionWorkerPool.affinityMask(FlowAffinity.FLOW)) != 0);
+        int shed = table.retainStage(candidates, stage);
+        if (shed > 0) {
+            shedEvaluations.add(shed);
+        }
+
+        for (int w = 0; w < candidates.length; w++) {
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                Rule rule = table.getRule((w << 6) + Long.numberOfTrailingZeros(bits));
+                evaluateRule(rule, ctx, generatedAlerts);
+            }
+        }
+        return generatedAlerts;
+    }
+
+    /**
+     * Evaluates one rule and publishes an alert if it matches
+     */
+    private void evaluateRule(Rule rule, PacketContext ctx, List<Alert> generatedAlerts) {
+        try {
+            if (rule.verify(ctx)) {
+                Alert alert = createAlertFromRule(rule, ctx);
+                generatedAlerts.add(alert);
+
+                System.out.println("Detection Model: Alert generated - " + alert.getTitle() +
+                                 " [Severity: " + alert.getSeverity() + "]");
+
+                // History, persistence, notification and handlers are served by the dispatcher
+                alertDispatcher.publish(alert);
+            }
+        } catch (Exception e) {
+            System.err.println("Error processing rule " + rule.getName() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Raises an alert whenever load shedding changes detection coverage, so
+     * operators know which packets were not fully inspected
+     */
+    private void reportCoverageChange(SheddingStage previous, SheddingStage next) {
+        boolean reduced = next.compareTo(previous) > 0;
+        Alert alert = new Alert(
+            getNextAlertId(),
+            reduced ? "Detection Coverage Reduced" : "Detection Coverage Restored",
+            String.format("Detection load %.0f%%: %s (was: %s).",
+                          overload.getLastLoad() * 100, next.getDescription(), previous.getDescription()),
+            severityToString(reduced ? Severity.MEDIUM : Severity.LOW),
+            "N/A",
+            toLocalDateTime(clock.currentTimeMillis()),
+            "N/A",
+            "N/A",
+            0,
+            null
+        );
+        alertDispatcher.publish(alert);
+    }
+
+    /**
+     * Keeps an alert in the bounded in-memory history; runs on the history sink
+     * @param alert The published alert
+     */
+    private void recordAlert(Alert alert) {
+        synchronized (alerts) {
+            if (alerts.size() == DEFAULT_ALERT_HISTORY) {
+                alerts.pollFirst();
+            }
+            alerts.addLast(alert);
+            alertCount++;
+            for (Severity severity : Severity.values()) {
+                if (severity.name().equals(alert.getSeverity())) {
+                    severityCounts[severity.ordinal()]++;
+                    break;
                 }
+            }
+        }
+    }
+
+    /**
+     * Gets the load the overload controller acts on: the fuller of the input
+     * backlog and the worker queues, or the external load if that is higher
+     * @return Load between 0 and 1
+     */
+    public double getDetectionLoad() {
+        double load = Math.max(inputLoad.getAsDouble(), externalLoad.getAsDouble());
+        DetectionWorkerPool pool = workerPool;
+        if (pool != null) {
+            load = Math.max(load, pool.getQueueFill());
+        }
+        return load;
+    }
+
+    /**
+     * Adds a load signal from outside the detection engine
+     * @param load Load between 0 and 1, or null to clear it
+     */
+    public void setExternalLoad(DoubleSupplier load) {
+        this.externalLoad = load != null ? load : () -> 0.0;
+    }
+
+    public OverloadController getOverloadController() {
+        return overload;
+    }
+
+    /** Rule evaluations skipped by load shedding. */
+    public long getShedEvaluationCount() {
+        return shedEvaluations.sum();
+    }
+
+    private void recordCandidates(int candidateCount) {
+        dispatchedPackets.increment();
+        candidateRules.add(candidateCount);
+        candidateHistogram.incrementAndGet(Math.min(candidateCount, CANDIDATE_HISTOGRAM_SIZE - 1));
+    }
+
+    /**
+     * Gets the average number of rules evaluated per packet
+     * @return Average candidate rules per packet, 0 before the first packet
+     */
+    public double getAverageCandidateRules() {
+        long packets = dispatchedPackets.sum();
+        return packets == 0 ? 0.0 : (double) candidateRules.sum() / packets;
+    }
+
+    /**
+     * Gets how many packets had each number of candidate rules. The last bucket
+     * also counts packets with more candidates.
+     * @return Packet counts indexed by candidate rule count
+     */
+    public long[] getCandidateHistogram() {
+        long[] histogram = new long[CANDIDATE_HISTOGRAM_SIZE];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = candidateHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Sends an alert to the NotificationManager. Runs on the notification sink worker.
+     * @param alert The alert to send
+     */
+    private void sendNotification(Alert alert) {
+        if (notificationManager != null) {
+            notificationManager.processAlert(alert);
+            System.out.println("Detection Model: Alert sent to NotificationManager - " + alert.getTitle());
+        } else {
+            System.out.println("Detection Model: NotificationManager not available. Alert not sent for: " + alert.getTitle());
+        }
+    }
+
+    /**
+     * Notifies local alert handlers. Runs on the handler sink worker.
+     * @param alert The alert to deliver
+     */
+    private void notifyAlertHandlers(Alert alert) {
+        for (Consumer<Alert> handler : alertHandlers) {
+            try {
+                handler.accept(alert);
             } catch (Exception e) {
-                System.err.println("Error processing rule " + rule.getName() + ": " + e.getMessage());
+                System.err.println("Error in alert handler: " + e.getMessage());
                 e.printStackTrace();
             }
         }
-        return generatedAlerts;
     }
 
     /**
-     * Continuously processes packets from a queue
-     * @param packetQueue The queue to read packets from
+     * Continuously processes packets from a source
+     * @param source The packets to read, e.g. the merged interface subscriptions
      */
-    public void processPacketsFromQueue(BlockingQueue<Packet> packetQueue) {
-        if (packetQueue == null) {
-            System.err.println("Detection Model: Packet queue is null. Cannot start processing.");
+    public void processPackets(PacketSource source) {
+        if (source == null) {
+            System.err.println("Detection Model: Packet source is null. Cannot start processing.");
             return;
         }
 
         isRunning = true;
-        System.out.println("Detection Model: Started processing packets from queue.");
+        System.out.println("Detection Model: Started processing packets.");
 
         while (isRunning && !Thread.currentThread().isInterrupted()) {
             try {
-                Packet packet = packetQueue.take(); // Blocking call
-                // System.out.println("Detection Model: Took packet from queue for processing."); // Can be noisy
-                processPacket(packet);
+                evaluate(source.take());
             } catch (InterruptedException e) {
                 System.out.println("Detection Model: Packet processing interrupted.");
                 Thread.currentThread().interrupt(); // Preserve interrupt status
                 break;
             } catch (Exception e) {
-                System.err.println("Detection Model: Error processing packet from queue - " + e.getMessage());
+                System.err.println("Detection Model: Error processing packet - " + e.getMessage());
                 e.printStackTrace();
             }
         }
         isRunning = false; // Ensure isRunning is false if loop exits
-        System.out.println("Detection Model: Stopped processing packets from queue.");
+        System.out.println("Detection Model: Stopped processing packets.");
+    }
+
+    /** Runs the rules for a packet, on a worker if the pool is active. */
+    private void evaluate(PacketContext ctx) throws InterruptedException {
+        DetectionWorkerPool pool = workerPool;
+        if (pool != null) {
+            try {
+                PacketContext ready = prepare(ctx, releasedFragments);
+                for (PacketContext fragment : releasedFragments) {
+                    pool.dispatch(fragment, addressAffinities);
+                }
+                if (ready != null) {
+                    pool.dispatch(ready, addressAffinities);
+                }
+            } finally {
+                releasedFragments.clear();
+            }
+        } else {
+            processPacket(ctx);
+        }
     }
 
     /**
      * Starts the detection model in a separate thread
-     * @param packetQueue The queue to monitor for packets
+     * @param source The packets to monitor
      * @return The thread running the detection model
      */
-    public Thread startDetection(BlockingQueue<Packet> packetQueue) {
+    public Thread startDetection(PacketSource source) {
+        return startDetection(source, 1);
+    }
+
+    /**
+     * Starts the detection model with parallel workers. The detection thread decodes
+     * each packet and routes it by flow (and by source or destination for per-address
+     * rules), so state for one flow or address is only ever touched by one worker.
+     * @param source The packets to monitor, e.g. the merged interface subscriptions
+     * @param workerCount Number of detection workers; 1 evaluates rules on the detection thread
+     * @return The thread reading the packet source
+     */
+    public synchronized Thread startDetection(PacketSource source, int workerCount) {
+        return startDetection(() -> processPackets(source), workerCount, source::getFill);
+    }
+
+    private Thread startDetection(Runnable processingLoop, int workerCount, DoubleSupplier backlog) {
         if (isRunning) {
             System.out.println("Detection Model: Detection is already running.");
             return null; // Or return existing thread
@@ -212,8 +572,15 @@ public class DetectionModel {
         } else {
             System.out.println("Detection Model: NotificationManager is null, cannot start notification services.");
         }
-        Thread detectionThread = new Thread(() -> processPacketsFromQueue(packetQueue),
-                                           "DetectionModel-Thread");
+        if (workerCount > 1) {
+            workerPool = new DetectionWorkerPool(workerCount, DetectionWorkerPool.DEFAULT_QUEUE_CAPACITY,
+                                                 this::processPacket);
+            workerPool.start();
+        }
+        inputLoad = backlog;
+        overload.start();
+        isRunning = true;
+        detectionThread = new Thread(processingLoop, "DetectionModel-Thread");
         detectionThread.setDaemon(true); // So it doesn't prevent JVM shutdown
         detectionThread.start();
         System.out.println("Detection Model: Detection thread started.");
@@ -229,10 +596,17 @@ public class DetectionModel {
             return;
         }
         isRunning = false;
-        // The processing loop will exit on the next iteration due to isRunning flag
-        // If the thread is blocked on packetQueue.take(), interrupting it is good practice.
-        // The thread reference would be needed here if we want to interrupt it directly.
-        // For now, relying on the loop condition.
+        // The processing loop may be blocked on packetQueue.take()
+        if (detectionThread != null) {
+            detectionThread.interrupt();
+            detectionThread = null;
+        }
+        if (workerPool != null) {
+            workerPool.stop();
+            workerPool = null;
+        }
+        overload.stop();
+        inputLoad = () -> 0.0;
         if (notificationManager != null) {
             notificationManager.stop(); // Stop notification services
             System.out.println("Detection Model: NotificationManager stopped.");
@@ -241,11 +615,39 @@ public class DetectionModel {
     }
 
     /**
-     * Gets all alerts generated by this model
-     * @return Immutable list of alerts
+     * Drains pending alerts to their sinks and releases dispatcher threads.
+     * Call once when the application is shutting down.
+     */
+    public void shutdown() {
+        alertDispatcher.shutdown(5000);
+        System.out.println("Detection Model: Shut down.");
+    }
+
+    /**
+     * Gets the alert dispatcher for queue depth and drop counters
+     * @return The alert dispatcher
+     */
+    public AlertDispatcher getAlertDispatcher() {
+        return alertDispatcher;
+    }
+
+    /**
+     * Gets per-worker queue depth and throughput
+     * @return Worker statistics, empty when running single-threaded
+     */
+    public List<DetectionWorkerPool.WorkerStatistics> getWorkerStatistics() {
+        DetectionWorkerPool pool = workerPool;
+        return pool != null ? pool.getWorkerStatistics() : Collections.emptyList();
+    }
+
+    /**
+     * Gets the most recent alerts generated by this model, at most {@link #DEFAULT_ALERT_HISTORY}
+     * @return Immutable list of alerts, oldest first
      */
     public List<Alert> getAlerts() {
-        return Collections.unmodifiableList(new ArrayList<>(alerts));
+        synchronized (alerts) {
+            return Collections.unmodifiableList(new ArrayList<>(alerts));
+        }
     }
 
     /**
@@ -258,7 +660,7 @@ public class DetectionModel {
             System.out.println("Detection Model: getAlertsBySeverity called with null or empty severity.");
             return Collections.emptyList();
         }
-        return alerts.stream()
+        return getAlerts().stream()
                     .filter(alert -> severity.equalsIgnoreCase(alert.getSeverity())) // Case-insensitive compare
                     .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
@@ -273,8 +675,8 @@ public class DetectionModel {
             System.out.println("Detection Model: getRecentAlerts called with negative minutes value.");
             return Collections.emptyList();
         }
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(minutes);
-        return alerts.stream()
+        LocalDateTime cutoff = toLocalDateTime(clock.currentTimeMillis()).minusMinutes(minutes);
+        return getAlerts().stream()
                     .filter(alert -> alert.getTimestamp().isAfter(cutoff))
                     .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
@@ -282,8 +684,12 @@ public class DetectionModel {
     /**
      * Clears all stored alerts
      */
-    public synchronized void clearAlerts() {
-        alerts.clear();
+    public void clearAlerts() {
+        synchronized (alerts) {
+            alerts.clear();
+            alertCount = 0;
+            Arrays.fill(severityCounts, 0);
+        }
         System.out.println("Detection Model: Cleared all alerts.");
     }
 
@@ -292,11 +698,26 @@ public class DetectionModel {
      * @return Detection statistics as a formatted string
      */
     public String getStatistics() {
-        int totalAlertsCount = alerts.size();
-        long criticalAlerts = alerts.stream().filter(a -> Severity.CRITICAL.name().equals(a.getSeverity())).count();
-        long highAlerts = alerts.stream().filter(a -> Severity.HIGH.name().equals(a.getSeverity())).count();
-        long mediumAlerts = alerts.stream().filter(a -> Severity.MEDIUM.name().equals(a.getSeverity())).count();
-        long lowAlerts = alerts.stream().filter(a -> Severity.LOW.name().equals(a.getSeverity())).count();
+        long totalAlertsCount;
+        long criticalAlerts;
+        long highAlerts;
+        long mediumAlerts;
+        long lowAlerts;
+        synchronized (alerts) {
+            totalAlertsCount = alertCount;
+            criticalAlerts = severityCounts[Severity.CRITICAL.ordinal()];
+            highAlerts = severityCounts[Severity.HIGH.ordinal()];
+            mediumAlerts = severityCounts[Severity.MEDIUM.ordinal()];
+            lowAlerts = severityCounts[Severity.LOW.ordinal()];
+        }
+
+        StringBuilder ruleState = new StringBuilder();
+        for (Rule rule : rules) {
+            String state = rule.getStatistics();
+            if (state != null && !state.isEmpty()) {
+                ruleState.append("\n  - ").append(rule.getName()).append(": ").append(state);
+            }
+        }
 
         return String.format(
             "Detection Model Statistics:\n" +
@@ -306,43 +727,54 @@ public class DetectionModel {
             "  - High: %d\n" +
             "  - Medium: %d\n" +
             "  - Low: %d\n" +
-            "Status: %s",
+            "Status: %s\n" +
+            "Rule Dispatch: %.2f of %d rules per packet over %d packets\n" +
+            "Workers: %s\n" +
+            "Flow Table: %s\n" +
+            "Reassembly: %s\n" +
+            "Load Shedding: %s, %d rule evaluations shed\n" +
+            "Alert Dispatch: %s\n" +
+            "Alert Persistence: %s\n" +
+            "Rule State:%s",
             rules.size(), totalAlertsCount, criticalAlerts, highAlerts, mediumAlerts, lowAlerts,
-            isRunning ? "Running" : "Stopped"
+            isRunning ? "Running" : "Stopped",
+            getAverageCandidateRules(), rules.size(), dispatchedPackets.sum(), getWorkerStatistics(), flowTable, reassembly,
+            overload, shedEvaluations.sum(), alertDispatcher.getStatistics(), dbManager.getBatchWriter(),
+            ruleState.length() > 0 ? ruleState.toString() : " none"
         );
     }
 
     /**
-     * Creates an Alert object from a Rule and Packet
+     * Creates an Alert object from a Rule and a decoded packet
      * @param rule The rule that was triggered
-     * @param packet The packet that triggered the rule
+     * @param ctx The packet that triggered the rule
      * @return A new Alert object
      */
-    private Alert createAlertFromRule(Rule rule, Packet packet) {
-        String sourceIp = extractSourceIp(packet);
-        String destinationIp = extractDestinationIp(packet);
-        String protocol = extractProtocol(packet);
-        int port = extractPort(packet);
-
+    private Alert createAlertFromRule(Rule rule, PacketContext ctx) {
         return new Alert(
             getNextAlertId(),
             rule.getAlertName(),
             rule.getAlertDescription(),
             severityToString(rule.getSeverity()),
-            protocol,
-            LocalDateTime.now(),
-            sourceIp,
-            destinationIp,
-            port
+            ctx.getProtocolName(),
+            toLocalDateTime(clock.currentTimeMillis(ctx)),
+            ctx.getSrcAddress(),
+            ctx.getDstAddress(),
+            ctx.isTcp() || ctx.isUdp() ? ctx.getDstPort() : 0,
+            ctx.getInterfaceName()
         );
     }
 
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
     /**
      * Gets the next unique alert ID
      * @return The next alert ID
      */
-    private synchronized int getNextAlertId() {
-        return nextAlertId++;
+    private int getNextAlertId() {
+        return nextAlertId.getAndIncrement();
     }
 
     /**
@@ -354,85 +786,6 @@ public class DetectionModel {
         return severity != null ? severity.name() : "UNKNOWN";
     }
 
-    /**
-     * Extracts source IP from packet
-     * @param packet The packet to analyze
-     * @return Source IP address or "Unknown"
-     */
-    private String extractSourceIp(Packet packet) {
-        try {
-            IpPacket ipPacket = packet.get(IpPacket.class);
-            if (ipPacket != null && ipPacket.getHeader() != null) {
-                return ipPacket.getHeader().getSrcAddr().getHostAddress();
-            }
-        } catch (Exception e) {
-            System.err.println("Detection Model: Error extracting source IP - " + e.getMessage());
-        }
-        return "Unknown";
-    }
-
-    /**
-     * Extracts destination IP from packet
-     * @param packet The packet to analyze
-     * @return Destination IP address or "Unknown"
-     */
-    private String extractDestinationIp(Packet packet) {
-        try {
-            IpPacket ipPacket = packet.get(IpPacket.class);
-            if (ipPacket != null && ipPacket.getHeader() != null) {
-                return ipPacket.getHeader().getDstAddr().getHostAddress();
-            }
-        } catch (Exception e) {
-            System.err.println("Detection Model: Error extracting destination IP - " + e.getMessage());
-        }
-        return "Unknown";
-    }
-
-    /**
-     * Extracts protocol from packet
-     * @param packet The packet to analyze
-     * @return Protocol name or "Unknown"
-     */
-    private String extractProtocol(Packet packet) {
-        try {
-            if (packet.get(TcpPacket.class) != null) {
-                return "TCP";
-            } else if (packet.get(UdpPacket.class) != null) {
-                return "UDP";
-            } else {
-                IpPacket ipPacket = packet.get(IpPacket.class);
-                if (ipPacket != null && ipPacket.getHeader() != null && ipPacket.getHeader().getProtocol() != null) {
-                    return ipPacket.getHeader().getProtocol().name();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Detection Model: Error extracting protocol - " + e.getMessage());
-        }
-        return "Unknown";
-    }
-
-    /**
-     * Extracts port from packet (destination port for TCP/UDP)
-     * @param packet The packet to analyze
-     * @return Port number or 0 if not available
-     */
-    private int extractPort(Packet packet) {
-        try {
-            TcpPacket tcpPacket = packet.get(TcpPacket.class);
-            if (tcpPacket != null && tcpPacket.getHeader() != null && tcpPacket.getHeader().getDstPort() != null) {
-                return tcpPacket.getHeader().getDstPort().valueAsInt();
-            }
-
-            UdpPacket udpPacket = packet.get(UdpPacket.class);
-            if (udpPacket != null && udpPacket.getHeader() != null && udpPacket.getHeader().getDstPort() != null) {
-                return udpPacket.getHeader().getDstPort().valueAsInt();
-            }
-        } catch (Exception e) {
-            System.err.println("Detection Model: Error extracting port - " + e.getMessage());
-        }
-        return 0;
-    }
-
     /**
      * Checks if the detection model is currently running
      * @return true if running, false otherwise
@@ -450,10 +803,13 @@ public class DetectionModel {
     }
 
     /**
-     * Gets the total number of alerts generated
+     * Gets the total number of alerts generated since the last clear, including
+     * those no longer kept in memory
      * @return Number of alerts
      */
     public int getAlertCount() {
-        return alerts.size();
+        synchronized (alerts) {
+            return (int) Math.min(Integer.MAX_VALUE, alertCount);
+        }
     }
 }
@@ -0,0 +1,264 @@
+package com.NetProtector.Models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.ObjIntConsumer;
+
+import com.NetProtector.Models.Rules.FlowAffinity;
+
+/**
+ * Parallel detection workers with flow affinity. Each packet is hashed to a worker
+ * on its (direction-independent) 5-tuple, and additionally on its source address
+ * for rules with {@link FlowAffinity#SOURCE} and on its destination address for
+ * rules with {@link FlowAffinity#DESTINATION}. A given flow, source or destination
+ * is therefore always evaluated by the same worker, so per-key rule state is never
+ * contended.
+ *
+ * @author Stika
+ */
+public class DetectionWorkerPool {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final int FLOW_MASK = affinityMask(FlowAffinity.FLOW);
+    private static final int SOURCE_MASK = affinityMask(FlowAffinity.SOURCE);
+    private static final int DESTINATION_MASK = affinityMask(FlowAffinity.DESTINATION);
+    public static final int ALL_AFFINITIES = FLOW_MASK | SOURCE_MASK | DESTINATION_MASK;
+
+    private final Worker[] workers;
+    private final int queueCapacity;
+    private final ObjIntConsumer<PacketContext> evaluator;
+    private volatile boolean running = false;
+
+    /**
+     * Creates a worker pool
+     * @param workerCount Number of worker threads
+     * @param queueCapacity Maximum packets waiting per worker
+     * @param evaluator Called on the worker thread with the packet and the affinity mask of rules to run
+     */
+    public DetectionWorkerPool(int workerCount, int queueCapacity, ObjIntConsumer<PacketContext> evaluator) {
+        this.evaluator = evaluator;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.workers = new Worker[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i, this.queueCapacity);
+        }
+    }
+
+    /**
+     * Gets the mask bit for an affinity
+     * @param affinity The rule affinity
+     * @return Bit used in affinity masks
+     */
+    public static int affinityMask(FlowAffinity affinity) {
+        return 1 << affinity.ordinal();
+    }
+
+    /**
+     * Starts all worker threads
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Worker worker : workers) {
+            worker.thread = new Thread(worker, "DetectionWorker-" + worker.index);
+            worker.thread.setDaemon(true);
+            worker.startedAt = System.nanoTime();
+            worker.thread.start();
+        }
+        System.out.println("DetectionWorkerPool: Started " + workers.length + " worker(s).");
+    }
+
+    /**
+     * Routes a packet to its worker(s). Blocks if the target worker queue is full.
+     * @param ctx The decoded packet
+     * @param addressAffinities Mask of the {@link FlowAffinity#SOURCE} and {@link FlowAffinity#DESTINATION}
+     *                          affinities of installed rules; 0 routes by flow only
+     * @throws InterruptedException if interrupted while waiting for queue space
+     */
+    public void dispatch(PacketContext ctx, int addressAffinities) throws InterruptedException {
+        int flowWorker = Math.floorMod(flowHash(ctx), workers.length);
+        // An affinity without installed rules stays with the flow worker, where it costs nothing
+        int sourceWorker = (addressAffinities & SOURCE_MASK) != 0
+                ? Math.floorMod(mix(ctx.getSrcIpKey()), workers.length) : flowWorker;
+        int destinationWorker = (addressAffinities & DESTINATION_MASK) != 0
+                ? Math.floorMod(mix(ctx.getDstIpKey()), workers.length) : flowWorker;
+        if (sourceWorker == flowWorker && destinationWorker == flowWorker) {
+            workers[flowWorker].queue.put(new Task(ctx, ALL_AFFINITIES));
+            return;
+        }
+        workers[flowWorker].queue.put(new Task(ctx, FLOW_MASK
+                | (sourceWorker == flowWorker ? SOURCE_MASK : 0)
+                | (destinationWorker == flowWorker ? DESTINATION_MASK : 0)));
+        if (sourceWorker != flowWorker) {
+            workers[sourceWorker].queue.put(new Task(ctx, SOURCE_MASK
+                    | (destinationWorker == sourceWorker ? DESTINATION_MASK : 0)));
+        }
+        if (destinationWorker != flowWorker && destinationWorker != sourceWorker) {
+            workers[destinationWorker].queue.put(new Task(ctx, DESTINATION_MASK));
+        }
+    }
+
+    /**
+     * Stops all workers; packets still queued are discarded
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Worker worker : workers) {
+            if (worker.thread != null) {
+                worker.thread.interrupt();
+            }
+        }
+        System.out.println("DetectionWorkerPool: Stopped.");
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Gets per-worker queue depth and throughput
+     * @return Immutable list of worker statistics
+     */
+    public List<WorkerStatistics> getWorkerStatistics() {
+        List<WorkerStatistics> result = new ArrayList<>(workers.length);
+        for (Worker worker : workers) {
+            result.add(worker.sample());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Gets how full the fullest worker queue is. One hot flow saturates its
+     * worker even when the others are idle, so the maximum is reported.
+     * @return Fill ratio between 0 and 1
+     */
+    public double getQueueFill() {
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth = Math.max(depth, worker.queue.size());
+        }
+        return (double) depth / queueCapacity;
+    }
+
+    /**
+     * Hash of the 5-tuple that is identical for both directions of a connection
+     * @param ctx The decoded packet
+     * @return Flow hash
+     */
+    public static int flowHash(PacketContext ctx) {
+        int a = ctx.getSrcIpKey();
+        int b = ctx.getDstIpKey();
+        int portA = ctx.getSrcPort();
+        int portB = ctx.getDstPort();
+        // Order the endpoints so A->B and B->A hash the same
+        if (a > b || (a == b && portA > portB)) {
+            int t = a; a = b; b = t;
+            t = portA; portA = portB; portB = t;
+        }
+        int h = mix(a);
+        h = mix(h ^ b);
+        h = mix(h ^ ((portA << 16) | portB));
+        return mix(h ^ ctx.getIpProtocol());
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Point-in-time counters for one worker.
+     */
+    public static final class WorkerStatistics {
+        private final int index;
+        private final int queueDepth;
+        private final long processed;
+        private final double packetsPerSecond;
+
+        WorkerStatistics(int index, int queueDepth, long processed, double packetsPerSecond) {
+            this.index = index;
+            this.queueDepth = queueDepth;
+            this.processed = processed;
+            this.packetsPerSecond = packetsPerSecond;
+        }
+
+        public int getIndex() { return index; }
+        public int getQueueDepth() { return queueDepth; }
+        public long getProcessed() { return processed; }
+        public double getPacketsPerSecond() { return packetsPerSecond; }
+
+        @Override
+        public String toString() {
+            return String.format("worker-%d: depth=%d processed=%d rate=%.0f pkt/s",
+                    index, queueDepth, processed, packetsPerSecond);
+        }
+    }
+
+    private static final class Task {
+        final PacketContext ctx;
+        final int affinityMask;
+
+        Task(PacketContext ctx, int affinityMask) {
+            this.ctx = ctx;
+            this.affinityMask = affinityMask;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final BlockingQueue<Task> queue;
+        private volatile long processed = 0;
+        private volatile long startedAt;
+        private long lastSampleCount = 0;
+        private long lastSampleTime = 0;
+        private Thread thread;
+
+        Worker(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                try {
+                    Task task = queue.take();
+                    evaluator.accept(task.ctx, task.affinityMask);
+                    processed++; // single writer
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    System.err.println("DetectionWorkerPool: Error in worker " + index + " - " + e.getMessage());
+                }
+            }
+            queue.clear();
+        }
+
+        /** Throughput since the previous sample (or since start on the first call). */
+        synchronized WorkerStatistics sample() {
+            long now = System.nanoTime();
+            long count = processed;
+            long since = lastSampleTime == 0 ? startedAt : lastSampleTime;
+            long previous = lastSampleCount;
+            double elapsedSeconds = (now - since) / 1_000_000_000.0;
+            double rate = elapsedSeconds > 0 ? (count - previous) / elapsedSeconds : 0.0;
+            lastSampleTime = now;
+            lastSampleCount = count;
+            return new WorkerStatistics(index, queue.size(), count, rate);
+        }
+    }
+}
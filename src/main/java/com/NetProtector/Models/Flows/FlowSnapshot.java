@@ -0,0 +1,72 @@
+package com.NetProtector.Models.Flows;
+
+/**
+ * Counters of a flow as they were right after one packet was tracked, attached to
+ * that packet's context. Rules read it instead of the live table, so every rule
+ * evaluating a packet sees the same values no matter which worker runs it.
+ */
+public final class FlowSnapshot {
+
+    private final TcpState state;
+    private final TcpState previousState;
+    private final boolean newFlow;
+    private final boolean fromInitiator;
+    private final long initiatorBytes;
+    private final long initiatorPackets;
+    private final long responderBytes;
+    private final long responderPackets;
+    private final long firstSeenMillis;
+    private final long lastSeenMillis;
+
+    FlowSnapshot(TcpState state, TcpState previousState, boolean newFlow, boolean fromInitiator,
+                 long initiatorBytes, long initiatorPackets, long responderBytes, long responderPackets,
+                 long firstSeenMillis, long lastSeenMillis) {
+        this.state = state;
+        this.previousState = previousState;
+        this.newFlow = newFlow;
+        this.fromInitiator = fromInitiator;
+        this.initiatorBytes = initiatorBytes;
+        this.initiatorPackets = initiatorPackets;
+        this.responderBytes = responderBytes;
+        this.responderPackets = responderPackets;
+        this.firstSeenMillis = firstSeenMillis;
+        this.lastSeenMillis = lastSeenMillis;
+    }
+
+    public TcpState getState() { return state; }
+    /** State before this packet; equal to {@link #getState()} if the packet changed nothing. */
+    public TcpState getPreviousState() { return previousState; }
+    /** true if this packet created the flow (or restarted a finished or expired one). */
+    public boolean isNewFlow() { return newFlow; }
+    /** true if this packet was sent by the side that opened the flow. */
+    public boolean isFromInitiator() { return fromInitiator; }
+
+    /**
+     * Checks whether this packet moved the flow into a state
+     * @param target The state
+     * @return true if the flow entered the state with this packet
+     */
+    public boolean entered(TcpState target) {
+        return state == target && (previousState != target || newFlow);
+    }
+
+    public long getInitiatorBytes() { return initiatorBytes; }
+    public long getInitiatorPackets() { return initiatorPackets; }
+    public long getResponderBytes() { return responderBytes; }
+    public long getResponderPackets() { return responderPackets; }
+    public long getTotalBytes() { return initiatorBytes + responderBytes; }
+    public long getTotalPackets() { return initiatorPackets + responderPackets; }
+    /** Bytes sent so far by the sender of this packet. */
+    public long getSenderBytes() { return fromInitiator ? initiatorBytes : responderBytes; }
+    /** Bytes sent so far by the receiver of this packet. */
+    public long getReceiverBytes() { return fromInitiator ? responderBytes : initiatorBytes; }
+    public long getFirstSeenMillis() { return firstSeenMillis; }
+    public long getLastSeenMillis() { return lastSeenMillis; }
+    public long getDurationMillis() { return lastSeenMillis - firstSeenMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %d/%d pkts, %d/%d bytes, %d ms",
+                state, initiatorPackets, responderPackets, initiatorBytes, responderBytes, getDurationMillis());
+    }
+}
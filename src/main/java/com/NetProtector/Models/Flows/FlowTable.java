@@ -0,0 +1,398 @@
+package com.NetProtector.Models.Flows;
+
+import java.util.Arrays;
+
+import com.NetProtector.Models.DetectionWorkerPool;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Tracking.EntryIndex;
+
+/**
+ * Connection-tracking table keyed by the direction-independent 5-tuple. For every
+ * flow it keeps the TCP state, bytes and packets sent by each side and the first
+ * and last time the flow was seen; each tracked packet gets a {@link FlowSnapshot}
+ * of its flow for the rules.
+ *
+ * Memory is preallocated and never grows: flows live in parallel primitive arrays
+ * behind an open-addressing index. Flows are reclaimed after an idle timeout, which
+ * is short for half-open and finished TCP connections. Every update also checks a
+ * couple of entries for expiry, so reclaiming costs O(1) per packet. When the table
+ * is full the sampled entry closest to its timeout is evicted, which picks half-open
+ * flows first and keeps established connections tracked during a SYN flood.
+ *
+ * The table is split into independently locked segments like
+ * {@link com.NetProtector.Models.Tracking.WindowedCounterTable}.
+ */
+public final class FlowTable {
+
+    public static final int DEFAULT_MAX_FLOWS = 65536;
+    /** Idle timeout of established TCP connections and of non-TCP flows. */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300_000;
+    /** Idle timeout of half-open, closed and reset TCP connections. */
+    public static final long DEFAULT_TRANSIENT_TIMEOUT_MILLIS = 30_000;
+
+    private static final int MIN_SEGMENT_CAPACITY = 256;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int EVICTION_SAMPLE = 8;
+    private static final int SWEEP_PER_UPDATE = 2;
+    private static final long FREE = Long.MIN_VALUE;
+    private static final TcpState[] STATES = TcpState.values();
+
+    // Entry flag bits
+    private static final int INITIATOR_A = 0x1;
+    private static final int FIN_FROM_A = 0x2;
+    private static final int FIN_FROM_B = 0x4;
+
+    private final long idleTimeoutMillis;
+    private final long transientTimeoutMillis;
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int capacity;
+
+    public FlowTable() {
+        this(DEFAULT_MAX_FLOWS, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_TRANSIENT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a table
+     * @param maxFlows Hard cap on tracked flows
+     * @param idleTimeoutMillis Idle time after which an established or non-TCP flow is dropped
+     * @param transientTimeoutMillis Idle time after which a half-open or finished TCP flow is dropped
+     */
+    public FlowTable(int maxFlows, long idleTimeoutMillis, long transientTimeoutMillis) {
+        if (maxFlows <= 0 || idleTimeoutMillis <= 0 || transientTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and timeouts must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.transientTimeoutMillis = transientTimeoutMillis;
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && maxFlows / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) {
+            segmentCount <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = (maxFlows + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.capacity = perSegment * segmentCount;
+    }
+
+    /**
+     * Accounts a packet to its flow, creating the flow if needed
+     * @param ctx The decoded packet
+     * @param nowMillis Current time, normally the packet's capture time
+     * @return The flow's counters including this packet, or null for non-IP packets
+     */
+    public FlowSnapshot track(PacketContext ctx, long nowMillis) {
+        if (!ctx.isIp()) {
+            return null;
+        }
+        int a = ctx.getSrcIpKey();
+        int b = ctx.getDstIpKey();
+        int portA = ctx.getSrcPort();
+        int portB = ctx.getDstPort();
+        boolean fromA = true;
+        // Same endpoint order as DetectionWorkerPool.flowHash
+        if (a > b || (a == b && portA > portB)) {
+            int t = a; a = b; b = t;
+            t = portA; portA = portB; portB = t;
+            fromA = false;
+        }
+        int hash = DetectionWorkerPool.flowHash(ctx);
+        int bytes = ctx.getIpTotalLength() > 0 ? ctx.getIpTotalLength() : ctx.getLength();
+        int tcpFlags = ctx.isTcp() ? ctx.getTcpFlags() : -1;
+        return segmentFor(hash).track(a, b, (portA << 16) | portB, ctx.getIpProtocol(), hash, fromA,
+                                      tcpFlags, ctx.hasPayload(), bytes, nowMillis);
+    }
+
+    /**
+     * Removes all flows; the counters are kept
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getTransientTimeoutMillis() {
+        return transientTimeoutMillis;
+    }
+
+    /** Number of flows created, including restarted connections on a reused 5-tuple. */
+    public long getCreatedCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.created();
+        }
+        return total;
+    }
+
+    /** Number of flows dropped after their idle timeout. */
+    public long getExpiredCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.expirations();
+        }
+        return total;
+    }
+
+    /** Number of live flows dropped because the table was full. */
+    public long getEvictionCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.evictions();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d flows, %d created, %d expired, %d evicted",
+                size(), capacity, getCreatedCount(), getExpiredCount(), getEvictionCount());
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final EntryIndex index;
+        private final int[] addressesA;
+        private final int[] addressesB;
+        private final int[] ports;
+        private final byte[] protocols;
+        private final byte[] states;
+        private final byte[] flags;
+        private final long[] initiatorBytes;
+        private final long[] initiatorPackets;
+        private final long[] responderBytes;
+        private final long[] responderPackets;
+        private final long[] firstSeen;
+        /** Last packet time, or {@link #FREE} for unused entries. */
+        private final long[] lastSeen;
+        private final int[] nextFree;
+        private int freeHead;
+        private int size;
+        private int sweepCursor;
+        private int evictionCursor;
+        private long created;
+        private long expirations;
+        private long evictions;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.index = new EntryIndex(capacity);
+            this.addressesA = new int[capacity];
+            this.addressesB = new int[capacity];
+            this.ports = new int[capacity];
+            this.protocols = new byte[capacity];
+            this.states = new byte[capacity];
+            this.flags = new byte[capacity];
+            this.initiatorBytes = new long[capacity];
+            this.initiatorPackets = new long[capacity];
+            this.responderBytes = new long[capacity];
+            this.responderPackets = new long[capacity];
+            this.firstSeen = new long[capacity];
+            this.lastSeen = new long[capacity];
+            this.nextFree = new int[capacity];
+            clear();
+        }
+
+        synchronized FlowSnapshot track(int a, int b, int portPair, int protocol, int hash, boolean fromA,
+                                        int tcpFlags, boolean payload, int bytes, long now) {
+            sweep(now);
+            int entry = find(a, b, portPair, protocol, hash);
+            if (entry >= 0 && now > deadline(entry)) {
+                remove(entry);
+                expirations++;
+                entry = -1;
+            }
+            boolean fresh = false;
+            TcpState previous = TcpState.NONE;
+            if (entry < 0) {
+                if (size == capacity) {
+                    evictClosestToTimeout();
+                }
+                entry = allocate(a, b, portPair, protocol, hash);
+                open(entry, fromA, tcpFlags, now);
+                fresh = true;
+            } else {
+                previous = STATES[states[entry]];
+                if (tcpFlags >= 0 && isConnectionStart(tcpFlags) && (previous == TcpState.CLOSED || previous == TcpState.RESET)) {
+                    // New connection on a reused 5-tuple
+                    open(entry, fromA, tcpFlags, now);
+                    fresh = true;
+                    previous = TcpState.NONE;
+                }
+            }
+
+            boolean fromInitiator = ((flags[entry] & INITIATOR_A) != 0) == fromA;
+            if (tcpFlags >= 0) {
+                advance(entry, tcpFlags, fromA, fromInitiator, payload);
+            }
+            if (fromInitiator) {
+                initiatorBytes[entry] += bytes;
+                initiatorPackets[entry]++;
+            } else {
+                responderBytes[entry] += bytes;
+                responderPackets[entry]++;
+            }
+            lastSeen[entry] = Math.max(lastSeen[entry], now);
+
+            return new FlowSnapshot(STATES[states[entry]], previous, fresh, fromInitiator,
+                    initiatorBytes[entry], initiatorPackets[entry], responderBytes[entry], responderPackets[entry],
+                    firstSeen[entry], lastSeen[entry]);
+        }
+
+        synchronized void clear() {
+            index.clear();
+            Arrays.fill(lastSeen, FREE);
+            for (int i = 0; i < capacity; i++) {
+                nextFree[i] = i + 1 < capacity ? i + 1 : -1;
+            }
+            freeHead = 0;
+            size = 0;
+        }
+
+        synchronized int size() { return size; }
+        synchronized long created() { return created; }
+        synchronized long expirations() { return expirations; }
+        synchronized long evictions() { return evictions; }
+
+        /** Resets an entry for a new connection; the first packet decides who initiated it. */
+        private void open(int entry, boolean fromA, int tcpFlags, long now) {
+            boolean initiatorIsA = fromA;
+            TcpState state = TcpState.NONE;
+            if (tcpFlags >= 0) {
+                if ((tcpFlags & (PacketContext.TCP_SYN | PacketContext.TCP_ACK)) == (PacketContext.TCP_SYN | PacketContext.TCP_ACK)) {
+                    // Missed the SYN: the receiver of the SYN-ACK opened the connection
+                    initiatorIsA = !fromA;
+                    state = TcpState.SYN_RECEIVED;
+                } else if ((tcpFlags & PacketContext.TCP_SYN) != 0) {
+                    state = TcpState.SYN_SENT;
+                } else {
+                    // Picked up mid-stream
+                    state = TcpState.ESTABLISHED;
+                }
+            }
+            states[entry] = (byte) state.ordinal();
+            flags[entry] = (byte) (initiatorIsA ? INITIATOR_A : 0);
+            initiatorBytes[entry] = 0;
+            initiatorPackets[entry] = 0;
+            responderBytes[entry] = 0;
+            responderPackets[entry] = 0;
+            firstSeen[entry] = now;
+            lastSeen[entry] = now;
+            created++;
+        }
+
+        /** Moves the TCP state machine for one segment. */
+        private void advance(int entry, int tcpFlags, boolean fromA, boolean fromInitiator, boolean payload) {
+            TcpState state = STATES[states[entry]];
+            if ((tcpFlags & PacketContext.TCP_RST) != 0) {
+                state = TcpState.RESET;
+            } else if (state == TcpState.SYN_SENT) {
+                if (!fromInitiator && (tcpFlags & PacketContext.TCP_SYN) != 0 && (tcpFlags & PacketContext.TCP_ACK) != 0) {
+                    state = TcpState.SYN_RECEIVED;
+                }
+            } else if (state == TcpState.SYN_RECEIVED) {
+                if (fromInitiator && (tcpFlags & PacketContext.TCP_SYN) == 0
+                        && ((tcpFlags & PacketContext.TCP_ACK) != 0 || payload)) {
+                    state = TcpState.ESTABLISHED;
+                }
+            }
+            if ((tcpFlags & PacketContext.TCP_FIN) != 0 && state != TcpState.RESET) {
+                int fins = flags[entry] | (fromA ? FIN_FROM_A : FIN_FROM_B);
+                flags[entry] = (byte) fins;
+                state = (fins & (FIN_FROM_A | FIN_FROM_B)) == (FIN_FROM_A | FIN_FROM_B) ? TcpState.CLOSED : TcpState.FIN_WAIT;
+            }
+            states[entry] = (byte) state.ordinal();
+        }
+
+        private boolean isConnectionStart(int tcpFlags) {
+            return (tcpFlags & (PacketContext.TCP_SYN | PacketContext.TCP_ACK)) == PacketContext.TCP_SYN;
+        }
+
+        private long deadline(int entry) {
+            TcpState state = STATES[states[entry]];
+            return lastSeen[entry] + (state.isTransient() ? transientTimeoutMillis : idleTimeoutMillis);
+        }
+
+        /** Checks a few entries per update so idle flows are reclaimed without a background thread. */
+        private void sweep(long now) {
+            for (int i = 0; i < SWEEP_PER_UPDATE && size > 0; i++) {
+                sweepCursor = sweepCursor + 1 == capacity ? 0 : sweepCursor + 1;
+                if (lastSeen[sweepCursor] != FREE && now > deadline(sweepCursor)) {
+                    remove(sweepCursor);
+                    expirations++;
+                }
+            }
+        }
+
+        /**
+         * Evicts the entry with the earliest deadline among a few sampled ones; only
+         * called when full. Samples are spread over the table because entries created
+         * together (e.g. long-lived connections opened at startup) sit next to each other.
+         */
+        private void evictClosestToTimeout() {
+            int stride = Math.max(1, capacity / EVICTION_SAMPLE);
+            int best = evictionCursor;
+            for (int i = 1; i < EVICTION_SAMPLE; i++) {
+                int candidate = (evictionCursor + i * stride) % capacity;
+                if (deadline(candidate) < deadline(best)) {
+                    best = candidate;
+                }
+            }
+            evictionCursor = evictionCursor + 1 == capacity ? 0 : evictionCursor + 1;
+            remove(best);
+            evictions++;
+        }
+
+        private int allocate(int a, int b, int portPair, int protocol, int hash) {
+            int entry = freeHead;
+            freeHead = nextFree[entry];
+            addressesA[entry] = a;
+            addressesB[entry] = b;
+            ports[entry] = portPair;
+            protocols[entry] = (byte) protocol;
+            index.insert(entry, hash);
+            size++;
+            return entry;
+        }
+
+        private void remove(int entry) {
+            index.remove(entry);
+            lastSeen[entry] = FREE;
+            nextFree[entry] = freeHead;
+            freeHead = entry;
+            size--;
+        }
+
+        private int find(int a, int b, int portPair, int protocol, int hash) {
+            for (int pos = index.first(hash), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+                if (index.hashOf(entry) == hash && addressesA[entry] == a && addressesB[entry] == b
+                        && ports[entry] == portPair && protocols[entry] == (byte) protocol) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.NetProtector.Models.Flows;
+
+/**
+ * Connection state of a tracked flow, as far as it can be inferred from the
+ * TCP flags seen in both directions. Flows of other protocols stay in
+ * {@link #NONE}.
+ */
+public enum TcpState {
+    /** Not a TCP flow. */
+    NONE,
+    /** SYN seen from the initiator. */
+    SYN_SENT,
+    /** SYN-ACK seen from the responder. */
+    SYN_RECEIVED,
+    /** Handshake completed, or the flow was picked up mid-stream. */
+    ESTABLISHED,
+    /** One side sent FIN. */
+    FIN_WAIT,
+    /** Both sides sent FIN. */
+    CLOSED,
+    /** Either side sent RST. */
+    RESET;
+
+    /**
+     * Checks whether the connection is half-open or already finished. Such flows
+     * expire after the short transient timeout and are evicted first when the
+     * table is full, so a SYN flood cannot push out established connections.
+     * @return true for SYN_SENT, SYN_RECEIVED, CLOSED and RESET
+     */
+    public boolean isTransient() {
+        return this == SYN_SENT || this == SYN_RECEIVED || this == CLOSED || this == RESET;
+    }
+}
@@ -0,0 +1,172 @@
+package com.NetProtector.Models.Intel;
+
+import java.util.Arrays;
+
+/**
+ * Immutable path-compressed binary radix trie over IPv4 prefixes. Prefixes that
+ * are covered by a shorter prefix are dropped while building, so every stored
+ * prefix is a leaf and a lookup is a walk of at most 32 nodes over flat int
+ * arrays with no allocation.
+ */
+public final class CidrTrie {
+
+    private static final CidrTrie EMPTY = new CidrTrie(new int[0], new byte[0], new int[0], new int[0], 0);
+
+    private final int[] bits;
+    private final byte[] lengths;
+    /** Child indexes; for leaves both are -1. */
+    private final int[] left;
+    private final int[] right;
+    private final int prefixCount;
+
+    private CidrTrie(int[] bits, byte[] lengths, int[] left, int[] right, int prefixCount) {
+        this.bits = bits;
+        this.lengths = lengths;
+        this.left = left;
+        this.right = right;
+        this.prefixCount = prefixCount;
+    }
+
+    /**
+     * Builds a trie
+     * @param packed Prefixes packed with {@link #pack(int, int)}; the array is sorted in place
+     * @param count Number of valid entries in the array
+     * @return The trie
+     */
+    public static CidrTrie build(long[] packed, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(packed, 0, count);
+
+        // Keep only prefixes not covered by an earlier, shorter one
+        long[] kept = new long[count];
+        int keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            int address = address(packed[i]);
+            int length = length(packed[i]);
+            if (keptCount > 0) {
+                long last = kept[keptCount - 1];
+                int lastLength = length(last);
+                if (lastLength <= length && ((address ^ address(last)) & mask(lastLength)) == 0) {
+                    continue;
+                }
+            }
+            kept[keptCount++] = packed[i];
+        }
+
+        int nodes = 2 * keptCount - 1;
+        Builder builder = new Builder(nodes);
+        builder.node(kept, 0, keptCount);
+        return new CidrTrie(builder.bits, builder.lengths, builder.left, builder.right, keptCount);
+    }
+
+    /**
+     * Checks whether an address falls inside any stored prefix
+     * @param address IPv4 address as a big-endian int
+     * @return true if the address is covered
+     */
+    public boolean contains(int address) {
+        if (bits.length == 0) {
+            return false;
+        }
+        int node = 0;
+        while (true) {
+            int length = lengths[node];
+            if (((address ^ bits[node]) & mask(length)) != 0) {
+                return false;
+            }
+            if (left[node] < 0) {
+                return true;
+            }
+            node = ((address >>> (31 - length)) & 1) == 0 ? left[node] : right[node];
+        }
+    }
+
+    /**
+     * Lists the stored prefixes
+     * @return Packed prefixes in address order
+     */
+    public long[] toPackedArray() {
+        long[] result = new long[prefixCount];
+        int n = 0;
+        for (int node = 0; node < bits.length; node++) {
+            if (left[node] < 0) {
+                result[n++] = pack(bits[node], lengths[node]);
+            }
+        }
+        return result;
+    }
+
+    /** Number of stored (non-redundant) prefixes. */
+    public int size() {
+        return prefixCount;
+    }
+
+    /** Number of trie nodes. */
+    public int getNodeCount() {
+        return bits.length;
+    }
+
+    /**
+     * Packs a prefix into a sortable long: unsigned network address, then length
+     * @param address Network address; host bits are cleared
+     * @param length Prefix length, 0-32
+     * @return The packed prefix
+     */
+    public static long pack(int address, int length) {
+        return ((address & mask(length)) & 0xFFFFFFFFL) << 6 | length;
+    }
+
+    static int address(long packed) {
+        return (int) (packed >>> 6);
+    }
+
+    static int length(long packed) {
+        return (int) (packed & 0x3F);
+    }
+
+    static int mask(int length) {
+        return length == 0 ? 0 : -1 << (32 - length);
+    }
+
+    private static final class Builder {
+        private final int[] bits;
+        private final byte[] lengths;
+        private final int[] left;
+        private final int[] right;
+        private int next;
+
+        Builder(int nodes) {
+            bits = new int[nodes];
+            lengths = new byte[nodes];
+            left = new int[nodes];
+            right = new int[nodes];
+        }
+
+        /** Builds the subtree for sorted, disjoint prefixes [from, to) and returns its index. */
+        int node(long[] prefixes, int from, int to) {
+            int index = next++;
+            if (to - from == 1) {
+                bits[index] = address(prefixes[from]);
+                lengths[index] = (byte) length(prefixes[from]);
+                left[index] = -1;
+                right[index] = -1;
+                return index;
+            }
+            // Bits shared by the first and last prefix are shared by all of them
+            int first = address(prefixes[from]);
+            int last = address(prefixes[to - 1]);
+            int common = Integer.numberOfLeadingZeros(first ^ last);
+            bits[index] = first & mask(common);
+            lengths[index] = (byte) common;
+            int split = from;
+            while (((address(prefixes[split]) >>> (31 - common)) & 1) == 0) {
+                split++;
+            }
+            left[index] = node(prefixes, from, split);
+            right[index] = node(prefixes, split, to);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.NetProtector.Models.Intel;
+
+/**
+ * Immutable Bloom filter over IPv4 prefixes, used to reject the vast majority of
+ * addresses before walking the {@link CidrTrie}. Every stored prefix is inserted
+ * as (network, length); a query masks the address to each prefix length present
+ * in the feed and probes the filter, so a negative answer is definite.
+ */
+public final class PrefixBloomFilter {
+
+    private final long[] words;
+    private final long bitMask;
+    private final int hashes;
+    /** Bit i set if some stored prefix has length i. */
+    private final long lengthsPresent;
+    private final int[] lengths;
+
+    private PrefixBloomFilter(long[] words, int hashes, long lengthsPresent) {
+        this.words = words;
+        this.bitMask = (long) words.length * 64 - 1;
+        this.hashes = hashes;
+        this.lengthsPresent = lengthsPresent;
+        int count = Long.bitCount(lengthsPresent);
+        this.lengths = new int[count];
+        int n = 0;
+        for (int length = 0; length <= 32; length++) {
+            if ((lengthsPresent & (1L << length)) != 0) {
+                lengths[n++] = length;
+            }
+        }
+    }
+
+    /**
+     * Builds a filter for packed prefixes
+     * @param packed Prefixes packed with {@link CidrTrie#pack(int, int)}
+     * @param count Number of valid entries
+     * @param falsePositiveRate Target false-positive rate per probe, e.g. 0.01
+     * @return The filter
+     */
+    public static PrefixBloomFilter build(long[] packed, int count, double falsePositiveRate) {
+        int n = Math.max(1, count);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // Power of two so the bit index is a mask
+        long size = Long.highestOneBit(Math.max(64, bits - 1)) << 1;
+        int hashes = Math.max(1, (int) Math.round((double) size / n * ln2));
+        long[] words = new long[(int) (size >>> 6)];
+        long lengthsPresent = 0;
+        PrefixBloomFilter filter = new PrefixBloomFilter(words, Math.min(hashes, 8), 0);
+        for (int i = 0; i < count; i++) {
+            filter.insert(packed[i]);
+            lengthsPresent |= 1L << CidrTrie.length(packed[i]);
+        }
+        return new PrefixBloomFilter(words, filter.hashes, lengthsPresent);
+    }
+
+    /**
+     * Checks whether the address may be covered by a stored prefix
+     * @param address IPv4 address as a big-endian int
+     * @return false if the address is definitely not covered
+     */
+    public boolean mightContain(int address) {
+        for (int length : lengths) {
+            if (probe(CidrTrie.pack(address, length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getHashCount() { return hashes; }
+    public long getBitCount() { return bitMask + 1; }
+
+    private void insert(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean probe(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
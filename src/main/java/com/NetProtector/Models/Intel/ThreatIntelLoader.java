@@ -0,0 +1,79 @@
+package com.NetProtector.Models.Intel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Loads threat-intel feed files into a {@link ThreatIntelSnapshot}. Feeds are
+ * plain text with one IPv4 address or CIDR range per line; the first token of
+ * a line is used, so CSV-style feeds with extra columns work. Blank lines and
+ * lines starting with '#' or ';' are skipped, as are unparseable entries.
+ */
+public final class ThreatIntelLoader {
+
+    private ThreatIntelLoader() {
+    }
+
+    /**
+     * Loads feed files on top of an existing builder
+     * @param builder Builder that may already hold built-in entries
+     * @param files Feed files to read
+     * @return Number of invalid lines skipped
+     * @throws IOException if a file cannot be read
+     */
+    public static int load(ThreatIntelSnapshot.Builder builder, List<Path> files) throws IOException {
+        int skipped = 0;
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String entry = firstToken(line);
+                    if (entry.isEmpty() || entry.charAt(0) == '#' || entry.charAt(0) == ';') {
+                        continue;
+                    }
+                    if (!builder.add(entry)) {
+                        skipped++;
+                    }
+                }
+            }
+            System.out.println("ThreatIntelLoader: Loaded " + file + " (" + builder.getCount() + " entries so far)");
+        }
+        return skipped;
+    }
+
+    /**
+     * Loads feed files into a new snapshot
+     * @param files Feed files to read
+     * @return The snapshot
+     * @throws IOException if a file cannot be read
+     */
+    public static ThreatIntelSnapshot load(List<Path> files) throws IOException {
+        ThreatIntelSnapshot.Builder builder = ThreatIntelSnapshot.builder();
+        int skipped = load(builder, files);
+        if (skipped > 0) {
+            System.out.println("ThreatIntelLoader: Skipped " + skipped + " invalid entries");
+        }
+        return builder.build();
+    }
+
+    private static String firstToken(String line) {
+        int start = 0;
+        int length = line.length();
+        while (start < length && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < length) {
+            char c = line.charAt(end);
+            if (Character.isWhitespace(c) || c == ',' || c == '\t') {
+                break;
+            }
+            end++;
+        }
+        return line.substring(start, end);
+    }
+}
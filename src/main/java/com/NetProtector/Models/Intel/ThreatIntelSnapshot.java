@@ -0,0 +1,161 @@
+package com.NetProtector.Models.Intel;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compact set of malicious IPv4 addresses and CIDR ranges. Lookups
+ * go through a Bloom filter first and only reach the radix trie for probable
+ * hits; neither step allocates. A new snapshot is built for every feed reload and
+ * swapped in atomically, so readers never see a partially loaded feed.
+ */
+public final class ThreatIntelSnapshot {
+
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final CidrTrie trie;
+    private final PrefixBloomFilter bloom;
+    private final int entriesRead;
+    private final long loadedAtMillis;
+
+    private ThreatIntelSnapshot(CidrTrie trie, int entriesRead) {
+        this.trie = trie;
+        long[] prefixes = trie.toPackedArray();
+        this.bloom = PrefixBloomFilter.build(prefixes, prefixes.length, BLOOM_FALSE_POSITIVE_RATE);
+        this.entriesRead = entriesRead;
+        this.loadedAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates a builder
+     * @return An empty builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Checks whether an address is listed
+     * @param address IPv4 address as a big-endian int
+     * @return true if the address or a range containing it is listed
+     */
+    public boolean contains(int address) {
+        return bloom.mightContain(address) && trie.contains(address);
+    }
+
+    /** Number of distinct, non-overlapping prefixes after compaction. */
+    public int size() {
+        return trie.size();
+    }
+
+    /** Number of entries read from the feeds, including duplicates and covered ranges. */
+    public int getEntriesRead() {
+        return entriesRead;
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d prefixes from %d entries (%d trie nodes)", size(), entriesRead, trie.getNodeCount());
+    }
+
+    /**
+     * Accumulates addresses and ranges for a snapshot.
+     */
+    public static final class Builder {
+        private long[] packed = new long[1024];
+        private int count;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a CIDR range
+         * @param address Network address as a big-endian int
+         * @param length Prefix length, 0-32
+         * @return This builder
+         */
+        public Builder add(int address, int length) {
+            if (length < 0 || length > 32) {
+                throw new IllegalArgumentException("Invalid prefix length: " + length);
+            }
+            if (count == packed.length) {
+                packed = Arrays.copyOf(packed, packed.length * 2);
+            }
+            packed[count++] = CidrTrie.pack(address, length);
+            return this;
+        }
+
+        /**
+         * Adds an address or range in text form ("a.b.c.d" or "a.b.c.d/len")
+         * @param text The address or range
+         * @return true if the text was valid and added
+         */
+        public boolean add(String text) {
+            int slash = text.indexOf('/');
+            int length = 32;
+            String address = text;
+            if (slash >= 0) {
+                address = text.substring(0, slash);
+                try {
+                    length = Integer.parseInt(text.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                if (length < 0 || length > 32) {
+                    return false;
+                }
+            }
+            long parsed = parseIpV4(address.trim());
+            if (parsed < 0) {
+                return false;
+            }
+            add((int) parsed, length);
+            return true;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Compiles everything added so far
+         * @return The immutable snapshot
+         */
+        public ThreatIntelSnapshot build() {
+            return new ThreatIntelSnapshot(CidrTrie.build(packed, count), count);
+        }
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address without allocating
+     * @param text The address
+     * @return The address as an unsigned value, or -1 if invalid
+     */
+    public static long parseIpV4(CharSequence text) {
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+}
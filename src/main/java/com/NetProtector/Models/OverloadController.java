@@ -0,0 +1,275 @@
+package com.NetProtector.Models;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides how much detection coverage to give up when the engine cannot keep
+ * up. A load signal between 0 and 1 (queue fill, detection lag, drop ratio)
+ * is read periodically; the {@link SheddingStage} rises as soon as the load
+ * crosses a stage's entry threshold and falls one stage at a time once it is
+ * below the exit threshold, so the engine does not flap at a boundary.
+ *
+ * Per packet the controller only answers which stage applies to it: bulk
+ * flows are recognised from the bytes their flow hash slot carried in the
+ * current interval, and sampling keeps one packet in {@code sampleInterval}.
+ *
+ * Stage listeners are called after the controller's lock is released, so a
+ * listener may take other locks (e.g. raise an alert) without risking a
+ * deadlock against a thread that stops the controller.
+ */
+public class OverloadController {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 500;
+    public static final int DEFAULT_SAMPLE_INTERVAL = 8;
+    /** Bytes per interval above which a flow is considered bulk. */
+    public static final long DEFAULT_BULK_FLOW_BYTES = 1_000_000L;
+
+    // Entry and exit load for SKIP_LOW_SEVERITY, SKIP_BULK_PAYLOAD and SAMPLE
+    private static final double[] ENTER_LOAD = {0.5, 0.7, 0.9};
+    private static final double[] EXIT_LOAD = {0.3, 0.5, 0.7};
+    private static final SheddingStage[] STAGES = SheddingStage.values();
+    private static final int FLOW_SLOTS = 4096;
+
+    private final DoubleSupplier load;
+    private final long intervalMillis;
+    private final List<BiConsumer<SheddingStage, SheddingStage>> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+
+    private volatile SheddingStage stage = SheddingStage.NORMAL;
+    private volatile double lastLoad;
+    private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private volatile long bulkFlowBytes = DEFAULT_BULK_FLOW_BYTES;
+    private final AtomicLongArray flowBytes = new AtomicLongArray(FLOW_SLOTS);
+
+    private final LongAdder stageChanges = new LongAdder();
+    private final LongAdder degradedPackets = new LongAdder();
+    private final LongAdder bulkPackets = new LongAdder();
+    private final LongAdder sampledOutPackets = new LongAdder();
+    private final long[] stageMillis = new long[STAGES.length];
+    private long stageSince = System.currentTimeMillis();
+
+    /**
+     * @param load Current load between 0 (idle) and 1 (saturated)
+     * @param intervalMillis How often the load is read
+     */
+    public OverloadController(DoubleSupplier load, long intervalMillis) {
+        this.load = load;
+        this.intervalMillis = Math.max(50, intervalMillis);
+    }
+
+    public OverloadController(DoubleSupplier load) {
+        this(load, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts reading the load on a background thread
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "OverloadController");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::update, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading the load and returns to full coverage
+     */
+    public void stop() {
+        SheddingStage previous;
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            previous = changeStage(SheddingStage.NORMAL);
+        }
+        notifyListeners(previous, SheddingStage.NORMAL);
+    }
+
+    /**
+     * Reads the load and moves between stages
+     * @return The stage now in effect
+     */
+    public SheddingStage update() {
+        double current;
+        try {
+            current = Math.max(0.0, Math.min(1.0, load.getAsDouble()));
+        } catch (RuntimeException e) {
+            System.err.println("OverloadController: Failed to read load - " + e.getMessage());
+            return stage;
+        }
+
+        SheddingStage previous;
+        SheddingStage next;
+        synchronized (this) {
+            lastLoad = current;
+            int level = stage.ordinal();
+            int target = level;
+            while (target < ENTER_LOAD.length && current >= ENTER_LOAD[target]) {
+                target++;
+            }
+            if (target == level && level > 0 && current < EXIT_LOAD[level - 1]) {
+                target = level - 1;
+            }
+            next = STAGES[target];
+            previous = changeStage(next);
+
+            // Bulk flows are judged per interval
+            for (int i = 0; i < FLOW_SLOTS; i++) {
+                flowBytes.lazySet(i, 0);
+            }
+        }
+        notifyListeners(previous, next);
+        return next;
+    }
+
+    /**
+     * Switches the stage; the caller holds the lock and notifies listeners after releasing it
+     * @return The stage before the switch, or null if the stage did not change
+     */
+    private SheddingStage changeStage(SheddingStage next) {
+        SheddingStage previous = stage;
+        if (next == previous) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        stageMillis[previous.ordinal()] += now - stageSince;
+        stageSince = now;
+        stage = next;
+        stageChanges.increment();
+        System.out.println(String.format("OverloadController: %s -> %s at load %.2f (%s)",
+                previous, next, lastLoad, next.getDescription()));
+        return previous;
+    }
+
+    private void notifyListeners(SheddingStage previous, SheddingStage next) {
+        if (previous == null) {
+            return;
+        }
+        for (BiConsumer<SheddingStage, SheddingStage> listener : listeners) {
+            listener.accept(previous, next);
+        }
+    }
+
+    /**
+     * Decides how much coverage a packet gets
+     * @param ctx The packet about to be evaluated
+     * @param primary true for the one evaluation of the packet that is counted; split
+     *                evaluations on other workers pass false
+     * @return The stage whose restrictions apply to this packet
+     */
+    public SheddingStage stageFor(PacketContext ctx, boolean primary) {
+        SheddingStage current = stage;
+        if (current == SheddingStage.NORMAL) {
+            return current;
+        }
+        if (primary) {
+            degradedPackets.increment();
+        }
+        if (current == SheddingStage.SAMPLE && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+            if (primary) {
+                sampledOutPackets.increment();
+            }
+            return SheddingStage.SAMPLE;
+        }
+        if (current.compareTo(SheddingStage.SKIP_BULK_PAYLOAD) >= 0 && isBulkFlow(ctx, primary)) {
+            if (primary) {
+                bulkPackets.increment();
+            }
+            return SheddingStage.SKIP_BULK_PAYLOAD;
+        }
+        return SheddingStage.SKIP_LOW_SEVERITY;
+    }
+
+    private boolean isBulkFlow(PacketContext ctx, boolean primary) {
+        int slot = DetectionWorkerPool.flowHash(ctx) & (FLOW_SLOTS - 1);
+        long bytes = primary
+                ? flowBytes.addAndGet(slot, Math.max(ctx.getIpTotalLength(), ctx.getLength()))
+                : flowBytes.get(slot);
+        return bytes > bulkFlowBytes;
+    }
+
+    /**
+     * Adds a listener called with the previous and new stage whenever the stage changes
+     * @param listener The listener
+     */
+    public void addStageListener(BiConsumer<SheddingStage, SheddingStage> listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    public SheddingStage getStage() { return stage; }
+    public double getLastLoad() { return lastLoad; }
+    public long getIntervalMillis() { return intervalMillis; }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Sets how many packets the SAMPLE stage evaluates fully
+     * @param sampleInterval Evaluate one packet in this many
+     */
+    public void setSampleInterval(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be at least 1: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    public long getBulkFlowBytes() {
+        return bulkFlowBytes;
+    }
+
+    /**
+     * Sets how much traffic makes a flow bulk
+     * @param bulkFlowBytes Bytes per interval
+     */
+    public void setBulkFlowBytes(long bulkFlowBytes) {
+        this.bulkFlowBytes = Math.max(1, bulkFlowBytes);
+    }
+
+    /** Number of stage changes since creation. */
+    public long getStageChangeCount() { return stageChanges.sum(); }
+
+    /** Packets evaluated with reduced coverage. */
+    public long getDegradedPacketCount() { return degradedPackets.sum(); }
+
+    /** Packets whose payload rules were skipped because their flow was bulk. */
+    public long getBulkPacketCount() { return bulkPackets.sum(); }
+
+    /** Packets that only went through the header-only critical rules. */
+    public long getSampledOutPacketCount() { return sampledOutPackets.sum(); }
+
+    /**
+     * Gets how long the engine spent in a stage
+     * @param stage The stage
+     * @return Milliseconds, including the current stay
+     */
+    public synchronized long getMillisIn(SheddingStage stage) {
+        long millis = stageMillis[stage.ordinal()];
+        return stage == this.stage ? millis + System.currentTimeMillis() - stageSince : millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s at load %.2f, %d changes, %d degraded packets (%d bulk, %d sampled out)",
+                stage, lastLoad, getStageChangeCount(), getDegradedPacketCount(), getBulkPacketCount(),
+                getSampledOutPacketCount());
+    }
+}
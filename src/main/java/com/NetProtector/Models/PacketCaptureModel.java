@@ -1,6 +1,14 @@
 package com.NetProtector.Models;
 
-import java.util.concurrent.BlockingQueue;
+import java.io.EOFException;
+import java.sql.Timestamp;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.NetProtector.Models.Pipeline.PacketRing;
 
 
 import org.pcap4j.core.*;
@@ -10,36 +18,515 @@ import org.pcap4j.packet.Packet;
  **/
 public class PacketCaptureModel {
 
-    private BlockingQueue<Packet> PacketQueue;
-    private PcapHandle handle;
+    /**
+     * How packets from a capture file are paced when replayed.
+     */
+    public enum ReplayMode {
+        /** Read and enqueue as fast as the consumer accepts packets. */
+        MAX_SPEED,
+        /** Keep the original gaps between packet timestamps. */
+        ORIGINAL,
+        /** Keep the original gaps divided by a speed multiplier. */
+        SCALED
+    }
+
+    /**
+     * How a live capture hands packets to the ring.
+     */
+    public enum CaptureMode {
+        /** Decode every frame into a pcap4j packet on the capture thread. */
+        LOOP,
+        /** Pull raw frames in batches and leave decoding to the consumers. */
+        BATCH
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_SNAPLEN = 65536;
+    private static final int READ_TIMEOUT_MILLIS = 10;
+    private static final long DRAIN_POLL_NANOS = 1_000_000L;
+    private static final long REPLAY_SUBSCRIBER_WAIT_NANOS = 5_000_000_000L;
+
+    private PacketRing PacketQueue;
+    private volatile PcapHandle handle;
+    private PcapNetworkInterface networkInterface;
+    private volatile boolean running;
+    private volatile ReplayStatistics lastReplayStatistics;
+    private volatile CaptureMode captureMode = CaptureMode.BATCH;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile CaptureMode activeMode;
+    // Filter changes are installed by the thread reading the handle, between reads
+    private volatile String filter = "";
+    private volatile String fallbackFilter = "";
+    private final AtomicReference<String> requestedFilter = new AtomicReference<>();
+    // A snap length change reopens the handle on the capture thread
+    private volatile int snapLength = DEFAULT_SNAPLEN;
+    private final AtomicInteger requestedSnapLength = new AtomicInteger();
 
 
-    public PacketCaptureModel(BlockingQueue<Packet> packets){
+    private volatile PcapStat lastStats;
+    // Kernel counters of handles replaced by a reopen; guarded by this
+    private long closedReceived;
+    private long closedDropped;
+    private long closedDroppedByIf;
+
+
+    /**
+     * @param packets Ring this capture publishes to; its name identifies the interface
+     */
+    public PacketCaptureModel(PacketRing packets){
         PacketQueue = packets;
     }
 
     public void startCapture(PcapNetworkInterface networkInterface, String bpfFilter) throws PcapNativeException, NotOpenException {
-        int snapLen = 65536;
-        int timeout = 10;
+        this.networkInterface = networkInterface;
+        requestedSnapLength.set(0);
+        synchronized (this) {
+            closedReceived = 0;
+            closedDropped = 0;
+            closedDroppedByIf = 0;
+        }
 
-        handle = networkInterface.openLive(snapLen, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, timeout);
+        handle = networkInterface.openLive(snapLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, READ_TIMEOUT_MILLIS);
         handle.setFilter(bpfFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+        filter = bpfFilter;
+        PacketQueue.setLinkType(handle.getDlt());
+        running = true;
 
-       System.out.println("Starting packet capture...");
-        new Thread(() -> {
+        CaptureMode mode = captureMode;
+        activeMode = mode;
+        System.out.println("PacketCaptureModel: Starting " + mode + " capture on " + getInterfaceName()
+                + " (snaplen " + snapLength + ")");
+        Thread thread = new Thread(mode == CaptureMode.BATCH ? this::captureBatches : this::captureLoop,
+                "PacketCapture-" + PacketQueue.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void captureLoop() {
+        PacketListener listener = packet -> {
             try {
-                handle.loop(-1, (PacketListener) packet -> {
-                    try {
-                        PacketQueue.put(packet);
-                        System.out.println("Packet added to queue: ");
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        System.out.println("Failed to add packet to queue" + e);
+                PacketQueue.put(packet, toMicros(handle.getTimestamp()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Failed to add packet to queue" + e);
+            }
+        };
+        PcapHandle captureHandle = handle;
+        try {
+            while (running) {
+                captureHandle = applyRequestedChanges(captureHandle);
+                try {
+                    captureHandle.loop(-1, listener);
+                } catch (InterruptedException e) {
+                    // breakLoop(): stopping, or a filter or snap length change is waiting
+                }
+            }
+        } catch (PcapNativeException | NotOpenException e) {
+            System.out.println( "Error during packet capture" + e);
+        } finally {
+            closeLive(captureHandle);
+        }
+    }
+
+    /**
+     * Pulls up to a batch of raw frames per dispatch call and publishes them
+     * together; no pcap4j packet is built on this thread.
+     */
+    private void captureBatches() {
+        PcapHandle captureHandle = handle;
+        RawBatch batch = new RawBatch(captureHandle, batchSize);
+        try {
+            while (running) {
+                captureHandle = applyRequestedChanges(captureHandle);
+                batch.handle = captureHandle;
+                batch.count = 0;
+                try {
+                    // Returns after at most one read timeout, or as soon as the buffered frames are consumed
+                    captureHandle.dispatch(batch.frames.length, batch);
+                } catch (InterruptedException e) {
+                    // breakLoop(); the frames delivered so far are still published
+                }
+                if (batch.count > 0) {
+                    PacketQueue.putAll(batch.frames, batch.timestamps, batch.count);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PcapNativeException | NotOpenException e) {
+            System.out.println("Error during packet capture" + e);
+        } finally {
+            closeLive(captureHandle);
+        }
+    }
+
+    /**
+     * Closes the live handle when the capture thread leaves its loop, keeping
+     * its final kernel counters for {@link #getStatistics()}
+     * @param captureHandle The handle the thread was reading
+     */
+    private void closeLive(PcapHandle captureHandle) {
+        synchronized (this) {
+            if (captureHandle.isOpen()) {
+                try {
+                    lastStats = captureHandle.getStats();
+                } catch (PcapNativeException | NotOpenException e) {
+                    // The last counters read are reported
+                }
+            }
+        }
+        captureHandle.close();
+        System.out.println("PacketCaptureModel: Closed capture handle on " + getInterfaceName());
+    }
+
+    /**
+     * Collects the frames of one dispatch call.
+     */
+    private static final class RawBatch implements RawPacketListener {
+        private PcapHandle handle;
+        private final byte[][] frames;
+        private final long[] timestamps;
+        private int count;
+
+        RawBatch(PcapHandle handle, int size) {
+            this.handle = handle;
+            this.frames = new byte[size][];
+            this.timestamps = new long[size];
+        }
+
+        @Override
+        public void gotPacket(byte[] frame) {
+            frames[count] = frame;
+            // The handle exposes the header timestamp of the frame being delivered
+            timestamps[count++] = toMicros(handle.getTimestamp());
+        }
+    }
+
+    /**
+     * Replays a capture file into the packet queue on a background thread.
+     * The thread publishes nothing until a gating subscriber is attached to the
+     * ring, so a consumer that subscribes after this call still sees the whole file.
+     * The statistics are available from {@link #getLastReplayStatistics()}
+     * once the thread finishes.
+     * @param file Path of the pcap file
+     * @param bpfFilter Optional BPF filter, may be null or empty
+     * @param mode How packets are paced
+     * @param speed Speed multiplier for {@link ReplayMode#SCALED}, ignored otherwise
+     * @return The replay thread
+     * @throws PcapNativeException if the file cannot be opened
+     * @throws NotOpenException if the filter cannot be applied
+     */
+    public Thread startReplay(String file, String bpfFilter, ReplayMode mode, double speed)
+            throws PcapNativeException, NotOpenException {
+        openOffline(file, bpfFilter);
+        Thread thread = new Thread(() -> {
+            ReplayStatistics stats = replayOpenFile(file, mode, speed);
+            System.out.println("PacketCaptureModel: Replay finished - " + stats);
+        }, "PcapReplay-Thread");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Replays a capture file into the packet queue and waits until the queue
+     * has been drained by its consumer. The consumer must subscribe as a gating
+     * subscriber; nothing is published until it has.
+     * @param file Path of the pcap file
+     * @param bpfFilter Optional BPF filter, may be null or empty
+     * @param mode How packets are paced
+     * @param speed Speed multiplier for {@link ReplayMode#SCALED}, ignored otherwise
+     * @return Throughput and drain-time statistics
+     * @throws PcapNativeException if the file cannot be opened
+     * @throws NotOpenException if the filter cannot be applied
+     */
+    public ReplayStatistics replay(String file, String bpfFilter, ReplayMode mode, double speed)
+            throws PcapNativeException, NotOpenException {
+        openOffline(file, bpfFilter);
+        return replayOpenFile(file, mode, speed);
+    }
+
+    /**
+     * Stops a running capture or replay
+     */
+    public void stopCapture() {
+        running = false;
+        breakLoop();
+    }
+
+    private void breakLoop() {
+        PcapHandle current = handle;
+        if (current != null && current.isOpen()) {
+            try {
+                current.breakLoop();
+            } catch (NotOpenException e) {
+                // Already closed
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Replaces the BPF filter of a running capture or replay. The filter is
+     * installed by the capture thread before its next read.
+     * @param bpfFilter The new filter; empty to capture everything
+     * @param fallback Filter installed instead if {@code bpfFilter} does not compile
+     */
+    public void setFilter(String bpfFilter, String fallback) {
+        fallbackFilter = fallback != null ? fallback : "";
+        requestedFilter.set(bpfFilter != null ? bpfFilter : "");
+        if (activeMode == CaptureMode.LOOP) {
+            // loop() only returns when broken
+            breakLoop();
+        }
+    }
+
+    /**
+     * Changes the number of bytes captured per packet. A running live capture
+     * reopens its handle with the new length on the capture thread; the filter
+     * and counters carry over.
+     * @param snapLength Bytes to capture from the start of each frame
+     */
+    public void setSnapLength(int snapLength) {
+        if (snapLength < 1) {
+            throw new IllegalArgumentException("Snap length must be positive: " + snapLength);
+        }
+        if (!running || activeMode == null) {
+            // Not capturing live: used when the next handle is opened
+            this.snapLength = snapLength;
+            return;
+        }
+        requestedSnapLength.set(snapLength);
+        if (activeMode == CaptureMode.LOOP) {
+            breakLoop();
+        }
+    }
+
+    public int getSnapLength() {
+        return snapLength;
+    }
+
+    /**
+     * Applies pending snap length and filter changes; called by the capture thread between reads
+     * @param current The handle being read
+     * @return The handle to read from now on
+     */
+    private PcapHandle applyRequestedChanges(PcapHandle current) throws NotOpenException {
+        int requested = requestedSnapLength.getAndSet(0);
+        if (requested > 0 && requested != snapLength) {
+            current = reopen(current, requested);
+        }
+        applyRequestedFilter(current);
+        return current;
+    }
+
+    private PcapHandle reopen(PcapHandle old, int newSnapLength) {
+        PcapHandle fresh;
+        try {
+            // Open the new handle before closing the old one so no traffic is missed in between
+            fresh = networkInterface.openLive(newSnapLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS,
+                    READ_TIMEOUT_MILLIS);
+            fresh.setFilter(filter, BpfProgram.BpfCompileMode.OPTIMIZE);
+        } catch (PcapNativeException | NotOpenException e) {
+            System.out.println("PacketCaptureModel: Could not reopen " + getInterfaceName() + " - " + e.getMessage());
+            return old;
+        }
+        synchronized (this) {
+            try {
+                PcapStat stats = old.getStats();
+                closedReceived += stats.getNumPacketsReceived();
+                closedDropped += stats.getNumPacketsDropped();
+                closedDroppedByIf += stats.getNumPacketsDroppedByIf();
+            } catch (PcapNativeException | NotOpenException e) {
+                // Counters of the old handle are lost
+            }
+            handle = fresh;
+            lastStats = null;
+        }
+        old.close();
+        System.out.println("PacketCaptureModel: Reopened " + getInterfaceName() + " with snaplen " + newSnapLength
+                + " (was " + snapLength + ")");
+        snapLength = newSnapLength;
+        return fresh;
+    }
+
+    private void applyRequestedFilter(PcapHandle current) throws NotOpenException {
+        String requested = requestedFilter.getAndSet(null);
+        if (requested == null || requested.equals(filter)) {
+            return;
+        }
+        try {
+            current.setFilter(requested, BpfProgram.BpfCompileMode.OPTIMIZE);
+            filter = requested;
+            System.out.println("PacketCaptureModel: Filter on " + getInterfaceName() + " set to '" + requested + "'");
+        } catch (PcapNativeException e) {
+            System.out.println("PacketCaptureModel: Invalid filter '" + requested + "' - " + e.getMessage());
+            String fallback = fallbackFilter;
+            try {
+                current.setFilter(fallback, BpfProgram.BpfCompileMode.OPTIMIZE);
+                filter = fallback;
+            } catch (PcapNativeException ignored) {
+                // The previous filter stays installed
+            }
+        }
+    }
+
+    /** BPF filter installed on the handle. */
+    public String getFilter() {
+        return filter;
+    }
+
+    public CaptureMode getCaptureMode() {
+        return captureMode;
+    }
+
+    /**
+     * Selects how the next live capture hands packets to the ring
+     * @param captureMode The mode
+     */
+    public void setCaptureMode(CaptureMode captureMode) {
+        this.captureMode = Objects.requireNonNull(captureMode);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets how many frames {@link CaptureMode#BATCH} pulls per dispatch call
+     * @param batchSize Maximum frames per batch
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public ReplayStatistics getLastReplayStatistics() {
+        return lastReplayStatistics;
+    }
+
+    public String getInterfaceName() {
+        return PacketQueue.getName();
+    }
+
+    public PacketRing getPacketRing() {
+        return PacketQueue;
+    }
+
+    /**
+     * Reads the libpcap counters for this interface. After the handle is
+     * closed the last values read are reported.
+     * @return Kernel and ring counters
+     */
+    public synchronized CaptureStatistics getStatistics() {
+        PcapHandle current = handle;
+        if (current != null && current.isOpen()) {
+            try {
+                lastStats = current.getStats();
+            } catch (PcapNativeException | NotOpenException e) {
+                // Offline handles have no kernel statistics
+            }
+        }
+        PcapStat stats = lastStats;
+        return new CaptureStatistics(getInterfaceName(),
+                stats != null ? closedReceived + stats.getNumPacketsReceived() : -1,
+                stats != null ? closedDropped + stats.getNumPacketsDropped() : -1,
+                stats != null ? closedDroppedByIf + stats.getNumPacketsDroppedByIf() : -1,
+                PacketQueue.getPublishedCount(), PacketQueue.getDroppedCount());
+    }
+
+    private void openOffline(String file, String bpfFilter) throws PcapNativeException, NotOpenException {
+        handle = Pcaps.openOffline(file);
+        activeMode = null;
+        filter = "";
+        if (bpfFilter != null && !bpfFilter.isEmpty()) {
+            handle.setFilter(bpfFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+            filter = bpfFilter;
+        }
+        running = true;
+        System.out.println("PacketCaptureModel: Replaying " + file);
+    }
+
+    private ReplayStatistics replayOpenFile(String file, ReplayMode mode, double speed) {
+        if (mode == ReplayMode.SCALED && !(speed > 0)) {
+            throw new IllegalArgumentException("Speed multiplier must be positive: " + speed);
+        }
+        double rate = mode == ReplayMode.SCALED ? speed : 1.0;
+        PcapHandle replayHandle = handle;
+        long packets = 0;
+        long bytes = 0;
+        long firstCaptureNanos = -1;
+        long startNanos = System.nanoTime();
+        boolean completed = false;
+
+        try {
+            // A subscriber starts at the next packet published, so nothing is published before
+            // the consumer (normally detection) is attached; the ring then holds the file back
+            while (running && !PacketQueue.awaitGatingSubscriber(REPLAY_SUBSCRIBER_WAIT_NANOS)) {
+                System.out.println("PacketCaptureModel: Replay of " + file + " waiting for a gating subscriber");
+            }
+            startNanos = System.nanoTime();
+            while (running) {
+                applyRequestedFilter(replayHandle);
+                Packet packet;
+                try {
+                    packet = replayHandle.getNextPacketEx();
+                } catch (TimeoutException e) {
+                    continue;
+                } catch (EOFException e) {
+                    completed = true;
+                    break;
+                }
+
+                Timestamp timestamp = replayHandle.getTimestamp();
+                if (mode != ReplayMode.MAX_SPEED) {
+                    long captureNanos = toNanos(timestamp);
+                    if (firstCaptureNanos < 0) {
+                        firstCaptureNanos = captureNanos;
+                    }
+                    long due = startNanos + (long) ((captureNanos - firstCaptureNanos) / rate);
+                    long wait;
+                    while (running && (wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
                     }
-                });
-            } catch (PcapNativeException | InterruptedException | NotOpenException e) {
-                System.out.println( "Error during packet capture" + e);
+                }
+
+                // Detection sees the original capture time whatever the pace
+                PacketQueue.put(packet, toMicros(timestamp));
+                packets++;
+                Integer originalLength = replayHandle.getOriginalLength();
+                bytes += originalLength != null ? originalLength : packet.length();
             }
-        }).start();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PcapNativeException | NotOpenException e) {
+            System.out.println("PacketCaptureModel: Error during replay " + e);
+        } finally {
+            replayHandle.close();
+        }
+
+        long readNanos = System.nanoTime() - startNanos;
+        // The gating subscribers are done with the replayed traffic once the ring is empty
+        while (running && !PacketQueue.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(DRAIN_POLL_NANOS);
+        }
+        long drainNanos = System.nanoTime() - startNanos;
+        running = false;
+
+        ReplayStatistics stats = new ReplayStatistics(file, mode, rate, packets, bytes, readNanos, drainNanos, completed);
+        lastReplayStatistics = stats;
+        return stats;
+    }
+
+    private static long toMicros(Timestamp timestamp) {
+        return timestamp.getTime() / 1000 * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    private static long toNanos(Timestamp timestamp) {
+        return timestamp.getTime() / 1000 * 1_000_000_000L + timestamp.getNanos();
     }
 }
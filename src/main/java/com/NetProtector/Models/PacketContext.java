@@ -0,0 +1,536 @@
+package com.NetProtector.Models;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import org.pcap4j.packet.EthernetPacket;
+import org.pcap4j.packet.IpV4Packet;
+import org.pcap4j.packet.IpV6Packet;
+import org.pcap4j.packet.LinuxSllPacket;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.factory.PacketFactories;
+import org.pcap4j.packet.namednumber.DataLinkType;
+import org.pcap4j.packet.namednumber.IpNumber;
+
+import com.NetProtector.Models.Flows.FlowSnapshot;
+import com.NetProtector.Models.Flows.FlowTable;
+import com.NetProtector.Models.Reassembly.StreamChunk;
+import com.NetProtector.Models.Signatures.SignatureMatches;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+
+/**
+ * A packet decoded once for all rules. Header fields are parsed straight from the
+ * captured frame into primitives (addresses as ints, ports, TCP flags, payload
+ * offset/length into the original buffer), so rules never walk the pcap4j layer
+ * tree or copy payloads themselves. The pcap4j {@link Packet} is still available
+ * through {@link #getPacket()} for rules that have not been ported.
+ *
+ * @author Stika
+ */
+public final class PacketContext {
+
+    /** Transport protocol of the packet. */
+    public enum Protocol { TCP, UDP, ICMP, OTHER, NONE }
+
+    public static final int TCP_FIN = 0x01;
+    public static final int TCP_SYN = 0x02;
+    public static final int TCP_RST = 0x04;
+    public static final int TCP_PSH = 0x08;
+    public static final int TCP_ACK = 0x10;
+    public static final int TCP_URG = 0x20;
+
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+
+    private final byte[] data;
+    private final int length;
+    private final DataLinkType linkType;
+    private final long timestampMicros;
+    private final String interfaceName;
+    private volatile Packet packet;
+    private volatile SignatureMatches signatureMatches;
+    private volatile FlowSnapshot flow;
+    private volatile StreamChunk streamChunk;
+
+    private int ipVersion;
+    private int ipOffset;
+    private int ipHeaderLength;
+    private int ipTotalLength;
+    private int ipProtocol = -1;
+    private int ipId;
+    private int fragmentOffset;
+    private boolean moreFragments;
+    private int srcIp;
+    private int dstIp;
+
+    private Protocol protocol = Protocol.NONE;
+    private int l4Offset;
+    private int srcPort;
+    private int dstPort;
+    private int tcpFlags;
+    private int tcpSeq;
+    private int icmpType = -1;
+    private int icmpCode = -1;
+    private int payloadOffset;
+    private int payloadLength;
+
+    private PacketContext(byte[] data, int length, DataLinkType linkType, long timestampMicros,
+                          String interfaceName, Packet packet) {
+        this.data = data;
+        this.length = length;
+        this.linkType = linkType;
+        this.timestampMicros = timestampMicros;
+        this.interfaceName = interfaceName;
+        this.packet = packet;
+        decodeLinkLayer();
+    }
+
+    /**
+     * Decodes a captured frame
+     * @param data The raw frame, starting at the link layer header
+     * @param length Number of captured bytes in {@code data}
+     * @param linkType Data link type of the capture handle
+     * @param timestampMicros Capture timestamp in microseconds since the epoch
+     * @return The decoded context
+     */
+    public static PacketContext decode(byte[] data, int length, DataLinkType linkType, long timestampMicros) {
+        return decode(data, length, linkType, timestampMicros, "");
+    }
+
+    /**
+     * Decodes a frame captured on a named interface
+     * @param data The raw frame, starting at the link layer header
+     * @param length Number of captured bytes in {@code data}
+     * @param linkType Data link type of the capture handle
+     * @param timestampMicros Capture timestamp in microseconds since the epoch
+     * @param interfaceName Capture interface the frame arrived on
+     * @return The decoded context
+     */
+    public static PacketContext decode(byte[] data, int length, DataLinkType linkType, long timestampMicros,
+                                       String interfaceName) {
+        return new PacketContext(data, Math.min(length, data.length), linkType, timestampMicros, interfaceName, null);
+    }
+
+    /**
+     * Decodes a pcap4j packet, stamped with the current time
+     * @param packet The packet to decode
+     * @return The decoded context
+     */
+    public static PacketContext from(Packet packet) {
+        return from(packet, System.currentTimeMillis() * 1000L);
+    }
+
+    /**
+     * Decodes a pcap4j packet
+     * @param packet The packet to decode
+     * @param timestampMicros Capture timestamp in microseconds since the epoch
+     * @return The decoded context
+     */
+    public static PacketContext from(Packet packet, long timestampMicros) {
+        return from(packet, timestampMicros, "");
+    }
+
+    /**
+     * Decodes a pcap4j packet captured on a named interface
+     * @param packet The packet to decode
+     * @param timestampMicros Capture timestamp in microseconds since the epoch
+     * @param interfaceName Capture interface the packet arrived on
+     * @return The decoded context
+     */
+    public static PacketContext from(Packet packet, long timestampMicros, String interfaceName) {
+        byte[] raw = packet.getRawData();
+        return new PacketContext(raw, raw.length, linkTypeOf(packet), timestampMicros, interfaceName, packet);
+    }
+
+    private static DataLinkType linkTypeOf(Packet packet) {
+        if (packet instanceof EthernetPacket) {
+            return DataLinkType.EN10MB;
+        } else if (packet instanceof LinuxSllPacket) {
+            return DataLinkType.LINUX_SLL;
+        } else if (packet instanceof IpV4Packet || packet instanceof IpV6Packet) {
+            return DataLinkType.RAW;
+        }
+        return DataLinkType.NULL;
+    }
+
+    private void decodeLinkLayer() {
+        int dlt = linkType.value();
+        if (dlt == DataLinkType.EN10MB.value()) {
+            if (length < 14) {
+                return;
+            }
+            int offset = 12;
+            int etherType = readUnsignedShort(offset);
+            while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && offset + 6 <= length) {
+                offset += 4;
+                etherType = readUnsignedShort(offset);
+            }
+            decodeNetworkLayer(etherType, offset + 2);
+        } else if (dlt == DataLinkType.LINUX_SLL.value()) {
+            if (length >= 16) {
+                decodeNetworkLayer(readUnsignedShort(14), 16);
+            }
+        } else if (dlt == DataLinkType.NULL.value()) {
+            // BSD loopback: 4-byte address family in host byte order, then IP
+            if (length > 4) {
+                decodeIp(4);
+            }
+        } else {
+            decodeIp(0);
+        }
+    }
+
+    private void decodeNetworkLayer(int etherType, int offset) {
+        if (etherType == ETHERTYPE_IPV4 || etherType == ETHERTYPE_IPV6) {
+            decodeIp(offset);
+        }
+    }
+
+    private void decodeIp(int offset) {
+        if (offset >= length) {
+            return;
+        }
+        int version = (data[offset] & 0xF0) >>> 4;
+        if (version == 4) {
+            decodeIpV4(offset);
+        } else if (version == 6) {
+            decodeIpV6(offset);
+        }
+    }
+
+    private void decodeIpV4(int offset) {
+        if (offset + 20 > length) {
+            return;
+        }
+        int headerLength = (data[offset] & 0x0F) * 4;
+        if (headerLength < 20) {
+            return;
+        }
+        ipVersion = 4;
+        ipOffset = offset;
+        ipHeaderLength = headerLength;
+        ipTotalLength = readUnsignedShort(offset + 2);
+        ipId = readUnsignedShort(offset + 4);
+        int flagsAndOffset = readUnsignedShort(offset + 6);
+        moreFragments = (flagsAndOffset & 0x2000) != 0;
+        fragmentOffset = (flagsAndOffset & 0x1FFF) * 8;
+        ipProtocol = data[offset + 9] & 0xFF;
+        srcIp = readInt(offset + 12);
+        dstIp = readInt(offset + 16);
+
+        // Non-first fragments carry no transport header
+        if (fragmentOffset == 0) {
+            decodeTransport(offset + headerLength, ipPayloadEnd());
+        } else {
+            protocol = Protocol.OTHER;
+        }
+    }
+
+    private void decodeIpV6(int offset) {
+        if (offset + 40 > length) {
+            return;
+        }
+        ipVersion = 6;
+        ipOffset = offset;
+        ipHeaderLength = 40;
+        ipTotalLength = 40 + readUnsignedShort(offset + 4);
+        int nextHeader = data[offset + 6] & 0xFF;
+        int cursor = offset + 40;
+        int end = ipPayloadEnd();
+
+        // Skip the common extension headers: hop-by-hop, routing, fragment, destination options
+        while ((nextHeader == 0 || nextHeader == 43 || nextHeader == 44 || nextHeader == 60) && cursor + 8 <= end) {
+            int headerNext = data[cursor] & 0xFF;
+            if (nextHeader == 44) {
+                int fragmentField = readUnsignedShort(cursor + 2);
+                fragmentOffset = (fragmentField & 0xFFF8);
+                moreFragments = (fragmentField & 0x1) != 0;
+                ipId = readInt(cursor + 4);
+                cursor += 8;
+            } else {
+                cursor += ((data[cursor + 1] & 0xFF) + 1) * 8;
+            }
+            nextHeader = headerNext;
+        }
+        ipProtocol = nextHeader;
+        if (fragmentOffset == 0 && cursor <= end) {
+            decodeTransport(cursor, end);
+        } else {
+            protocol = Protocol.OTHER;
+        }
+    }
+
+    private void decodeTransport(int offset, int end) {
+        l4Offset = offset;
+        switch (ipProtocol) {
+            case 6: // TCP
+                if (offset + 20 <= end) {
+                    protocol = Protocol.TCP;
+                    srcPort = readUnsignedShort(offset);
+                    dstPort = readUnsignedShort(offset + 2);
+                    tcpFlags = data[offset + 13] & 0x3F;
+                    tcpSeq = readInt(offset + 4);
+                    int dataOffset = ((data[offset + 12] & 0xF0) >>> 4) * 4;
+                    setPayload(offset + Math.max(20, dataOffset), end);
+                } else {
+                    protocol = Protocol.OTHER;
+                }
+                break;
+            case 17: // UDP
+                if (offset + 8 <= end) {
+                    protocol = Protocol.UDP;
+                    srcPort = readUnsignedShort(offset);
+                    dstPort = readUnsignedShort(offset + 2);
+                    setPayload(offset + 8, end);
+                } else {
+                    protocol = Protocol.OTHER;
+                }
+                break;
+            case 1:  // ICMPv4
+            case 58: // ICMPv6
+                if (offset + 4 <= end) {
+                    protocol = Protocol.ICMP;
+                    icmpType = data[offset] & 0xFF;
+                    icmpCode = data[offset + 1] & 0xFF;
+                    setPayload(offset + 8, end);
+                } else {
+                    protocol = Protocol.OTHER;
+                }
+                break;
+            default:
+                protocol = Protocol.OTHER;
+                setPayload(offset, end);
+        }
+    }
+
+    private void setPayload(int offset, int end) {
+        if (offset < end) {
+            payloadOffset = offset;
+            payloadLength = end - offset;
+        } else {
+            payloadOffset = Math.min(offset, length);
+            payloadLength = 0;
+        }
+    }
+
+    /** End of the IP datagram within the captured bytes (trailer padding and truncation excluded). */
+    private int ipPayloadEnd() {
+        int end = ipOffset + ipTotalLength;
+        return (ipTotalLength <= 0 || end > length) ? length : end;
+    }
+
+    private int readUnsignedShort(int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private int readInt(int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private int foldIpV6(int offset) {
+        return readInt(offset) ^ readInt(offset + 4) ^ readInt(offset + 8) ^ readInt(offset + 12);
+    }
+
+    /**
+     * Gets the pcap4j packet, decoding it from the raw frame on first use
+     * @return The pcap4j packet
+     */
+    public Packet getPacket() {
+        if (packet == null) {
+            // The static factory falls back to IllegalPacket/UnknownPacket on malformed data
+            packet = PacketFactories.getFactory(Packet.class, DataLinkType.class)
+                    .newInstance(data, 0, length, linkType);
+        }
+        return packet;
+    }
+
+    /**
+     * Gets the captured frame. The array is shared with every rule and must not be modified.
+     * @return The raw frame bytes
+     */
+    public byte[] getData() { return data; }
+    public int getLength() { return length; }
+    public DataLinkType getLinkType() { return linkType; }
+    public long getTimestampMicros() { return timestampMicros; }
+    public long getTimestampMillis() { return timestampMicros / 1000L; }
+    /** Capture interface the packet arrived on, empty if unknown. */
+    public String getInterfaceName() { return interfaceName; }
+
+    public boolean isIp() { return ipVersion != 0; }
+    public boolean isIpV4() { return ipVersion == 4; }
+    public boolean isIpV6() { return ipVersion == 6; }
+    public int getIpOffset() { return ipOffset; }
+    public int getIpHeaderLength() { return ipHeaderLength; }
+    /** IP total length from the header; unaffected by snap length truncation. */
+    public int getIpTotalLength() { return ipTotalLength; }
+    public int getIpProtocol() { return ipProtocol; }
+    public int getIpId() { return ipId; }
+    public int getFragmentOffset() { return fragmentOffset; }
+    public boolean hasMoreFragments() { return moreFragments; }
+    public boolean isFragment() { return moreFragments || fragmentOffset != 0; }
+    /** IPv4 source address as a big-endian int; 0 for non-IPv4 packets. */
+    public int getSrcIp() { return srcIp; }
+    /** IPv4 destination address as a big-endian int; 0 for non-IPv4 packets. */
+    public int getDstIp() { return dstIp; }
+    /** Source address folded to an int; the address itself for IPv4. Used for hashing and table keys. */
+    public int getSrcIpKey() { return ipVersion == 6 ? foldIpV6(ipOffset + 8) : srcIp; }
+    /** Destination address folded to an int; the address itself for IPv4. Used for hashing and table keys. */
+    public int getDstIpKey() { return ipVersion == 6 ? foldIpV6(ipOffset + 24) : dstIp; }
+    public long getSrcIpUnsigned() { return srcIp & 0xFFFFFFFFL; }
+    public long getDstIpUnsigned() { return dstIp & 0xFFFFFFFFL; }
+
+    public Protocol getProtocol() { return protocol; }
+    public boolean isTcp() { return protocol == Protocol.TCP; }
+    public boolean isUdp() { return protocol == Protocol.UDP; }
+    public boolean isIcmp() { return protocol == Protocol.ICMP; }
+    public int getL4Offset() { return l4Offset; }
+    public int getSrcPort() { return srcPort; }
+    public int getDstPort() { return dstPort; }
+    public boolean hasPort(int port) { return srcPort == port || dstPort == port; }
+    public int getTcpFlags() { return tcpFlags; }
+    public boolean hasTcpFlag(int flag) { return (tcpFlags & flag) != 0; }
+    /** TCP sequence number as a raw 32-bit value; compare with wrap-around arithmetic. */
+    public int getTcpSeq() { return tcpSeq; }
+    public int getIcmpType() { return icmpType; }
+    public int getIcmpCode() { return icmpCode; }
+
+    /** Offset of the transport payload within {@link #getData()}. */
+    public int getPayloadOffset() { return payloadOffset; }
+    /** Number of captured payload bytes available from {@link #getPayloadOffset()}. */
+    public int getPayloadLength() { return payloadLength; }
+    public boolean hasPayload() { return payloadLength > 0; }
+
+    /**
+     * Gets the payload length the packet had on the wire
+     * @return Payload bytes per the IP length; larger than {@link #getPayloadLength()} if the capture was truncated
+     */
+    public int getPayloadWireLength() {
+        if (ipTotalLength <= 0 || payloadOffset == 0) {
+            return payloadLength;
+        }
+        return Math.max(payloadLength, ipOffset + ipTotalLength - payloadOffset);
+    }
+
+    /**
+     * Gets the payload signatures matched by the default {@link SignatureRegistry}.
+     * The payload is scanned once on first use and the result shared by every rule.
+     * If a stream chunk is attached, its matches are used instead: they were found
+     * by resuming the stream's automaton state, so they include patterns split
+     * across segments and skip retransmitted bytes.
+     * @return Matched pattern ids; empty if there is no payload
+     */
+    public SignatureMatches getSignatureMatches() {
+        SignatureMatches matches = signatureMatches;
+        if (matches == null) {
+            StreamChunk chunk = streamChunk;
+            if (chunk != null) {
+                matches = chunk.getMatches();
+            } else {
+                matches = payloadLength > 0
+                        ? SignatureRegistry.getDefault().match(data, payloadOffset, payloadLength)
+                        : SignatureMatches.EMPTY;
+            }
+            signatureMatches = matches;
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the reassembled stream bytes this segment contributes
+     * @return The chunk, or null if the packet was not passed through stream reassembly
+     */
+    public StreamChunk getStreamChunk() {
+        return streamChunk;
+    }
+
+    /**
+     * Attaches the packet's stream chunk. Called once by the detection engine before any rule runs.
+     * @param chunk The chunk returned by stream reassembly
+     */
+    public void setStreamChunk(StreamChunk chunk) {
+        this.streamChunk = chunk;
+    }
+
+    /**
+     * Gets the state of the packet's connection, as tracked by the detection engine
+     * @return The flow counters including this packet, or null if the packet was not tracked
+     */
+    public FlowSnapshot getFlow() {
+        return flow;
+    }
+
+    /**
+     * Attaches the packet's flow state. Called once by the detection engine before any rule runs.
+     * @param flow The snapshot returned by {@link FlowTable#track(PacketContext, long)}
+     */
+    public void setFlow(FlowSnapshot flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * Copies the payload into a string. Allocates; prefer the offset accessors on hot paths.
+     * @return Payload decoded as UTF-8
+     */
+    public String getPayloadString() {
+        return new String(data, payloadOffset, payloadLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the source address as text
+     * @return Source IP address or "Unknown"
+     */
+    public String getSrcAddress() {
+        return formatAddress(true);
+    }
+
+    /**
+     * Gets the destination address as text
+     * @return Destination IP address or "Unknown"
+     */
+    public String getDstAddress() {
+        return formatAddress(false);
+    }
+
+    private String formatAddress(boolean source) {
+        if (ipVersion == 4) {
+            return formatIpV4(source ? srcIp : dstIp);
+        } else if (ipVersion == 6) {
+            byte[] address = new byte[16];
+            System.arraycopy(data, ipOffset + (source ? 8 : 24), address, 0, 16);
+            try {
+                return InetAddress.getByAddress(address).getHostAddress();
+            } catch (UnknownHostException e) {
+                return "Unknown";
+            }
+        }
+        return "Unknown";
+    }
+
+    /**
+     * Gets the protocol name used in alerts
+     * @return "TCP", "UDP", the IP protocol name, or "Unknown"
+     */
+    public String getProtocolName() {
+        if (protocol == Protocol.TCP) {
+            return "TCP";
+        } else if (protocol == Protocol.UDP) {
+            return "UDP";
+        } else if (ipProtocol >= 0) {
+            return IpNumber.getInstance((byte) ipProtocol).name();
+        }
+        return "Unknown";
+    }
+
+    /**
+     * Formats an int IPv4 address as a dotted quad
+     * @param ip Address as a big-endian int
+     * @return Dotted-quad string
+     */
+    public static String formatIpV4(int ip) {
+        return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+}
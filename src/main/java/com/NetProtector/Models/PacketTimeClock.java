@@ -0,0 +1,32 @@
+package com.NetProtector.Models;
+
+/**
+ * {@link DetectionClock} driven by the capture timestamps of the packets. Its
+ * current time is the newest timestamp seen so far, or the system time before
+ * the first packet.
+ */
+public final class PacketTimeClock implements DetectionClock {
+
+    private volatile long latestMillis = Long.MIN_VALUE;
+
+    @Override
+    public long currentTimeMillis(PacketContext ctx) {
+        long millis = ctx.getTimestampMillis();
+        // Written at most once per millisecond of capture time; a lost race only delays it by one packet
+        if (millis > latestMillis) {
+            latestMillis = millis;
+        }
+        return millis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        long millis = latestMillis;
+        return millis == Long.MIN_VALUE ? System.currentTimeMillis() : millis;
+    }
+
+    @Override
+    public String toString() {
+        return "packet time";
+    }
+}
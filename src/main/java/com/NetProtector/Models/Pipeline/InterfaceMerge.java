@@ -0,0 +1,193 @@
+package com.NetProtector.Models.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * Merges the subscriptions to several capture rings into one stream for a
+ * single consumer thread. Inputs are served round-robin, at most
+ * {@code quantum} packets from one input before moving on, so a busy port
+ * cannot starve a quiet one; its own ring fills and its overload policy applies.
+ * Each packet is decoded into a {@link PacketContext} tagged with its capture
+ * timestamp and the name of the ring, i.e. the interface it arrived on.
+ */
+public class InterfaceMerge implements PacketSource, AutoCloseable {
+
+    public static final int DEFAULT_QUANTUM = 64;
+
+    private final RingSubscriber[] inputs;
+    private final int quantum;
+    private int current;
+    private int servedFromCurrent;
+
+    /**
+     * Creates a merge
+     * @param inputs Subscriptions to merge, one per ring
+     * @param quantum Maximum consecutive packets taken from one input
+     */
+    public InterfaceMerge(List<RingSubscriber> inputs, int quantum) {
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+        this.inputs = inputs.toArray(new RingSubscriber[0]);
+        this.quantum = Math.max(1, quantum);
+    }
+
+    /**
+     * Subscribes to every ring and merges the subscriptions
+     * @param rings Rings to read
+     * @param name Subscriber name used on each ring
+     * @param gating true if the rings must not overtake this consumer
+     * @return The merge
+     */
+    public static InterfaceMerge subscribe(List<PacketRing> rings, String name, boolean gating) {
+        List<RingSubscriber> subscribers = new ArrayList<>(rings.size());
+        for (PacketRing ring : rings) {
+            subscribers.add(ring.subscribe(name, gating));
+        }
+        return new InterfaceMerge(subscribers, DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Gets the next packet without waiting
+     * @return The packet, or null if every input is empty
+     */
+    @Override
+    public PacketContext poll() {
+        for (int tried = 0; tried <= inputs.length; tried++) {
+            if (servedFromCurrent >= quantum) {
+                advance();
+            }
+            PacketContext ctx = inputs[current].poll();
+            if (ctx != null) {
+                servedFromCurrent++;
+                return ctx;
+            }
+            advance();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the next packet, waiting until one arrives
+     * @return The packet
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public PacketContext take() throws InterruptedException {
+        int spins = 0;
+        while (true) {
+            PacketContext ctx = poll();
+            if (ctx != null) {
+                return ctx;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < PacketRing.SPIN_TRIES) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            Thread self = Thread.currentThread();
+            for (RingSubscriber input : inputs) {
+                input.waiter.set(self);
+            }
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, PacketRing.PARK_NANOS);
+            }
+            for (RingSubscriber input : inputs) {
+                input.waiter.lazySet(null);
+            }
+        }
+    }
+
+    private void advance() {
+        current = current + 1 == inputs.length ? 0 : current + 1;
+        servedFromCurrent = 0;
+    }
+
+    public boolean isEmpty() {
+        for (RingSubscriber input : inputs) {
+            if (input.getLag() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the backlog over all inputs
+     * @return Packets published but not yet read
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (RingSubscriber input : inputs) {
+            size += input.size();
+        }
+        return size;
+    }
+
+    public List<RingSubscriber> getInputs() {
+        return Collections.unmodifiableList(List.of(inputs));
+    }
+
+    /**
+     * Lets non-gating inputs jump ahead when they fall too far behind
+     * @param maxLag Largest acceptable lag per input, or 0 for no limit
+     */
+    public void setMaxLag(long maxLag) {
+        for (RingSubscriber input : inputs) {
+            input.setMaxLag(maxLag);
+        }
+    }
+
+    /**
+     * Gets how far detection has fallen behind capture
+     * @return Largest input lag as a fraction of its ring capacity, between 0 and 1
+     */
+    @Override
+    public double getFill() {
+        double fill = 0.0;
+        for (RingSubscriber input : inputs) {
+            fill = Math.max(fill, input.getFill());
+        }
+        return fill;
+    }
+
+    /** Packets skipped across all inputs. */
+    public long getSkippedCount() {
+        long skipped = 0;
+        for (RingSubscriber input : inputs) {
+            skipped += input.getSkippedCount();
+        }
+        return skipped;
+    }
+
+    /**
+     * Closes every subscription
+     */
+    @Override
+    public void close() {
+        for (RingSubscriber input : inputs) {
+            input.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (RingSubscriber input : inputs) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(input.getRing().getName()).append(' ').append(input);
+        }
+        return sb.toString();
+    }
+}
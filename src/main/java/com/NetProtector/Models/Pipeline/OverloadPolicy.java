@@ -0,0 +1,16 @@
+package com.NetProtector.Models.Pipeline;
+
+/**
+ * What a {@link PacketRing} does with a new packet when its consumer has
+ * fallen a full ring behind.
+ */
+public enum OverloadPolicy {
+    /** Wait for the consumer; back-pressure reaches the kernel capture buffer. */
+    BLOCK,
+    /** Discard the incoming packet. */
+    DROP_NEWEST,
+    /** Overwrite the oldest unread packet; the consumer skips what it lost. */
+    DROP_OLDEST,
+    /** Once the ring is half full keep only every Nth packet, drop the rest. */
+    SAMPLE
+}
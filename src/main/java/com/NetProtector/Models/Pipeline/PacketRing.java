@@ -0,0 +1,494 @@
+package com.NetProtector.Models.Pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * Bounded, preallocated broadcast ring between the capture loop and its
+ * consumers. Slots are claimed by sequence number, so publishing a packet
+ * allocates nothing and the ring never holds more than its capacity.
+ *
+ * Every consumer {@link #subscribe subscribes} and reads through its own
+ * {@link RingSubscriber} cursor, so each one sees every packet instead of
+ * competing for them. Gating subscribers hold the producer back: when the
+ * slowest of them is a full ring behind, the {@link OverloadPolicy} decides
+ * what happens to the next packet. Non-gating subscribers never slow the
+ * producer down and skip ahead when they are overtaken.
+ *
+ * The ring has a single producer: {@link #put} and {@link #offer} must only be
+ * called from one thread at a time. Each slot carries the sequence it was
+ * written for, which lets a subscriber detect that a slot was overwritten
+ * while it was reading it.
+ *
+ * A slot holds either a decoded pcap4j {@link Packet} or a raw frame published
+ * with {@link #putAll}, together with its capture timestamp. Raw frames are
+ * only decoded by the subscriber that reads them, so the capture thread never
+ * builds a pcap4j packet.
+ *
+ * @author Stika
+ */
+public class PacketRing {
+
+    public static final int DEFAULT_CAPACITY = 65536;
+    public static final int DEFAULT_SAMPLE_INTERVAL = 8;
+
+    /** Busy-waiting only helps when the other side runs on another core. */
+    static final int SPIN_TRIES = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    static final long PARK_NANOS = 1_000_000L;
+    private static final long WRITING = -1;
+    private static final RingSubscriber[] NO_SUBSCRIBERS = new RingSubscriber[0];
+
+    private final String name;
+    private final int capacity;
+    private final int mask;
+    /** A {@link Packet} or a raw frame ({@code byte[]}). */
+    private final AtomicReferenceArray<Object> slots;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray sequences;
+    private volatile DataLinkType linkType = DataLinkType.EN10MB;
+
+    private volatile OverloadPolicy policy;
+    private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    // Producer side; nextSequence, gatingCache and sampleCounter are only touched by the producer
+    private long nextSequence;
+    private long gatingCache;
+    private long sampleCounter;
+    private final AtomicLong published = new AtomicLong(-1);
+    private final AtomicReference<Thread> producerWaiter = new AtomicReference<>();
+
+    // Copy-on-write, replaced under the ring's lock
+    private volatile RingSubscriber[] subscribers = NO_SUBSCRIBERS;
+    private volatile RingSubscriber[] gating = NO_SUBSCRIBERS;
+
+    private final LongAdder droppedNewest = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    /**
+     * Creates a ring
+     * @param name Name of the ring, usually the capture interface it is fed from
+     * @param capacity Number of slots; rounded up to a power of two
+     * @param policy What to do when the slowest gating subscriber is a full ring behind
+     */
+    public PacketRing(String name, int capacity, OverloadPolicy policy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ring capacity must be at least 2: " + capacity);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.timestamps = new AtomicLongArray(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, WRITING);
+        }
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    public PacketRing(int capacity, OverloadPolicy policy) {
+        this("ring", capacity, policy);
+    }
+
+    public PacketRing() {
+        this(DEFAULT_CAPACITY, OverloadPolicy.BLOCK);
+    }
+
+    // Subscriptions
+
+    /**
+     * Attaches a new consumer. It starts with the next packet published.
+     * @param name Name used in statistics
+     * @param gating true if the producer must not overtake this subscriber
+     * @return The subscriber's read cursor
+     */
+    public synchronized RingSubscriber subscribe(String name, boolean gating) {
+        RingSubscriber subscriber = new RingSubscriber(this, name, gating, published.get() + 1);
+        subscribers = append(subscribers, subscriber);
+        if (gating) {
+            this.gating = append(this.gating, subscriber);
+        }
+        System.out.println("PacketRing: " + name + " subscribed to " + this.name + (gating ? " (gating)" : ""));
+        // A producer may be waiting for its first gating subscriber
+        wake(producerWaiter);
+        return subscriber;
+    }
+
+    /**
+     * Waits until a gating subscriber is attached. A producer that must not lose
+     * packets calls this before publishing, since a subscriber only sees what is
+     * published after it subscribes.
+     * @param timeoutNanos Maximum time to wait
+     * @return true if a gating subscriber is attached
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitGatingSubscriber(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (gating.length == 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            producerWaiter.set(Thread.currentThread());
+            if (gating.length == 0) {
+                LockSupport.parkNanos(this, Math.min(remaining, PARK_NANOS));
+            }
+            producerWaiter.lazySet(null);
+        }
+        return true;
+    }
+
+    /**
+     * Detaches a consumer; called by {@link RingSubscriber#close()}
+     * @param subscriber The subscriber to remove
+     */
+    synchronized void unsubscribe(RingSubscriber subscriber) {
+        subscribers = remove(subscribers, subscriber);
+        gating = remove(gating, subscriber);
+        // A blocked producer may have been waiting on this subscriber
+        wake(producerWaiter);
+    }
+
+    /**
+     * Gets the current subscribers
+     * @return Snapshot of the attached subscribers
+     */
+    public List<RingSubscriber> getSubscribers() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(subscribers)));
+    }
+
+    private static RingSubscriber[] append(RingSubscriber[] array, RingSubscriber subscriber) {
+        RingSubscriber[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = subscriber;
+        return result;
+    }
+
+    private static RingSubscriber[] remove(RingSubscriber[] array, RingSubscriber subscriber) {
+        int n = 0;
+        RingSubscriber[] result = new RingSubscriber[array.length];
+        for (RingSubscriber s : array) {
+            if (s != subscriber) {
+                result[n++] = s;
+            }
+        }
+        return n == 0 ? NO_SUBSCRIBERS : Arrays.copyOf(result, n);
+    }
+
+    // Producer
+
+    /**
+     * Publishes a packet stamped with the current time, waiting for space under {@link OverloadPolicy#BLOCK}
+     * @param packet The packet
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(Packet packet) throws InterruptedException {
+        put(packet, System.currentTimeMillis() * 1000L);
+    }
+
+    /**
+     * Publishes a packet, waiting for space under {@link OverloadPolicy#BLOCK}
+     * @param packet The packet
+     * @param timestampMicros Capture timestamp in microseconds since the epoch
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(Packet packet, long timestampMicros) throws InterruptedException {
+        publish(Objects.requireNonNull(packet), timestampMicros, -1);
+        flush();
+    }
+
+    /**
+     * Publishes a packet without waiting
+     * @param packet The packet
+     * @return false if the packet was dropped or the ring was full
+     */
+    public boolean offer(Packet packet) {
+        try {
+            return offer(packet, 0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Publishes a packet, waiting up to a timeout under {@link OverloadPolicy#BLOCK}
+     * @param packet The packet
+     * @param timeout How long to wait
+     * @param unit Unit of the timeout
+     * @return false if the packet was not published
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(Packet packet, long timeout, TimeUnit unit) throws InterruptedException {
+        boolean published = publish(Objects.requireNonNull(packet), System.currentTimeMillis() * 1000L,
+                Math.max(0, unit.toNanos(timeout)));
+        flush();
+        return published;
+    }
+
+    /**
+     * Publishes a batch of raw frames, applying the overload policy to each
+     * one. Subscribers are released once for the whole batch rather than once
+     * per frame. The frames are decoded with the ring's {@link #getLinkType link type}
+     * by whichever subscriber reads them.
+     * @param frames Raw frames, starting at the link layer header; the ring keeps the arrays
+     * @param timestampsMicros Capture timestamp of each frame in microseconds since the epoch
+     * @param count Number of frames to publish from the start of the arrays
+     * @return Number of frames published
+     * @throws InterruptedException if interrupted while waiting under {@link OverloadPolicy#BLOCK}
+     */
+    public int putAll(byte[][] frames, long[] timestampsMicros, int count) throws InterruptedException {
+        int accepted = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                if (publish(Objects.requireNonNull(frames[i]), timestampsMicros[i], -1)) {
+                    accepted++;
+                }
+            }
+        } finally {
+            flush();
+        }
+        return accepted;
+    }
+
+    /**
+     * Writes a slot according to the current policy; subscribers only see it after {@link #flush()}
+     * @param payload The packet or raw frame
+     * @param timestampMicros Capture timestamp of the payload
+     * @param timeoutNanos How long BLOCK may wait; negative waits forever
+     * @return false if the payload was not written
+     */
+    private boolean publish(Object payload, long timestampMicros, long timeoutNanos) throws InterruptedException {
+        long sequence = nextSequence;
+        OverloadPolicy current = policy;
+        if (current != OverloadPolicy.DROP_OLDEST) {
+            int threshold = current == OverloadPolicy.SAMPLE ? capacity >> 1 : capacity;
+            // The cached position of the slowest subscriber is only refreshed when it looks too close
+            if (sequence - gatingCache >= threshold) {
+                gatingCache = minimumGatingSequence(sequence);
+            }
+            long used = sequence - gatingCache;
+            if (current == OverloadPolicy.SAMPLE && used >= threshold
+                    && ++sampleCounter % sampleInterval != 0) {
+                sampledOut.increment();
+                return false;
+            }
+            if (used >= capacity) {
+                if (current != OverloadPolicy.BLOCK) {
+                    droppedNewest.increment();
+                    return false;
+                }
+                // Subscribers cannot make room for slots they have not been shown yet
+                flush();
+                if (!awaitSpace(sequence, timeoutNanos)) {
+                    return false;
+                }
+            }
+        }
+
+        int index = (int) sequence & mask;
+        // Mark the slot first so a reader of the previous lap sees it change
+        sequences.setRelease(index, WRITING);
+        slots.setRelease(index, payload);
+        timestamps.setRelease(index, timestampMicros);
+        sequences.setRelease(index, sequence);
+        nextSequence = sequence + 1;
+        return true;
+    }
+
+    /**
+     * Makes every written slot visible and wakes the subscribers
+     */
+    private void flush() {
+        long last = nextSequence - 1;
+        if (published.get() != last) {
+            published.set(last);
+            for (RingSubscriber subscriber : subscribers) {
+                wake(subscriber.waiter);
+            }
+        }
+    }
+
+    private long minimumGatingSequence(long fallback) {
+        long minimum = fallback;
+        for (RingSubscriber subscriber : gating) {
+            minimum = Math.min(minimum, subscriber.getSequence());
+        }
+        return minimum;
+    }
+
+    private boolean awaitSpace(long sequence, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int spins = 0;
+        while (sequence - (gatingCache = minimumGatingSequence(sequence)) >= capacity) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = timeoutNanos < 0 ? PARK_NANOS : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (spins < SPIN_TRIES) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            producerWaiter.set(Thread.currentThread());
+            if (sequence - minimumGatingSequence(sequence) >= capacity) {
+                LockSupport.parkNanos(this, Math.min(remaining, PARK_NANOS));
+            }
+            producerWaiter.lazySet(null);
+        }
+        return true;
+    }
+
+    /**
+     * Called by a gating subscriber after it consumed a packet. A blocked
+     * producer resumes only once a quarter of the ring is free, rather than
+     * trading a context switch for every slot.
+     */
+    void onGatingProgress(long sequence) {
+        if (producerWaiter.get() != null && published.get() + 1 - sequence <= capacity - (capacity >> 2)) {
+            wake(producerWaiter);
+        }
+    }
+
+    /** Unparks a waiting thread once, however many packets arrive before it runs. */
+    static void wake(AtomicReference<Thread> waiter) {
+        if (waiter.get() != null) {
+            Thread thread = waiter.getAndSet(null);
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    // Slot access for subscribers
+
+    long getPublishedSequence() {
+        return published.get();
+    }
+
+    /**
+     * Reads a slot
+     * @param sequence The sequence to read
+     * @param reader Subscriber that receives the slot's timestamp
+     * @return The packet or raw frame, or null if the slot no longer holds that sequence
+     */
+    Object read(long sequence, RingSubscriber reader) {
+        int index = (int) sequence & mask;
+        long before = sequences.getAcquire(index);
+        Object payload = slots.getAcquire(index);
+        long timestampMicros = timestamps.getAcquire(index);
+        long after = sequences.getAcquire(index);
+        if (before != sequence || after != sequence) {
+            return null;
+        }
+        reader.timestampMicros = timestampMicros;
+        return payload;
+    }
+
+    // Configuration and statistics
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public DataLinkType getLinkType() {
+        return linkType;
+    }
+
+    /**
+     * Sets the data link type raw frames are decoded with
+     * @param linkType Link type of the capture handle feeding this ring
+     */
+    public void setLinkType(DataLinkType linkType) {
+        this.linkType = Objects.requireNonNull(linkType);
+    }
+
+    public OverloadPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Changes the overload policy; takes effect with the next packet
+     * @param policy The new policy
+     */
+    public void setPolicy(OverloadPolicy policy) {
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Sets how many packets SAMPLE lets through while the ring is over half full
+     * @param sampleInterval Keep one packet in this many
+     */
+    public void setSampleInterval(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be at least 1: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Gets the backlog of the slowest gating subscriber
+     * @return Packets published but not yet consumed by every gating subscriber
+     */
+    public int size() {
+        long head = published.get() + 1;
+        long lag = 0;
+        for (RingSubscriber subscriber : gating) {
+            lag = Math.max(lag, head - subscriber.getSequence());
+        }
+        return (int) Math.min(capacity, lag);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Packets written into the ring since it was created. */
+    public long getPublishedCount() {
+        return published.get() + 1;
+    }
+
+    /** Packets the overload policy kept out of the ring. */
+    public long getDroppedCount() {
+        return droppedNewest.sum() + sampledOut.sum();
+    }
+
+    public long getDroppedNewestCount() { return droppedNewest.sum(); }
+    public long getSampledOutCount() { return sampledOut.sum(); }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%s: %d/%d queued, %d published, %d dropped (%s)",
+                name, size(), capacity, getPublishedCount(), getDroppedCount(), policy));
+        for (RingSubscriber subscriber : subscribers) {
+            sb.append("; ").append(subscriber);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.NetProtector.Models.Pipeline;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * Consumer side of a packet stream, as read by the detection engine. Packets
+ * are only ever taken out; publishing goes through the {@link PacketRing}.
+ * A source must be read by a single thread.
+ */
+public interface PacketSource {
+
+    /**
+     * Gets the next packet, waiting until one arrives
+     * @return The packet
+     * @throws InterruptedException if interrupted while waiting
+     */
+    PacketContext take() throws InterruptedException;
+
+    /**
+     * Gets the next packet without waiting
+     * @return The packet, or null if none is available
+     */
+    PacketContext poll();
+
+    /**
+     * Gets the backlog of this source
+     * @return Packets published but not yet read
+     */
+    int size();
+
+    /**
+     * Gets how far the reader has fallen behind
+     * @return Backlog as a fraction of what the source can hold, between 0 and 1
+     */
+    double getFill();
+}
@@ -0,0 +1,231 @@
+package com.NetProtector.Models.Pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pcap4j.packet.Packet;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * One consumer's read cursor on a {@link PacketRing}, read as a
+ * {@link PacketSource}. Reading never removes anything from the ring; other
+ * subscribers still see every packet. A subscriber must be read by a single
+ * thread.
+ *
+ * A subscriber that falls further behind than the ring can hold (possible for
+ * non-gating subscribers, or for any subscriber under
+ * {@link OverloadPolicy#DROP_OLDEST}) skips to the oldest packet still in the
+ * ring. A non-gating subscriber can also be given a maximum lag, after which
+ * it jumps straight to the newest packet.
+ *
+ * Raw frames published in batches are only parsed up to their headers; the
+ * full decode is left to whoever calls {@link PacketContext#getPacket()}.
+ */
+public class RingSubscriber implements PacketSource, AutoCloseable {
+
+    private final PacketRing ring;
+    private final String name;
+    private final boolean gating;
+    private final AtomicLong sequence;
+    final AtomicReference<Thread> waiter = new AtomicReference<>();
+
+    private volatile long maxLag;
+    private volatile boolean closed;
+    /** Timestamp of the slot last read, set by {@link PacketRing#read}. */
+    long timestampMicros;
+
+    // Written by the consumer thread only
+    private volatile long consumed;
+    private volatile long skipped;
+    private volatile long peakLag;
+
+    RingSubscriber(PacketRing ring, String name, boolean gating, long startSequence) {
+        this.ring = ring;
+        this.name = name;
+        this.gating = gating;
+        this.sequence = new AtomicLong(startSequence);
+    }
+
+    /**
+     * Gets the next packet without waiting, parsing only its headers
+     * @return The packet tagged with its capture timestamp and the ring's name, or null if none is available
+     */
+    @Override
+    public PacketContext poll() {
+        Object payload = next();
+        if (payload == null) {
+            return null;
+        }
+        if (payload instanceof byte[]) {
+            byte[] frame = (byte[]) payload;
+            return PacketContext.decode(frame, frame.length, ring.getLinkType(), timestampMicros, ring.getName());
+        }
+        return PacketContext.from((Packet) payload, timestampMicros, ring.getName());
+    }
+
+    /** Capture timestamp of the packet last read, in microseconds since the epoch. */
+    public long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    private Object next() {
+        long head = ring.getPublishedSequence();
+        while (true) {
+            long next = sequence.get();
+            if (next > head) {
+                return null;
+            }
+            long lag = head - next + 1;
+            if (lag > peakLag) {
+                peakLag = lag;
+            }
+            long limit = maxLag;
+            if (limit > 0 && lag > limit) {
+                skipTo(next, head);
+                continue;
+            }
+            Object payload = ring.read(next, this);
+            if (payload == null) {
+                // Overwritten by the producer: continue with the oldest packet still in the ring
+                head = ring.getPublishedSequence();
+                skipTo(next, Math.max(next + 1, head - ring.getCapacity() + 1));
+                continue;
+            }
+            sequence.setRelease(next + 1);
+            consumed++;
+            if (gating) {
+                ring.onGatingProgress(next + 1);
+            }
+            return payload;
+        }
+    }
+
+    private void skipTo(long from, long to) {
+        skipped += to - from;
+        sequence.setRelease(to);
+    }
+
+    @Override
+    public PacketContext take() throws InterruptedException {
+        return poll(-1);
+    }
+
+    /**
+     * Gets the next packet, waiting up to a timeout
+     * @param timeout How long to wait
+     * @param unit Unit of the timeout
+     * @return The packet, or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PacketContext poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return poll(Math.max(0, unit.toNanos(timeout)));
+    }
+
+    private PacketContext poll(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int spins = 0;
+        while (true) {
+            PacketContext ctx = poll();
+            if (ctx != null) {
+                return ctx;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = timeoutNanos < 0 ? PacketRing.PARK_NANOS : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (spins < PacketRing.SPIN_TRIES) {
+                spins++;
+                Thread.onSpinWait();
+                continue;
+            }
+            waiter.set(Thread.currentThread());
+            if (sequence.get() > ring.getPublishedSequence()) {
+                LockSupport.parkNanos(this, Math.min(remaining, PacketRing.PARK_NANOS));
+            }
+            waiter.lazySet(null);
+        }
+    }
+
+    /**
+     * Gets the backlog of this subscriber
+     * @return Packets published but not yet read, at most the ring capacity
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(ring.getCapacity(), getLag());
+    }
+
+    @Override
+    public double getFill() {
+        return (double) size() / ring.getCapacity();
+    }
+
+    /**
+     * Detaches from the ring; a gating subscriber stops holding the producer back
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            ring.unsubscribe(this);
+            System.out.println("PacketRing: " + name + " unsubscribed from " + ring.getName());
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public PacketRing getRing() {
+        return ring;
+    }
+
+    long getSequence() {
+        return sequence.get();
+    }
+
+    public String getName() { return name; }
+    public boolean isGating() { return gating; }
+
+    /**
+     * Gets how far behind the producer this subscriber is
+     * @return Packets published but not yet read or skipped
+     */
+    public long getLag() {
+        return Math.max(0, ring.getPublishedSequence() + 1 - sequence.get());
+    }
+
+    /** Largest lag seen when reading. */
+    public long getPeakLag() { return peakLag; }
+
+    /** Packets read. */
+    public long getConsumedCount() { return consumed; }
+
+    /** Packets this subscriber never saw because it was overtaken or over its maximum lag. */
+    public long getSkippedCount() { return skipped; }
+
+    public long getMaxLag() { return maxLag; }
+
+    /**
+     * Lets a non-gating subscriber jump to the newest packet when it falls too far behind
+     * @param maxLag Largest acceptable lag, or 0 for no limit
+     */
+    public void setMaxLag(long maxLag) {
+        if (gating && maxLag > 0) {
+            throw new IllegalArgumentException("Gating subscriber " + name + " cannot skip packets");
+        }
+        this.maxLag = Math.max(0, maxLag);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: lag %d (peak %d), %d read, %d skipped",
+                name, getLag(), peakLag, consumed, skipped);
+    }
+}
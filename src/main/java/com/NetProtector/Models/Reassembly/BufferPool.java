@@ -0,0 +1,73 @@
+package com.NetProtector.Models.Reassembly;
+
+/**
+ * Bounded pool of equally sized {@link ReassemblyBuffer}s. Buffers are created on
+ * first demand up to a fixed count and recycled afterwards, so the memory used by
+ * reassembly has a hard ceiling and steady-state operation allocates nothing.
+ * When every buffer is in use {@link #acquire()} returns null and the caller
+ * degrades instead of waiting.
+ */
+public final class BufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final ReassemblyBuffer[] free;
+    private int freeCount;
+    private int created;
+    private long refused;
+
+    /**
+     * Creates a pool
+     * @param bufferSize Bytes per buffer
+     * @param maxBuffers Hard cap on buffers handed out at the same time
+     */
+    public BufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize <= 0 || maxBuffers <= 0) {
+            throw new IllegalArgumentException("Buffer size and count must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.free = new ReassemblyBuffer[maxBuffers];
+    }
+
+    /**
+     * Takes an empty buffer
+     * @return The buffer, or null if the pool is exhausted
+     */
+    public synchronized ReassemblyBuffer acquire() {
+        if (freeCount > 0) {
+            ReassemblyBuffer buffer = free[--freeCount];
+            free[freeCount] = null;
+            return buffer;
+        }
+        if (created < maxBuffers) {
+            created++;
+            return new ReassemblyBuffer(bufferSize);
+        }
+        refused++;
+        return null;
+    }
+
+    /**
+     * Returns a buffer to the pool
+     * @param buffer A buffer taken from this pool; ignored if null
+     */
+    public synchronized void release(ReassemblyBuffer buffer) {
+        if (buffer != null && freeCount < free.length) {
+            buffer.clear();
+            free[freeCount++] = buffer;
+        }
+    }
+
+    public int getBufferSize() { return bufferSize; }
+    public int getMaxBuffers() { return maxBuffers; }
+    public synchronized int getInUse() { return created - freeCount; }
+    /** Number of times a buffer was requested while all were in use. */
+    public synchronized long getRefusedCount() { return refused; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d buffers of %d KB in use, %d refused",
+                created - freeCount, maxBuffers, bufferSize / 1024, refused);
+    }
+}
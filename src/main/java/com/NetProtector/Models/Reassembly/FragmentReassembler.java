@@ -0,0 +1,281 @@
+package com.NetProtector.Models.Reassembly;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * Reassembles fragmented IPv4 datagrams so that payload rules see the whole
+ * transport segment instead of pieces of it.
+ *
+ * Each datagram under reassembly holds a pooled {@link ReassemblyBuffer} sized
+ * for the largest possible IPv4 payload; the number of datagrams in flight is
+ * bounded by the pool. Overlapping fragments keep the bytes that arrived first.
+ * Datagrams are dropped when they time out, when a fragment would grow them past
+ * the IPv4 maximum, or to make room for a new datagram when the pool is empty.
+ *
+ * Fragments are held back from detection while their datagram is incomplete,
+ * so each packet is evaluated exactly once: a completed datagram replaces its
+ * fragments and is decoded into a {@link PacketContext} with the raw IP link
+ * type, while the fragments of a datagram that is dropped or times out are
+ * released to be evaluated on their own. Fragments that cannot be reassembled
+ * (IPv6, truncated) pass straight through.
+ */
+public final class FragmentReassembler {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    /** Buffer size needed for any IPv4 payload. */
+    public static final int MAX_DATAGRAM_PAYLOAD = 65535 - 20;
+
+    private static final int MAX_IP_HEADER = 60;
+    /** Fragments held per datagram; a datagram split further is dropped and its fragments released. */
+    private static final int MAX_HELD_FRAGMENTS = 64;
+
+    private final BufferPool pool;
+    private final long timeoutMillis;
+    private final int slots;
+    private final int[] sources;
+    private final int[] destinations;
+    private final int[] ids;
+    private final int[] protocols;
+    private final long[] firstSeen;
+    /** Payload length once the last fragment arrived, -1 before. */
+    private final int[] payloadLengths;
+    private final byte[] headers;
+    private final int[] headerLengths;
+    private final ReassemblyBuffer[] buffers;
+    private final PacketContext[] held;
+    private final int[] heldCounts;
+    private int active;
+    private long nextDeadline = Long.MAX_VALUE;
+
+    private long fragments;
+    private long completed;
+    private long expired;
+    private long dropped;
+    private long truncated;
+    private long released;
+
+    /**
+     * Creates a reassembler
+     * @param pool Buffers of at least {@link #MAX_DATAGRAM_PAYLOAD} bytes; its size caps the datagrams in flight
+     * @param timeoutMillis Time after the first fragment at which an incomplete datagram is dropped
+     */
+    public FragmentReassembler(BufferPool pool, long timeoutMillis) {
+        if (pool.getBufferSize() < MAX_DATAGRAM_PAYLOAD || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Buffers must hold a full datagram and the timeout must be positive");
+        }
+        this.pool = pool;
+        this.timeoutMillis = timeoutMillis;
+        this.slots = pool.getMaxBuffers();
+        this.sources = new int[slots];
+        this.destinations = new int[slots];
+        this.ids = new int[slots];
+        this.protocols = new int[slots];
+        this.firstSeen = new long[slots];
+        this.payloadLengths = new int[slots];
+        this.headers = new byte[slots * MAX_IP_HEADER];
+        this.headerLengths = new int[slots];
+        this.buffers = new ReassemblyBuffer[slots];
+        this.held = new PacketContext[slots * MAX_HELD_FRAGMENTS];
+        this.heldCounts = new int[slots];
+    }
+
+    /**
+     * Accounts a packet, holding it back if it is a fragment of an incomplete datagram
+     * @param ctx The decoded packet
+     * @param nowMillis Current time, normally the packet's capture time
+     * @param releasedFragments Receives held fragments of datagrams that timed out or were dropped,
+     *                          to be evaluated on their own
+     * @return The packet to evaluate in place of {@code ctx}: {@code ctx} itself if it is not held,
+     *         the reassembled datagram if it completed one, or null while the datagram is incomplete
+     */
+    public synchronized PacketContext reassemble(PacketContext ctx, long nowMillis,
+                                                 List<PacketContext> releasedFragments) {
+        expire(nowMillis, releasedFragments);
+        if (!ctx.isIpV4() || !ctx.isFragment()) {
+            return ctx;
+        }
+        fragments++;
+
+        byte[] data = ctx.getData();
+        int headerLength = ctx.getIpHeaderLength();
+        int start = ctx.getIpOffset() + headerLength;
+        int length = ctx.getIpTotalLength() - headerLength;
+        if (length <= 0 || start + length > ctx.getLength()) {
+            truncated++; // Missing bytes cannot be reassembled
+            return ctx;
+        }
+
+        int slot = find(ctx.getSrcIp(), ctx.getDstIp(), ctx.getIpId(), ctx.getIpProtocol());
+        if (slot < 0) {
+            slot = open(ctx, nowMillis, releasedFragments);
+            if (slot < 0) {
+                dropped++;
+                return ctx;
+            }
+        }
+        int fragmentOffset = ctx.getFragmentOffset();
+        if (fragmentOffset == 0 && headerLengths[slot] == 0) {
+            System.arraycopy(data, ctx.getIpOffset(), headers, slot * MAX_IP_HEADER, headerLength);
+            headerLengths[slot] = headerLength;
+        }
+        if (!ctx.hasMoreFragments()) {
+            payloadLengths[slot] = fragmentOffset + length;
+        }
+        ReassemblyBuffer buffer = buffers[slot];
+        if (!buffer.write(fragmentOffset, data, start, length)
+                || (payloadLengths[slot] >= 0 && payloadLengths[slot] + headerLengths[slot] > 65535)) {
+            // Oversized or shredded beyond the range limit
+            close(slot, releasedFragments);
+            dropped++;
+            return ctx;
+        }
+
+        int payloadLength = payloadLengths[slot];
+        if (payloadLength >= 0 && headerLengths[slot] > 0 && buffer.getContiguousLength() >= payloadLength) {
+            PacketContext datagram = build(slot, payloadLength, ctx);
+            close(slot, null); // The datagram replaces its fragments
+            completed++;
+            return datagram;
+        }
+        if (heldCounts[slot] == MAX_HELD_FRAGMENTS) {
+            close(slot, releasedFragments);
+            dropped++;
+            return ctx;
+        }
+        held[slot * MAX_HELD_FRAGMENTS + heldCounts[slot]++] = ctx;
+        return null;
+    }
+
+    public synchronized int size() { return active; }
+    public long getTimeoutMillis() { return timeoutMillis; }
+    public synchronized long getCompletedCount() { return completed; }
+    /** Incomplete datagrams dropped after the timeout. */
+    public synchronized long getExpiredCount() { return expired; }
+    /** Datagrams dropped for size, fragmentation or lack of buffers. */
+    public synchronized long getDroppedCount() { return dropped; }
+    /** Held fragments handed back for evaluation because their datagram was never completed. */
+    public synchronized long getReleasedCount() { return released; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d datagrams pending, %d fragments, %d reassembled, %d expired, %d dropped, " +
+                             "%d truncated, %d released unassembled, %s",
+                active, fragments, completed, expired, dropped, truncated, released, pool);
+    }
+
+    /** Copies the first fragment's header and the payload into a datagram without fragmentation. */
+    private PacketContext build(int slot, int payloadLength, PacketContext last) {
+        int headerLength = headerLengths[slot];
+        int totalLength = headerLength + payloadLength;
+        byte[] datagram = new byte[totalLength];
+        System.arraycopy(headers, slot * MAX_IP_HEADER, datagram, 0, headerLength);
+        System.arraycopy(buffers[slot].getData(), 0, datagram, headerLength, payloadLength);
+        datagram[2] = (byte) (totalLength >>> 8);
+        datagram[3] = (byte) totalLength;
+        datagram[6] &= 0x40; // Keep DF, clear MF and the offset
+        datagram[7] = 0;
+        datagram[10] = 0;
+        datagram[11] = 0;
+        int sum = 0;
+        for (int i = 0; i < headerLength; i += 2) {
+            sum += ((datagram[i] & 0xFF) << 8) | (datagram[i + 1] & 0xFF);
+        }
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        sum += sum >>> 16;
+        datagram[10] = (byte) (~sum >>> 8);
+        datagram[11] = (byte) ~sum;
+        return PacketContext.decode(datagram, totalLength, DataLinkType.RAW, last.getTimestampMicros(),
+                                    last.getInterfaceName());
+    }
+
+    private int open(PacketContext ctx, long now, List<PacketContext> releasedFragments) {
+        ReassemblyBuffer buffer = pool.acquire();
+        if (buffer == null) {
+            // Make room by dropping the datagram that has waited longest
+            int oldest = -1;
+            for (int i = 0; i < slots; i++) {
+                if (buffers[i] != null && (oldest < 0 || firstSeen[i] < firstSeen[oldest])) {
+                    oldest = i;
+                }
+            }
+            if (oldest < 0) {
+                return -1;
+            }
+            close(oldest, releasedFragments);
+            dropped++;
+            buffer = pool.acquire();
+            if (buffer == null) {
+                return -1;
+            }
+        }
+        int slot = 0;
+        while (buffers[slot] != null) {
+            slot++;
+        }
+        buffers[slot] = buffer;
+        sources[slot] = ctx.getSrcIp();
+        destinations[slot] = ctx.getDstIp();
+        ids[slot] = ctx.getIpId();
+        protocols[slot] = ctx.getIpProtocol();
+        firstSeen[slot] = now;
+        payloadLengths[slot] = -1;
+        headerLengths[slot] = 0;
+        heldCounts[slot] = 0;
+        nextDeadline = Math.min(nextDeadline, now + timeoutMillis);
+        active++;
+        return slot;
+    }
+
+    /**
+     * Frees a datagram's slot
+     * @param releasedFragments Receives the held fragments, or null to discard them
+     */
+    private void close(int slot, List<PacketContext> releasedFragments) {
+        int base = slot * MAX_HELD_FRAGMENTS;
+        if (releasedFragments != null) {
+            for (int i = 0; i < heldCounts[slot]; i++) {
+                releasedFragments.add(held[base + i]);
+            }
+            released += heldCounts[slot];
+        }
+        Arrays.fill(held, base, base + heldCounts[slot], null);
+        heldCounts[slot] = 0;
+        pool.release(buffers[slot]);
+        buffers[slot] = null;
+        active--;
+    }
+
+    /** Releases the fragments of timed-out datagrams; checks only a timestamp until one is due. */
+    private void expire(long now, List<PacketContext> releasedFragments) {
+        if (active == 0 || now <= nextDeadline) {
+            return;
+        }
+        nextDeadline = Long.MAX_VALUE;
+        for (int i = 0; i < slots; i++) {
+            if (buffers[i] == null) {
+                continue;
+            }
+            if (now - firstSeen[i] > timeoutMillis) {
+                close(i, releasedFragments);
+                expired++;
+            } else {
+                nextDeadline = Math.min(nextDeadline, firstSeen[i] + timeoutMillis);
+            }
+        }
+    }
+
+    private int find(int src, int dst, int id, int protocol) {
+        for (int i = 0; i < slots; i++) {
+            if (buffers[i] != null && ids[i] == id && sources[i] == src && destinations[i] == dst
+                    && protocols[i] == protocol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
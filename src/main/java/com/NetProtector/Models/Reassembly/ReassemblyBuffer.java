@@ -0,0 +1,123 @@
+package com.NetProtector.Models.Reassembly;
+
+/**
+ * Fixed-size byte buffer that collects data arriving out of order, e.g. IP
+ * fragments or TCP segments past a gap. Positions are relative to the start of
+ * the buffer; the filled parts are kept as a short sorted list of disjoint ranges.
+ *
+ * Overlapping writes keep the bytes that arrived first, so a retransmission or a
+ * crafted overlap can never change data that was already accepted.
+ *
+ * Buffers are handed out by a {@link BufferPool} and reused; they never grow.
+ */
+public final class ReassemblyBuffer {
+
+    /** Most disjoint ranges a buffer holds; more fragmented input is refused. */
+    public static final int MAX_RANGES = 16;
+
+    private final byte[] data;
+    private final int[] starts = new int[MAX_RANGES];
+    private final int[] ends = new int[MAX_RANGES];
+    private int count;
+
+    ReassemblyBuffer(int capacity) {
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * Copies the parts of a byte range that the buffer does not hold yet
+     * @param position Buffer position of the first byte
+     * @param src Source array
+     * @param srcOffset First byte in {@code src}
+     * @param length Number of bytes
+     * @return false if the range does not fit or would split the buffer into too many ranges; nothing is copied then
+     */
+    public boolean write(int position, byte[] src, int srcOffset, int length) {
+        if (length <= 0) {
+            return true;
+        }
+        int end = position + length;
+        if (position < 0 || end > data.length || end < 0) {
+            return false;
+        }
+        // Ranges [first, last) touch the new one and are merged with it
+        int first = 0;
+        while (first < count && ends[first] < position) {
+            first++;
+        }
+        int last = first;
+        while (last < count && starts[last] <= end) {
+            last++;
+        }
+        if (count - (last - first) + 1 > MAX_RANGES) {
+            return false;
+        }
+
+        int cursor = position;
+        for (int i = first; i < last && cursor < end; i++) {
+            if (starts[i] > cursor) {
+                System.arraycopy(src, srcOffset + (cursor - position), data, cursor, starts[i] - cursor);
+            }
+            cursor = Math.max(cursor, ends[i]);
+        }
+        if (cursor < end) {
+            System.arraycopy(src, srcOffset + (cursor - position), data, cursor, end - cursor);
+        }
+
+        int mergedStart = first < last ? Math.min(position, starts[first]) : position;
+        int mergedEnd = first < last ? Math.max(end, ends[last - 1]) : end;
+        int removed = last - first;
+        if (removed != 1) {
+            System.arraycopy(starts, last, starts, first + 1, count - last);
+            System.arraycopy(ends, last, ends, first + 1, count - last);
+            count += 1 - removed;
+        }
+        starts[first] = mergedStart;
+        ends[first] = mergedEnd;
+        return true;
+    }
+
+    /**
+     * Drops the first bytes and moves the rest to the start of the buffer
+     * @param length Number of bytes to drop
+     */
+    public void discard(int length) {
+        if (length <= 0) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (ends[i] > length) {
+                starts[kept] = Math.max(0, starts[i] - length);
+                ends[kept] = ends[i] - length;
+                kept++;
+            }
+        }
+        count = kept;
+        if (count > 0 && length < data.length) {
+            System.arraycopy(data, length, data, 0, ends[count - 1]);
+        }
+    }
+
+    /** Number of bytes held from position 0 without a gap. */
+    public int getContiguousLength() {
+        return count > 0 && starts[0] == 0 ? ends[0] : 0;
+    }
+
+    public int getRangeCount() { return count; }
+    public int getRangeStart(int range) { return starts[range]; }
+    public int getRangeEnd(int range) { return ends[range]; }
+    public boolean isEmpty() { return count == 0; }
+    public int getCapacity() { return data.length; }
+
+    /**
+     * Gets the backing array. Valid bytes are those inside the ranges.
+     * @return The buffer bytes
+     */
+    public byte[] getData() { return data; }
+
+    /** Forgets all data. */
+    public void clear() {
+        count = 0;
+    }
+}
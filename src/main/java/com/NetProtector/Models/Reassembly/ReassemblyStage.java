@@ -0,0 +1,76 @@
+package com.NetProtector.Models.Reassembly;
+
+import java.util.List;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * Reassembly between capture and detection: IPv4 fragments are put back into
+ * datagrams and TCP payload into per-direction streams, so payload rules see
+ * signatures split over several packets.
+ *
+ * All reassembly buffers come from two pools carved out of one global memory
+ * budget, a quarter for fragments and the rest for stream data past gaps, so the
+ * stage never holds more than the budget however the traffic behaves.
+ */
+public final class ReassemblyStage {
+
+    /** Global cap on reassembly buffer memory. */
+    public static final long DEFAULT_MEMORY_BYTES = 16L * 1024 * 1024;
+
+    private final FragmentReassembler fragments;
+    private final TcpStreamReassembler streams;
+    private final long memoryBytes;
+
+    public ReassemblyStage() {
+        this(DEFAULT_MEMORY_BYTES, TcpStreamReassembler.DEFAULT_MAX_STREAMS);
+    }
+
+    /**
+     * Creates a stage
+     * @param memoryBytes Global cap on buffer memory, shared by fragments and streams
+     * @param maxStreams Hard cap on tracked TCP stream directions
+     */
+    public ReassemblyStage(long memoryBytes, int maxStreams) {
+        long fragmentMemory = memoryBytes / 4;
+        int datagrams = (int) Math.max(1, fragmentMemory / FragmentReassembler.MAX_DATAGRAM_PAYLOAD);
+        int windows = (int) Math.max(1, (memoryBytes - fragmentMemory) / TcpStreamReassembler.DEFAULT_WINDOW_BYTES);
+        this.memoryBytes = memoryBytes;
+        this.fragments = new FragmentReassembler(
+                new BufferPool(FragmentReassembler.MAX_DATAGRAM_PAYLOAD, datagrams),
+                FragmentReassembler.DEFAULT_TIMEOUT_MILLIS);
+        this.streams = new TcpStreamReassembler(maxStreams,
+                new BufferPool(TcpStreamReassembler.DEFAULT_WINDOW_BYTES, windows));
+    }
+
+    /**
+     * Feeds a packet to fragment reassembly, which holds fragments back until their datagram is complete
+     * @param ctx The decoded packet
+     * @param nowMillis Current time
+     * @param releasedFragments Receives fragments of datagrams that timed out or were dropped
+     * @return The packet to evaluate: {@code ctx}, the datagram it completed, or null if it is held
+     */
+    public PacketContext defragment(PacketContext ctx, long nowMillis, List<PacketContext> releasedFragments) {
+        return fragments.reassemble(ctx, nowMillis, releasedFragments);
+    }
+
+    /**
+     * Feeds a packet to stream reassembly
+     * @param ctx The decoded packet
+     * @param nowMillis Current time
+     * @return Stream bytes for the payload rules, or null if the packet carries no TCP payload
+     */
+    public StreamChunk reassemble(PacketContext ctx, long nowMillis) {
+        return streams.reassemble(ctx, nowMillis);
+    }
+
+    public FragmentReassembler getFragmentReassembler() { return fragments; }
+    public TcpStreamReassembler getStreamReassembler() { return streams; }
+    public long getMemoryBytes() { return memoryBytes; }
+
+    @Override
+    public String toString() {
+        return String.format("%d MB cap\n  - Fragments: %s\n  - Streams: %s",
+                memoryBytes / (1024 * 1024), fragments, streams);
+    }
+}
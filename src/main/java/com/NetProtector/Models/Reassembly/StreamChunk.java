@@ -0,0 +1,63 @@
+package com.NetProtector.Models.Reassembly;
+
+import com.NetProtector.Models.Signatures.SignatureMatches;
+
+/**
+ * Stream bytes delivered with one TCP segment: the part of the segment that
+ * extends the reassembled stream, plus any buffered data it made contiguous.
+ *
+ * The bytes were already scanned when the chunk was created, resuming from the
+ * automaton state the stream was left in after the previous chunk, so
+ * {@link #getMatches()} includes patterns that started in earlier segments.
+ *
+ * A chunk may continue with a {@link #getNext() next} piece when the reassembler
+ * had to skip a gap; scanning restarts after the gap so no match spans it.
+ */
+public final class StreamChunk {
+
+    /** Chunk of a segment that added nothing new, e.g. a retransmission or data buffered past a gap. */
+    public static final StreamChunk EMPTY = new StreamChunk(new byte[0], 0, 0, SignatureMatches.EMPTY);
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+    private final SignatureMatches matches;
+    private StreamChunk next;
+
+    StreamChunk(byte[] data, int offset, int length, SignatureMatches matches) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.matches = matches;
+    }
+
+    /**
+     * Gets the pattern ids that end inside the chunk or any following piece
+     * @return Matched pattern ids, shared by all pieces of the chunk
+     */
+    public SignatureMatches getMatches() { return matches; }
+    /** Backing array; the packet's own frame on the in-order path, so it must not be modified. */
+    public byte[] getData() { return data; }
+    public int getOffset() { return offset; }
+    public int getLength() { return length; }
+    /** Piece following a skipped gap, or null. */
+    public StreamChunk getNext() { return next; }
+
+    /** Adds a piece after the last one of this chunk. */
+    void append(StreamChunk piece) {
+        StreamChunk last = this;
+        while (last.next != null) {
+            last = last.next;
+        }
+        last.next = piece;
+    }
+
+    /** Total bytes over all pieces. */
+    public int getTotalLength() {
+        int total = 0;
+        for (StreamChunk piece = this; piece != null; piece = piece.next) {
+            total += piece.length;
+        }
+        return total;
+    }
+}
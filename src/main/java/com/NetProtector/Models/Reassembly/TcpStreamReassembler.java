@@ -0,0 +1,424 @@
+package com.NetProtector.Models.Reassembly;
+
+import java.util.Arrays;
+
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Signatures.AhoCorasickMatcher;
+import com.NetProtector.Models.Signatures.SignatureMatches;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Tracking.EntryIndex;
+
+/**
+ * Puts the payload of each TCP direction back in sequence order and hands every
+ * segment the stream bytes it contributes as a {@link StreamChunk}, already
+ * scanned for signatures.
+ *
+ * Matching is incremental: each stream keeps only the signature automaton state
+ * it was left in, and the next chunk is scanned from that state. A pattern split
+ * across segments is therefore found without keeping or copying the bytes before
+ * the boundary, and stream-level detection costs one int per direction.
+ *
+ * In-order segments, by far the common case, are scanned in place in the
+ * packet's own frame. Retransmitted bytes are trimmed so nothing is scanned
+ * twice. Segments past a gap are copied into a pooled {@link ReassemblyBuffer}
+ * until the gap is filled, and the segment that fills it carries the buffered bytes.
+ *
+ * Everything is bounded. Streams live in preallocated arrays behind an
+ * open-addressing index and are dropped after FIN, RST or an idle timeout; when
+ * the table is full the stalest sampled stream is evicted. A gap that stays open
+ * longer than the gap timeout, data beyond the buffer window, or an exhausted
+ * pool make the stream skip the gap: what was buffered is delivered as is and
+ * the stream continues at the new segment.
+ */
+public final class TcpStreamReassembler {
+
+    public static final int DEFAULT_MAX_STREAMS = 8192;
+    /** Bytes past a gap a stream may buffer. */
+    public static final int DEFAULT_WINDOW_BYTES = 32768;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300_000;
+    public static final long DEFAULT_GAP_TIMEOUT_MILLIS = 10_000;
+
+    private static final int EVICTION_SAMPLE = 8;
+    private static final int SWEEP_PER_UPDATE = 2;
+    private static final long FREE = Long.MIN_VALUE;
+
+    private final SignatureRegistry registry;
+    private final BufferPool pool;
+    private final long idleTimeoutMillis;
+    private final long gapTimeoutMillis;
+    private final int capacity;
+    private final EntryIndex index;
+    private final int[] sources;
+    private final int[] destinations;
+    private final int[] ports;
+    private final int[] nextSeq;
+    private final long[] gapSince;
+    /** Last segment time, or {@link #FREE} for unused entries. */
+    private final long[] lastSeen;
+    private final ReassemblyBuffer[] buffers;
+    /** Automaton state after the last delivered byte; only valid for {@link #matcher}. */
+    private final int[] matchStates;
+    private AhoCorasickMatcher matcher;
+    private final int[] nextFree;
+    private int freeHead;
+    private int size;
+    private int sweepCursor;
+    private int evictionCursor;
+
+    private long segments;
+    private long retransmitted;
+    private long reordered;
+    private long gapsSkipped;
+    private long droppedBytes;
+    private long expirations;
+    private long evictions;
+
+    /**
+     * Creates a reassembler for the default signature registry
+     * @param maxStreams Hard cap on tracked stream directions
+     * @param pool Buffers for data past a gap; its buffer size is the per-stream window
+     */
+    public TcpStreamReassembler(int maxStreams, BufferPool pool) {
+        this(maxStreams, pool, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_GAP_TIMEOUT_MILLIS, SignatureRegistry.getDefault());
+    }
+
+    /**
+     * Creates a reassembler
+     * @param maxStreams Hard cap on tracked stream directions
+     * @param pool Buffers for data past a gap; its buffer size is the per-stream window
+     * @param idleTimeoutMillis Idle time after which a stream is dropped
+     * @param gapTimeoutMillis Time a gap may stay open before the stream skips it
+     * @param registry Signatures the chunks are scanned for
+     */
+    public TcpStreamReassembler(int maxStreams, BufferPool pool, long idleTimeoutMillis, long gapTimeoutMillis,
+                                SignatureRegistry registry) {
+        if (maxStreams <= 0 || idleTimeoutMillis <= 0 || gapTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and timeouts must be positive");
+        }
+        this.registry = registry;
+        this.pool = pool;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.capacity = maxStreams;
+        this.index = new EntryIndex(maxStreams);
+        this.sources = new int[maxStreams];
+        this.destinations = new int[maxStreams];
+        this.ports = new int[maxStreams];
+        this.nextSeq = new int[maxStreams];
+        this.gapSince = new long[maxStreams];
+        this.lastSeen = new long[maxStreams];
+        this.buffers = new ReassemblyBuffer[maxStreams];
+        this.matchStates = new int[maxStreams];
+        this.nextFree = new int[maxStreams];
+        Arrays.fill(lastSeen, FREE);
+        for (int i = 0; i < maxStreams; i++) {
+            nextFree[i] = i + 1 < maxStreams ? i + 1 : -1;
+        }
+    }
+
+    /**
+     * Accounts a TCP segment to its stream direction
+     * @param ctx The decoded packet
+     * @param nowMillis Current time, normally the packet's capture time
+     * @return Stream bytes this segment contributes with their signature matches,
+     *         {@link StreamChunk#EMPTY} if it added nothing yet, or null if the packet
+     *         is not a TCP segment with payload
+     */
+    public synchronized StreamChunk reassemble(PacketContext ctx, long nowMillis) {
+        if (!ctx.isTcp()) {
+            return null;
+        }
+        int flags = ctx.getTcpFlags();
+        int wireLength = ctx.getPayloadWireLength();
+        boolean syn = (flags & PacketContext.TCP_SYN) != 0;
+        boolean closing = (flags & (PacketContext.TCP_FIN | PacketContext.TCP_RST)) != 0;
+        if (wireLength <= 0 && !syn && !closing) {
+            return null; // Pure ACKs never touch the table
+        }
+        sweep(nowMillis);
+        AhoCorasickMatcher current = registry.getMatcher();
+        if (current != matcher) {
+            // Signatures were (re)registered: saved states belong to the old automaton
+            matcher = current;
+            Arrays.fill(matchStates, AhoCorasickMatcher.START_STATE);
+        }
+
+        int src = ctx.getSrcIpKey();
+        int dst = ctx.getDstIpKey();
+        int portPair = (ctx.getSrcPort() << 16) | ctx.getDstPort();
+        int hash = hash(src, dst, portPair);
+        int entry = find(src, dst, portPair, hash);
+        if (entry >= 0 && nowMillis - lastSeen[entry] > idleTimeoutMillis) {
+            remove(entry);
+            expirations++;
+            entry = -1;
+        }
+
+        int seq = ctx.getTcpSeq();
+        if (syn) {
+            // The SYN takes one sequence number; a new SYN on a known stream restarts it
+            if (entry >= 0) {
+                remove(entry);
+            }
+            seq++;
+            entry = allocate(src, dst, portPair, hash, seq, nowMillis);
+        }
+
+        StreamChunk chunk = null;
+        if (wireLength > 0) {
+            if (entry < 0) {
+                // Picked up mid-stream: the stream starts here
+                entry = allocate(src, dst, portPair, hash, seq, nowMillis);
+            }
+            lastSeen[entry] = Math.max(lastSeen[entry], nowMillis);
+            segments++;
+            chunk = deliver(entry, seq, ctx, wireLength, nowMillis, new SignatureMatches(matcher.getPatternCount()));
+        }
+        if (entry >= 0 && closing) {
+            // No more data in this direction; whatever waits behind a gap is delivered now
+            if (buffers[entry] != null) {
+                SignatureMatches matches = chunk != null && chunk != StreamChunk.EMPTY
+                        ? chunk.getMatches() : new SignatureMatches(matcher.getPatternCount());
+                chunk = append(chunk, flush(entry, 0, matches));
+            }
+            remove(entry);
+        }
+        return chunk;
+    }
+
+    public synchronized int size() { return size; }
+    public int getCapacity() { return capacity; }
+    public BufferPool getBufferPool() { return pool; }
+    public synchronized long getSegmentCount() { return segments; }
+    /** Segments that carried only bytes already delivered. */
+    public synchronized long getRetransmittedCount() { return retransmitted; }
+    /** Segments buffered because they arrived past a gap. */
+    public synchronized long getReorderedCount() { return reordered; }
+    /** Gaps the streams gave up waiting for. */
+    public synchronized long getSkippedGapCount() { return gapsSkipped; }
+    /** Buffered bytes dropped without being delivered, e.g. from expired streams. */
+    public synchronized long getDroppedBytes() { return droppedBytes; }
+    public synchronized long getEvictionCount() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d streams, %d segments (%d reordered, %d retransmitted), %d gaps skipped, " +
+                             "%d bytes dropped, %d expired, %d evicted, %s",
+                size, capacity, segments, reordered, retransmitted, gapsSkipped, droppedBytes,
+                expirations, evictions, pool);
+    }
+
+    private StreamChunk deliver(int entry, int seq, PacketContext ctx, int wireLength, long now,
+                                SignatureMatches matches) {
+        byte[] data = ctx.getData();
+        int offset = ctx.getPayloadOffset();
+        int captured = ctx.getPayloadLength();
+        int relative = seq - nextSeq[entry]; // Wraps correctly around 2^32
+        if (relative + wireLength <= 0) {
+            retransmitted++;
+            return StreamChunk.EMPTY;
+        }
+        if (relative > 0) {
+            return deliverOutOfOrder(entry, seq, relative, data, offset, captured, wireLength, now, matches);
+        }
+
+        int skip = -relative;
+        ReassemblyBuffer buffer = buffers[entry];
+        if (buffer == null) {
+            return deliverInOrder(entry, data, offset, captured, wireLength, skip, matches);
+        }
+        if (captured == wireLength && buffer.write(0, data, offset + skip, captured - skip)) {
+            // Filled (part of) the gap: the segment and the buffered data behind it go out together
+            return drain(entry, now, matches);
+        }
+        // Cannot merge: deliver the segment, then what was buffered beyond it
+        StreamChunk chunk = deliverInOrder(entry, data, offset, captured, wireLength, skip, matches);
+        return append(chunk, flush(entry, wireLength - skip, matches));
+    }
+
+    /** Fast path: the chunk is the new part of the segment, scanned in place. */
+    private StreamChunk deliverInOrder(int entry, byte[] data, int offset, int captured, int wireLength, int skip,
+                                       SignatureMatches matches) {
+        StreamChunk chunk = resume(entry, data, offset + skip, Math.max(0, captured - skip), matches);
+        nextSeq[entry] += wireLength - skip;
+        if (captured < wireLength) {
+            // Truncated by the snap length: the stream continues after bytes that were never seen
+            matchStates[entry] = AhoCorasickMatcher.START_STATE;
+        }
+        return chunk;
+    }
+
+    private StreamChunk deliverOutOfOrder(int entry, int seq, int relative, byte[] data, int offset,
+                                          int captured, int wireLength, long now, SignatureMatches matches) {
+        ReassemblyBuffer buffer = buffers[entry];
+        if (captured == wireLength) {
+            if (buffer == null && (buffer = pool.acquire()) != null) {
+                buffers[entry] = buffer;
+                gapSince[entry] = now;
+            }
+            if (buffer != null && now - gapSince[entry] <= gapTimeoutMillis
+                    && buffer.write(relative, data, offset, captured)) {
+                reordered++;
+                return StreamChunk.EMPTY;
+            }
+        }
+
+        // Give up on the gap: deliver what was buffered and continue the stream at this segment
+        gapsSkipped++;
+        StreamChunk chunk = buffers[entry] != null ? flush(entry, 0, matches) : null;
+        int skip = nextSeq[entry] - seq;
+        if (skip >= wireLength) {
+            return chunk != null ? chunk : StreamChunk.EMPTY;
+        }
+        if (skip < 0) {
+            nextSeq[entry] = seq;
+            matchStates[entry] = AhoCorasickMatcher.START_STATE;
+            skip = 0;
+        }
+        return append(chunk, deliverInOrder(entry, data, offset, captured, wireLength, skip, matches));
+    }
+
+    /** Delivers the buffered bytes that became contiguous; copies them out of the pooled buffer. */
+    private StreamChunk drain(int entry, long now, SignatureMatches matches) {
+        ReassemblyBuffer buffer = buffers[entry];
+        int length = buffer.getContiguousLength();
+        byte[] copy = Arrays.copyOf(buffer.getData(), length);
+        StreamChunk chunk = resume(entry, copy, 0, length, matches);
+        nextSeq[entry] += length;
+        buffer.discard(length);
+        if (buffer.isEmpty()) {
+            releaseBuffer(entry);
+        } else {
+            gapSince[entry] = now; // Progress was made; the remaining gap starts waiting now
+        }
+        return chunk;
+    }
+
+    /**
+     * Delivers every buffered range, skipping the gaps in front of them, and releases the buffer
+     * @param covered Bytes at the start of the buffer already delivered by an in-order segment
+     */
+    private StreamChunk flush(int entry, int covered, SignatureMatches matches) {
+        ReassemblyBuffer buffer = buffers[entry];
+        buffer.discard(covered);
+        StreamChunk chunk = null;
+        int delivered = 0;
+        for (int r = 0; r < buffer.getRangeCount(); r++) {
+            int start = buffer.getRangeStart(r);
+            int end = buffer.getRangeEnd(r);
+            if (start > delivered) {
+                matchStates[entry] = AhoCorasickMatcher.START_STATE; // No match may span the gap
+            }
+            byte[] copy = Arrays.copyOfRange(buffer.getData(), start, end);
+            chunk = append(chunk, resume(entry, copy, 0, copy.length, matches));
+            delivered = end;
+        }
+        nextSeq[entry] += delivered;
+        releaseBuffer(entry);
+        return chunk;
+    }
+
+    /** Scans stream bytes from the state the stream was left in and saves the state after them. */
+    private StreamChunk resume(int entry, byte[] data, int offset, int length, SignatureMatches matches) {
+        matchStates[entry] = matcher.scan(data, offset, length, matchStates[entry], matches);
+        return new StreamChunk(data, offset, length, matches);
+    }
+
+    private static StreamChunk append(StreamChunk chunk, StreamChunk piece) {
+        if (chunk == null || chunk == StreamChunk.EMPTY) {
+            return piece;
+        }
+        if (piece != null && piece != StreamChunk.EMPTY) {
+            chunk.append(piece);
+        }
+        return chunk;
+    }
+
+    private void releaseBuffer(int entry) {
+        pool.release(buffers[entry]);
+        buffers[entry] = null;
+    }
+
+    /** Checks a couple of entries per update so idle streams are reclaimed without a background thread. */
+    private void sweep(long now) {
+        for (int i = 0; i < SWEEP_PER_UPDATE && size > 0; i++) {
+            sweepCursor = sweepCursor + 1 == capacity ? 0 : sweepCursor + 1;
+            if (lastSeen[sweepCursor] != FREE && now - lastSeen[sweepCursor] > idleTimeoutMillis) {
+                remove(sweepCursor);
+                expirations++;
+            }
+        }
+    }
+
+    /** Evicts the least recently seen among a few entries spread over the table; only called when full. */
+    private void evictStalest() {
+        int stride = Math.max(1, capacity / EVICTION_SAMPLE);
+        int best = evictionCursor;
+        for (int i = 1; i < EVICTION_SAMPLE; i++) {
+            int candidate = (evictionCursor + i * stride) % capacity;
+            if (lastSeen[candidate] < lastSeen[best]) {
+                best = candidate;
+            }
+        }
+        evictionCursor = evictionCursor + 1 == capacity ? 0 : evictionCursor + 1;
+        remove(best);
+        evictions++;
+    }
+
+    private int allocate(int src, int dst, int portPair, int hash, int seq, long now) {
+        if (size == capacity) {
+            evictStalest();
+        }
+        int entry = freeHead;
+        freeHead = nextFree[entry];
+        sources[entry] = src;
+        destinations[entry] = dst;
+        ports[entry] = portPair;
+        nextSeq[entry] = seq;
+        lastSeen[entry] = now;
+        matchStates[entry] = AhoCorasickMatcher.START_STATE;
+        index.insert(entry, hash);
+        size++;
+        return entry;
+    }
+
+    private void remove(int entry) {
+        ReassemblyBuffer buffer = buffers[entry];
+        if (buffer != null) {
+            for (int r = 0; r < buffer.getRangeCount(); r++) {
+                droppedBytes += buffer.getRangeEnd(r) - buffer.getRangeStart(r);
+            }
+            releaseBuffer(entry);
+        }
+        index.remove(entry);
+        lastSeen[entry] = FREE;
+        nextFree[entry] = freeHead;
+        freeHead = entry;
+        size--;
+    }
+
+    private int find(int src, int dst, int portPair, int hash) {
+        for (int pos = index.first(hash), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+            if (index.hashOf(entry) == hash && sources[entry] == src && destinations[entry] == dst
+                    && ports[entry] == portPair) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(int src, int dst, int portPair) {
+        int h = mix(src);
+        h = mix(h ^ dst);
+        return mix(h ^ portPair);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
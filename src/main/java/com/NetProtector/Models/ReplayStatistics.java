@@ -0,0 +1,70 @@
+package com.NetProtector.Models;
+
+/**
+ * Result of replaying a capture file through the detection queue.
+ * Rates are measured end to end, from the first packet read until the
+ * queue had been drained by its consumer.
+ */
+public class ReplayStatistics {
+
+    private final String file;
+    private final PacketCaptureModel.ReplayMode mode;
+    private final double speed;
+    private final long packets;
+    private final long bytes;
+    private final long readNanos;
+    private final long drainNanos;
+    private final boolean completed;
+
+    public ReplayStatistics(String file, PacketCaptureModel.ReplayMode mode, double speed, long packets,
+                            long bytes, long readNanos, long drainNanos, boolean completed) {
+        this.file = file;
+        this.mode = mode;
+        this.speed = speed;
+        this.packets = packets;
+        this.bytes = bytes;
+        this.readNanos = readNanos;
+        this.drainNanos = drainNanos;
+        this.completed = completed;
+    }
+
+    public String getFile() { return file; }
+    public PacketCaptureModel.ReplayMode getMode() { return mode; }
+    public double getSpeed() { return speed; }
+    public long getPackets() { return packets; }
+    public long getBytes() { return bytes; }
+
+    /** Time spent reading the file and enqueueing packets. */
+    public long getReadMillis() { return readNanos / 1_000_000; }
+
+    /** Time from the first packet read until the queue was empty again. */
+    public long getDrainMillis() { return drainNanos / 1_000_000; }
+
+    /** False if the replay was stopped before the end of the file. */
+    public boolean isCompleted() { return completed; }
+
+    /**
+     * Gets the end-to-end packet rate
+     * @return Packets per second over the drain time
+     */
+    public double getPacketsPerSecond() {
+        return drainNanos > 0 ? packets * 1e9 / drainNanos : 0;
+    }
+
+    /**
+     * Gets the end-to-end byte rate
+     * @return Original (on-the-wire) bytes per second over the drain time
+     */
+    public double getBytesPerSecond() {
+        return drainNanos > 0 ? bytes * 1e9 / drainNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s%s): %d packets, %d bytes, read %d ms, drained %d ms, %.0f pkts/s, %.2f Mbit/s%s",
+                file, mode, mode == PacketCaptureModel.ReplayMode.SCALED ? " x" + speed : "",
+                packets, bytes, getReadMillis(), getDrainMillis(),
+                getPacketsPerSecond(), getBytesPerSecond() * 8 / 1_000_000,
+                completed ? "" : " [stopped]");
+    }
+}
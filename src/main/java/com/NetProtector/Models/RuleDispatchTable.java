@@ -0,0 +1,210 @@
+package com.NetProtector.Models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Rules.FlowAffinity;
+import com.NetProtector.Models.Rules.Rule;
+import com.NetProtector.Models.Rules.RuleInterest;
+import com.NetProtector.Models.Rules.RuleInterest.PortDirection;
+import com.NetProtector.Models.Rules.Severity;
+
+/**
+ * Immutable index from packet protocol and ports to the rules that may match.
+ * Built from each rule's {@link RuleInterest} whenever the rule set changes; per
+ * packet it only ORs a few precomputed bit masks, one bit per rule in install
+ * order, so candidate rules are still evaluated in the order they were added.
+ *
+ * @author Stika
+ */
+final class RuleDispatchTable {
+
+    private static final Protocol[] PROTOCOLS = Protocol.values();
+
+    private final Rule[] rules;
+    private final int words;
+    /** Rules interested in a protocol regardless of port, per protocol. */
+    private final long[][] protocolMasks;
+    /** Sorted ports with port-filtered rules, per protocol. */
+    private final int[][] ports;
+    /** Rules matching when the port is the source / destination port, per protocol and port index. */
+    private final long[][][] sourceMasks;
+    private final long[][][] destinationMasks;
+    /** Rules per flow affinity. */
+    private final long[][] affinityMasks;
+    /** Rules still evaluated in each shedding stage. */
+    private final long[][] stageMasks;
+
+    private RuleDispatchTable(Rule[] rules) {
+        this.rules = rules;
+        this.words = Math.max(1, (rules.length + 63) >>> 6);
+        this.protocolMasks = new long[PROTOCOLS.length][words];
+        this.ports = new int[PROTOCOLS.length][];
+        this.sourceMasks = new long[PROTOCOLS.length][][];
+        this.destinationMasks = new long[PROTOCOLS.length][][];
+        this.affinityMasks = new long[FlowAffinity.values().length][words];
+        this.stageMasks = new long[SheddingStage.values().length][words];
+
+        RuleInterest[] interests = new RuleInterest[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            RuleInterest interest = rules[i].getInterest();
+            interests[i] = interest != null ? interest : RuleInterest.ANY;
+            set(affinityMasks[rules[i].getFlowAffinity().ordinal()], i);
+            for (SheddingStage stage : SheddingStage.values()) {
+                if (keeps(rules[i], stage)) {
+                    set(stageMasks[stage.ordinal()], i);
+                }
+            }
+        }
+
+        for (Protocol protocol : PROTOCOLS) {
+            int p = protocol.ordinal();
+            TreeSet<Integer> used = new TreeSet<>();
+            for (int i = 0; i < rules.length; i++) {
+                if (!interests[i].getProtocols().contains(protocol)) {
+                    continue;
+                }
+                if (interests[i].hasPorts()) {
+                    for (int port : interests[i].getPorts()) {
+                        used.add(port);
+                    }
+                } else {
+                    set(protocolMasks[p], i);
+                }
+            }
+            ports[p] = used.stream().mapToInt(Integer::intValue).toArray();
+            sourceMasks[p] = new long[ports[p].length][words];
+            destinationMasks[p] = new long[ports[p].length][words];
+            for (int i = 0; i < rules.length; i++) {
+                if (!interests[i].hasPorts() || !interests[i].getProtocols().contains(protocol)) {
+                    continue;
+                }
+                PortDirection direction = interests[i].getDirection();
+                for (int port : interests[i].getPorts()) {
+                    int slot = Arrays.binarySearch(ports[p], port);
+                    if (direction != PortDirection.DESTINATION) {
+                        set(sourceMasks[p][slot], i);
+                    }
+                    if (direction != PortDirection.SOURCE) {
+                        set(destinationMasks[p][slot], i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the index for a rule set
+     * @param rules Rules in evaluation order
+     * @return The dispatch table
+     */
+    static RuleDispatchTable build(List<Rule> rules) {
+        return new RuleDispatchTable(rules.toArray(new Rule[0]));
+    }
+
+    /**
+     * Computes the rules that may match a packet
+     * @param ctx The decoded packet
+     * @param candidates Receives one bit per candidate rule; length {@link #getWordCount()}
+     * @return Number of candidate rules
+     */
+    int select(PacketContext ctx, long[] candidates) {
+        int p = ctx.getProtocol().ordinal();
+        System.arraycopy(protocolMasks[p], 0, candidates, 0, words);
+        int[] portIndex = ports[p];
+        if (portIndex.length > 0) {
+            int src = Arrays.binarySearch(portIndex, ctx.getSrcPort());
+            if (src >= 0) {
+                or(candidates, sourceMasks[p][src]);
+            }
+            int dst = Arrays.binarySearch(portIndex, ctx.getDstPort());
+            if (dst >= 0) {
+                or(candidates, destinationMasks[p][dst]);
+            }
+        }
+        int count = 0;
+        for (long word : candidates) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Restricts candidates to rules with one of the affinities in the mask
+     * @param candidates Candidate bits from {@link #select}
+     * @param affinityMask Bit mask of {@link DetectionWorkerPool#affinityMask(FlowAffinity)} values
+     */
+    void retainAffinities(long[] candidates, int affinityMask) {
+        if (affinityMask == DetectionWorkerPool.ALL_AFFINITIES) {
+            return;
+        }
+        for (int w = 0; w < words; w++) {
+            long allowed = 0;
+            for (FlowAffinity affinity : FlowAffinity.values()) {
+                if ((affinityMask & DetectionWorkerPool.affinityMask(affinity)) != 0) {
+                    allowed |= affinityMasks[affinity.ordinal()][w];
+                }
+            }
+            candidates[w] &= allowed;
+        }
+    }
+
+    /**
+     * Restricts candidates to rules that still run in a shedding stage
+     * @param candidates Candidate bits from {@link #select}
+     * @param stage Stage applying to the packet
+     * @return Number of candidate rules removed
+     */
+    int retainStage(long[] candidates, SheddingStage stage) {
+        if (stage == SheddingStage.NORMAL) {
+            return 0;
+        }
+        long[] allowed = stageMasks[stage.ordinal()];
+        int removed = 0;
+        for (int w = 0; w < words; w++) {
+            removed += Long.bitCount(candidates[w] & ~allowed[w]);
+            candidates[w] &= allowed[w];
+        }
+        return removed;
+    }
+
+    /** Whether a rule keeps running in a stage; each stage sheds more than the one before. */
+    private static boolean keeps(Rule rule, SheddingStage stage) {
+        boolean critical = rule.isCritical();
+        boolean headerOnly = rule.getRequiredSnapLength() <= Rule.HEADERS_SNAPLEN;
+        switch (stage) {
+            case NORMAL:
+                return true;
+            case SKIP_LOW_SEVERITY:
+                return critical || rule.getSeverity() != Severity.LOW;
+            case SKIP_BULK_PAYLOAD:
+                return headerOnly && (critical || rule.getSeverity() != Severity.LOW);
+            default:
+                return headerOnly && critical;
+        }
+    }
+
+    Rule getRule(int index) {
+        return rules[index];
+    }
+
+    int getRuleCount() {
+        return rules.length;
+    }
+
+    int getWordCount() {
+        return words;
+    }
+
+    private static void set(long[] mask, int bit) {
+        mask[bit >>> 6] |= 1L << bit;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= source[w];
+        }
+    }
+}
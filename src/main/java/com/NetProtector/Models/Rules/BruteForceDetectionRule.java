@@ -1,20 +1,42 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Flows.FlowSnapshot;
+import com.NetProtector.Models.Flows.TcpState;
+import com.NetProtector.Models.Signatures.SignatureMatches;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Signatures.SignatureSet;
+import com.NetProtector.Models.Tracking.AuthAttemptTracker;
+import com.NetProtector.Models.Tracking.AuthAttemptTracker.Event;
+import com.NetProtector.Models.Tracking.AuthAttemptTracker.Signal;
 import org.pcap4j.packet.namednumber.TcpPort;
 
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Rule to detect potential brute force login attempts by monitoring failed authentication patterns.
  * This is a HIGH severity rule as brute force attacks can lead to unauthorized access.
+ *
+ * Packets to and from authentication services are turned into events per
+ * (client, server, service): new connections and credential submissions count as
+ * attempts; server-side failure messages, server resets of connections that never
+ * completed their handshake and brute-force tool banners count as failures. The
+ * rule alerts once per episode when the attempt or failure rate over the window
+ * crosses its threshold, instead of on every SYN or login packet.
+ *
+ * Web servers (80, 443) open and reset connections routinely for keep-alive and
+ * load balancing, so on those ports only credential submissions and failure
+ * messages count, never connections or resets. A credential submission is a
+ * password field in a form or JSON body, HTTP Basic authorization or an FTP
+ * {@code PASS} command.
  */
-public class BruteForceDetectionRule implements Rule {
+public class BruteForceDetectionRule extends ContextRule {
 
-    private static final Set<TcpPort> AUTH_PORTS = new HashSet<>(Arrays.asList(
+    private static final Set<Integer> AUTH_PORTS = Arrays.asList(
         TcpPort.SSH,     // SSH (22)
         TcpPort.TELNET,  // Telnet (23)
         TcpPort.FTP,     // FTP (21)
@@ -23,7 +45,7 @@ public class BruteForceDetectionRule implements Rule {
         new TcpPort((short)3389, "RDP"), // RDP
         new TcpPort((short)5985, "WinRM"), // WinRM
         new TcpPort((short)5986, "WinRM_HTTPS") // WinRM HTTPS
-    ));
+    ).stream().map(TcpPort::valueAsInt).collect(Collectors.toCollection(HashSet::new));
 
     private static final String[] BRUTE_FORCE_INDICATORS = {
         "Authentication failed",
@@ -39,66 +61,149 @@ public class BruteForceDetectionRule implements Rule {
         "failed login"
     };
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    // Automated tool signatures
+    private static final String[] TOOL_SIGNATURES = {
+        "hydra", "medusa", "ncrack", "patator", "brutespray"
+    };
+
+    private static final SignatureSet INDICATOR_SIGNATURES =
+            SignatureRegistry.getDefault().register("Brute Force Indicator", BRUTE_FORCE_INDICATORS);
+    // Password fields of login requests; matched case-folded
+    private static final SignatureSet CREDENTIAL_SIGNATURES =
+            SignatureRegistry.getDefault().register("Credential Exchange",
+                    "password=", "passwd=", "&pwd=", "?pwd=", "\"password\":", "authorization: basic ");
+    private static final byte[] FTP_PASS_COMMAND = {'P', 'A', 'S', 'S', ' '};
+    /** Services where connection churn and resets are normal, see the class comment. */
+    private static final Set<Integer> WEB_PORTS = Set.of(TcpPort.HTTP.valueAsInt(), TcpPort.HTTPS.valueAsInt());
+    private static final SignatureSet TOOL_SIGNATURE_SET =
+            SignatureRegistry.getDefault().register("Brute Force Tool", TOOL_SIGNATURES);
+
+    private static final long TIME_WINDOW = 60000; // 60 seconds in milliseconds
+    private static final int ATTEMPT_THRESHOLD = 30; // Connections or credential submissions per window
+    private static final int FAILURE_THRESHOLD = 5; // Failed logins per window
+    private static final int MAX_TRACKED_KEYS = 16384; // Stalest client-service pairs are evicted beyond this
+
+    private static final RuleInterest INTEREST =
+            RuleInterest.ports(RuleInterest.PortDirection.EITHER, AUTH_PORTS, Protocol.TCP);
+
+    private final AuthAttemptTracker tracker;
+
+    public BruteForceDetectionRule() {
+        this(TIME_WINDOW, ATTEMPT_THRESHOLD, FAILURE_THRESHOLD, MAX_TRACKED_KEYS);
+    }
 
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        if (tcpPacket != null) {
-            TcpPort dstPort = tcpPacket.getHeader().getDstPort();
-            TcpPort srcPort = tcpPacket.getHeader().getSrcPort();
-            
+    /**
+     * Creates the rule with custom thresholds
+     * @param windowMillis Sliding window the rates are measured over
+     * @param attemptThreshold Attempts per window from one client to one service that raise an alert
+     * @param failureThreshold Failed logins per window from one client to one service that raise an alert
+     * @param maxTrackedKeys Hard cap on tracked (client, server, service) keys
+     */
+    public BruteForceDetectionRule(long windowMillis, int attemptThreshold, int failureThreshold, int maxTrackedKeys) {
+        this.tracker = new AuthAttemptTracker(windowMillis, maxTrackedKeys, attemptThreshold, failureThreshold);
+    }
+
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isTcp()) {
             // Check if targeting authentication services
-            if (AUTH_PORTS.contains(dstPort) || AUTH_PORTS.contains(srcPort)) {
-                if (tcpPacket.getPayload() != null) {
-                    byte[] payload = tcpPacket.getPayload().getRawData();
-                    if (payload != null && payload.length > 0) {
-                        String payloadString = new String(payload).toLowerCase();
-                        
-                        // Check for authentication failure indicators
-                        for (String indicator : BRUTE_FORCE_INDICATORS) {
-                            if (payloadString.contains(indicator.toLowerCase())) {
-                                return true;
-                            }
-                        }
-                        
-                        // Additional checks for rapid connection attempts
-                        if (isSuspiciousAuthPattern(tcpPacket, payloadString)) {
-                            return true;
-                        }
-                    }
-                }
-                
-                // Check for SYN flood to auth services (potential brute force prep)
-                if (tcpPacket.getHeader().getSyn() && !tcpPacket.getHeader().getAck()) {
+            boolean fromClient;
+            if (AUTH_PORTS.contains(ctx.getDstPort())) {
+                fromClient = true;
+            } else if (AUTH_PORTS.contains(ctx.getSrcPort())) {
+                fromClient = false;
+            } else {
+                return false;
+            }
+
+            Event event = fromClient ? clientEvent(ctx) : serverEvent(ctx);
+            if (event != null) {
+                int client = fromClient ? ctx.getSrcIpKey() : ctx.getDstIpKey();
+                int server = fromClient ? ctx.getDstIpKey() : ctx.getSrcIpKey();
+                int service = fromClient ? ctx.getDstPort() : ctx.getSrcPort();
+                Signal signal = tracker.record(client, server, service, event, clock.currentTimeMillis(ctx));
+                if (signal != Signal.NONE) {
+                    System.out.println("BruteForceDetectionRule: " + signal + " threshold crossed by " +
+                                       (fromClient ? ctx.getSrcAddress() : ctx.getDstAddress()) + " on port " + service);
                     return true;
                 }
             }
         }
-        
+
         return false;
     }
 
-    private boolean isSuspiciousAuthPattern(TcpPacket tcpPacket, String payload) {
-        // Look for common brute force patterns
-        if (payload.contains("user") && payload.contains("pass")) {
-            return true;
+    /** A new connection or a credential submission is an attempt; a tool banner is a failure. */
+    private Event clientEvent(PacketContext ctx) {
+        if (!WEB_PORTS.contains(ctx.getDstPort())) {
+            FlowSnapshot flow = ctx.getFlow();
+            if (flow != null) {
+                // Retransmitted SYNs do not start a new flow
+                if (flow.isNewFlow() && flow.getState() == TcpState.SYN_SENT) {
+                    return Event.ATTEMPT;
+                }
+            } else if ((ctx.getTcpFlags() & (PacketContext.TCP_SYN | PacketContext.TCP_ACK)) == PacketContext.TCP_SYN) {
+                return Event.ATTEMPT;
+            }
         }
-        
-        // Check for automated tool signatures
-        String[] toolSignatures = {
-            "hydra", "medusa", "ncrack", "patator", "brutespray"
-        };
-        
-        for (String signature : toolSignatures) {
-            if (payload.contains(signature)) {
-                return true;
+        if (ctx.hasPayload()) {
+            SignatureMatches matches = ctx.getSignatureMatches();
+            // Automated tool signatures
+            if (TOOL_SIGNATURE_SET.anyMatch(matches)) {
+                return Event.FAILURE;
+            }
+            // One connection can carry many logins, e.g. form posts over keep-alive
+            if (CREDENTIAL_SIGNATURES.anyMatch(matches) || isFtpPassword(ctx)) {
+                return Event.ATTEMPT;
             }
         }
-        
-        return false;
+        return null;
+    }
+
+    /** Failure messages, and resets that reject a connection before it is established, are failures. */
+    private Event serverEvent(PacketContext ctx) {
+        if (ctx.hasPayload() && INDICATOR_SIGNATURES.anyMatch(ctx.getSignatureMatches())) {
+            return Event.FAILURE;
+        }
+        if (WEB_PORTS.contains(ctx.getSrcPort())) {
+            return null;
+        }
+        FlowSnapshot flow = ctx.getFlow();
+        if (flow != null) {
+            TcpState before = flow.getPreviousState();
+            if (flow.entered(TcpState.RESET) && (before == TcpState.SYN_SENT || before == TcpState.SYN_RECEIVED)) {
+                return Event.FAILURE;
+            }
+        } else if (ctx.hasTcpFlag(PacketContext.TCP_RST) && !ctx.hasTcpFlag(PacketContext.TCP_ACK)) {
+            // Without flow state, a bare RST is the usual answer to a rejected SYN
+            return Event.FAILURE;
+        }
+        return null;
+    }
+
+    /** Checks for an FTP {@code PASS} command at the start of the payload. */
+    private static boolean isFtpPassword(PacketContext ctx) {
+        if (ctx.getDstPort() != TcpPort.FTP.valueAsInt() || ctx.getPayloadLength() < FTP_PASS_COMMAND.length) {
+            return false;
+        }
+        byte[] data = ctx.getData();
+        int offset = ctx.getPayloadOffset();
+        for (int i = 0; i < FTP_PASS_COMMAND.length; i++) {
+            if (Character.toUpperCase((char) data[offset + i]) != FTP_PASS_COMMAND[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getStatistics() {
+        return tracker.toString();
+    }
+
+    @Override
+    public RuleInterest getInterest() {
+        return INTEREST;
     }
 
     @Override
@@ -108,7 +213,7 @@ public class BruteForceDetectionRule implements Rule {
 
     @Override
     public String getAlertDescription() {
-        return "Potential brute force authentication attack detected. Multiple failed login attempts or suspicious authentication patterns observed on common service ports.";
+        return "Potential brute force authentication attack detected. A client opened an unusual number of connections or login attempts to one authentication service, or repeatedly failed to log in, within a short window.";
     }
 
     @Override
@@ -0,0 +1,29 @@
+package com.NetProtector.Models.Rules;
+
+import com.NetProtector.Models.DetectionClock;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketTimeClock;
+import org.pcap4j.packet.Packet;
+
+/**
+ * Base class for rules that work on a pre-decoded {@link PacketContext}.
+ * Calls through the raw {@link Packet} API decode the packet first.
+ */
+public abstract class ContextRule implements Rule {
+
+    /** Time source for windowed state; packet time unless the engine installs another. */
+    protected volatile DetectionClock clock = new PacketTimeClock();
+
+    @Override
+    public boolean verify(Packet p) {
+        return p != null && verify(PacketContext.from(p));
+    }
+
+    @Override
+    public abstract boolean verify(PacketContext ctx);
+
+    @Override
+    public void setClock(DetectionClock clock) {
+        this.clock = clock;
+    }
+}
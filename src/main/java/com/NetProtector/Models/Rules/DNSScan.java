@@ -1,8 +1,7 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IpPacket;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.UdpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
 import org.pcap4j.packet.namednumber.UdpPort;
 
 /**
@@ -10,40 +9,31 @@ import org.pcap4j.packet.namednumber.UdpPort;
  * Rule to detect DNS (Domain Name System) traffic.
  * DNS typically uses UDP port 53.
  */
-public class DNSScan implements Rule { // Consider renaming to DNSTrafficDetectRule if not specifically for "scanning"
+public class DNSScan extends ContextRule { // Consider renaming to DNSTrafficDetectRule if not specifically for "scanning"
 
-    private static final UdpPort DNS_PORT = UdpPort.DOMAIN; // Standard DNS port 53
+    private static final int DNS_PORT = UdpPort.DOMAIN.valueAsInt(); // Standard DNS port 53
 
     public DNSScan() {
     }
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
-
-        // DNS typically runs over UDP, so check for UdpPacket
-        UdpPacket udpPacket = p.get(UdpPacket.class);
-
-        if (udpPacket != null) {
-            UdpPacket.UdpHeader udpHeader = udpPacket.getHeader();
-            IpPacket ipPacket = p.get(IpPacket.class); // Get IP packet for source/destination IPs in description
-
+    public boolean verify(PacketContext ctx) {
+        // DNS typically runs over UDP
+        if (ctx.isUdp()) {
             // Check if either source or destination port is the DNS port (53)
-            if (udpHeader.getDstPort().equals(DNS_PORT) || udpHeader.getSrcPort().equals(DNS_PORT)) {
+            if (ctx.hasPort(DNS_PORT)) {
 
 
-                if (ipPacket != null && ipPacket.getHeader() != null) {
+                if (ctx.isIp()) {
                     System.out.println("⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️");
-                    System.out.println("⚠️ DNS packet detected: " + ipPacket.getHeader().getSrcAddr() +
-                            ":" + udpHeader.getSrcPort().valueAsInt() +
-                            " -> " + ipPacket.getHeader().getDstAddr() +
-                            ":" + udpHeader.getDstPort().valueAsInt());
+                    System.out.println("⚠️ DNS packet detected: /" + ctx.getSrcAddress() +
+                            ":" + ctx.getSrcPort() +
+                            " -> /" + ctx.getDstAddress() +
+                            ":" + ctx.getDstPort());
                 } else {
                     System.out.println("⚠️ DNS packet detected: Port " +
-                            udpHeader.getSrcPort().valueAsInt() +
-                            " to Port " + udpHeader.getDstPort().valueAsInt());
+                            ctx.getSrcPort() +
+                            " to Port " + ctx.getDstPort());
                 }
 
 
@@ -53,6 +43,16 @@ public class DNSScan implements Rule { // Consider renaming to DNSTrafficDetectR
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.port(DNS_PORT, Protocol.UDP);
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "DNS Traffic Detected"; // Corrected Name
@@ -1,158 +1,100 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Flows.FlowSnapshot;
+import com.NetProtector.Models.Tracking.TransferTracker;
+import com.NetProtector.Models.Tracking.TransferTracker.Trigger;
 
 /**
  * Rule to detect potential data exfiltration attempts by monitoring large outbound transfers.
  * This is a HIGH severity rule as data exfiltration can lead to significant data breaches.
+ *
+ * Bytes are accounted per internal host and external destination over a sliding
+ * window, for connections the internal host opened. The rule alerts once per
+ * activity span when a pair uploads more than {@link #LARGE_TRANSFER_THRESHOLD},
+ * when uploads dominate downloads by a wide margin, or when a pair keeps uploading
+ * for a long time. Single packets are never judged on their own, so bulk HTTPS
+ * downloads and full-sized segments no longer raise alerts.
  */
-public class DataExfiltrationRule implements Rule {
+public class DataExfiltrationRule extends ContextRule {
 
     private static final int LARGE_TRANSFER_THRESHOLD = 10485760; // 10MB in bytes
-    private static final int SUSPICIOUS_PACKET_SIZE = 1400; // Near MTU size packets
+    private static final long TIME_WINDOW = 300000; // 5 minutes in milliseconds
+    private static final double UPLOAD_RATIO_THRESHOLD = 10.0; // Outbound bytes per inbound byte
+    private static final long RATIO_MIN_BYTES = 1048576; // 1MB before the ratio is judged
+    private static final long DURATION_THRESHOLD = 1800000; // 30 minutes of continuous uploading
+    private static final long DURATION_MIN_BYTES = 1048576; // 1MB over the whole span
+    private static final int MAX_TRACKED_PAIRS = 16384; // Stalest host pairs are evicted beyond this
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    private final TransferTracker tracker;
 
-        IpV4Packet ipPacket = p.get(IpV4Packet.class);
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        
-        if (ipPacket != null && tcpPacket != null) {
-            // Check for large packet sizes (potential bulk data transfer)
-            if (ipPacket.length() >= SUSPICIOUS_PACKET_SIZE) {
-                
-                // Check if this is outbound traffic from internal network
-                String srcAddr = ipPacket.getHeader().getSrcAddr().getHostAddress();
-                String dstAddr = ipPacket.getHeader().getDstAddr().getHostAddress();
-                
-                if (isInternalIp(srcAddr) && !isInternalIp(dstAddr)) {
-                    // Outbound traffic from internal to external
-                    
-                    // Check for suspicious patterns in payload
-                    if (tcpPacket.getPayload() != null) {
-                        byte[] payload = tcpPacket.getPayload().getRawData();
-                        if (payload != null && payload.length > 0) {
-                            if (containsSuspiciousDataPatterns(payload)) {
-                                return true;
-                            }
-                        }
-                    }
-                    
-                    // Check for non-standard ports (potential covert channels)
-                    int dstPort = tcpPacket.getHeader().getDstPort().valueAsInt();
-                    if (isSuspiciousPort(dstPort)) {
-                        return true;
-                    }
-                    
-                    // Large packets to external destinations are suspicious
-                    if (ipPacket.length() > SUSPICIOUS_PACKET_SIZE * 2) {
-                        return true;
-                    }
-                }
-            }
-            
-            // Check for encrypted data patterns (potential encrypted exfiltration)
-            if (tcpPacket.getPayload() != null) {
-                byte[] payload = tcpPacket.getPayload().getRawData();
-                if (payload != null && isLikelyEncrypted(payload)) {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+    public DataExfiltrationRule() {
+        this(TIME_WINDOW, LARGE_TRANSFER_THRESHOLD, UPLOAD_RATIO_THRESHOLD, RATIO_MIN_BYTES,
+             DURATION_THRESHOLD, DURATION_MIN_BYTES, MAX_TRACKED_PAIRS);
     }
 
-    private boolean isInternalIp(String ipAddress) {
-        return ipAddress.startsWith("192.168.") ||
-               ipAddress.startsWith("10.") ||
-               (ipAddress.startsWith("172.") && 
-                ipAddress.split("\\.").length > 1 &&
-                Integer.parseInt(ipAddress.split("\\.")[1]) >= 16 &&
-                Integer.parseInt(ipAddress.split("\\.")[1]) <= 31);
+    /**
+     * Creates the rule with custom thresholds
+     * @param windowMillis Sliding window for the volume and ratio thresholds
+     * @param volumeBytes Outbound bytes per window that count as a large transfer
+     * @param uploadRatio Outbound to inbound ratio per window that counts as upload-dominated
+     * @param ratioMinBytes Outbound bytes per window needed before the ratio is judged
+     * @param durationMillis Continuous upload time that counts as sustained exfiltration
+     * @param durationMinBytes Outbound bytes over that time needed before the duration is judged
+     * @param maxTrackedPairs Hard cap on tracked host pairs
+     */
+    public DataExfiltrationRule(long windowMillis, long volumeBytes, double uploadRatio, long ratioMinBytes,
+                                long durationMillis, long durationMinBytes, int maxTrackedPairs) {
+        this.tracker = new TransferTracker(windowMillis, maxTrackedPairs, volumeBytes, uploadRatio,
+                                           ratioMinBytes, durationMillis, durationMinBytes);
     }
 
-    private boolean isSuspiciousPort(int port) {
-        // Common legitimate ports that should not be used for large data transfers
-        int[] commonPorts = {80, 443, 21, 22, 23, 25, 53, 110, 143, 993, 995};
-        for (int commonPort : commonPorts) {
-            if (port == commonPort) {
-                return false; // These are normal
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isIpV4() && ctx.isTcp()) {
+            boolean srcInternal = isInternalIp(ctx.getSrcIp());
+            boolean dstInternal = isInternalIp(ctx.getDstIp());
+            if (srcInternal == dstInternal) {
+                return false; // Not crossing the network boundary
             }
-        }
-        
-        // High ports might be suspicious for large transfers
-        return port > 1024 && port < 65535;
-    }
-
-    private boolean containsSuspiciousDataPatterns(byte[] payload) {
-        String payloadString = new String(payload);
-        
-        // Look for file headers that might indicate file exfiltration
-        String[] fileHeaders = {
-            "PK", // ZIP files
-            "PDF", // PDF files
-            "GIF", // GIF images
-            "JFIF", // JPEG images
-            "%PDF", // PDF files
-            "<?xml", // XML files
-            "{", // JSON files
-            "BEGIN", // Certificate files
-        };
-        
-        for (String header : fileHeaders) {
-            if (payloadString.startsWith(header)) {
+            // Only connections opened by the internal host; servers answering outside clients are not exfiltration
+            FlowSnapshot flow = ctx.getFlow();
+            if (flow != null && flow.isFromInitiator() != srcInternal) {
+                return false;
+            }
+            int internal = srcInternal ? ctx.getSrcIp() : ctx.getDstIp();
+            int external = srcInternal ? ctx.getDstIp() : ctx.getSrcIp();
+            Trigger trigger = tracker.record(internal, external, ctx.getIpTotalLength(), srcInternal,
+                                             clock.currentTimeMillis(ctx));
+            if (trigger != Trigger.NONE) {
+                System.out.println("DataExfiltrationRule: " + trigger + " threshold crossed by " +
+                                   PacketContext.formatIpV4(internal) + " -> " + PacketContext.formatIpV4(external));
                 return true;
             }
         }
-        
-        // Check for base64 encoded data (common in data exfiltration)
-        if (isLikelyBase64(payloadString)) {
-            return true;
-        }
-        
         return false;
     }
 
-    private boolean isLikelyBase64(String data) {
-        if (data.length() < 10) return false;
-        
-        // Base64 typically uses A-Z, a-z, 0-9, +, /, =
-        int validChars = 0;
-        for (char c : data.toCharArray()) {
-            if (Character.isLetterOrDigit(c) || c == '+' || c == '/' || c == '=') {
-                validChars++;
-            }
-        }
-        
-        // If more than 90% of characters are valid base64 characters
-        return (double) validChars / data.length() > 0.9;
+    private boolean isInternalIp(int ip) {
+        return (ip >>> 16) == 0xC0A8 ||      // 192.168.0.0/16
+               (ip >>> 24) == 10 ||          // 10.0.0.0/8
+               (ip >>> 20) == 0xAC1;         // 172.16.0.0/12
     }
 
-    private boolean isLikelyEncrypted(byte[] data) {
-        if (data.length < 100) return false;
-        
-        // Calculate entropy to detect encrypted/compressed data
-        int[] frequency = new int[256];
-        for (byte b : data) {
-            frequency[b & 0xFF]++;
-        }
-        
-        double entropy = 0.0;
-        for (int freq : frequency) {
-            if (freq > 0) {
-                double probability = (double) freq / data.length;
-                entropy -= probability * (Math.log(probability) / Math.log(2));
-            }
-        }
-        
-        // High entropy suggests encrypted or compressed data
-        return entropy > 7.5; // High entropy threshold
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.TCP);
+    }
+
+    @Override
+    public String getStatistics() {
+        return tracker.toString();
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
     }
 
     @Override
@@ -162,7 +104,7 @@ public class DataExfiltrationRule implements Rule {
 
     @Override
     public String getAlertDescription() {
-        return "Large outbound data transfer detected that may indicate data exfiltration. This could involve sensitive files being transmitted to external locations.";
+        return "An internal host uploaded an unusually large amount of data to an external destination, uploaded far more than it downloaded, or kept uploading for an extended period. This could involve sensitive files being transmitted to external locations.";
     }
 
     @Override
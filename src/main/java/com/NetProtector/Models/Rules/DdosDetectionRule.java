@@ -1,68 +1,158 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Tracking.HeavyHitterTracker;
+import com.NetProtector.Models.Tracking.HeavyHitterTracker.HeavyHitter;
+import com.NetProtector.Models.Tracking.WindowedCounterTable;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Rule to detect potential DDoS attacks by monitoring traffic patterns.
  * Detects high volume of packets from single sources or to single destinations.
  * This is a HIGH severity rule as DDoS attacks can severely impact network performance.
+ *
+ * Each instance counts one {@link Direction}: install one per direction to watch
+ * both. A rule's counters are owned by the worker its affinity routes to, so the
+ * source rule is affine to the source address and the destination rule to the
+ * destination address; no counter is ever updated by more than one worker.
+ *
+ * In {@link Mode#EXACT} mode every address gets its own bounded counter. In
+ * {@link Mode#SKETCH} mode volume is estimated with Count-Min sketches over a
+ * sliding window, which keeps memory fixed with millions of distinct sources and
+ * also yields the top talkers by packets and bytes.
  */
-public class DdosDetectionRule implements Rule {
+public class DdosDetectionRule extends ContextRule {
 
-    private static final int PACKET_THRESHOLD = 100; // Packets per source in monitoring window
+    /** How per-address volume is counted. */
+    public enum Mode { EXACT, SKETCH }
+
+    /** Which address of a packet volume is counted for. */
+    public enum Direction { SOURCE, DESTINATION }
+
+    private static final int PACKET_THRESHOLD = 100; // Packets per address in monitoring window
     private static final long TIME_WINDOW = 30000; // 30 seconds in milliseconds
+    private static final int MAX_TRACKED_ADDRESSES = 65536; // Oldest entries are evicted beyond this
+
+    // Sketch mode defaults: 6 panes of 5 s, estimates within 0.1% of window traffic with 99% probability
+    public static final int DEFAULT_SKETCH_PANES = 6;
+    public static final double DEFAULT_SKETCH_EPSILON = 0.001;
+    public static final double DEFAULT_SKETCH_DELTA = 0.01;
+    public static final int DEFAULT_TOP_K = 64;
     
-    private final Map<String, PacketCounter> sourceCounters = new ConcurrentHashMap<>();
-    private final Map<String, PacketCounter> destinationCounters = new ConcurrentHashMap<>();
-    
-    private static class PacketCounter {
-        private final AtomicInteger count = new AtomicInteger(0);
-        private volatile long firstPacketTime = System.currentTimeMillis();
-        
-        public boolean increment() {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - firstPacketTime > TIME_WINDOW) {
-                // Reset counter for new time window
-                count.set(1);
-                firstPacketTime = currentTime;
-                return false;
-            }
-            return count.incrementAndGet() > PACKET_THRESHOLD;
-        }
+    private final Direction direction;
+    private final Mode mode;
+    private final WindowedCounterTable counters;
+    private final HeavyHitterTracker hitters;
+
+    /**
+     * Creates the rule for one direction
+     * @param direction Address whose volume is counted
+     */
+    public DdosDetectionRule(Direction direction) {
+        this(direction, MAX_TRACKED_ADDRESSES);
+    }
+
+    /**
+     * Creates the rule with a custom tracking capacity
+     * @param direction Address whose volume is counted
+     * @param maxTrackedAddresses Hard cap on tracked addresses
+     */
+    public DdosDetectionRule(Direction direction, int maxTrackedAddresses) {
+        this.direction = Objects.requireNonNull(direction);
+        this.mode = Mode.EXACT;
+        this.counters = new WindowedCounterTable(TIME_WINDOW, maxTrackedAddresses);
+        this.hitters = null;
+    }
+
+    /**
+     * Creates the rule in sketch mode
+     * @param direction Address whose volume is counted
+     * @param epsilon Relative error bound of the volume estimates
+     * @param delta Probability of exceeding the error bound
+     * @param topK Number of heavy hitters monitored
+     */
+    public DdosDetectionRule(Direction direction, double epsilon, double delta, int topK) {
+        this.direction = Objects.requireNonNull(direction);
+        this.mode = Mode.SKETCH;
+        this.counters = null;
+        this.hitters = new HeavyHitterTracker(TIME_WINDOW, DEFAULT_SKETCH_PANES, epsilon, delta, topK);
+    }
+
+    /**
+     * Creates the rule in the given mode with default sizing
+     * @param direction Address whose volume is counted
+     * @param mode Counting mode
+     * @return The rule
+     */
+    public static DdosDetectionRule create(Direction direction, Mode mode) {
+        return mode == Mode.SKETCH
+                ? new DdosDetectionRule(direction, DEFAULT_SKETCH_EPSILON, DEFAULT_SKETCH_DELTA, DEFAULT_TOP_K)
+                : new DdosDetectionRule(direction);
     }
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isIpV4()) {
+            long now = clock.currentTimeMillis(ctx);
+            // High volume from a single source, or to a single destination (potential target)
+            int address = direction == Direction.SOURCE ? ctx.getSrcIp() : ctx.getDstIp();
 
-        IpV4Packet ipPacket = p.get(IpV4Packet.class);
-        if (ipPacket != null) {
-            String srcAddr = ipPacket.getHeader().getSrcAddr().getHostAddress();
-            String dstAddr = ipPacket.getHeader().getDstAddr().getHostAddress();
-            
-            // Check for high volume from single source
-            sourceCounters.putIfAbsent(srcAddr, new PacketCounter());
-            if (sourceCounters.get(srcAddr).increment()) {
-                return true;
-            }
-            
-            // Check for high volume to single destination (potential target)
-            destinationCounters.putIfAbsent(dstAddr, new PacketCounter());
-            if (destinationCounters.get(dstAddr).increment()) {
-                return true;
+            if (mode == Mode.SKETCH) {
+                return hitters.record(address, ctx.getIpTotalLength(), now) > PACKET_THRESHOLD;
             }
+            return counters.increment(address, now) > PACKET_THRESHOLD;
         }
         
         return false;
     }
 
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets the top addresses of this rule's direction in the window (sketch mode only)
+     * @param n Maximum number of entries
+     * @param byBytes true to rank by bytes, false by packets
+     * @return Top sources or destinations, empty in exact mode
+     */
+    public List<HeavyHitter> getTopAddresses(int n, boolean byBytes) {
+        if (hitters == null) {
+            return Collections.emptyList();
+        }
+        long now = clock.currentTimeMillis();
+        return byBytes ? hitters.topByBytes(n, now) : hitters.topByPackets(n, now);
+    }
+
+    /**
+     * Number of tracked addresses dropped because the counter table was full
+     * @return Eviction count; 0 in sketch mode
+     */
+    public long getEvictionCount() {
+        return mode == Mode.SKETCH ? 0 : counters.getEvictionCount();
+    }
+
+    @Override
+    public String getStatistics() {
+        String addresses = direction == Direction.SOURCE ? "sources " : "destinations ";
+        if (mode == Mode.SKETCH) {
+            return "top " + addresses + getTopAddresses(3, false);
+        }
+        return addresses + counters;
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "Potential DDoS Attack Detected";
@@ -70,7 +160,9 @@ public class DdosDetectionRule implements Rule {
 
     @Override
     public String getAlertDescription() {
-        return "High volume of network traffic detected from a single source or to a single destination, which may indicate a Distributed Denial of Service (DDoS) attack attempt.";
+        return direction == Direction.SOURCE
+                ? "High volume of network traffic detected from a single source, which may indicate a Distributed Denial of Service (DDoS) attack attempt."
+                : "High volume of network traffic detected to a single destination, which may indicate a Distributed Denial of Service (DDoS) attack attempt.";
     }
 
     @Override
@@ -78,8 +170,14 @@ public class DdosDetectionRule implements Rule {
         return Severity.HIGH;
     }
 
+    @Override
+    public FlowAffinity getFlowAffinity() {
+        // Counters are kept per address of this rule's direction
+        return direction == Direction.SOURCE ? FlowAffinity.SOURCE : FlowAffinity.DESTINATION;
+    }
+
     @Override
     public String getName() {
-        return "DDoS Detection";
+        return direction == Direction.SOURCE ? "DDoS Detection (sources)" : "DDoS Detection (destinations)";
     }
 }
@@ -1,15 +1,16 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.UdpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
 import org.pcap4j.packet.namednumber.UdpPort;
 
 /**
  * Rule to detect DNS tunneling attempts, which can be used for data exfiltration
  * or command and control communication. This is a MEDIUM severity rule.
  */
-public class DnsTunnelingRule implements Rule {
+public class DnsTunnelingRule extends ContextRule {
 
+    private static final int DNS_PORT = UdpPort.DOMAIN.valueAsInt();
     private static final int SUSPICIOUS_QUERY_LENGTH = 50; // Unusually long DNS queries
     private static final int SUSPICIOUS_SUBDOMAIN_COUNT = 5; // Too many subdomains
     
@@ -23,23 +24,12 @@ public class DnsTunnelingRule implements Rule {
     };
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
-
-        UdpPacket udpPacket = p.get(UdpPacket.class);
-        if (udpPacket != null) {
-            UdpPort dstPort = udpPacket.getHeader().getDstPort();
-            UdpPort srcPort = udpPacket.getHeader().getSrcPort();
-            
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isUdp()) {
             // Check if it's DNS traffic (port 53)
-            if (dstPort.equals(UdpPort.DOMAIN) || srcPort.equals(UdpPort.DOMAIN)) {
-                if (udpPacket.getPayload() != null) {
-                    byte[] payload = udpPacket.getPayload().getRawData();
-                    if (payload != null && payload.length > 0) {
-                        return analyzeDnsPayload(payload);
-                    }
+            if (ctx.hasPort(DNS_PORT)) {
+                if (ctx.hasPayload()) {
+                    return analyzeDnsPayload(ctx);
                 }
             }
         }
@@ -47,9 +37,9 @@ public class DnsTunnelingRule implements Rule {
         return false;
     }
 
-    private boolean analyzeDnsPayload(byte[] payload) {
+    private boolean analyzeDnsPayload(PacketContext ctx) {
         try {
-            String payloadString = new String(payload).toUpperCase();
+            String payloadString = ctx.getPayloadString().toUpperCase();
             
             // Check for unusually long queries (potential data exfiltration)
             if (payloadString.length() > SUSPICIOUS_QUERY_LENGTH) {
@@ -135,6 +125,11 @@ public class DnsTunnelingRule implements Rule {
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.port(DNS_PORT, Protocol.UDP);
+    }
+
     @Override
     public String getAlertName() {
         return "DNS Tunneling Detected";
@@ -0,0 +1,13 @@
+package com.NetProtector.Models.Rules;
+
+/**
+ * Which packets must be seen by the same detection worker for a rule's state to stay consistent.
+ */
+public enum FlowAffinity {
+    /** Both directions of a connection (5-tuple) go to the same worker. */
+    FLOW,
+    /** All packets from one source address go to the same worker. */
+    SOURCE,
+    /** All packets to one destination address go to the same worker. */
+    DESTINATION
+}
@@ -1,59 +1,44 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IcmpV4CommonPacket;
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
-
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Tracking.WindowedCounterTable;
 
 /**
  * Rule to detect ICMP flood attacks, which can be used for DoS attacks.
  * This is a MEDIUM severity rule as ICMP floods can degrade network performance.
  */
-public class IcmpFloodRule implements Rule {
+public class IcmpFloodRule extends ContextRule {
 
     private static final int ICMP_THRESHOLD = 50; // ICMP packets per source in time window
     private static final long TIME_WINDOW = 10000; // 10 seconds in milliseconds
+    private static final int MAX_TRACKED_SOURCES = 16384; // Oldest entries are evicted beyond this
     
-    private final ConcurrentHashMap<String, IcmpCounter> icmpCounters = new ConcurrentHashMap<>();
-    
-    private static class IcmpCounter {
-        private final AtomicInteger count = new AtomicInteger(0);
-        private volatile long firstPacketTime = System.currentTimeMillis();
-        
-        public boolean increment() {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - firstPacketTime > TIME_WINDOW) {
-                // Reset counter for new time window
-                count.set(1);
-                firstPacketTime = currentTime;
-                return false;
-            }
-            return count.incrementAndGet() > ICMP_THRESHOLD;
-        }
+    private final WindowedCounterTable icmpCounters;
+
+    public IcmpFloodRule() {
+        this(MAX_TRACKED_SOURCES);
     }
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    /**
+     * Creates the rule with a custom tracking capacity
+     * @param maxTrackedSources Hard cap on tracked source addresses
+     */
+    public IcmpFloodRule(int maxTrackedSources) {
+        this.icmpCounters = new WindowedCounterTable(TIME_WINDOW, maxTrackedSources);
+    }
 
-        IcmpV4CommonPacket icmpPacket = p.get(IcmpV4CommonPacket.class);
-        if (icmpPacket != null) {
-            IpV4Packet ipPacket = p.get(IpV4Packet.class);
-            if (ipPacket != null) {
-                String srcAddr = ipPacket.getHeader().getSrcAddr().getHostAddress();
-                
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isIcmp()) {
+            if (ctx.isIpV4()) {
                 // Track ICMP packets per source
-                icmpCounters.putIfAbsent(srcAddr, new IcmpCounter());
-                if (icmpCounters.get(srcAddr).increment()) {
+                if (icmpCounters.increment(ctx.getSrcIp(), clock.currentTimeMillis(ctx)) > ICMP_THRESHOLD) {
                     return true;
                 }
                 
                 // Additional checks for suspicious ICMP patterns
-                if (isSuspiciousIcmpPattern(icmpPacket)) {
+                if (isSuspiciousIcmpPattern(ctx)) {
                     return true;
                 }
             }
@@ -62,14 +47,14 @@ public class IcmpFloodRule implements Rule {
         return false;
     }
 
-    private boolean isSuspiciousIcmpPattern(IcmpV4CommonPacket icmpPacket) {
+    private boolean isSuspiciousIcmpPattern(PacketContext ctx) {
         // Check for large ICMP packets (potential for amplification attacks)
-        if (icmpPacket.length() > 1024) { // Unusually large ICMP packet
+        if (ctx.getIpTotalLength() - ctx.getIpHeaderLength() > 1024) { // Unusually large ICMP packet
             return true;
         }
         
         // Check ICMP type for potentially malicious uses
-        byte icmpType = icmpPacket.getHeader().getType().value();
+        int icmpType = ctx.getIcmpType();
         
         // Suspicious ICMP types
         switch (icmpType) {
@@ -85,6 +70,29 @@ public class IcmpFloodRule implements Rule {
         return false;
     }
 
+    /**
+     * Number of tracked sources dropped because the counter table was full
+     * @return Eviction count
+     */
+    public long getEvictionCount() {
+        return icmpCounters.getEvictionCount();
+    }
+
+    @Override
+    public String getStatistics() {
+        return "sources " + icmpCounters;
+    }
+
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.ICMP);
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "ICMP Flood Attack";
@@ -100,6 +108,12 @@ public class IcmpFloodRule implements Rule {
         return Severity.MEDIUM;
     }
 
+    @Override
+    public FlowAffinity getFlowAffinity() {
+        // Counters are kept per source address
+        return FlowAffinity.SOURCE;
+    }
+
     @Override
     public String getName() {
         return "ICMP Flood Detection";
@@ -1,63 +1,87 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Intel.ThreatIntelLoader;
+import com.NetProtector.Models.Intel.ThreatIntelSnapshot;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Rule to detect traffic from known malicious IP addresses or suspicious geographical locations.
  * This is a LOW severity rule for basic threat intelligence monitoring.
+ *
+ * Listed addresses and ranges live in an immutable {@link ThreatIntelSnapshot}
+ * (Bloom filter in front of a CIDR radix trie), so lookups are allocation-free
+ * and feeds with millions of entries can be loaded with {@link #loadFeeds(List)}.
  */
-public class MaliciousIpRule implements Rule {
-
-    // Sample known malicious IP ranges and specific IPs
-    private static final Set<String> KNOWN_MALICIOUS_IPS = new HashSet<>();
-    private static final Set<String> SUSPICIOUS_IP_RANGES = new HashSet<>();
-    
-    static {
-        // Add some example malicious IPs (in real implementation, this would be from threat intel feeds)
-        KNOWN_MALICIOUS_IPS.add("192.168.100.100"); // Example malicious IP
-        KNOWN_MALICIOUS_IPS.add("10.0.0.99");       // Example malicious IP
-        KNOWN_MALICIOUS_IPS.add("172.16.1.100");    // Example malicious IP
-        
-        // Add suspicious IP ranges (commonly used by botnets, tor exit nodes, etc.)
-        SUSPICIOUS_IP_RANGES.add("203.0.113");      // TEST-NET-3 (example)
-        SUSPICIOUS_IP_RANGES.add("198.51.100");     // TEST-NET-2 (example)
-        SUSPICIOUS_IP_RANGES.add("192.0.2");        // TEST-NET-1 (example)
+public class MaliciousIpRule extends ContextRule {
+
+    // Sample known malicious IPs (in real implementation, these come from threat intel feeds)
+    private static final String[] KNOWN_MALICIOUS_IPS = {
+        "192.168.100.100", // Example malicious IP
+        "10.0.0.99",       // Example malicious IP
+        "172.16.1.100"     // Example malicious IP
+    };
+
+    // Suspicious IP ranges (commonly used by botnets, tor exit nodes, etc.)
+    private static final String[] SUSPICIOUS_IP_RANGES = {
+        "203.0.113.0/24",  // TEST-NET-3 (example)
+        "198.51.100.0/24", // TEST-NET-2 (example)
+        "192.0.2.0/24"     // TEST-NET-1 (example)
+    };
+
+    private volatile ThreatIntelSnapshot intel = builtInEntries().build();
+
+    /**
+     * Replaces the threat-intel data with the built-in entries plus the given feeds.
+     * The new snapshot is built off to the side and swapped in atomically.
+     * @param feedFiles Local feed files, one IP or CIDR per line
+     * @throws IOException if a feed cannot be read; the current snapshot is kept
+     */
+    public void loadFeeds(List<Path> feedFiles) throws IOException {
+        ThreatIntelSnapshot.Builder builder = builtInEntries();
+        int skipped = ThreatIntelLoader.load(builder, feedFiles);
+        ThreatIntelSnapshot snapshot = builder.build();
+        intel = snapshot;
+        System.out.println("MaliciousIpRule: Loaded threat intel - " + snapshot +
+                (skipped > 0 ? ", " + skipped + " invalid entries skipped" : ""));
     }
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
+    /**
+     * Gets the active threat-intel snapshot
+     * @return The snapshot
+     */
+    public ThreatIntelSnapshot getSnapshot() {
+        return intel;
+    }
+
+    private static ThreatIntelSnapshot.Builder builtInEntries() {
+        ThreatIntelSnapshot.Builder builder = ThreatIntelSnapshot.builder();
+        for (String ip : KNOWN_MALICIOUS_IPS) {
+            builder.add(ip);
         }
+        for (String range : SUSPICIOUS_IP_RANGES) {
+            builder.add(range);
+        }
+        return builder;
+    }
 
-        IpV4Packet ipPacket = p.get(IpV4Packet.class);
-        if (ipPacket != null) {
-            String srcAddr = ipPacket.getHeader().getSrcAddr().getHostAddress();
-            String dstAddr = ipPacket.getHeader().getDstAddr().getHostAddress();
-            
-            // Check source IP against known malicious IPs
-            if (KNOWN_MALICIOUS_IPS.contains(srcAddr)) {
-                return true;
-            }
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isIpV4()) {
+            int srcIp = ctx.getSrcIp();
+            int dstIp = ctx.getDstIp();
+            ThreatIntelSnapshot snapshot = intel;
             
-            // Check destination IP against known malicious IPs
-            if (KNOWN_MALICIOUS_IPS.contains(dstAddr)) {
+            // Check source and destination against known malicious IPs and ranges
+            if (snapshot.contains(srcIp) || snapshot.contains(dstIp)) {
                 return true;
             }
             
-            // Check against suspicious IP ranges
-            for (String range : SUSPICIOUS_IP_RANGES) {
-                if (srcAddr.startsWith(range) || dstAddr.startsWith(range)) {
-                    return true;
-                }
-            }
-            
             // Additional checks for suspicious patterns
-            if (isSuspiciousIpPattern(srcAddr) || isSuspiciousIpPattern(dstAddr)) {
+            if (isSuspiciousIpPattern(srcIp) || isSuspiciousIpPattern(dstIp)) {
                 return true;
             }
         }
@@ -65,46 +89,47 @@ public class MaliciousIpRule implements Rule {
         return false;
     }
 
-    private boolean isSuspiciousIpPattern(String ipAddress) {
+    private boolean isSuspiciousIpPattern(int ip) {
         // Check for private IPs communicating externally (potential data exfiltration)
-        if (isPrivateIp(ipAddress)) {
+        if (isPrivateIp(ip)) {
             return false; // Private IPs are not inherently suspicious
         }
         
         // Check for reserved or special-use IP addresses that shouldn't appear in normal traffic
-        if (ipAddress.startsWith("0.") ||           // "This" network
-            ipAddress.startsWith("127.") ||         // Loopback
-            ipAddress.startsWith("169.254.") ||     // Link-local
-            ipAddress.startsWith("224.") ||         // Multicast
-            ipAddress.startsWith("240.")) {         // Reserved
+        int firstOctet = ip >>> 24;
+        if (firstOctet == 0 ||                          // "This" network
+            firstOctet == 127 ||                        // Loopback
+            (ip >>> 16) == 0xA9FE ||                    // Link-local 169.254/16
+            firstOctet == 224 ||                        // Multicast
+            firstOctet == 240) {                        // Reserved
             return true;
         }
         
         // Check for sequential IP patterns (might indicate scanning)
-        String[] octets = ipAddress.split("\\.");
-        if (octets.length == 4) {
-            try {
-                int lastOctet = Integer.parseInt(octets[3]);
-                // Sequential IPs ending in 1, 2, 3... might be from scanning
-                if (lastOctet < 10) {
-                    return true;
-                }
-            } catch (NumberFormatException e) {
-                // Invalid IP format is also suspicious
-                return true;
-            }
-        }
-        
-        return false;
+        // Sequential IPs ending in 1, 2, 3... might be from scanning
+        return (ip & 0xFF) < 10;
+    }
+
+    private boolean isPrivateIp(int ip) {
+        return (ip >>> 16) == 0xC0A8 ||     // 192.168.0.0/16
+               (ip >>> 24) == 10 ||         // 10.0.0.0/8
+               (ip >>> 20) == 0xAC1;        // 172.16.0.0/12
     }
 
-    private boolean isPrivateIp(String ipAddress) {
-        return ipAddress.startsWith("192.168.") ||
-               ipAddress.startsWith("10.") ||
-               (ipAddress.startsWith("172.") && 
-                ipAddress.split("\\.").length > 1 &&
-                Integer.parseInt(ipAddress.split("\\.")[1]) >= 16 &&
-                Integer.parseInt(ipAddress.split("\\.")[1]) <= 31);
+    @Override
+    public String getStatistics() {
+        return intel.toString();
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
+    /** Low severity per hit, but a feed match is never shed under load. */
+    @Override
+    public boolean isCritical() {
+        return true;
     }
 
     @Override
@@ -1,36 +1,44 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IcmpV4CommonPacket;
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
 import org.pcap4j.packet.namednumber.IcmpV4Type;
 
 /**
  * Rule to detect ICMP Ping (Echo Request).
  * While not always malicious, frequent pings can be part of reconnaissance.
  */
-public class PingDetectRule implements Rule {
+public class PingDetectRule extends ContextRule {
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
-
+    public boolean verify(PacketContext ctx) {
         // Check if it's an IPv4 packet first, as ICMPv4 is specific to IPv4
-        IpV4Packet ipV4Packet = p.get(IpV4Packet.class);
-        if (ipV4Packet != null) {
-            IcmpV4CommonPacket icmpPacket = p.get(IcmpV4CommonPacket.class);
-            if (icmpPacket != null) {
+        if (ctx.isIpV4()) {
+            if (ctx.isIcmp()) {
                 // Check if it's an Echo Request (Type 8)
                 System.out.println("⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️");
 
-                return icmpPacket.getHeader().getType().equals(IcmpV4Type.ECHO);
+                return ctx.getIcmpType() == (IcmpV4Type.ECHO.value() & 0xFF);
             }
         }
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.ICMP);
+    }
+
+    @Override
+    public String getBpfFilter() {
+        return "icmp[icmptype] == icmp-echo";
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "ICMP Echo Request (Ping) Detected";
@@ -1,15 +1,102 @@
 package com.NetProtector.Models.Rules;
 
+import com.NetProtector.Models.DetectionClock;
+import com.NetProtector.Models.PacketContext;
 import org.pcap4j.packet.Packet;
 
 /**
  * @author Stika
  **/
 public interface Rule {
+
+    /** Snap length covering every header PacketContext decodes: Ethernet with QinQ tags, IPv6 extension headers, TCP options. */
+    int HEADERS_SNAPLEN = 256;
+    /** Snap length for rules that inspect payloads. */
+    int FULL_SNAPLEN = 65536;
+
     boolean verify(Packet p);
+
+    /**
+     * Evaluates the rule against a packet that has already been decoded.
+     * Rules that only implement {@link #verify(Packet)} are adapted here.
+     */
+    default boolean verify(PacketContext ctx) {
+        return verify(ctx.getPacket());
+    }
+
     String getAlertName();
     String getAlertDescription();
     Severity getSeverity(); // "LOW", "MEDIUM", "HIGH"
 
     String getName();
+
+    /**
+     * Tells the parallel detection engine how packets must be partitioned so the
+     * rule's per-key state is only ever touched by one worker.
+     */
+    default FlowAffinity getFlowAffinity() {
+        return FlowAffinity.FLOW;
+    }
+
+    /**
+     * Declares which packets the rule can match so the engine can skip it for
+     * everything else. Read once when the rule is installed.
+     */
+    default RuleInterest getInterest() {
+        return RuleInterest.ANY;
+    }
+
+    /**
+     * Gives a libpcap filter covering every packet the rule can match, used to
+     * build the kernel prefilter of the capture. Like the interest it only has
+     * to be conservative. Defaults to the filter form of {@link #getInterest()}.
+     * @return The filter expression, or null if the rule needs all traffic
+     */
+    default String getBpfFilter() {
+        return getInterest().toBpfFilter();
+    }
+
+    /**
+     * Tells the capture how many bytes of each frame the rule looks at, so
+     * header-only rule sets do not copy payloads to user space. Rules that
+     * read nothing beyond the headers return {@link #HEADERS_SNAPLEN}.
+     * @return Required snap length in bytes
+     */
+    default int getRequiredSnapLength() {
+        return FULL_SNAPLEN;
+    }
+
+    /**
+     * Declares that the rule reads {@link PacketContext#getSignatureMatches()} on
+     * TCP payloads and wants them matched over the reassembled stream, so patterns
+     * split across segments are found. The engine only runs stream matching while
+     * such a rule is installed.
+     */
+    default boolean isStreamAware() {
+        return false;
+    }
+
+    /**
+     * Tells the overload controller whether the rule must keep running when
+     * detection sheds load. Defaults to high and critical severity rules.
+     */
+    default boolean isCritical() {
+        Severity severity = getSeverity();
+        return severity == Severity.HIGH || severity == Severity.CRITICAL;
+    }
+
+    /**
+     * Describes the rule's tracking state (table occupancy, evictions, ...) for
+     * the statistics view. Stateless rules return an empty string.
+     */
+    default String getStatistics() {
+        return "";
+    }
+
+    /**
+     * Sets the clock windowed rules measure time with. Called by the detection
+     * engine when the rule is installed; stateless rules ignore it.
+     */
+    default void setClock(DetectionClock clock) {
+    }
 }
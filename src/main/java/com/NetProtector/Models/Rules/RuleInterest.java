@@ -0,0 +1,161 @@
+package com.NetProtector.Models.Rules;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+
+/**
+ * Static description of which packets a rule can possibly match: a set of
+ * transport protocols and, optionally, ports on the source side, destination
+ * side or either side. The detection engine indexes rules by their interest when
+ * the rule set is installed and skips rules that cannot match a packet.
+ *
+ * An interest only has to be conservative: a rule may still reject packets that
+ * pass the filter, but it must never need a packet the filter excludes.
+ */
+public final class RuleInterest {
+
+    /** Which side of the connection a port filter applies to. */
+    public enum PortDirection { SOURCE, DESTINATION, EITHER }
+
+    /** Matches every packet. Default for rules that do not declare an interest. */
+    public static final RuleInterest ANY = new RuleInterest(EnumSet.allOf(Protocol.class), new int[0], PortDirection.EITHER);
+
+    private final Set<Protocol> protocols;
+    private final int[] ports;
+    private final PortDirection direction;
+
+    private RuleInterest(Set<Protocol> protocols, int[] ports, PortDirection direction) {
+        this.protocols = Collections.unmodifiableSet(protocols);
+        this.ports = ports;
+        this.direction = direction;
+    }
+
+    /**
+     * Interest in all packets of the given transport protocols
+     * @param first A protocol
+     * @param rest Further protocols
+     * @return The interest
+     */
+    public static RuleInterest protocols(Protocol first, Protocol... rest) {
+        return new RuleInterest(EnumSet.of(first, rest), new int[0], PortDirection.EITHER);
+    }
+
+    /**
+     * Interest in TCP and/or UDP packets using one of the given ports
+     * @param direction Side of the connection the port must be on
+     * @param ports Port numbers
+     * @param first A port-carrying protocol (TCP or UDP)
+     * @param rest Further protocols
+     * @return The interest
+     */
+    public static RuleInterest ports(PortDirection direction, Collection<Integer> ports, Protocol first, Protocol... rest) {
+        EnumSet<Protocol> set = EnumSet.of(first, rest);
+        if (!EnumSet.of(Protocol.TCP, Protocol.UDP).containsAll(set)) {
+            throw new IllegalArgumentException("Port filters only apply to TCP and UDP");
+        }
+        if (ports == null || ports.isEmpty()) {
+            throw new IllegalArgumentException("At least one port is required");
+        }
+        int[] sorted = ports.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        return new RuleInterest(set, sorted, direction);
+    }
+
+    /**
+     * Interest in TCP and/or UDP packets using one port on either side
+     * @param port Port number
+     * @param first A port-carrying protocol (TCP or UDP)
+     * @param rest Further protocols
+     * @return The interest
+     */
+    public static RuleInterest port(int port, Protocol first, Protocol... rest) {
+        return ports(PortDirection.EITHER, Collections.singleton(port), first, rest);
+    }
+
+    /**
+     * Reference check used for rules the dispatch index does not cover
+     * @param ctx The decoded packet
+     * @return true if the rule may match the packet
+     */
+    public boolean matches(PacketContext ctx) {
+        if (!protocols.contains(ctx.getProtocol())) {
+            return false;
+        }
+        if (ports.length == 0) {
+            return true;
+        }
+        boolean src = direction != PortDirection.DESTINATION && Arrays.binarySearch(ports, ctx.getSrcPort()) >= 0;
+        boolean dst = direction != PortDirection.SOURCE && Arrays.binarySearch(ports, ctx.getDstPort()) >= 0;
+        return src || dst;
+    }
+
+    public boolean isAny() {
+        return ports.length == 0 && protocols.size() == Protocol.values().length;
+    }
+
+    public boolean hasPorts() {
+        return ports.length > 0;
+    }
+
+    public Set<Protocol> getProtocols() {
+        return protocols;
+    }
+
+    /**
+     * Gets the port filter
+     * @return Sorted copy of the ports; empty if any port matches
+     */
+    public int[] getPorts() {
+        return ports.clone();
+    }
+
+    public PortDirection getDirection() {
+        return direction;
+    }
+
+    /**
+     * Expresses the interest as a libpcap filter so unrelated traffic can be
+     * dropped in the kernel
+     * @return The filter expression, or null if the interest needs traffic BPF cannot single out
+     */
+    public String toBpfFilter() {
+        if (protocols.contains(Protocol.OTHER) || protocols.contains(Protocol.NONE)) {
+            return null;
+        }
+        StringBuilder expr = new StringBuilder();
+        for (Protocol protocol : protocols) {
+            if (expr.length() > 0) {
+                expr.append(" or ");
+            }
+            // PacketContext reports ICMPv6 as ICMP too
+            expr.append(protocol == Protocol.ICMP ? "icmp or icmp6" : protocol.name().toLowerCase());
+        }
+        if (ports.length == 0) {
+            return expr.toString();
+        }
+        String qualifier = direction == PortDirection.SOURCE ? "src port "
+                : direction == PortDirection.DESTINATION ? "dst port " : "port ";
+        StringBuilder portExpr = new StringBuilder();
+        for (int port : ports) {
+            if (portExpr.length() > 0) {
+                portExpr.append(" or ");
+            }
+            portExpr.append(qualifier).append(port);
+        }
+        // libpcap gives "and" and "or" the same precedence
+        return "(" + expr + ") and (" + portExpr + ")";
+    }
+
+    @Override
+    public String toString() {
+        if (isAny()) {
+            return "ANY";
+        }
+        return protocols + (ports.length == 0 ? "" : " " + direction + " ports " + Arrays.toString(ports));
+    }
+}
@@ -1,9 +1,9 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
-
-import java.nio.charset.StandardCharsets;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Signatures.SignatureSet;
 
 /**
  * Rule to detect a specific string in TCP packet payload.
@@ -11,25 +11,20 @@ import java.nio.charset.StandardCharsets;
  * Example: Detecting the string "nc -l -p" which might indicate a netcat listener setup.
  * CAUTION: Naive payload string matching can lead to many false positives and performance issues.
  */
-public class SimplePayloadStringRule implements Rule {
+public class SimplePayloadStringRule extends ContextRule {
 
     //  Example: "nc -l -p" or "powershell" or a known exploit string
     private static final String MALICIOUS_SIGNATURE = "nc -l -p";
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
-
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        if (tcpPacket != null && tcpPacket.getPayload() != null) {
-            byte[] payloadBytes = tcpPacket.getPayload().getRawData();
-            String payloadString = new String(payloadBytes, StandardCharsets.UTF_8); // Or another appropriate charset
+    private static final SignatureSet SIGNATURES =
+            SignatureRegistry.getDefault().register("Suspicious Payload", MALICIOUS_SIGNATURE);
 
-            // Simple string containment check. For real-world use, more robust pattern matching (e.g., regex)
-            // and consideration for obfuscation would be needed.
-            if (payloadString.toLowerCase().contains(MALICIOUS_SIGNATURE.toLowerCase())) {
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isTcp() && ctx.hasPayload()) {
+            // Case-insensitive match from the shared signature automaton. For real-world use,
+            // consideration for obfuscation would be needed.
+            if (SIGNATURES.anyMatch(ctx.getSignatureMatches())) {
                 System.out.println("⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️⚠️");
 
                 return true;
@@ -38,6 +33,16 @@ public class SimplePayloadStringRule implements Rule {
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.TCP);
+    }
+
+    @Override
+    public boolean isStreamAware() {
+        return true;
+    }
+
     @Override
     public String getAlertName() {
         return "Potential Malicious Payload Detected";
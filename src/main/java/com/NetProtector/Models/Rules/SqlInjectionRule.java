@@ -1,13 +1,16 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Signatures.SignatureMatches;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Signatures.SignatureSet;
 
 /**
  * Rule to detect potential SQL injection attempts by analyzing TCP payload for SQL injection patterns.
  * This is a CRITICAL severity rule as SQL injection can lead to complete database compromise.
  */
-public class SqlInjectionRule implements Rule {
+public class SqlInjectionRule extends ContextRule {
 
     private static final String[] SQL_INJECTION_PATTERNS = {
         "' OR '1'='1",
@@ -27,27 +30,32 @@ public class SqlInjectionRule implements Rule {
         "'; INSERT INTO"
     };
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    private static final String[] SQL_KEYWORDS = {
+        "SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "CREATE", "ALTER", "UNION"
+    };
+
+    private static final String[] INJECTION_CHARACTERS = {"'", "--", "/*"};
 
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        if (tcpPacket != null && tcpPacket.getPayload() != null) {
-            byte[] payload = tcpPacket.getPayload().getRawData();
-            if (payload != null && payload.length > 0) {
-                String payloadString = new String(payload).toUpperCase();
+    private static final SignatureSet INJECTION_SIGNATURES =
+            SignatureRegistry.getDefault().register("SQL Injection", SQL_INJECTION_PATTERNS);
+    private static final SignatureSet KEYWORD_SIGNATURES =
+            SignatureRegistry.getDefault().register("SQL Keyword", SQL_KEYWORDS);
+    private static final SignatureSet CHARACTER_SIGNATURES =
+            SignatureRegistry.getDefault().register("SQL Injection Character", INJECTION_CHARACTERS);
+
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isTcp()) {
+            if (ctx.hasPayload()) {
+                SignatureMatches matches = ctx.getSignatureMatches();
                 
                 // Check for SQL injection patterns
-                for (String pattern : SQL_INJECTION_PATTERNS) {
-                    if (payloadString.contains(pattern.toUpperCase())) {
-                        return true;
-                    }
+                if (INJECTION_SIGNATURES.anyMatch(matches)) {
+                    return true;
                 }
                 
                 // Additional heuristic checks
-                if (containsSqlInjectionHeuristics(payloadString)) {
+                if (containsSqlInjectionHeuristics(matches)) {
                     return true;
                 }
             }
@@ -56,25 +64,28 @@ public class SqlInjectionRule implements Rule {
         return false;
     }
 
-    private boolean containsSqlInjectionHeuristics(String payload) {
+    private boolean containsSqlInjectionHeuristics(SignatureMatches matches) {
         // Check for multiple SQL keywords in close proximity
-        String[] sqlKeywords = {"SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "CREATE", "ALTER", "UNION"};
-        int keywordCount = 0;
-        
-        for (String keyword : sqlKeywords) {
-            if (payload.contains(keyword)) {
-                keywordCount++;
-            }
-        }
+        int keywordCount = KEYWORD_SIGNATURES.countMatches(matches);
         
         // If multiple SQL keywords and common injection characters
-        if (keywordCount >= 2 && (payload.contains("'") || payload.contains("--") || payload.contains("/*"))) {
+        if (keywordCount >= 2 && CHARACTER_SIGNATURES.anyMatch(matches)) {
             return true;
         }
         
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.TCP);
+    }
+
+    @Override
+    public boolean isStreamAware() {
+        return true;
+    }
+
     @Override
     public String getAlertName() {
         return "SQL Injection Attack Detected";
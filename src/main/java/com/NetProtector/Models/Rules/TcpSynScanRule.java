@@ -1,48 +1,102 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.namednumber.TcpPort;
-
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import com.NetProtector.Models.Flows.FlowSnapshot;
+import com.NetProtector.Models.Flows.TcpState;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
+import com.NetProtector.Models.Tracking.ScanTracker;
+import com.NetProtector.Models.Tracking.ScanTracker.ScanType;
 
 /**
- * Rule to detect a potential TCP SYN scan attempt on common ports.
- * A SYN scan is identified by a TCP packet with only the SYN flag set.
- * This rule checks for SYN packets to a list of common sensitive ports.
+ * Rule to detect TCP SYN port scans. A SYN probe is a TCP packet with only the
+ * SYN flag set that opens a connection. Instead of alerting on single probes, the
+ * rule tracks per source how many distinct destination ports and hosts it probed
+ * without success within a window and alerts once when the source crosses into a
+ * vertical scan (many ports on few hosts), horizontal scan (many hosts) or block
+ * scan (many ports on many hosts).
+ *
+ * The outcome of each probe is read from the connection's flow state: a SYN-ACK
+ * clears it, while a RST from the target, a RST from the source after the SYN-ACK
+ * (half-open scan) or no answer at all makes it count. A client opening ordinary
+ * connections to many servers completes its handshakes and is never reported.
+ *
+ * The rule is flow-affine so a probe's SYN and its answer are evaluated in order
+ * on one worker. Scan state is kept per probing source, which is the destination
+ * of the answers, so the synchronized tracker is shared between workers.
  */
-public class TcpSynScanRule implements Rule {
+public class TcpSynScanRule extends ContextRule {
+
+    private static final int FLAG_MASK = PacketContext.TCP_SYN | PacketContext.TCP_ACK | PacketContext.TCP_RST |
+            PacketContext.TCP_FIN | PacketContext.TCP_PSH | PacketContext.TCP_URG;
+
+    private static final long TIME_WINDOW = 60000; // 60 seconds in milliseconds
+    private static final int PORT_THRESHOLD = 20; // Distinct ports probed by one source
+    private static final int HOST_THRESHOLD = 50; // Distinct hosts probed by one source
+    private static final int MAX_TRACKED_SOURCES = 8192; // Stalest sources are evicted beyond this
 
-    private static final Set<TcpPort> COMMON_SENSITIVE_PORTS = new HashSet<>(Arrays.asList(
-            TcpPort.FTP_DATA, TcpPort.FTP, TcpPort.SSH, TcpPort.TELNET,
-            TcpPort.SMTP, TcpPort.DOMAIN, TcpPort.HTTP, TcpPort.POP3,
-            TcpPort.SFTP, TcpPort.IPCD, TcpPort.HTTPS, TcpPort.IMAPS, new TcpPort((short)8080, "HTTP_ALT") // Common HTTP alternative
-    ));
+    private final ScanTracker tracker;
+
+    public TcpSynScanRule() {
+        this(TIME_WINDOW, PORT_THRESHOLD, HOST_THRESHOLD, MAX_TRACKED_SOURCES);
+    }
+
+    /**
+     * Creates the rule with custom thresholds
+     * @param windowMillis Observation window per source
+     * @param portThreshold Distinct ports that make a vertical scan
+     * @param hostThreshold Distinct hosts that make a horizontal scan
+     * @param maxTrackedSources Hard cap on tracked sources
+     */
+    public TcpSynScanRule(long windowMillis, int portThreshold, int hostThreshold, int maxTrackedSources) {
+        this.tracker = new ScanTracker(windowMillis, maxTrackedSources, portThreshold, hostThreshold);
+    }
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
+    public boolean verify(PacketContext ctx) {
+        FlowSnapshot flow = ctx.getFlow();
+        if (!ctx.isTcp() || flow == null) {
             return false;
         }
-
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        if (tcpPacket != null) {
-            // Check if only the SYN flag is set and ACK is not set
-            if (tcpPacket.getHeader().getSyn() &&
-                    !tcpPacket.getHeader().getAck() &&
-                    !tcpPacket.getHeader().getRst() &&
-                    !tcpPacket.getHeader().getFin() &&
-                    !tcpPacket.getHeader().getPsh() &&
-                    !tcpPacket.getHeader().getUrg()) {
-                // Check if the destination port is one of the common sensitive ports
-                return COMMON_SENSITIVE_PORTS.contains(tcpPacket.getHeader().getDstPort());
+        int flags = ctx.getTcpFlags() & FLAG_MASK;
+        long now = clock.currentTimeMillis(ctx);
+        ScanType scan = ScanType.NONE;
+        if (flow.isFromInitiator()) {
+            if (flags == PacketContext.TCP_SYN && flow.isNewFlow()) {
+                // Only the SYN flag set: a new probe waiting for its answer
+                scan = tracker.probe(ctx.getSrcIpKey(), ctx.getDstIpKey(), ctx.getDstPort(), now);
+            } else if (flow.entered(TcpState.RESET) && flow.getPreviousState() == TcpState.SYN_RECEIVED) {
+                // Half-open: the source reset an answered probe instead of completing the handshake
+                scan = tracker.failed(ctx.getSrcIpKey(), ctx.getDstIpKey(), ctx.getDstPort(), now);
             }
+        } else if (flow.entered(TcpState.SYN_RECEIVED)) {
+            tracker.answered(ctx.getDstIpKey(), ctx.getSrcIpKey(), ctx.getSrcPort());
+        } else if (flow.entered(TcpState.RESET) && flow.getPreviousState() == TcpState.SYN_SENT) {
+            // Refused by the target
+            scan = tracker.failed(ctx.getDstIpKey(), ctx.getSrcIpKey(), ctx.getSrcPort(), now);
+        }
+        if (scan != ScanType.NONE) {
+            System.out.println("TcpSynScanRule: " + scan + " scan from " +
+                               (flow.isFromInitiator() ? ctx.getSrcAddress() : ctx.getDstAddress()));
+            return true;
         }
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.protocols(Protocol.TCP);
+    }
+
+    @Override
+    public String getStatistics() {
+        return tracker.toString();
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "Potential TCP SYN Scan";
@@ -50,7 +104,7 @@ public class TcpSynScanRule implements Rule {
 
     @Override
     public String getAlertDescription() {
-        return "A TCP packet with only the SYN flag set was detected targeting a common sensitive port. This could indicate a port scanning attempt.";
+        return "A single source sent TCP SYN probes that were refused, left unanswered or abandoned half-open to an unusual number of distinct ports and/or hosts within a short window. This indicates a vertical, horizontal or block port scan.";
     }
 
     @Override
@@ -62,4 +116,4 @@ public class TcpSynScanRule implements Rule {
     public String getName() {
         return "Tcp Syn Scan";
     }
-}
\ No newline at end of file
+}
@@ -1,34 +1,38 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.PacketContext.Protocol;
 import org.pcap4j.packet.namednumber.TcpPort;
 
 /**
  * Rule to detect Telnet traffic (unencrypted login).
  * Telnet is insecure and its use should be monitored.
  */
-public class TelnetTrafficRule implements Rule {
+public class TelnetTrafficRule extends ContextRule {
 
-    private static final TcpPort TELNET_PORT = TcpPort.TELNET; // Port 23
+    private static final int TELNET_PORT = TcpPort.TELNET.valueAsInt(); // Port 23
 
     @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
-
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        if (tcpPacket != null) {
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isTcp()) {
             // Check if either source or destination port is Telnet port
-            if (tcpPacket.getHeader().getSrcPort().equals(TELNET_PORT) ||
-                    tcpPacket.getHeader().getDstPort().equals(TELNET_PORT)) {
+            if (ctx.hasPort(TELNET_PORT)) {
                 return true;
             }
         }
         return false;
     }
 
+    @Override
+    public RuleInterest getInterest() {
+        return RuleInterest.port(TELNET_PORT, Protocol.TCP);
+    }
+
+    @Override
+    public int getRequiredSnapLength() {
+        return HEADERS_SNAPLEN;
+    }
+
     @Override
     public String getAlertName() {
         return "Telnet Traffic Detected";
@@ -1,9 +1,9 @@
 package com.NetProtector.Models.Rules;
 
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.UdpPacket;
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Signatures.SignatureMatches;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Signatures.SignatureSet;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -14,7 +14,7 @@ import java.util.Set;
  * gaming protocols, or non-business applications during work hours.
  * This is a LOW severity rule for policy enforcement and bandwidth management.
  */
-public class UnwantedTrafficRule implements Rule {
+public class UnwantedTrafficRule extends ContextRule {
 
     // Common P2P and gaming ports
     private static final Set<Integer> P2P_PORTS = new HashSet<>(Arrays.asList(
@@ -46,18 +46,19 @@ public class UnwantedTrafficRule implements Rule {
         "STEAM", "GAMING", "NETFLIX", "YOUTUBE", "TWITCH"
     };
 
-    @Override
-    public boolean verify(Packet p) {
-        if (p == null) {
-            return false;
-        }
+    private static final SignatureSet PROTOCOL_SIGNATURES =
+            SignatureRegistry.getDefault().register("Unwanted Protocol", UNWANTED_PROTOCOLS);
+    // BitTorrent tracker announce: both keywords must be present
+    private static final SignatureSet ANNOUNCE_SIGNATURES =
+            SignatureRegistry.getDefault().register("P2P Announce", "ANNOUNCE", "PEER");
+    private static final SignatureSet HANDSHAKE_SIGNATURES =
+            SignatureRegistry.getDefault().register("P2P Handshake", "HANDSHAKE", "PROTOCOL");
 
-        TcpPacket tcpPacket = p.get(TcpPacket.class);
-        UdpPacket udpPacket = p.get(UdpPacket.class);
-        
-        if (tcpPacket != null) {
-            int srcPort = tcpPacket.getHeader().getSrcPort().valueAsInt();
-            int dstPort = tcpPacket.getHeader().getDstPort().valueAsInt();
+    @Override
+    public boolean verify(PacketContext ctx) {
+        if (ctx.isTcp()) {
+            int srcPort = ctx.getSrcPort();
+            int dstPort = ctx.getDstPort();
             
             // Check for P2P traffic
             if (P2P_PORTS.contains(srcPort) || P2P_PORTS.contains(dstPort)) {
@@ -75,17 +76,14 @@ public class UnwantedTrafficRule implements Rule {
             }
             
             // Analyze payload for protocol signatures
-            if (tcpPacket.getPayload() != null) {
-                byte[] payload = tcpPacket.getPayload().getRawData();
-                if (payload != null && containsUnwantedProtocol(payload)) {
-                    return true;
-                }
+            if (ctx.hasPayload() && containsUnwantedProtocol(ctx)) {
+                return true;
             }
         }
         
-        if (udpPacket != null) {
-            int srcPort = udpPacket.getHeader().getSrcPort().valueAsInt();
-            int dstPort = udpPacket.getHeader().getDstPort().valueAsInt();
+        if (ctx.isUdp()) {
+            int srcPort = ctx.getSrcPort();
+            int dstPort = ctx.getDstPort();
             
             // Check for P2P traffic over UDP
             if (P2P_PORTS.contains(srcPort) || P2P_PORTS.contains(dstPort)) {
@@ -98,49 +96,43 @@ public class UnwantedTrafficRule implements Rule {
             }
             
             // Analyze payload for protocol signatures
-            if (udpPacket.getPayload() != null) {
-                byte[] payload = udpPacket.getPayload().getRawData();
-                if (payload != null && containsUnwantedProtocol(payload)) {
-                    return true;
-                }
+            if (ctx.hasPayload() && containsUnwantedProtocol(ctx)) {
+                return true;
             }
         }
         
         // Check for excessive bandwidth usage patterns
-        if (isHighBandwidthPattern(p)) {
+        if (isHighBandwidthPattern(ctx)) {
             return true;
         }
         
         return false;
     }
 
-    private boolean containsUnwantedProtocol(byte[] payload) {
-        String payloadString = new String(payload).toUpperCase();
+    private boolean containsUnwantedProtocol(PacketContext ctx) {
+        SignatureMatches matches = ctx.getSignatureMatches();
         
-        for (String protocol : UNWANTED_PROTOCOLS) {
-            if (payloadString.contains(protocol)) {
-                return true;
-            }
+        if (PROTOCOL_SIGNATURES.anyMatch(matches)) {
+            return true;
         }
         
         // Check for BitTorrent protocol signatures
-        if (payloadString.contains("ANNOUNCE") && payloadString.contains("PEER")) {
+        if (ANNOUNCE_SIGNATURES.countMatches(matches) == ANNOUNCE_SIGNATURES.size()) {
             return true;
         }
         
         // Check for common P2P handshakes
-        if (payloadString.contains("HANDSHAKE") || payloadString.contains("PROTOCOL")) {
+        if (HANDSHAKE_SIGNATURES.anyMatch(matches)) {
             return true;
         }
         
         return false;
     }
 
-    private boolean isHighBandwidthPattern(Packet p) {
-        IpV4Packet ipPacket = p.get(IpV4Packet.class);
-        if (ipPacket != null) {
+    private boolean isHighBandwidthPattern(PacketContext ctx) {
+        if (ctx.isIpV4()) {
             // Large packets might indicate file sharing or streaming
-            if (ipPacket.length() > 1400) { // Near MTU size
+            if (ctx.getIpTotalLength() > 1400) { // Near MTU size
                 return true;
             }
         }
@@ -148,6 +140,11 @@ public class UnwantedTrafficRule implements Rule {
         return false;
     }
 
+    @Override
+    public boolean isStreamAware() {
+        return true;
+    }
+
     @Override
     public String getAlertName() {
         return "Unwanted Network Traffic";
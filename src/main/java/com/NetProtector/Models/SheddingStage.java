@@ -0,0 +1,27 @@
+package com.NetProtector.Models;
+
+/**
+ * Degradation stages of the detection engine under overload, in increasing
+ * order of lost coverage. Each stage also applies the ones before it.
+ * Header-only critical rules run in every stage.
+ */
+public enum SheddingStage {
+    /** Every rule sees every packet. */
+    NORMAL("full coverage"),
+    /** Low-severity rules are skipped. */
+    SKIP_LOW_SEVERITY("low-severity rules skipped"),
+    /** Payload rules are skipped for packets of bulk flows. */
+    SKIP_BULK_PAYLOAD("payload inspection skipped for bulk flows"),
+    /** Only a sample of packets is evaluated beyond the header-only critical rules. */
+    SAMPLE("packets sampled");
+
+    private final String description;
+
+    SheddingStage(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,257 @@
+package com.NetProtector.Models.Signatures;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled multi-pattern matcher. All patterns are folded into one Aho-Corasick
+ * automaton and expanded to a full transition table, so a payload is scanned in a
+ * single pass over its raw bytes with one table lookup per byte, regardless of how
+ * many patterns are loaded.
+ *
+ * Matching is ASCII case-insensitive: letters are folded by the byte class table,
+ * never by converting the payload. The input alphabet is compressed to the byte
+ * values that occur in some pattern plus one class for everything else.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class AhoCorasickMatcher {
+
+    /** State the automaton starts in. */
+    public static final int START_STATE = 0;
+
+    private final int classCount;
+    private final int[] byteClass;
+    private final int[] transitions;
+    private final int[] outputStart;
+    private final int[] outputs;
+    private final int patternCount;
+
+    private AhoCorasickMatcher(int classCount, int[] byteClass, int[] transitions,
+                               int[] outputStart, int[] outputs, int patternCount) {
+        this.classCount = classCount;
+        this.byteClass = byteClass;
+        this.transitions = transitions;
+        this.outputStart = outputStart;
+        this.outputs = outputs;
+        this.patternCount = patternCount;
+    }
+
+    /**
+     * Creates a builder for a new automaton
+     * @return An empty builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Scans a byte range and records every pattern id that ends inside it
+     * @param data The buffer to scan
+     * @param offset First byte to scan
+     * @param length Number of bytes to scan
+     * @param state State to resume from, {@link #START_STATE} for a fresh scan
+     * @param matches Receives matched pattern ids
+     * @return The state after the last byte, for resuming on the next chunk
+     */
+    public int scan(byte[] data, int offset, int length, int state, SignatureMatches matches) {
+        final int[] table = transitions;
+        final int[] classes = byteClass;
+        final int width = classCount;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            state = table[state * width + classes[data[i] & 0xFF]];
+            int from = outputStart[state];
+            int to = outputStart[state + 1];
+            for (int o = from; o < to; o++) {
+                matches.add(outputs[o]);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Advances the automaton by one byte without recording matches
+     * @param state Current state
+     * @param b Next input byte
+     * @return Next state
+     */
+    public int step(int state, byte b) {
+        return transitions[state * classCount + byteClass[b & 0xFF]];
+    }
+
+    public int getStateCount() {
+        return outputStart.length - 1;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Accumulates patterns and compiles them into an automaton.
+     */
+    public static final class Builder {
+
+        private final List<byte[]> patterns = new ArrayList<>();
+        private final List<Integer> ids = new ArrayList<>();
+        private int maxId = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a pattern. The same text may be added under several ids.
+         * @param pattern The pattern; matched ASCII case-insensitively
+         * @param id Non-negative id reported when the pattern matches
+         * @return This builder
+         */
+        public Builder add(String pattern, int id) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern must not be empty");
+            }
+            if (id < 0) {
+                throw new IllegalArgumentException("Pattern id must not be negative");
+            }
+            byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) fold(bytes[i] & 0xFF);
+            }
+            patterns.add(bytes);
+            ids.add(id);
+            maxId = Math.max(maxId, id);
+            return this;
+        }
+
+        /**
+         * Compiles the patterns added so far
+         * @return The compiled matcher
+         */
+        public AhoCorasickMatcher build() {
+            // Compress the alphabet: class 0 is every byte not used by a pattern
+            int[] byteClass = new int[256];
+            int classCount = 1;
+            for (byte[] pattern : patterns) {
+                for (byte b : pattern) {
+                    int v = b & 0xFF;
+                    if (byteClass[v] == 0) {
+                        byteClass[v] = classCount++;
+                    }
+                }
+            }
+            for (int c = 'a'; c <= 'z'; c++) {
+                byteClass[c] = byteClass[c - 'a' + 'A'];
+            }
+
+            // Trie over byte classes; -1 marks a missing edge
+            List<int[]> trie = new ArrayList<>();
+            List<List<Integer>> own = new ArrayList<>();
+            trie.add(newRow(classCount));
+            own.add(new ArrayList<>());
+            for (int p = 0; p < patterns.size(); p++) {
+                int state = 0;
+                for (byte b : patterns.get(p)) {
+                    int cls = byteClass[b & 0xFF];
+                    int next = trie.get(state)[cls];
+                    if (next < 0) {
+                        next = trie.size();
+                        trie.get(state)[cls] = next;
+                        trie.add(newRow(classCount));
+                        own.add(new ArrayList<>());
+                    }
+                    state = next;
+                }
+                own.get(state).add(ids.get(p));
+            }
+
+            // Breadth-first failure links, turning the trie into a full DFA
+            int stateCount = trie.size();
+            int[] fail = new int[stateCount];
+            int[] order = new int[stateCount];
+            int orderSize = 0;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            int[] root = trie.get(0);
+            for (int cls = 0; cls < classCount; cls++) {
+                if (root[cls] < 0) {
+                    root[cls] = 0;
+                } else {
+                    fail[root[cls]] = 0;
+                    queue.add(root[cls]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                order[orderSize++] = state;
+                int[] row = trie.get(state);
+                int[] failRow = trie.get(fail[state]);
+                for (int cls = 0; cls < classCount; cls++) {
+                    int next = row[cls];
+                    if (next < 0) {
+                        row[cls] = failRow[cls];
+                    } else {
+                        fail[next] = failRow[cls];
+                        queue.add(next);
+                    }
+                }
+            }
+
+            // Outputs of a state include those of its failure chain; parents come first in BFS order
+            List<int[]> merged = new ArrayList<>(stateCount);
+            for (int i = 0; i < stateCount; i++) {
+                merged.add(null);
+            }
+            merged.set(0, toArray(own.get(0)));
+            for (int i = 0; i < orderSize; i++) {
+                int state = order[i];
+                int[] inherited = merged.get(fail[state]);
+                List<Integer> mine = own.get(state);
+                int[] all = Arrays.copyOf(inherited, inherited.length + mine.size());
+                for (int j = 0; j < mine.size(); j++) {
+                    all[inherited.length + j] = mine.get(j);
+                }
+                merged.set(state, all);
+            }
+
+            int[] transitions = new int[stateCount * classCount];
+            int[] outputStart = new int[stateCount + 1];
+            int total = 0;
+            for (int state = 0; state < stateCount; state++) {
+                System.arraycopy(trie.get(state), 0, transitions, state * classCount, classCount);
+                outputStart[state] = total;
+                total += merged.get(state).length;
+            }
+            outputStart[stateCount] = total;
+            int[] outputs = new int[total];
+            for (int state = 0; state < stateCount; state++) {
+                int[] out = merged.get(state);
+                System.arraycopy(out, 0, outputs, outputStart[state], out.length);
+            }
+            return new AhoCorasickMatcher(classCount, byteClass, transitions, outputStart, outputs, maxId + 1);
+        }
+
+        private static int[] newRow(int classCount) {
+            int[] row = new int[classCount];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            int[] result = new int[values.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values.get(i);
+            }
+            return result;
+        }
+    }
+
+    private static int fold(int b) {
+        return b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b;
+    }
+}
@@ -0,0 +1,103 @@
+package com.NetProtector.Models.Signatures;
+
+/**
+ * Set of pattern ids matched in one payload, backed by a bit set sized to the
+ * registry it was produced from.
+ */
+public final class SignatureMatches {
+
+    /** Result for packets without a payload. */
+    public static final SignatureMatches EMPTY = new SignatureMatches(0);
+
+    private final long[] bits;
+    private int count;
+
+    public SignatureMatches(int patternCount) {
+        this.bits = new long[(patternCount + 63) >>> 6];
+    }
+
+    /**
+     * Records a matched pattern id
+     * @param id The pattern id
+     */
+    public void add(int id) {
+        int word = id >>> 6;
+        long mask = 1L << id;
+        if (word < bits.length && (bits[word] & mask) == 0) {
+            bits[word] |= mask;
+            count++;
+        }
+    }
+
+    /**
+     * Checks whether a pattern matched
+     * @param id The pattern id
+     * @return true if the pattern occurred in the payload
+     */
+    public boolean contains(int id) {
+        int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Counts matched ids in the range [from, to)
+     * @param from First id
+     * @param to End id, exclusive
+     * @return Number of matched ids in the range
+     */
+    public int countInRange(int from, int to) {
+        if (count == 0) {
+            return 0;
+        }
+        int n = 0;
+        for (int id = from; id < to; id++) {
+            if (contains(id)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Gets the first matched id in the range [from, to)
+     * @param from First id
+     * @param to End id, exclusive
+     * @return The first matched id, or -1 if none matched
+     */
+    public int firstInRange(int from, int to) {
+        if (count == 0) {
+            return -1;
+        }
+        for (int id = from; id < to; id++) {
+            if (contains(id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets every matched id in ascending order
+     * @return Matched ids
+     */
+    public int[] toArray() {
+        int[] result = new int[count];
+        int n = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                result[n++] = (word << 6) + Long.numberOfTrailingZeros(w);
+                w &= w - 1;
+            }
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+package com.NetProtector.Models.Signatures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared registry of payload signatures. Rules register their pattern groups once
+ * (typically from a static initializer) and every payload is then scanned a single
+ * time for all of them. The automaton is recompiled lazily after registrations.
+ */
+public final class SignatureRegistry {
+
+    private static final SignatureRegistry DEFAULT = new SignatureRegistry();
+
+    private final List<SignatureSet> sets = new ArrayList<>();
+    private int nextPatternId = 0;
+    private volatile AhoCorasickMatcher matcher;
+
+    /**
+     * Gets the registry shared by the built-in rules
+     * @return The default registry
+     */
+    public static SignatureRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers a group of patterns
+     * @param name Group name, usually the rule name
+     * @param patterns Patterns matched ASCII case-insensitively
+     * @return Handle for testing matches of this group
+     */
+    public synchronized SignatureSet register(String name, String... patterns) {
+        if (patterns == null || patterns.length == 0) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+        SignatureSet set = new SignatureSet(sets.size(), name, nextPatternId, patterns.clone());
+        nextPatternId += patterns.length;
+        sets.add(set);
+        matcher = null;
+        return set;
+    }
+
+    /**
+     * Gets the compiled automaton for everything registered so far
+     * @return The matcher
+     */
+    public AhoCorasickMatcher getMatcher() {
+        AhoCorasickMatcher m = matcher;
+        if (m == null) {
+            m = compile();
+        }
+        return m;
+    }
+
+    /**
+     * Scans a byte range for every registered pattern
+     * @param data The buffer to scan
+     * @param offset First byte
+     * @param length Number of bytes
+     * @return Matched pattern ids
+     */
+    public SignatureMatches match(byte[] data, int offset, int length) {
+        AhoCorasickMatcher m = getMatcher();
+        SignatureMatches matches = new SignatureMatches(m.getPatternCount());
+        m.scan(data, offset, length, AhoCorasickMatcher.START_STATE, matches);
+        return matches;
+    }
+
+    /**
+     * Describes matched ids as "group: pattern" for logging and alerts
+     * @param matches Matched ids
+     * @return One entry per matched pattern
+     */
+    public List<String> describe(SignatureMatches matches) {
+        List<String> result = new ArrayList<>();
+        for (int id : matches.toArray()) {
+            SignatureSet set = findSet(id);
+            if (set != null) {
+                result.add(set.getName() + ": " + set.getPattern(id));
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<SignatureSet> getSets() {
+        return Collections.unmodifiableList(new ArrayList<>(sets));
+    }
+
+    public synchronized int getPatternCount() {
+        return nextPatternId;
+    }
+
+    private synchronized SignatureSet findSet(int patternId) {
+        for (SignatureSet set : sets) {
+            if (set.contains(patternId)) {
+                return set;
+            }
+        }
+        return null;
+    }
+
+    private synchronized AhoCorasickMatcher compile() {
+        if (matcher == null) {
+            AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+            for (SignatureSet set : sets) {
+                for (int i = 0; i < set.size(); i++) {
+                    builder.add(set.getPattern(set.getFirstId() + i), set.getFirstId() + i);
+                }
+            }
+            matcher = builder.build();
+        }
+        return matcher;
+    }
+}
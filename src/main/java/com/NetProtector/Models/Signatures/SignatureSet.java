@@ -0,0 +1,72 @@
+package com.NetProtector.Models.Signatures;
+
+/**
+ * A named group of patterns registered by one rule. Pattern ids of a set are
+ * contiguous, so a set can be tested against a {@link SignatureMatches} without
+ * knowing the individual ids.
+ */
+public final class SignatureSet {
+
+    private final int groupId;
+    private final String name;
+    private final int firstId;
+    private final String[] patterns;
+
+    SignatureSet(int groupId, String name, int firstId, String[] patterns) {
+        this.groupId = groupId;
+        this.name = name;
+        this.firstId = firstId;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Checks whether any pattern of this set matched
+     * @param matches Matches for a payload
+     * @return true if at least one pattern matched
+     */
+    public boolean anyMatch(SignatureMatches matches) {
+        return matches.firstInRange(firstId, firstId + patterns.length) >= 0;
+    }
+
+    /**
+     * Checks whether a specific pattern of this set matched
+     * @param matches Matches for a payload
+     * @param index Index of the pattern in the order it was registered
+     * @return true if that pattern matched
+     */
+    public boolean matches(SignatureMatches matches, int index) {
+        return matches.contains(firstId + index);
+    }
+
+    /**
+     * Counts how many distinct patterns of this set matched
+     * @param matches Matches for a payload
+     * @return Number of matched patterns
+     */
+    public int countMatches(SignatureMatches matches) {
+        return matches.countInRange(firstId, firstId + patterns.length);
+    }
+
+    /**
+     * Gets the first matched pattern text
+     * @param matches Matches for a payload
+     * @return The pattern, or null if none matched
+     */
+    public String firstMatch(SignatureMatches matches) {
+        int id = matches.firstInRange(firstId, firstId + patterns.length);
+        return id < 0 ? null : patterns[id - firstId];
+    }
+
+    public boolean contains(int patternId) {
+        return patternId >= firstId && patternId < firstId + patterns.length;
+    }
+
+    public String getPattern(int patternId) {
+        return patterns[patternId - firstId];
+    }
+
+    public int getGroupId() { return groupId; }
+    public String getName() { return name; }
+    public int getFirstId() { return firstId; }
+    public int size() { return patterns.length; }
+}
@@ -0,0 +1,180 @@
+package com.NetProtector.Models.Tracking;
+
+/**
+ * Authentication attempt counters per (client, server, service) for brute-force
+ * detection. Attempts (connection starts, credential submissions) and failures
+ * (rejections, resets) are counted over a sliding window approximated by two
+ * weighted fixed windows, like {@link TransferTracker}.
+ *
+ * Each threshold is reported once per episode: the report is re-armed only after
+ * the key has been quiet for a whole window, so an ongoing attack raises one
+ * alert instead of one per packet.
+ *
+ * The number of tracked keys is capped; when the table is full a new key
+ * replaces the stalest of a few sampled entries.
+ */
+public final class AuthAttemptTracker {
+
+    /** What a packet contributes to a key. */
+    public enum Event { ATTEMPT, FAILURE }
+
+    /** Threshold a key crossed. Later constants are more severe. */
+    public enum Signal { NONE, ATTEMPTS, FAILURES }
+
+
+    private final long windowMillis;
+    private final int attemptThreshold;
+    private final int failureThreshold;
+    private final int capacity;
+    private final EntryIndex index;
+    private final StalestSampler evictionSampler;
+    private final int[] clients;
+    private final int[] servers;
+    private final int[] services;
+    private final long[] windowIds;
+    private final int[] attempts;
+    private final int[] failures;
+    private final int[] previousAttempts;
+    private final int[] previousFailures;
+    private final long[] lastSeen;
+    private final byte[] reported;
+    private int size;
+    private long evictions;
+
+    /**
+     * Creates a tracker
+     * @param windowMillis Sliding window length
+     * @param maxKeys Hard cap on tracked (client, server, service) keys
+     * @param attemptThreshold Attempts per window that signal {@link Signal#ATTEMPTS}
+     * @param failureThreshold Failures per window that signal {@link Signal#FAILURES}
+     */
+    public AuthAttemptTracker(long windowMillis, int maxKeys, int attemptThreshold, int failureThreshold) {
+        if (windowMillis <= 0 || maxKeys <= 0 || attemptThreshold <= 0 || failureThreshold <= 0) {
+            throw new IllegalArgumentException("Window, capacity and thresholds must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.attemptThreshold = attemptThreshold;
+        this.failureThreshold = failureThreshold;
+        this.capacity = maxKeys;
+        this.index = new EntryIndex(maxKeys);
+        this.evictionSampler = new StalestSampler(maxKeys);
+        this.clients = new int[maxKeys];
+        this.servers = new int[maxKeys];
+        this.services = new int[maxKeys];
+        this.windowIds = new long[maxKeys];
+        this.attempts = new int[maxKeys];
+        this.failures = new int[maxKeys];
+        this.previousAttempts = new int[maxKeys];
+        this.previousFailures = new int[maxKeys];
+        this.lastSeen = new long[maxKeys];
+        this.reported = new byte[maxKeys];
+    }
+
+    /**
+     * Counts an event and reports the first time the key crosses a threshold in this episode
+     * @param client Client address
+     * @param server Server address
+     * @param service Server port
+     * @param event What the packet showed
+     * @param nowMillis Current time
+     * @return The most severe newly crossed threshold, or {@link Signal#NONE}
+     */
+    public synchronized Signal record(int client, int server, int service, Event event, long nowMillis) {
+        int h = hash(client, server, service);
+        int entry = find(client, server, service, h);
+        if (entry < 0) {
+            entry = allocate(client, server, service, h, nowMillis);
+        } else if (nowMillis - lastSeen[entry] > windowMillis) {
+            reported[entry] = 0; // Quiet for a whole window: a new episode
+        }
+        roll(entry, nowMillis);
+        if (event == Event.ATTEMPT) {
+            attempts[entry]++;
+        } else {
+            failures[entry]++;
+        }
+        lastSeen[entry] = Math.max(lastSeen[entry], nowMillis);
+
+        int crossed = 0;
+        if (windowed(entry, attempts, previousAttempts, nowMillis) >= attemptThreshold) {
+            crossed |= 1 << Signal.ATTEMPTS.ordinal();
+        }
+        if (windowed(entry, failures, previousFailures, nowMillis) >= failureThreshold) {
+            crossed |= 1 << Signal.FAILURES.ordinal();
+        }
+        int fresh = crossed & ~reported[entry];
+        if (fresh == 0) {
+            return Signal.NONE;
+        }
+        reported[entry] |= (byte) fresh;
+        return (fresh & (1 << Signal.FAILURES.ordinal())) != 0 ? Signal.FAILURES : Signal.ATTEMPTS;
+    }
+
+    public synchronized int size() { return size; }
+    public int getCapacity() { return capacity; }
+    public long getWindowMillis() { return windowMillis; }
+    public int getAttemptThreshold() { return attemptThreshold; }
+    public int getFailureThreshold() { return failureThreshold; }
+    public synchronized long getEvictionCount() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d client-service pairs tracked, %d evicted", size, capacity, evictions);
+    }
+
+    private double windowed(int entry, int[] current, int[] previous, long now) {
+        return TransferTracker.windowed(current[entry], previous[entry], windowIds[entry], now, windowMillis);
+    }
+
+    /** Moves the fixed windows forward to the one containing {@code now}. */
+    private void roll(int entry, long now) {
+        long id = now / windowMillis;
+        long elapsed = id - windowIds[entry];
+        if (elapsed <= 0) {
+            return;
+        }
+        previousAttempts[entry] = elapsed == 1 ? attempts[entry] : 0;
+        previousFailures[entry] = elapsed == 1 ? failures[entry] : 0;
+        attempts[entry] = 0;
+        failures[entry] = 0;
+        windowIds[entry] = id;
+    }
+
+    private int allocate(int client, int server, int service, int h, long now) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+        } else {
+            entry = evictionSampler.pick(lastSeen);
+            index.remove(entry);
+            evictions++;
+        }
+        clients[entry] = client;
+        servers[entry] = server;
+        services[entry] = service;
+        windowIds[entry] = now / windowMillis;
+        attempts[entry] = 0;
+        failures[entry] = 0;
+        previousAttempts[entry] = 0;
+        previousFailures[entry] = 0;
+        lastSeen[entry] = now;
+        reported[entry] = 0;
+        index.insert(entry, h);
+        return entry;
+    }
+
+    private int find(int client, int server, int service, int h) {
+        for (int pos = index.first(h), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+            if (clients[entry] == client && servers[entry] == server && services[entry] == service) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(int client, int server, int service) {
+        int h = WindowedCounterTable.mix(client);
+        h = WindowedCounterTable.mix(h ^ server);
+        return WindowedCounterTable.mix(h ^ service);
+    }
+}
@@ -0,0 +1,77 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch over int keys. Estimates never undercount; with probability
+ * at least {@code 1 - delta} an estimate exceeds the true count by at most
+ * {@code epsilon} times the total added to the sketch. Memory is fixed at
+ * {@code ceil(e / epsilon) * ceil(ln(1 / delta))} longs.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] table;
+    private final int[] seeds;
+    private long total;
+
+    /**
+     * Creates a sketch sized for the given error bounds
+     * @param epsilon Relative error bound, e.g. 0.001
+     * @param delta Probability of exceeding the bound, e.g. 0.01
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1)");
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1.0 / delta));
+        this.table = new long[width * depth];
+        this.seeds = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = 0x9E3779B9 * (i + 1);
+        }
+    }
+
+    /**
+     * Adds to a key's count
+     * @param key The key
+     * @param delta Amount to add
+     */
+    public void add(int key, long delta) {
+        for (int row = 0; row < depth; row++) {
+            table[row * width + bucket(key, row)] += delta;
+        }
+        total += delta;
+    }
+
+    /**
+     * Estimates a key's count
+     * @param key The key
+     * @return Upper-bound estimate
+     */
+    public long estimate(int key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[row * width + bucket(key, row)]);
+        }
+        return min;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        total = 0;
+    }
+
+    public long getTotal() { return total; }
+    public int getWidth() { return width; }
+    public int getDepth() { return depth; }
+
+    private int bucket(int key, int row) {
+        int h = WindowedCounterTable.mix(key ^ seeds[row]);
+        return (h & 0x7FFFFFFF) % width;
+    }
+}
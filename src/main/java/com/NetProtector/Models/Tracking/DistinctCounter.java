@@ -0,0 +1,117 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.Arrays;
+
+/**
+ * Distinct-value counter with bounded memory. Small sets are held exactly in a
+ * compact sorted int array; once that overflows the counter switches to a
+ * HyperLogLog sketch with 256 one-byte registers (about 6.5% standard error).
+ * Either way a counter never uses more than a few hundred bytes.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class DistinctCounter {
+
+    public static final int EXACT_LIMIT = 64;
+
+    private static final int PRECISION = 8;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1.0 + 1.079 / REGISTERS);
+
+    private final int[] values = new int[EXACT_LIMIT];
+    private int size;
+    private byte[] registers;
+    private boolean sketched;
+
+    /**
+     * Adds a value
+     * @param value The value
+     */
+    public void add(int value) {
+        if (!sketched) {
+            int pos = Arrays.binarySearch(values, 0, size, value);
+            if (pos >= 0) {
+                return;
+            }
+            if (size < EXACT_LIMIT) {
+                int insert = -pos - 1;
+                System.arraycopy(values, insert, values, insert + 1, size - insert);
+                values[insert] = value;
+                size++;
+                return;
+            }
+            promote();
+        }
+        addToSketch(value);
+    }
+
+    /**
+     * Gets the number of distinct values added
+     * @return Exact count for small sets, HyperLogLog estimate otherwise
+     */
+    public long cardinality() {
+        if (!sketched) {
+            return size;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Checks whether the counter is still exact
+     * @return true until the exact set overflowed
+     */
+    public boolean isExact() {
+        return !sketched;
+    }
+
+    /**
+     * Resets the counter; the sketch buffer is kept for reuse
+     */
+    public void clear() {
+        size = 0;
+        sketched = false;
+        if (registers != null) {
+            Arrays.fill(registers, (byte) 0);
+        }
+    }
+
+    private void promote() {
+        if (registers == null) {
+            registers = new byte[REGISTERS];
+        }
+        sketched = true;
+        for (int i = 0; i < size; i++) {
+            addToSketch(values[i]);
+        }
+        size = 0;
+    }
+
+    private void addToSketch(int value) {
+        long h = mix64(value);
+        int index = (int) (h >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((h << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private static long mix64(int value) {
+        long z = (value & 0xFFFFFFFFL) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,120 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index over the entries of a table kept in parallel
+ * primitive arrays. The index maps a key's hash to entry numbers and remembers
+ * each entry's hash; comparing keys is left to the table, which walks the probe
+ * chain itself:
+ * <pre>
+ * for (int pos = index.first(hash), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+ *     if (keys[entry] == key) return entry;
+ * }
+ * </pre>
+ * Linear probing at most half full, with backward-shift deletion so chains stay
+ * intact without tombstones.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class EntryIndex {
+
+    private final int[] slots; // entry + 1, 0 when empty
+    private final int mask;
+    private final int[] hashes;
+
+    /**
+     * Creates an empty index
+     * @param capacity Number of entries the table holds; entries are numbered from 0
+     */
+    public EntryIndex(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.slots = new int[size];
+        this.mask = size - 1;
+        this.hashes = new int[capacity];
+    }
+
+    /**
+     * Gets the first position of a hash's probe chain
+     * @param hash Key hash
+     * @return Position to pass to {@link #entryAt(int)}
+     */
+    public int first(int hash) {
+        return hash & mask;
+    }
+
+    /**
+     * Gets the position after one in a probe chain
+     * @param pos Current position
+     * @return Next position
+     */
+    public int next(int pos) {
+        return (pos + 1) & mask;
+    }
+
+    /**
+     * Gets the entry at a position
+     * @param pos Position in the index
+     * @return Entry number, or -1 at the end of the chain
+     */
+    public int entryAt(int pos) {
+        return slots[pos] - 1;
+    }
+
+    /**
+     * Gets the hash an entry was inserted with
+     * @param entry An indexed entry
+     * @return Its hash
+     */
+    public int hashOf(int entry) {
+        return hashes[entry];
+    }
+
+    /**
+     * Indexes an entry; the entry must not be indexed already
+     * @param entry Entry number
+     * @param hash Hash of the entry's key
+     */
+    public void insert(int entry, int hash) {
+        hashes[entry] = hash;
+        int pos = hash & mask;
+        while (slots[pos] != 0) {
+            pos = (pos + 1) & mask;
+        }
+        slots[pos] = entry + 1;
+    }
+
+    /**
+     * Removes an indexed entry
+     * @param entry Entry number
+     */
+    public void remove(int entry) {
+        int pos = hashes[entry] & mask;
+        while (slots[pos] != entry + 1) {
+            pos = (pos + 1) & mask;
+        }
+        // Backward-shift deletion: pull later chain members into the hole unless they sit at or after their home
+        int hole = pos;
+        slots[hole] = 0;
+        int probe = hole;
+        while (true) {
+            probe = (probe + 1) & mask;
+            int occupant = slots[probe];
+            if (occupant == 0) {
+                break;
+            }
+            int home = hashes[occupant - 1] & mask;
+            boolean stays = hole <= probe ? (hole < home && home <= probe) : (hole < home || home <= probe);
+            if (!stays) {
+                slots[hole] = occupant;
+                slots[probe] = 0;
+                hole = probe;
+            }
+        }
+    }
+
+    /** Removes every entry. */
+    public void clear() {
+        Arrays.fill(slots, 0);
+    }
+}
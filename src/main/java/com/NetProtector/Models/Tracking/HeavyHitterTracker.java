@@ -0,0 +1,223 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.NetProtector.Models.PacketContext;
+
+/**
+ * Fixed-memory heavy-hitter tracker for packet and byte volume per key over a
+ * sliding window. The window is split into panes; each pane holds a Count-Min
+ * sketch for point estimates and a Space-Saving summary for the top keys, for
+ * both packets and bytes. Expired panes are cleared and reused, so memory does
+ * not depend on how many distinct keys are seen.
+ *
+ * Point estimates never undercount and, with probability {@code 1 - delta},
+ * overcount by at most {@code epsilon} times the window total.
+ */
+public final class HeavyHitterTracker {
+
+    private final long paneMillis;
+    private final int paneCount;
+    private final long[] paneIds;
+    private final CountMinSketch[] packetSketches;
+    private final CountMinSketch[] byteSketches;
+    private final SpaceSavingTopK[] packetTop;
+    private final SpaceSavingTopK[] byteTop;
+
+    /**
+     * Creates a tracker
+     * @param windowMillis Sliding window length
+     * @param panes Number of panes the window is divided into; more panes slide more smoothly
+     * @param epsilon Relative error bound of the estimates
+     * @param delta Probability of exceeding the error bound
+     * @param topK Number of heavy hitters monitored per pane
+     */
+    public HeavyHitterTracker(long windowMillis, int panes, double epsilon, double delta, int topK) {
+        if (windowMillis <= 0 || panes <= 0) {
+            throw new IllegalArgumentException("Window and pane count must be positive");
+        }
+        this.paneCount = panes;
+        this.paneMillis = Math.max(1, windowMillis / panes);
+        this.paneIds = new long[panes];
+        Arrays.fill(paneIds, Long.MIN_VALUE);
+        this.packetSketches = new CountMinSketch[panes];
+        this.byteSketches = new CountMinSketch[panes];
+        this.packetTop = new SpaceSavingTopK[panes];
+        this.byteTop = new SpaceSavingTopK[panes];
+        for (int i = 0; i < panes; i++) {
+            packetSketches[i] = new CountMinSketch(epsilon, delta);
+            byteSketches[i] = new CountMinSketch(epsilon, delta);
+            packetTop[i] = new SpaceSavingTopK(topK);
+            byteTop[i] = new SpaceSavingTopK(topK);
+        }
+    }
+
+    /**
+     * Records one packet for a key
+     * @param key The key, e.g. an IPv4 address
+     * @param bytes Packet size
+     * @param nowMillis Current time
+     * @return Estimated packets for the key in the window, including this one
+     */
+    public synchronized long record(int key, long bytes, long nowMillis) {
+        int slot = pane(nowMillis);
+        packetSketches[slot].add(key, 1);
+        byteSketches[slot].add(key, bytes);
+        packetTop[slot].add(key, 1);
+        byteTop[slot].add(key, bytes);
+        return estimate(packetSketches, key, nowMillis / paneMillis);
+    }
+
+    /**
+     * Estimates a key's packets in the window
+     * @param key The key
+     * @param nowMillis Current time
+     * @return Estimated packet count
+     */
+    public synchronized long estimatePackets(int key, long nowMillis) {
+        return estimate(packetSketches, key, nowMillis / paneMillis);
+    }
+
+    /**
+     * Estimates a key's bytes in the window
+     * @param key The key
+     * @param nowMillis Current time
+     * @return Estimated byte count
+     */
+    public synchronized long estimateBytes(int key, long nowMillis) {
+        return estimate(byteSketches, key, nowMillis / paneMillis);
+    }
+
+    /**
+     * Gets the heaviest keys by packet count
+     * @param n Maximum number of entries
+     * @param nowMillis Current time
+     * @return Entries ordered by packets, descending
+     */
+    public List<HeavyHitter> topByPackets(int n, long nowMillis) {
+        return top(n, nowMillis, false);
+    }
+
+    /**
+     * Gets the heaviest keys by byte count
+     * @param n Maximum number of entries
+     * @param nowMillis Current time
+     * @return Entries ordered by bytes, descending
+     */
+    public List<HeavyHitter> topByBytes(int n, long nowMillis) {
+        return top(n, nowMillis, true);
+    }
+
+    /**
+     * Total packets recorded in the window
+     * @param nowMillis Current time
+     * @return Packet total
+     */
+    public synchronized long getTotalPackets(long nowMillis) {
+        long current = nowMillis / paneMillis;
+        long total = 0;
+        for (int i = 0; i < paneCount; i++) {
+            if (isLive(i, current)) {
+                total += packetSketches[i].getTotal();
+            }
+        }
+        return total;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < paneCount; i++) {
+            clearPane(i);
+            paneIds[i] = Long.MIN_VALUE;
+        }
+    }
+
+    private synchronized List<HeavyHitter> top(int n, long nowMillis, boolean byBytes) {
+        long current = nowMillis / paneMillis;
+        SpaceSavingTopK[] summaries = byBytes ? byteTop : packetTop;
+        int[] candidates = new int[0];
+        for (int i = 0; i < paneCount; i++) {
+            if (isLive(i, current)) {
+                int[] keys = summaries[i].keys();
+                int offset = candidates.length;
+                candidates = Arrays.copyOf(candidates, offset + keys.length);
+                System.arraycopy(keys, 0, candidates, offset, keys.length);
+            }
+        }
+        Arrays.sort(candidates);
+        List<HeavyHitter> result = new ArrayList<>();
+        for (int i = 0; i < candidates.length; i++) {
+            if (i > 0 && candidates[i] == candidates[i - 1]) {
+                continue;
+            }
+            int key = candidates[i];
+            result.add(new HeavyHitter(key, estimate(packetSketches, key, current), estimate(byteSketches, key, current)));
+        }
+        result.sort(byBytes ? Comparator.comparingLong(HeavyHitter::getBytes).reversed()
+                            : Comparator.comparingLong(HeavyHitter::getPackets).reversed());
+        return Collections.unmodifiableList(result.subList(0, Math.min(n, result.size())));
+    }
+
+    private int pane(long nowMillis) {
+        long id = nowMillis / paneMillis;
+        int slot = (int) Math.floorMod(id, (long) paneCount);
+        if (paneIds[slot] < id) {
+            clearPane(slot);
+            paneIds[slot] = id;
+        }
+        return slot;
+    }
+
+    private long estimate(CountMinSketch[] sketches, int key, long current) {
+        long total = 0;
+        for (int i = 0; i < paneCount; i++) {
+            if (isLive(i, current)) {
+                total += sketches[i].estimate(key);
+            }
+        }
+        return total;
+    }
+
+    private boolean isLive(int slot, long current) {
+        return paneIds[slot] != Long.MIN_VALUE && paneIds[slot] > current - paneCount;
+    }
+
+    private void clearPane(int slot) {
+        packetSketches[slot].clear();
+        byteSketches[slot].clear();
+        packetTop[slot].clear();
+        byteTop[slot].clear();
+    }
+
+    /**
+     * Estimated volume of one key in the window.
+     */
+    public static final class HeavyHitter {
+        private final int key;
+        private final long packets;
+        private final long bytes;
+
+        HeavyHitter(int key, long packets, long bytes) {
+            this.key = key;
+            this.packets = packets;
+            this.bytes = bytes;
+        }
+
+        public int getKey() { return key; }
+        public long getPackets() { return packets; }
+        public long getBytes() { return bytes; }
+
+        /** Key formatted as an IPv4 address. */
+        public String getAddress() {
+            return PacketContext.formatIpV4(key);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d pkts, %d bytes)", getAddress(), packets, bytes);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.NetProtector.Models.Tracking;
+
+/**
+ * Per-source port-scan tracker. For every source it counts distinct destination
+ * ports and distinct destination hosts of failed probes within a fixed window,
+ * and classifies the source as a vertical scan (many ports), horizontal scan
+ * (many hosts) or block scan (both).
+ *
+ * Only probes that fail count: those refused with a RST, those left unanswered,
+ * and half-open ones the source reset itself after the answer. A probe is
+ * pending from its SYN until it is {@link #answered answered} or
+ * {@link #failed fails}; a pending probe is unanswered once it is older than the
+ * answer timeout, or when the source has too many probes pending. Normal clients
+ * complete their handshakes, so however many hosts they connect to they are
+ * never counted.
+ *
+ * The number of tracked sources is capped and each source uses two
+ * {@link DistinctCounter}s and a fixed number of pending probe slots, so total
+ * memory is bounded. When the table is full a new source replaces the stalest of
+ * a few sampled entries.
+ */
+public final class ScanTracker {
+
+    /** Kind of scan a source is performing. Later constants are more severe. */
+    public enum ScanType { NONE, HORIZONTAL, VERTICAL, BLOCK }
+
+    public static final long DEFAULT_ANSWER_TIMEOUT_MILLIS = 3000;
+
+    /** Unanswered probes kept per source; beyond this the oldest counts as unanswered. */
+    private static final int MAX_PENDING = 16;
+
+    private final long windowMillis;
+    private final long answerTimeoutMillis;
+    private final int portThreshold;
+    private final int hostThreshold;
+    private final int capacity;
+    private final EntryIndex index;
+    private final StalestSampler evictionSampler;
+    private final int[] sources;
+    private final long[] windowStarts;
+    private final byte[] reported;
+    private final DistinctCounter[] ports;
+    private final DistinctCounter[] hosts;
+    private final int[] pendingCounts;
+    private final int[] pendingHosts;
+    private final int[] pendingPorts;
+    private final long[] pendingTimes;
+    private int size;
+    private long evictions;
+
+    /**
+     * Creates a tracker
+     * @param windowMillis Observation window per source
+     * @param maxSources Hard cap on tracked sources
+     * @param portThreshold Distinct ports that make a vertical scan
+     * @param hostThreshold Distinct hosts that make a horizontal scan
+     */
+    public ScanTracker(long windowMillis, int maxSources, int portThreshold, int hostThreshold) {
+        this(windowMillis, maxSources, portThreshold, hostThreshold, DEFAULT_ANSWER_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a tracker
+     * @param windowMillis Observation window per source
+     * @param maxSources Hard cap on tracked sources
+     * @param portThreshold Distinct ports that make a vertical scan
+     * @param hostThreshold Distinct hosts that make a horizontal scan
+     * @param answerTimeoutMillis Time after which a probe without answer counts as unanswered
+     */
+    public ScanTracker(long windowMillis, int maxSources, int portThreshold, int hostThreshold,
+                       long answerTimeoutMillis) {
+        if (windowMillis <= 0 || maxSources <= 0 || portThreshold <= 0 || hostThreshold <= 0
+                || answerTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Window, capacity, thresholds and timeout must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.answerTimeoutMillis = answerTimeoutMillis;
+        this.portThreshold = portThreshold;
+        this.hostThreshold = hostThreshold;
+        this.capacity = maxSources;
+        this.index = new EntryIndex(maxSources);
+        this.evictionSampler = new StalestSampler(maxSources);
+        this.sources = new int[maxSources];
+        this.windowStarts = new long[maxSources];
+        this.reported = new byte[maxSources];
+        this.ports = new DistinctCounter[maxSources];
+        this.hosts = new DistinctCounter[maxSources];
+        this.pendingCounts = new int[maxSources];
+        this.pendingHosts = new int[maxSources * MAX_PENDING];
+        this.pendingPorts = new int[maxSources * MAX_PENDING];
+        this.pendingTimes = new long[maxSources * MAX_PENDING];
+    }
+
+    /**
+     * Records a probe (a connection-opening SYN) waiting for its answer. Probes of
+     * the source that waited longer than the answer timeout are counted as unanswered.
+     * @param source Source address
+     * @param host Destination address
+     * @param port Destination port
+     * @param nowMillis Current time
+     * @return The newly reached scan type, or {@link ScanType#NONE}
+     */
+    public synchronized ScanType probe(int source, int host, int port, long nowMillis) {
+        int entry = entryFor(source, nowMillis);
+        expirePending(entry, nowMillis);
+        int base = entry * MAX_PENDING;
+        if (pendingCounts[entry] == MAX_PENDING) {
+            // Too many probes in flight: the oldest is taken as unanswered
+            int oldest = 0;
+            for (int i = 1; i < MAX_PENDING; i++) {
+                if (pendingTimes[base + i] < pendingTimes[base + oldest]) {
+                    oldest = i;
+                }
+            }
+            count(entry, pendingHosts[base + oldest], pendingPorts[base + oldest]);
+            removePending(entry, oldest);
+        }
+        int slot = base + pendingCounts[entry]++;
+        pendingHosts[slot] = host;
+        pendingPorts[slot] = port;
+        pendingTimes[slot] = nowMillis;
+        return report(entry);
+    }
+
+    /**
+     * Records that a probe was answered (SYN-ACK); it no longer counts
+     * @param source Source address of the probe
+     * @param host Destination address of the probe
+     * @param port Destination port of the probe
+     */
+    public synchronized void answered(int source, int host, int port) {
+        int entry = find(source);
+        if (entry >= 0) {
+            int pending = findPending(entry, host, port);
+            if (pending >= 0) {
+                removePending(entry, pending);
+            }
+        }
+    }
+
+    /**
+     * Records a failed probe: refused with a RST, or reset by the source itself
+     * before the handshake completed
+     * @param source Source address of the probe
+     * @param host Destination address of the probe
+     * @param port Destination port of the probe
+     * @param nowMillis Current time
+     * @return The newly reached scan type, or {@link ScanType#NONE}
+     */
+    public synchronized ScanType failed(int source, int host, int port, long nowMillis) {
+        int entry = entryFor(source, nowMillis);
+        int pending = findPending(entry, host, port);
+        if (pending >= 0) {
+            removePending(entry, pending);
+        }
+        count(entry, host, port);
+        return report(entry);
+    }
+
+    private int entryFor(int source, long nowMillis) {
+        int entry = find(source);
+        if (entry < 0) {
+            entry = allocate(source, nowMillis);
+        } else if (nowMillis - windowStarts[entry] > windowMillis) {
+            reset(entry, nowMillis);
+        }
+        return entry;
+    }
+
+    private void count(int entry, int host, int port) {
+        ports[entry].add(port);
+        hosts[entry].add(host);
+    }
+
+    /** Reports the classification the first time the source reaches it within its window. */
+    private ScanType report(int entry) {
+        ScanType type = classify(ports[entry].cardinality(), hosts[entry].cardinality());
+        if (type.ordinal() > reported[entry]) {
+            reported[entry] = (byte) type.ordinal();
+            return type;
+        }
+        return ScanType.NONE;
+    }
+
+    private void expirePending(int entry, long now) {
+        int base = entry * MAX_PENDING;
+        for (int i = pendingCounts[entry] - 1; i >= 0; i--) {
+            if (now - pendingTimes[base + i] > answerTimeoutMillis) {
+                count(entry, pendingHosts[base + i], pendingPorts[base + i]);
+                removePending(entry, i);
+            }
+        }
+    }
+
+    private int findPending(int entry, int host, int port) {
+        int base = entry * MAX_PENDING;
+        for (int i = 0; i < pendingCounts[entry]; i++) {
+            if (pendingHosts[base + i] == host && pendingPorts[base + i] == port) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Removes a pending probe by moving the last one into its slot. */
+    private void removePending(int entry, int i) {
+        int base = entry * MAX_PENDING;
+        int last = base + --pendingCounts[entry];
+        pendingHosts[base + i] = pendingHosts[last];
+        pendingPorts[base + i] = pendingPorts[last];
+        pendingTimes[base + i] = pendingTimes[last];
+    }
+
+    /**
+     * Classifies a source by its distinct port and host counts
+     * @param distinctPorts Distinct destination ports
+     * @param distinctHosts Distinct destination hosts
+     * @return The scan type
+     */
+    public ScanType classify(long distinctPorts, long distinctHosts) {
+        boolean manyPorts = distinctPorts >= portThreshold;
+        boolean manyHosts = distinctHosts >= hostThreshold;
+        if (manyPorts && manyHosts) {
+            return ScanType.BLOCK;
+        }
+        if (manyPorts) {
+            return ScanType.VERTICAL;
+        }
+        return manyHosts ? ScanType.HORIZONTAL : ScanType.NONE;
+    }
+
+    public synchronized int size() { return size; }
+    public int getCapacity() { return capacity; }
+    public long getAnswerTimeoutMillis() { return answerTimeoutMillis; }
+    public synchronized long getEvictionCount() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d sources tracked, %d evicted", size, capacity, evictions);
+    }
+
+    private int allocate(int source, long now) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+            ports[entry] = new DistinctCounter();
+            hosts[entry] = new DistinctCounter();
+        } else {
+            entry = evictionSampler.pick(windowStarts);
+            index.remove(entry);
+            evictions++;
+        }
+        sources[entry] = source;
+        reset(entry, now);
+        index.insert(entry, WindowedCounterTable.mix(source));
+        return entry;
+    }
+
+    private void reset(int entry, long now) {
+        windowStarts[entry] = now;
+        reported[entry] = 0;
+        pendingCounts[entry] = 0;
+        ports[entry].clear();
+        hosts[entry].clear();
+    }
+
+    private int find(int source) {
+        for (int pos = index.first(WindowedCounterTable.mix(source)), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+            if (sources[entry] == source) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,106 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.Arrays;
+
+/**
+ * Space-Saving heavy-hitter summary over int keys with a fixed number of
+ * counters. Any key whose true count exceeds {@code total / capacity} is
+ * guaranteed to be monitored; a monitored count overestimates by at most its
+ * recorded error. When a new key arrives and all counters are in use, it takes
+ * over the smallest counter.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class SpaceSavingTopK {
+
+    private final int capacity;
+    private final int[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final EntryIndex index;
+    private int size;
+
+    /**
+     * Creates a summary
+     * @param capacity Number of counters, i.e. the largest K that can be reported
+     */
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.index = new EntryIndex(capacity);
+    }
+
+    /**
+     * Adds to a key's count
+     * @param key The key
+     * @param delta Amount to add
+     */
+    public void add(int key, long delta) {
+        int slot = find(key);
+        if (slot >= 0) {
+            counts[slot] += delta;
+            return;
+        }
+        if (size < capacity) {
+            slot = size++;
+            keys[slot] = key;
+            counts[slot] = delta;
+            errors[slot] = 0;
+            index.insert(slot, WindowedCounterTable.mix(key));
+            return;
+        }
+        // Replace the minimum; the newcomer inherits its count as error
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        index.remove(min);
+        long floor = counts[min];
+        keys[min] = key;
+        counts[min] = floor + delta;
+        errors[min] = floor;
+        index.insert(min, WindowedCounterTable.mix(key));
+    }
+
+    /**
+     * Gets a monitored key's count
+     * @param key The key
+     * @return Overestimated count, or -1 if the key is not monitored
+     */
+    public long count(int key) {
+        int slot = find(key);
+        return slot >= 0 ? counts[slot] : -1;
+    }
+
+    /**
+     * Copies the monitored keys
+     * @return Keys in no particular order
+     */
+    public int[] keys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    public void clear() {
+        index.clear();
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public int getCapacity() { return capacity; }
+
+    private int find(int key) {
+        for (int pos = index.first(WindowedCounterTable.mix(key)), slot; (slot = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,42 @@
+package com.NetProtector.Models.Tracking;
+
+/**
+ * Approximate LRU victim choice for full tables: the least recently seen among a
+ * few entries spread over the table. The sample start rotates on every call so
+ * repeated evictions cover the whole table.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+final class StalestSampler {
+
+    private static final int SAMPLE = 8;
+
+    private final int capacity;
+    private int cursor;
+
+    /**
+     * Creates a sampler
+     * @param capacity Number of entries in the table
+     */
+    StalestSampler(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Picks the entry to evict
+     * @param lastSeen Last activity time per entry; every entry must be in use
+     * @return The stalest sampled entry
+     */
+    int pick(long[] lastSeen) {
+        int stride = Math.max(1, capacity / SAMPLE);
+        int best = cursor;
+        for (int i = 1; i < SAMPLE; i++) {
+            int candidate = (cursor + i * stride) % capacity;
+            if (lastSeen[candidate] < lastSeen[best]) {
+                best = candidate;
+            }
+        }
+        cursor = cursor + 1 == capacity ? 0 : cursor + 1;
+        return best;
+    }
+}
@@ -0,0 +1,250 @@
+package com.NetProtector.Models.Tracking;
+
+/**
+ * Per host-pair transfer accounting for exfiltration detection. For every
+ * (internal host, external host) pair it keeps outbound and inbound bytes over a
+ * sliding window and over the pair's current activity span, and reports when a
+ * pair crosses a volume, upload ratio or duration threshold.
+ *
+ * The sliding window is approximated with two fixed windows: the previous
+ * window's count is weighted by how much of it still overlaps the sliding
+ * window. This needs four counters per pair instead of a pane array, and is
+ * exact whenever traffic is evenly spread over the previous window.
+ *
+ * The number of tracked pairs is capped; when the table is full a new pair
+ * replaces the stalest of a few sampled entries.
+ */
+public final class TransferTracker {
+
+    /** Threshold a pair crossed. Later constants are more severe. */
+    public enum Trigger { NONE, DURATION, RATIO, VOLUME }
+
+    private static final Trigger[] TRIGGERS = Trigger.values();
+
+    private final long windowMillis;
+    private final long volumeBytes;
+    private final double uploadRatio;
+    private final long ratioMinBytes;
+    private final long durationMillis;
+    private final long durationMinBytes;
+
+    private final int capacity;
+    private final EntryIndex index;
+    private final StalestSampler evictionSampler;
+    private final long[] keys;
+    private final long[] windowIds;
+    private final long[] outbound;
+    private final long[] inbound;
+    private final long[] previousOutbound;
+    private final long[] previousInbound;
+    private final long[] activeSince;
+    private final long[] lastSeen;
+    private final long[] spanOutbound;
+    private final long[] spanInbound;
+    private final byte[] reported;
+    private int size;
+    private long evictions;
+
+    /**
+     * Creates a tracker
+     * @param windowMillis Sliding window length; a pair silent for longer starts a new activity span
+     * @param maxPairs Hard cap on tracked host pairs
+     * @param volumeBytes Outbound bytes within the window that trigger {@link Trigger#VOLUME}
+     * @param uploadRatio Outbound to inbound ratio within the window that triggers {@link Trigger#RATIO}
+     * @param ratioMinBytes Outbound bytes within the window needed before the ratio is judged
+     * @param durationMillis Activity span that triggers {@link Trigger#DURATION}
+     * @param durationMinBytes Outbound bytes over the span needed before the duration is judged
+     */
+    public TransferTracker(long windowMillis, int maxPairs, long volumeBytes, double uploadRatio,
+                           long ratioMinBytes, long durationMillis, long durationMinBytes) {
+        if (windowMillis <= 0 || maxPairs <= 0 || volumeBytes <= 0 || uploadRatio <= 0 || durationMillis <= 0) {
+            throw new IllegalArgumentException("Window, capacity and thresholds must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.volumeBytes = volumeBytes;
+        this.uploadRatio = uploadRatio;
+        this.ratioMinBytes = ratioMinBytes;
+        this.durationMillis = durationMillis;
+        this.durationMinBytes = durationMinBytes;
+        this.capacity = maxPairs;
+        this.index = new EntryIndex(maxPairs);
+        this.evictionSampler = new StalestSampler(maxPairs);
+        this.keys = new long[maxPairs];
+        this.windowIds = new long[maxPairs];
+        this.outbound = new long[maxPairs];
+        this.inbound = new long[maxPairs];
+        this.previousOutbound = new long[maxPairs];
+        this.previousInbound = new long[maxPairs];
+        this.activeSince = new long[maxPairs];
+        this.lastSeen = new long[maxPairs];
+        this.spanOutbound = new long[maxPairs];
+        this.spanInbound = new long[maxPairs];
+        this.reported = new byte[maxPairs];
+    }
+
+    /**
+     * Accounts bytes to a pair and reports the first time the pair crosses a
+     * threshold within its activity span
+     * @param internal Internal host address
+     * @param external External host address
+     * @param bytes Packet size
+     * @param outboundPacket true if the internal host sent the packet
+     * @param nowMillis Current time
+     * @return The most severe newly crossed threshold, or {@link Trigger#NONE}
+     */
+    public synchronized Trigger record(int internal, int external, long bytes, boolean outboundPacket, long nowMillis) {
+        long key = ((long) internal << 32) | (external & 0xFFFFFFFFL);
+        int entry = find(key);
+        if (entry < 0) {
+            entry = allocate(key, nowMillis);
+        } else if (nowMillis - lastSeen[entry] > windowMillis) {
+            startSpan(entry, nowMillis);
+        }
+        roll(entry, nowMillis);
+        if (outboundPacket) {
+            outbound[entry] += bytes;
+            spanOutbound[entry] += bytes;
+        } else {
+            inbound[entry] += bytes;
+            spanInbound[entry] += bytes;
+        }
+        lastSeen[entry] = Math.max(lastSeen[entry], nowMillis);
+
+        int crossed = crossed(entry, nowMillis);
+        int fresh = crossed & ~reported[entry];
+        if (fresh == 0) {
+            return Trigger.NONE;
+        }
+        reported[entry] |= (byte) fresh;
+        return TRIGGERS[31 - Integer.numberOfLeadingZeros(fresh)];
+    }
+
+    /**
+     * Estimates a pair's outbound bytes over the sliding window
+     * @param internal Internal host address
+     * @param external External host address
+     * @param nowMillis Current time
+     * @return Estimated bytes, 0 if the pair is not tracked
+     */
+    public synchronized long getOutboundBytes(int internal, int external, long nowMillis) {
+        int entry = find(((long) internal << 32) | (external & 0xFFFFFFFFL));
+        if (entry < 0) {
+            return 0;
+        }
+        return windowed(entry, outbound, previousOutbound, nowMillis);
+    }
+
+    public synchronized int size() { return size; }
+    public int getCapacity() { return capacity; }
+    public long getWindowMillis() { return windowMillis; }
+    public synchronized long getEvictionCount() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d host pairs tracked, %d evicted", size, capacity, evictions);
+    }
+
+    /** Bit set of thresholds the pair is over, one bit per {@link Trigger} ordinal. */
+    private int crossed(int entry, long now) {
+        long out = windowed(entry, outbound, previousOutbound, now);
+        long in = windowed(entry, inbound, previousInbound, now);
+        int bits = 0;
+        if (out >= volumeBytes) {
+            bits |= 1 << Trigger.VOLUME.ordinal();
+        }
+        if (out >= ratioMinBytes && out >= uploadRatio * Math.max(1, in)) {
+            bits |= 1 << Trigger.RATIO.ordinal();
+        }
+        if (now - activeSince[entry] >= durationMillis && spanOutbound[entry] >= durationMinBytes
+                && spanOutbound[entry] > spanInbound[entry]) {
+            bits |= 1 << Trigger.DURATION.ordinal();
+        }
+        return bits;
+    }
+
+    private long windowed(int entry, long[] current, long[] previous, long now) {
+        return (long) windowed(current[entry], previous[entry], windowIds[entry], now, windowMillis);
+    }
+
+    /**
+     * Estimates a sliding-window count from two fixed windows: the previous
+     * window weighted by its overlap with the sliding window, plus the current one
+     * @param current Count in the fixed window {@code windowId}
+     * @param previous Count in the fixed window before it
+     * @param windowId Fixed window the counts were last rolled to
+     * @param now Current time
+     * @param windowMillis Window length
+     * @return Estimated count over the sliding window ending at {@code now}
+     */
+    static double windowed(long current, long previous, long windowId, long now, long windowMillis) {
+        long id = now / windowMillis;
+        double overlap = 1.0 - (double) (now % windowMillis) / windowMillis;
+        if (id == windowId) {
+            return current + previous * overlap;
+        }
+        if (id == windowId + 1) {
+            return current * overlap;
+        }
+        return id < windowId ? current : 0;
+    }
+
+    /** Moves the fixed windows forward to the one containing {@code now}. */
+    private void roll(int entry, long now) {
+        long id = now / windowMillis;
+        long elapsed = id - windowIds[entry];
+        if (elapsed <= 0) {
+            return;
+        }
+        if (elapsed == 1) {
+            previousOutbound[entry] = outbound[entry];
+            previousInbound[entry] = inbound[entry];
+        } else {
+            previousOutbound[entry] = 0;
+            previousInbound[entry] = 0;
+        }
+        outbound[entry] = 0;
+        inbound[entry] = 0;
+        windowIds[entry] = id;
+    }
+
+    private void startSpan(int entry, long now) {
+        activeSince[entry] = now;
+        lastSeen[entry] = now;
+        spanOutbound[entry] = 0;
+        spanInbound[entry] = 0;
+        reported[entry] = 0;
+    }
+
+    private int allocate(long key, long now) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+        } else {
+            entry = evictionSampler.pick(lastSeen);
+            index.remove(entry);
+            evictions++;
+        }
+        keys[entry] = key;
+        windowIds[entry] = now / windowMillis;
+        outbound[entry] = 0;
+        inbound[entry] = 0;
+        previousOutbound[entry] = 0;
+        previousInbound[entry] = 0;
+        startSpan(entry, now);
+        index.insert(entry, hash(key));
+        return entry;
+    }
+
+    private int find(long key) {
+        for (int pos = index.first(hash(key)), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(long key) {
+        return WindowedCounterTable.mix(WindowedCounterTable.mix((int) (key >>> 32)) ^ (int) key);
+    }
+}
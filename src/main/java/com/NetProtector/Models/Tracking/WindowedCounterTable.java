@@ -0,0 +1,316 @@
+package com.NetProtector.Models.Tracking;
+
+import java.util.Arrays;
+
+/**
+ * Bounded table of fixed-window counters keyed by a primitive int (normally an
+ * IPv4 address). A key's window starts with its first event and the count resets
+ * once the window has elapsed, matching the original per-address counters.
+ *
+ * Memory is preallocated and never grows: entries live in parallel primitive
+ * arrays indexed by an open-addressing hash, and every entry is also linked into a
+ * timing wheel slot for the tick in which its window ends. Advancing the wheel
+ * reclaims expired entries in O(expired) time. When the table is full the entry
+ * closest to expiry is evicted and counted, so a spoofed-source flood costs
+ * accuracy on the oldest keys instead of heap.
+ *
+ * The table is split into independently locked segments so concurrent detection
+ * workers rarely contend.
+ */
+public final class WindowedCounterTable {
+
+    private static final int WHEEL_SLOTS = 64;
+    private static final int MIN_SEGMENT_CAPACITY = 256;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final long windowMillis;
+    private final long tickMillis;
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int capacity;
+
+    /**
+     * Creates a table
+     * @param windowMillis Length of each key's counting window
+     * @param maxEntries Hard cap on tracked keys
+     */
+    public WindowedCounterTable(long windowMillis, int maxEntries) {
+        if (windowMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Window and capacity must be positive");
+        }
+        this.windowMillis = windowMillis;
+        // Leave two spare slots so an entry is always reclaimed within one lap
+        this.tickMillis = Math.max(1, (windowMillis + WHEEL_SLOTS - 3) / (WHEEL_SLOTS - 2));
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && maxEntries / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) {
+            segmentCount <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = (maxEntries + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.capacity = perSegment * segmentCount;
+    }
+
+    /**
+     * Counts one event for a key
+     * @param key The key
+     * @param nowMillis Current time
+     * @return The key's count in its current window, including this event
+     */
+    public long increment(int key, long nowMillis) {
+        return add(key, 1, nowMillis);
+    }
+
+    /**
+     * Adds to a key's count
+     * @param key The key
+     * @param delta Amount to add, e.g. a byte count
+     * @param nowMillis Current time
+     * @return The key's count in its current window, including this amount
+     */
+    public long add(int key, long delta, long nowMillis) {
+        int h = mix(key);
+        return segmentFor(h).add(key, h, delta, nowMillis);
+    }
+
+    /**
+     * Reads a key's count without modifying it
+     * @param key The key
+     * @param nowMillis Current time
+     * @return Count in the current window, 0 if untracked or expired
+     */
+    public long get(int key, long nowMillis) {
+        int h = mix(key);
+        return segmentFor(h).get(key, h, nowMillis);
+    }
+
+    /**
+     * Removes all entries; eviction and expiry counters are kept
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Number of live entries dropped because the table was full
+     * @return Eviction count
+     */
+    public long getEvictionCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.evictions();
+        }
+        return total;
+    }
+
+    /**
+     * Number of entries reclaimed by the timing wheel after their window ended
+     * @return Expiry count
+     */
+    public long getExpiredCount() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.expirations();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d tracked, %d expired, %d evicted",
+                size(), capacity, getExpiredCount(), getEvictionCount());
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final EntryIndex index;
+        private final int[] keys;
+        private final long[] counts;
+        private final long[] windowStarts;
+        private final int[] next;
+        private final int[] prev;
+        private final int[] wheelSlotOf;
+        private final int[] wheel = new int[WHEEL_SLOTS];
+        private int freeHead;
+        private int size;
+        private long lastTick = Long.MIN_VALUE;
+        private long evictions;
+        private long expirations;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.index = new EntryIndex(capacity);
+            this.keys = new int[capacity];
+            this.counts = new long[capacity];
+            this.windowStarts = new long[capacity];
+            this.next = new int[capacity];
+            this.prev = new int[capacity];
+            this.wheelSlotOf = new int[capacity];
+            clear();
+        }
+
+        synchronized long add(int key, int hash, long delta, long now) {
+            advance(now);
+            int entry = find(key, hash);
+            if (entry < 0) {
+                if (size == capacity) {
+                    evictOldest();
+                }
+                entry = allocate(key, hash, now);
+                counts[entry] = delta;
+                return delta;
+            }
+            if (now - windowStarts[entry] > windowMillis) {
+                // Window elapsed before the wheel got to it: start a new one
+                windowStarts[entry] = now;
+                counts[entry] = delta;
+                unlink(entry);
+                link(entry);
+                return delta;
+            }
+            counts[entry] += delta;
+            return counts[entry];
+        }
+
+        synchronized long get(int key, int hash, long now) {
+            int entry = find(key, hash);
+            if (entry < 0 || now - windowStarts[entry] > windowMillis) {
+                return 0;
+            }
+            return counts[entry];
+        }
+
+        synchronized void clear() {
+            index.clear();
+            Arrays.fill(wheel, -1);
+            for (int i = 0; i < capacity; i++) {
+                next[i] = i + 1 < capacity ? i + 1 : -1;
+            }
+            freeHead = 0;
+            size = 0;
+        }
+
+        synchronized int size() { return size; }
+        synchronized long evictions() { return evictions; }
+        synchronized long expirations() { return expirations; }
+
+        /** Reclaims entries in every wheel slot passed since the last call. */
+        private void advance(long now) {
+            long tick = now / tickMillis;
+            if (lastTick == Long.MIN_VALUE || tick - lastTick > WHEEL_SLOTS) {
+                lastTick = Math.max(lastTick, tick - WHEEL_SLOTS);
+            }
+            while (lastTick < tick) {
+                lastTick++;
+                int slot = (int) (lastTick & (WHEEL_SLOTS - 1));
+                int entry = wheel[slot];
+                while (entry >= 0) {
+                    int following = next[entry];
+                    if (now - windowStarts[entry] > windowMillis) {
+                        remove(entry);
+                        expirations++;
+                    }
+                    entry = following;
+                }
+            }
+        }
+
+        private void evictOldest() {
+            long base = lastTick == Long.MIN_VALUE ? 0 : lastTick;
+            for (int i = 1; i <= WHEEL_SLOTS; i++) {
+                int entry = wheel[(int) ((base + i) & (WHEEL_SLOTS - 1))];
+                if (entry >= 0) {
+                    remove(entry);
+                    evictions++;
+                    return;
+                }
+            }
+        }
+
+        private int allocate(int key, int hash, long now) {
+            int entry = freeHead;
+            freeHead = next[entry];
+            keys[entry] = key;
+            windowStarts[entry] = now;
+            index.insert(entry, hash);
+            link(entry);
+            size++;
+            return entry;
+        }
+
+        private void remove(int entry) {
+            unlink(entry);
+            index.remove(entry);
+            next[entry] = freeHead;
+            freeHead = entry;
+            size--;
+        }
+
+        private int find(int key, int hash) {
+            for (int pos = index.first(hash), entry; (entry = index.entryAt(pos)) >= 0; pos = index.next(pos)) {
+                if (keys[entry] == key) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        /** Links an entry into the slot of the first tick after its window ends. */
+        private void link(int entry) {
+            int slot = (int) (((windowStarts[entry] + windowMillis) / tickMillis + 1) & (WHEEL_SLOTS - 1));
+            wheelSlotOf[entry] = slot;
+            prev[entry] = -1;
+            next[entry] = wheel[slot];
+            if (wheel[slot] >= 0) {
+                prev[wheel[slot]] = entry;
+            }
+            wheel[slot] = entry;
+        }
+
+        private void unlink(int entry) {
+            int slot = wheelSlotOf[entry];
+            if (prev[entry] >= 0) {
+                next[prev[entry]] = next[entry];
+            } else {
+                wheel[slot] = next[entry];
+            }
+            if (next[entry] >= 0) {
+                prev[next[entry]] = prev[entry];
+            }
+        }
+    }
+}
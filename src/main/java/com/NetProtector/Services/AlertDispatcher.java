@@ -0,0 +1,201 @@
+package com.NetProtector.Services;
+
+import com.NetProtector.Models.Alert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous alert dispatch stage. The detection thread only publishes an alert
+ * here and returns; each registered sink (persistence, notifications, UI handlers)
+ * drains its own bounded queue on its own worker pool, so a slow SQLite write or
+ * SMTP handshake can never stall packet analysis.
+ *
+ * When a sink queue is full the alert is dropped for that sink only and counted.
+ */
+public class AlertDispatcher {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final List<Sink> sinks = new ArrayList<>();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Registers a sink that receives every published alert.
+     * @param name Name used for worker threads and statistics
+     * @param workers Number of worker threads for this sink
+     * @param queueCapacity Maximum number of alerts waiting for this sink
+     * @param consumer The sink itself
+     */
+    public synchronized void addSink(String name, int workers, int queueCapacity, Consumer<Alert> consumer) {
+        if (name == null || consumer == null) {
+            throw new IllegalArgumentException("Sink name and consumer are required");
+        }
+        if (shutdown) {
+            throw new IllegalStateException("AlertDispatcher has been shut down");
+        }
+        sinks.add(new Sink(name, Math.max(1, workers), Math.max(1, queueCapacity), consumer));
+        System.out.println("AlertDispatcher: Registered sink '" + name + "' with " + workers +
+                " worker(s), queue capacity " + queueCapacity);
+    }
+
+    /**
+     * Hands an alert to every sink without blocking the caller.
+     * @param alert The alert to dispatch
+     */
+    public void publish(Alert alert) {
+        if (alert == null || shutdown) {
+            return;
+        }
+        publishedCount.incrementAndGet();
+        for (Sink sink : sinks) {
+            sink.submit(alert);
+        }
+    }
+
+    /**
+     * Stops accepting alerts and waits for all sinks to drain their queues.
+     * @param timeoutMillis Maximum time to wait per sink
+     */
+    public synchronized void shutdown(long timeoutMillis) {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        for (Sink sink : sinks) {
+            sink.executor.shutdown();
+        }
+        for (Sink sink : sinks) {
+            try {
+                if (!sink.executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    List<Runnable> pending = sink.executor.shutdownNow();
+                    sink.dropped.addAndGet(pending.size());
+                    System.err.println("AlertDispatcher: Sink '" + sink.name + "' did not drain in time, " +
+                            pending.size() + " alert(s) discarded.");
+                }
+            } catch (InterruptedException e) {
+                sink.executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.println("AlertDispatcher: Shut down. " + getStatistics());
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Gets a snapshot of per-sink counters
+     * @return Immutable list of sink statistics
+     */
+    public List<SinkStatistics> getSinkStatistics() {
+        List<SinkStatistics> result = new ArrayList<>();
+        for (Sink sink : sinks) {
+            result.add(new SinkStatistics(sink.name, sink.executor.getQueue().size(),
+                    sink.delivered.get(), sink.dropped.get(), sink.failed.get()));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Total number of alerts dropped across all sinks because a queue was full
+     * @return Dropped alert count
+     */
+    public long getDroppedCount() {
+        long total = 0;
+        for (Sink sink : sinks) {
+            total += sink.dropped.get();
+        }
+        return total;
+    }
+
+    /**
+     * Gets dispatcher statistics
+     * @return Statistics as a formatted string
+     */
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder("Published: ").append(publishedCount.get());
+        for (SinkStatistics stats : getSinkStatistics()) {
+            sb.append(" | ").append(stats);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Point-in-time counters for one sink.
+     */
+    public static final class SinkStatistics {
+        private final String name;
+        private final int queueDepth;
+        private final long delivered;
+        private final long dropped;
+        private final long failed;
+
+        SinkStatistics(String name, int queueDepth, long delivered, long dropped, long failed) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.failed = failed;
+        }
+
+        public String getName() { return name; }
+        public int getQueueDepth() { return queueDepth; }
+        public long getDelivered() { return delivered; }
+        public long getDropped() { return dropped; }
+        public long getFailed() { return failed; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: depth=%d delivered=%d dropped=%d failed=%d",
+                    name, queueDepth, delivered, dropped, failed);
+        }
+    }
+
+    private static final class Sink {
+        private final String name;
+        private final Consumer<Alert> consumer;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        Sink(String name, int workers, int queueCapacity, Consumer<Alert> consumer) {
+            this.name = name;
+            this.consumer = consumer;
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, "AlertSink-" + name + "-" + threadIndex.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    // Full queue or shut down: the only drop path, so publish never throws
+                    (r, pool) -> dropped.incrementAndGet());
+        }
+
+        void submit(Alert alert) {
+            executor.execute(() -> deliver(alert));
+        }
+
+        private void deliver(Alert alert) {
+            try {
+                consumer.accept(alert);
+                delivered.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("AlertDispatcher: Error in sink '" + name + "' - " + e.getMessage());
+            }
+        }
+    }
+}
@@ -29,7 +29,7 @@ public class ReportService {
     public void exportToCSV(String filePath) throws Exception {
         List<Alert> alerts = dbManager.getAllAlerts();
         try (CSVWriter writer = new CSVWriter(new FileWriter(filePath))) {
-            writer.writeNext(new String[]{"ID", "Timestamp", "Title", "Severity", "Source IP", "Destination IP", "Protocol", "Port"});
+            writer.writeNext(new String[]{"ID", "Timestamp", "Title", "Severity", "Source IP", "Destination IP", "Protocol", "Port", "Interface"});
             for (Alert alert : alerts) {
                 writer.writeNext(new String[]{
                         String.valueOf(alert.getId()),
@@ -39,7 +39,8 @@ public class ReportService {
                         alert.getSourceIp(),
                         alert.getDestinationIp(),
                         alert.getProtocol(),
-                        String.valueOf(alert.getPort())
+                        String.valueOf(alert.getPort()),
+                        alert.getInterfaceName()
                 });
             }
         }
@@ -55,7 +56,7 @@ public class ReportService {
             document.add(new Paragraph("NetProtector Intrusion Detection Report"));
             document.add(new Paragraph(" ")); // Empty line
 
-            PdfPTable table = new PdfPTable(7);
+            PdfPTable table = new PdfPTable(8);
             table.setWidthPercentage(100);
             table.addCell("Timestamp");
             table.addCell("Title");
@@ -64,6 +65,7 @@ public class ReportService {
             table.addCell("Dest IP");
             table.addCell("Protocol");
             table.addCell("Port");
+            table.addCell("Interface");
 
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -75,6 +77,7 @@ public class ReportService {
                 table.addCell(alert.getDestinationIp());
                 table.addCell(alert.getProtocol());
                 table.addCell(String.valueOf(alert.getPort()));
+                table.addCell(alert.getInterfaceName());
             }
             document.add(table);
         } finally {
@@ -0,0 +1,265 @@
+package com.NetProtector.db;
+
+import com.NetProtector.Models.Alert;
+
+import java.sql.*;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-connection batched alert writer. One long-lived SQLite connection in WAL
+ * mode receives alerts from a bounded queue and commits them in multi-row
+ * transactions, flushed when the batch is full or the flush interval expires.
+ * The connection is only ever used by the writer thread, which drains everything
+ * still queued and closes the connection when {@link #close()} stops it.
+ */
+public class AlertBatchWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 250;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    public static final long DEFAULT_ENQUEUE_TIMEOUT_MS = 100;
+
+    private static final String INSERT_SQL = "INSERT INTO alerts(title, description, severity, protocol, timestamp, sourceIp, destinationIp, port, interfaceName) VALUES(?,?,?,?,?,?,?,?,?)";
+    private static final Alert FLUSH_MARKER = new Alert(-1, "", "", "", "", null, "", "", 0);
+
+    private final String dbUrl;
+    private final DateTimeFormatter dtf;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<Alert> pending;
+    private final Object flushLock = new Object();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private long flushRequests = 0;
+    private long flushesCompleted = 0;
+
+    private Connection connection;
+    private Thread writerThread;
+    private volatile boolean running = false;
+
+    public AlertBatchWriter(String dbUrl, DateTimeFormatter dtf) {
+        this(dbUrl, dtf, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AlertBatchWriter(String dbUrl, DateTimeFormatter dtf, int batchSize, long flushIntervalMs, int queueCapacity) {
+        this.dbUrl = dbUrl;
+        this.dtf = dtf;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.pending = new ArrayBlockingQueue<>(Math.max(this.batchSize, queueCapacity));
+    }
+
+    /**
+     * Opens the connection, applies WAL pragmas and starts the writer thread
+     * @throws SQLException if the database cannot be opened
+     */
+    public synchronized void start() throws SQLException {
+        if (running) {
+            return;
+        }
+        connection = DriverManager.getConnection(dbUrl);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+        }
+        connection.setAutoCommit(false);
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "AlertBatchWriter-Thread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        System.out.println("AlertBatchWriter: Started (batch size " + batchSize + ", flush interval " + flushIntervalMs + " ms)");
+    }
+
+    /**
+     * Queues an alert for the next batch, waiting up to {@link #DEFAULT_ENQUEUE_TIMEOUT_MS}
+     * for room so a burst is absorbed by the caller's own queue rather than lost.
+     * Alerts still refused after the wait are dropped and counted.
+     * @param alert The alert to persist
+     * @return true if the alert was queued
+     */
+    public boolean enqueue(Alert alert) {
+        if (alert == null || !running) {
+            return false;
+        }
+        try {
+            if (pending.offer(alert, DEFAULT_ENQUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Blocks until every alert queued before this call has been committed
+     * @param timeoutMillis Maximum time to wait
+     * @return true if the flush completed in time
+     */
+    public boolean flush(long timeoutMillis) {
+        if (!running) {
+            return true;
+        }
+        long ticket;
+        synchronized (flushLock) {
+            ticket = ++flushRequests;
+        }
+        try {
+            if (!pending.offer(FLUSH_MARKER, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (flushLock) {
+                while (flushesCompleted < ticket && running) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    flushLock.wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops the writer, which commits every queued alert and then closes the connection
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            // The connection stays with the writer thread, which closes it when it is done
+            System.err.println("AlertBatchWriter: Writer still committing after 10 s, " +
+                    pending.size() + " alert(s) queued; leaving the connection to the writer thread");
+        }
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        System.out.println("AlertBatchWriter: Closed. " + this);
+    }
+
+    private void writeLoop() {
+        List<Alert> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Alert first = pending.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                Alert next = first;
+                while (next != FLUSH_MARKER && batch.size() < batchSize) {
+                    next = pending.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = pending.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        // Stopped: commit what is left, then release the connection from this thread
+        commit(batch);
+        pending.drainTo(batch);
+        commit(batch);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("AlertBatchWriter: Error closing connection: " + e.getMessage());
+        }
+    }
+
+    private void commit(List<Alert> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int markers = 0;
+        List<Alert> rows = new ArrayList<>(batch.size());
+        for (Alert alert : batch) {
+            if (alert == FLUSH_MARKER) {
+                markers++;
+            } else {
+                rows.add(alert);
+            }
+        }
+        batch.clear();
+        writeBatch(rows);
+        if (markers > 0) {
+            synchronized (flushLock) {
+                flushesCompleted += markers;
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch(List<Alert> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SQL)) {
+            for (Alert alert : rows) {
+                pstmt.setString(1, alert.getTitle());
+                pstmt.setString(2, alert.getDescription());
+                pstmt.setString(3, alert.getSeverity());
+                pstmt.setString(4, alert.getProtocol());
+                pstmt.setString(5, alert.getTimestamp().format(dtf));
+                pstmt.setString(6, alert.getSourceIp());
+                pstmt.setString(7, alert.getDestinationIp());
+                pstmt.setInt(8, alert.getPort());
+                pstmt.setString(9, alert.getInterfaceName());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            connection.commit();
+            writtenCount.addAndGet(rows.size());
+            batchCount.incrementAndGet();
+        } catch (SQLException e) {
+            System.err.println("AlertBatchWriter: Error writing batch of " + rows.size() + " alert(s): " + e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                System.err.println("AlertBatchWriter: Rollback failed: " + rollbackError.getMessage());
+            }
+        }
+    }
+
+    public boolean isRunning() { return running; }
+    public long getWrittenCount() { return writtenCount.get(); }
+    public long getDroppedCount() { return droppedCount.get(); }
+    public long getBatchCount() { return batchCount.get(); }
+    public int getQueueDepth() { return pending.size(); }
+
+    @Override
+    public String toString() {
+        return String.format("written=%d batches=%d depth=%d dropped=%d",
+                writtenCount.get(), batchCount.get(), pending.size(), droppedCount.get());
+    }
+}
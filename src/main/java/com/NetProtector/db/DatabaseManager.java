@@ -12,8 +12,16 @@ public class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:NetProtector_alerts.db";
     private static final DateTimeFormatter dtf = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    // Shared by every DatabaseManager so the alerts file has a single writer connection
+    private static final AlertBatchWriter batchWriter = new AlertBatchWriter(DB_URL, dtf);
+
     public DatabaseManager() {
         createTableIfNotExists();
+        try {
+            batchWriter.start();
+        } catch (SQLException e) {
+            System.err.println("Error starting batch writer, falling back to per-alert inserts: " + e.getMessage());
+        }
     }
 
     private void createTableIfNotExists() {
@@ -26,17 +34,50 @@ public class DatabaseManager {
                      "timestamp TEXT," +
                      "sourceIp TEXT," +
                      "destinationIp TEXT," +
-                     "port INTEGER)";
+                     "port INTEGER," +
+                     "interfaceName TEXT)";
         try (Connection conn = DriverManager.getConnection(DB_URL);
              Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
+            addColumnIfMissing(stmt, "interfaceName", "TEXT");
         } catch (SQLException e) {
             System.err.println("Error creating table: " + e.getMessage());
         }
     }
 
+    /**
+     * Migrates an alerts table created by an older version
+     * @param stmt Statement on the alerts database
+     * @param column Column the current schema has
+     * @param type SQLite type of the column
+     * @throws SQLException if the table cannot be inspected or altered
+     */
+    private static void addColumnIfMissing(Statement stmt, String column, String type) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(alerts)")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        stmt.execute("ALTER TABLE alerts ADD COLUMN " + column + " " + type);
+        System.out.println("DatabaseManager: Added column " + column + " to alerts table");
+    }
+
+    /**
+     * Queues an alert for the batched writer. Falls back to a direct insert
+     * when the writer is not available.
+     */
     public void insertAlert(Alert alert) {
-        String sql = "INSERT INTO alerts(title, description, severity, protocol, timestamp, sourceIp, destinationIp, port) VALUES(?,?,?,?,?,?,?,?)";
+        if (batchWriter.isRunning()) {
+            batchWriter.enqueue(alert);
+        } else {
+            insertAlertDirect(alert);
+        }
+    }
+
+    private void insertAlertDirect(Alert alert) {
+        String sql = "INSERT INTO alerts(title, description, severity, protocol, timestamp, sourceIp, destinationIp, port, interfaceName) VALUES(?,?,?,?,?,?,?,?,?)";
 
         try (Connection conn = DriverManager.getConnection(DB_URL);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -48,13 +89,35 @@ public class DatabaseManager {
             pstmt.setString(6, alert.getSourceIp());
             pstmt.setString(7, alert.getDestinationIp());
             pstmt.setInt(8, alert.getPort());
+            pstmt.setString(9, alert.getInterfaceName());
             pstmt.executeUpdate();
         } catch (SQLException e) {
             System.err.println("Error inserting alert: " + e.getMessage());
         }
     }
 
+    /**
+     * Commits every alert queued so far
+     * @param timeoutMillis Maximum time to wait
+     */
+    public void flush(long timeoutMillis) {
+        batchWriter.flush(timeoutMillis);
+    }
+
+    /**
+     * Drains the batched writer and closes its connection. Queued alerts are not lost.
+     */
+    public void close() {
+        batchWriter.close();
+    }
+
+    public AlertBatchWriter getBatchWriter() {
+        return batchWriter;
+    }
+
     public List<Alert> getAllAlerts() {
+        // Make sure reports include alerts that are still waiting for a batch
+        flush(2000);
         List<Alert> alerts = new ArrayList<>();
         String sql = "SELECT * FROM alerts ORDER BY timestamp DESC";
 
@@ -72,7 +135,8 @@ public class DatabaseManager {
                         LocalDateTime.parse(rs.getString("timestamp"), dtf),
                         rs.getString("sourceIp"),
                         rs.getString("destinationIp"),
-                        rs.getInt("port")
+                        rs.getInt("port"),
+                        rs.getString("interfaceName")
                 ));
             }
         } catch (SQLException e) {
@@ -30,5 +30,11 @@ module com.NetProtector {
     exports com.NetProtector.Controllers;
     exports com.NetProtector.Models;
     exports com.NetProtector.Models.Rules;
+    exports com.NetProtector.Models.Flows;
+    exports com.NetProtector.Models.Intel;
+    exports com.NetProtector.Models.Pipeline;
+    exports com.NetProtector.Models.Reassembly;
+    exports com.NetProtector.Models.Signatures;
+    exports com.NetProtector.Models.Tracking;
     exports com.NetProtector.Services;
 }
\ No newline at end of file
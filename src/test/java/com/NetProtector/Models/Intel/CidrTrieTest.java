@@ -0,0 +1,103 @@
+package com.NetProtector.Models.Intel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CidrTrieTest {
+
+    @Test
+    void prefixesCoveredByShorterOnesAreDropped() {
+        long[] packed = {
+            CidrTrie.pack(ip("10.1.2.3"), 32),
+            CidrTrie.pack(ip("10.0.0.0"), 8),
+            CidrTrie.pack(ip("10.1.0.0"), 16),
+            CidrTrie.pack(ip("192.168.1.0"), 24),
+            CidrTrie.pack(ip("192.168.1.128"), 25),
+            CidrTrie.pack(ip("192.168.1.0"), 24),
+            CidrTrie.pack(ip("8.8.8.8"), 32)
+        };
+        CidrTrie trie = CidrTrie.build(packed, packed.length);
+
+        assertEquals(3, trie.size());
+        assertEquals(2 * 3 - 1, trie.getNodeCount());
+        assertArrayEquals(new long[] {
+            CidrTrie.pack(ip("8.8.8.8"), 32),
+            CidrTrie.pack(ip("10.0.0.0"), 8),
+            CidrTrie.pack(ip("192.168.1.0"), 24)
+        }, trie.toPackedArray());
+    }
+
+    @Test
+    void packClearsHostBits() {
+        assertEquals(CidrTrie.pack(ip("172.16.0.0"), 12), CidrTrie.pack(ip("172.31.255.255"), 12));
+    }
+
+    @Test
+    void lookupHonoursPrefixBoundaries() {
+        long[] packed = {
+            CidrTrie.pack(ip("10.0.0.0"), 8),
+            CidrTrie.pack(ip("192.168.1.0"), 24),
+            CidrTrie.pack(ip("203.0.113.7"), 32),
+            CidrTrie.pack(ip("240.0.0.0"), 4)
+        };
+        CidrTrie trie = CidrTrie.build(packed, packed.length);
+
+        assertTrue(trie.contains(ip("10.0.0.0")));
+        assertTrue(trie.contains(ip("10.255.255.255")));
+        assertFalse(trie.contains(ip("11.0.0.0")));
+        assertFalse(trie.contains(ip("9.255.255.255")));
+        assertTrue(trie.contains(ip("192.168.1.200")));
+        assertFalse(trie.contains(ip("192.168.2.1")));
+        assertTrue(trie.contains(ip("203.0.113.7")));
+        assertTrue(trie.contains(ip("255.255.255.255")));
+        assertFalse(trie.contains(ip("239.255.255.255")));
+    }
+
+    @Test
+    void emptyAndDefaultRouteTries() {
+        assertFalse(CidrTrie.build(new long[0], 0).contains(ip("1.2.3.4")));
+
+        long[] packed = {CidrTrie.pack(ip("10.0.0.0"), 8), CidrTrie.pack(0, 0)};
+        CidrTrie all = CidrTrie.build(packed, packed.length);
+        assertEquals(1, all.size());
+        assertTrue(all.contains(ip("1.2.3.4")));
+        assertTrue(all.contains(ip("255.255.255.255")));
+    }
+
+    @Test
+    void matchesLinearScanOnRandomPrefixes() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int count = 1 + random.nextInt(200);
+            int[] addresses = new int[count];
+            int[] lengths = new int[count];
+            long[] packed = new long[count];
+            for (int i = 0; i < count; i++) {
+                // Few distinct top bits so prefixes nest and share paths
+                addresses[i] = (random.nextInt(4) << 30) | (random.nextInt(16) << 20) | random.nextInt(1 << 20);
+                lengths[i] = random.nextInt(4) == 0 ? 32 : 4 + random.nextInt(29);
+                packed[i] = CidrTrie.pack(addresses[i], lengths[i]);
+            }
+            CidrTrie trie = CidrTrie.build(packed, count);
+
+            for (int q = 0; q < 2000; q++) {
+                int address = q % 2 == 0 ? addresses[random.nextInt(count)] ^ random.nextInt(256) : random.nextInt();
+                boolean expected = false;
+                for (int i = 0; i < count && !expected; i++) {
+                    expected = ((address ^ addresses[i]) & CidrTrie.mask(lengths[i])) == 0;
+                }
+                assertEquals(expected, trie.contains(address), "address " + Integer.toHexString(address));
+            }
+        }
+    }
+
+    private static int ip(String text) {
+        return (int) ThreatIntelSnapshot.parseIpV4(text);
+    }
+}
@@ -0,0 +1,128 @@
+package com.NetProtector.Models.Pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.IllegalRawDataException;
+import org.pcap4j.packet.Packet;
+import org.pcap4j.packet.UnknownPacket;
+
+/**
+ * Ring behaviour the detection pipeline relies on. Every packet is published
+ * with its index as capture timestamp, so a subscriber's
+ * {@link RingSubscriber#getTimestampMicros()} tells which packet it read.
+ */
+class PacketRingTest {
+
+    private static final int CAPACITY = 8;
+
+    @Test
+    void subscriberReadsInOrderAcrossWrapAround() throws Exception {
+        PacketRing ring = new PacketRing("test", CAPACITY, OverloadPolicy.BLOCK);
+        RingSubscriber subscriber = ring.subscribe("reader", true);
+        Packet packet = packet();
+
+        long next = 0;
+        for (int lap = 0; lap < 5; lap++) {
+            for (int i = 0; i < CAPACITY - 2; i++) {
+                ring.put(packet, next + i);
+            }
+            for (int i = 0; i < CAPACITY - 2; i++) {
+                assertNotNull(subscriber.poll());
+                assertEquals(next++, subscriber.getTimestampMicros());
+            }
+        }
+        assertNull(subscriber.poll());
+        assertEquals(next, subscriber.getConsumedCount());
+        assertEquals(0, subscriber.getSkippedCount());
+    }
+
+    @Test
+    void dropOldestOvertakesAndSubscriberSkipsToOldestKept() throws Exception {
+        PacketRing ring = new PacketRing("test", CAPACITY, OverloadPolicy.DROP_OLDEST);
+        RingSubscriber subscriber = ring.subscribe("reader", true);
+        Packet packet = packet();
+
+        int published = CAPACITY * 2 + 4;
+        for (int i = 0; i < published; i++) {
+            ring.put(packet, i);
+        }
+        // The producer never waited; the reader lost everything but the last lap
+        for (int expected = published - CAPACITY; expected < published; expected++) {
+            assertNotNull(subscriber.poll());
+            assertEquals(expected, subscriber.getTimestampMicros());
+        }
+        assertNull(subscriber.poll());
+        assertEquals(CAPACITY, subscriber.getConsumedCount());
+        assertEquals(published - CAPACITY, subscriber.getSkippedCount());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    void gatingSubscriberHoldsProducerBack() throws Exception {
+        PacketRing ring = new PacketRing("test", CAPACITY, OverloadPolicy.BLOCK);
+        RingSubscriber subscriber = ring.subscribe("reader", true);
+        Packet packet = packet();
+
+        for (int i = 0; i < CAPACITY; i++) {
+            ring.put(packet, i);
+        }
+        assertFalse(ring.offer(packet, 10, TimeUnit.MILLISECONDS));
+
+        assertNotNull(subscriber.poll());
+        assertTrue(ring.offer(packet, 10, TimeUnit.MILLISECONDS));
+        assertEquals(CAPACITY + 1, ring.getPublishedCount());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    void nonGatingSubscriberDoesNotHoldProducerBack() throws Exception {
+        PacketRing ring = new PacketRing("test", CAPACITY, OverloadPolicy.BLOCK);
+        RingSubscriber subscriber = ring.subscribe("monitor", false);
+        Packet packet = packet();
+
+        for (int i = 0; i < CAPACITY * 3; i++) {
+            assertTrue(ring.offer(packet, 0, TimeUnit.NANOSECONDS));
+        }
+        assertNotNull(subscriber.poll());
+        assertEquals(CAPACITY * 2, subscriber.getSkippedCount());
+    }
+
+    @Test
+    void blockedProducerResumesAsGatingSubscriberConsumes() throws Exception {
+        PacketRing ring = new PacketRing("test", CAPACITY, OverloadPolicy.BLOCK);
+        RingSubscriber subscriber = ring.subscribe("reader", true);
+        Packet packet = packet();
+        int count = CAPACITY * 50;
+
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    ring.put(packet, i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            assertNotNull(subscriber.poll(5, TimeUnit.SECONDS));
+            assertEquals(i, subscriber.getTimestampMicros());
+        }
+        producer.join(5000);
+
+        assertFalse(producer.isAlive());
+        assertEquals(0, subscriber.getSkippedCount());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    private static Packet packet() throws IllegalRawDataException {
+        return UnknownPacket.newPacket(new byte[] {1, 2, 3, 4}, 0, 4);
+    }
+}
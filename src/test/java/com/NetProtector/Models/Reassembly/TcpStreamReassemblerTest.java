@@ -0,0 +1,96 @@
+package com.NetProtector.Models.Reassembly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import com.NetProtector.Models.PacketContext;
+import com.NetProtector.Models.Signatures.SignatureRegistry;
+import com.NetProtector.Models.Signatures.SignatureSet;
+
+/**
+ * Signatures split over TCP segments are found once the segments are back in
+ * sequence order, including when the sequence number wraps.
+ */
+class TcpStreamReassemblerTest {
+
+    private static final int ISN = 0xFFFFFFF0;
+    private static final int PSH_ACK = PacketContext.TCP_PSH | PacketContext.TCP_ACK;
+
+    private final SignatureRegistry registry = new SignatureRegistry();
+    private final SignatureSet signature = registry.register("Test", "nc -l -p");
+    private final TcpStreamReassembler reassembler =
+            new TcpStreamReassembler(16, new BufferPool(4096, 4), 60_000, 10_000, registry);
+
+    @Test
+    void signatureSplitOverInOrderSegmentsMatches() {
+        assertNull(reassembler.reassemble(segment(ISN, PacketContext.TCP_SYN, ""), 0));
+
+        StreamChunk first = reassembler.reassemble(segment(ISN + 1, PSH_ACK, "hello nc -"), 1);
+        assertFalse(signature.anyMatch(first.getMatches()));
+
+        StreamChunk second = reassembler.reassemble(segment(ISN + 11, PSH_ACK, "l -p 4444"), 2);
+        assertTrue(signature.anyMatch(second.getMatches()));
+    }
+
+    @Test
+    void retransmittedSegmentDoesNotMatchAgain() {
+        reassembler.reassemble(segment(ISN, PacketContext.TCP_SYN, ""), 0);
+        reassembler.reassemble(segment(ISN + 1, PSH_ACK, "hello nc -"), 1);
+        reassembler.reassemble(segment(ISN + 11, PSH_ACK, "l -p 4444"), 2);
+
+        StreamChunk again = reassembler.reassemble(segment(ISN + 11, PSH_ACK, "l -p 4444"), 3);
+        assertFalse(signature.anyMatch(again.getMatches()));
+        assertEquals(1, reassembler.getRetransmittedCount());
+    }
+
+    @Test
+    void signatureSplitOverReorderedSegmentsMatchesOnceGapFills() {
+        reassembler.reassemble(segment(ISN, PacketContext.TCP_SYN, ""), 0);
+
+        StreamChunk early = reassembler.reassemble(segment(ISN + 11, PSH_ACK, "l -p 4444"), 1);
+        assertSame(StreamChunk.EMPTY, early);
+
+        StreamChunk filled = reassembler.reassemble(segment(ISN + 1, PSH_ACK, "hello nc -"), 2);
+        assertNotNull(filled);
+        assertEquals(19, filled.getTotalLength());
+        assertTrue(signature.anyMatch(filled.getMatches()));
+        assertEquals(1, reassembler.getReorderedCount());
+    }
+
+    /** Ethernet/IPv4/TCP frame from 10.0.0.1:40000 to 10.0.0.2:80. */
+    private static PacketContext segment(int seq, int flags, String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.US_ASCII);
+        byte[] frame = new byte[54 + data.length];
+        int totalLength = 40 + data.length;
+        frame[12] = 0x08;
+        frame[14] = 0x45;
+        frame[16] = (byte) (totalLength >> 8);
+        frame[17] = (byte) totalLength;
+        frame[22] = 64;
+        frame[23] = 6;
+        frame[26] = 10;
+        frame[29] = 1;
+        frame[30] = 10;
+        frame[33] = 2;
+        frame[34] = (byte) (40000 >> 8);
+        frame[35] = (byte) 40000;
+        frame[37] = 80;
+        frame[38] = (byte) (seq >> 24);
+        frame[39] = (byte) (seq >> 16);
+        frame[40] = (byte) (seq >> 8);
+        frame[41] = (byte) seq;
+        frame[46] = 0x50;
+        frame[47] = (byte) flags;
+        System.arraycopy(data, 0, frame, 54, data.length);
+        return PacketContext.decode(frame, frame.length, DataLinkType.EN10MB, 0);
+    }
+}
@@ -0,0 +1,74 @@
+package com.NetProtector.Models.Signatures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The matcher is fed one TCP segment at a time; a pattern split over segments
+ * must match as long as the state is carried from one scan to the next.
+ */
+class AhoCorasickMatcherTest {
+
+    private static final AhoCorasickMatcher MATCHER = AhoCorasickMatcher.builder()
+            .add("union select", 0)
+            .add("nc -l -p", 1)
+            .add("select", 2)
+            .build();
+
+    @Test
+    void patternSplitAtEveryBoundaryMatchesAcrossTwoScans() {
+        byte[] data = bytes("GET /?q=1' UNION SELECT pw HTTP/1.1");
+        for (int cut = 0; cut <= data.length; cut++) {
+            SignatureMatches matches = new SignatureMatches(MATCHER.getPatternCount());
+            int state = MATCHER.scan(data, 0, cut, AhoCorasickMatcher.START_STATE, matches);
+            MATCHER.scan(data, cut, data.length - cut, state, matches);
+
+            assertTrue(matches.contains(0), "cut at " + cut);
+            assertTrue(matches.contains(2), "cut at " + cut);
+            assertFalse(matches.contains(1), "cut at " + cut);
+        }
+    }
+
+    @Test
+    void patternSpanningWholeMiddleSegmentMatches() {
+        byte[][] segments = {bytes("echo x; n"), bytes("c -l "), bytes("-p 4444")};
+        SignatureMatches matches = new SignatureMatches(MATCHER.getPatternCount());
+        int state = AhoCorasickMatcher.START_STATE;
+        for (byte[] segment : segments) {
+            state = MATCHER.scan(segment, 0, segment.length, state, matches);
+        }
+        assertTrue(matches.contains(1));
+        assertEquals(1, matches.size());
+    }
+
+    @Test
+    void restartingEachSegmentMissesSplitPattern() {
+        byte[] first = bytes("1' union sel");
+        byte[] second = bytes("ect 1");
+        SignatureMatches matches = new SignatureMatches(MATCHER.getPatternCount());
+        MATCHER.scan(first, 0, first.length, AhoCorasickMatcher.START_STATE, matches);
+        MATCHER.scan(second, 0, second.length, AhoCorasickMatcher.START_STATE, matches);
+        assertTrue(matches.isEmpty());
+    }
+
+    @Test
+    void stepFollowsScan() {
+        byte[] data = bytes("xx NC -L -P");
+        int state = AhoCorasickMatcher.START_STATE;
+        for (byte b : data) {
+            state = MATCHER.step(state, b);
+        }
+        SignatureMatches matches = new SignatureMatches(MATCHER.getPatternCount());
+        assertEquals(state, MATCHER.scan(data, 0, data.length, AhoCorasickMatcher.START_STATE, matches));
+        assertTrue(matches.contains(1));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}